@@ -51,6 +51,39 @@ public class AMLAttributeTest extends AbstractAMLTest {
 		assertThat(attribute.getValue().equals(attributeValue));
 	}
 	
+	@Test
+	public void valid_attributesShareStrings() throws Exception {
+		AMLDocument a = session.createAMLDocument();
+
+		AMLInterfaceClassLibrary lib1 = a.createInterfaceClassLibrary("lib1");
+		AMLAttribute attribute1 = lib1.createInterfaceClass("class1").createAttribute(new String("attribute"));
+		AMLAttribute attribute2 = lib1.createInterfaceClass("class2").createAttribute(new String("attribute"));
+		attribute1.setDataType(new String("xs:string"));
+		attribute2.setDataType(new String("xs:string"));
+		attribute1.setUnit(new String("mm"));
+		attribute2.setUnit(new String("mm"));
+
+		assertThat(attribute2.getName()).isSameAs(attribute1.getName());
+		assertThat(attribute2.getDataType()).isSameAs(attribute1.getDataType());
+		assertThat(attribute2.getUnit()).isSameAs(attribute1.getUnit());
+		assertThat(session.getStringPool().getHitCount()).isGreaterThanOrEqualTo(3);
+		assertThat(session.getStringPool().getSavedBytes()).isGreaterThan(0);
+
+		session.setStringPool(null);
+		attribute2.setUnit(new String("m"));
+		attribute1.setUnit(new String("m"));
+		assertThat(attribute2.getUnit()).isNotSameAs(attribute1.getUnit());
+	}
+
+	@Test
+	public void valid_05_interfaceClassWithAttributes_onlyValuesPooled() throws Exception {
+		URL url = testFileLocator.getValidTestCaseFile("05_interfaceClassWithAttributes.aml").toURI().toURL();
+		session.loadAMLDocument(url);
+
+		// name, unit and data type of the attribute, not the paths the elements are identified by while loading
+		assertThat(session.getStringPool().getSize()).isEqualTo(3);
+	}
+
 	@Test(expected = AMLValidationException.class)
 	public void invalid_createTwoAttributesWithSameName() throws Exception {
 		AMLDocument a = session.createAMLDocument();
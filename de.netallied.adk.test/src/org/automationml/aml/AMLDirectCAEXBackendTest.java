@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+import static org.automationml.aml.AMLSessionManager.amlSessionManager;
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.automationml.DirectCAEXBackend;
+import org.automationml.StAXBackend;
+import org.automationml.XMLBackend;
+import org.junit.Test;
+
+public class AMLDirectCAEXBackendTest extends AbstractAMLTest {
+
+	private TestFileLocator testFileLocator = new TestFileLocator(getClass());
+
+	@Test
+	public void valid_copyLibrary_directWriter() throws Exception {
+		URL url = testFileLocator.getValidTestCaseFile("copyLibrary.aml").toURI().toURL();
+		AMLDocument document = session.loadAMLDocument(url);
+		AMLInterfaceClass interfaceClass = document.createInterfaceClassLibrary("DirectLib").createInterfaceClass("Class");
+		interfaceClass.setDescription("<tag attribute=\"value\">&amp;</tag>\r\n\u00e4\u20ac\ud83d\ude00");
+		interfaceClass.createAttribute("attribute").setValue("'\"<&>\"'\t\u00df");
+		String content = getContent(document);
+
+		session.setXMLBackend(new DirectCAEXBackend());
+		assertThat(getContent(document)).isEqualTo(content);
+	}
+
+	@Test
+	public void valid_sampleFiles_directWriter() throws Exception {
+		File[] files = testFileLocator.getValidTestCaseFile(".").listFiles();
+		Arrays.sort(files);
+		int comparedCount = 0;
+		for (File file : files) {
+			if (!file.getName().endsWith(".aml"))
+				continue;
+			AMLSession fileSession = amlSessionManager.createSession();
+			try {
+				AMLDocument document;
+				try {
+					document = fileSession.loadAMLDocument(file.toURI().toURL());
+				} catch (Exception e) {
+					// invalid on purpose or needing more than the sample directory, covered elsewhere
+					continue;
+				}
+				fileSession.setXMLBackend(StAXBackend.getDefault());
+				byte[] expected = save(document);
+				fileSession.setXMLBackend(new DirectCAEXBackend());
+				assertThat(save(document)).describedAs(file.getName()).isEqualTo(expected);
+				comparedCount++;
+			} finally {
+				fileSession.close();
+			}
+		}
+		assertThat(comparedCount).isGreaterThan(40);
+	}
+
+	@Test
+	public void valid_copyLibrary_directWriter_unpairedSurrogatesAndNull() throws Exception {
+		URL url = testFileLocator.getValidTestCaseFile("copyLibrary.aml").toURI().toURL();
+		AMLDocument document = session.loadAMLDocument(url);
+		AMLInterfaceClass interfaceClass = document.createInterfaceClassLibrary("DirectLib").createInterfaceClass("Class");
+		interfaceClass.setDescription("\udc00 low first, high last \ud83d");
+		interfaceClass.createAttribute("high").setValue("\ud83dx");
+		interfaceClass.createAttribute("low").setValue("x\ude00");
+		interfaceClass.createAttribute("null").setValue(null);
+		byte[] expected = save(document);
+
+		session.setXMLBackend(new DirectCAEXBackend());
+		assertThat(save(document)).isEqualTo(expected);
+	}
+
+	@Test
+	public void directWriter_unpairedSurrogatesAndNull() throws Exception {
+		assertThat(write(new DirectCAEXBackend())).isEqualTo(write(StAXBackend.getDefault()));
+	}
+
+	@Test
+	public void directWriter_namespaceContext() throws Exception {
+		XMLStreamWriter writer = new DirectCAEXBackend().createXMLStreamWriter(new ByteArrayOutputStream(), "UTF-8");
+		writer.setNamespaceContext(writer.getNamespaceContext());
+		writer.writeStartDocument("UTF-8", "1.0");
+		writer.writeStartElement("CAEXFile");
+		writer.writeNamespace("xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+		NamespaceContext context = writer.getNamespaceContext();
+		assertThat(context.getNamespaceURI("xsi")).isEqualTo(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+		assertThat(context.getNamespaceURI(XMLConstants.XML_NS_PREFIX)).isEqualTo(XMLConstants.XML_NS_URI);
+		assertThat(context.getNamespaceURI("other")).isEqualTo(XMLConstants.NULL_NS_URI);
+		assertThat(writer.getPrefix(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI)).isEqualTo("xsi");
+		writer.writeEndDocument();
+		writer.close();
+	}
+
+	private static byte[] write(XMLBackend backend) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		XMLStreamWriter writer = backend.createXMLStreamWriter(outputStream, "UTF-8");
+		writer.writeStartDocument("UTF-8", "1.0");
+		writer.writeStartElement("CAEXFile");
+		writer.writeAttribute("high", "\ud83dx");
+		writer.writeAttribute("low", "x\ude00");
+		writer.writeAttribute("pair", "\ud83d\ude00");
+		writer.writeStartElement("Description");
+		writer.writeCharacters("\ude00 low first");
+		writer.writeCharacters(null);
+		writer.writeCharacters("high before a tag \ud83d");
+		writer.writeEndElement();
+		writer.writeStartElement("Value");
+		char[] text = "high\ud83d".toCharArray();
+		writer.writeCharacters(text, 0, text.length);
+		writer.writeCharacters("\ude00 split pair");
+		writer.writeEndElement();
+		writer.writeEndDocument();
+		writer.close();
+		return outputStream.toByteArray();
+	}
+
+	// the save time is removed, the bytes are kept as they are
+	private static byte[] save(AMLDocument document) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		document.saveTo(outputStream, createURLResolver());
+		String content = new String(outputStream.toByteArray(), "ISO-8859-1");
+		return content.replaceAll("<LastWritingDateTime>[^<]*</LastWritingDateTime>", "").getBytes("ISO-8859-1");
+	}
+}
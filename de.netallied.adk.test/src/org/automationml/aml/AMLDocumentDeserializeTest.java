@@ -4,18 +4,50 @@
  *******************************************************************************/
 package org.automationml.aml;
 
+import static org.automationml.aml.AMLSessionManager.amlSessionManager;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.fest.assertions.Fail.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
-
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.automationml.AMLXPackage;
 import org.automationml.DocumentURLResolver;
+import org.automationml.LibraryRepositoryURLResolver;
+import org.automationml.MappedCAEXBackend;
+import org.automationml.MemoryDocumentBundle;
+import org.automationml.Savepoint;
+import org.automationml.SerializerException;
+import org.automationml.SharedLibraryCAEXBackend;
+import org.automationml.SnapshotCAEXBackend;
 import org.automationml.URLDocumentLocation;
 import org.automationml.aml.AMLElement.Revision;
+import org.automationml.aml.AMLValidationResult.Severity;
+import org.automationml.internal.DetailedProgressMonitor.Phase;
+import org.automationml.internal.ProgressStatistics;
+import org.automationml.internal.aml.AMLAttributeImpl;
+import org.automationml.internal.aml.AMLSessionImpl;
+import org.automationml.internal.aml.AMLValidationResultImpl;
+import org.automationml.internal.aml.AMLValidationResultListImpl;
+import org.automationml.internal.aml.AMLValueStore;
 import org.automationml.internal.aml.persistence.AMLUnresolvedDependenciesException;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -175,6 +207,328 @@ public class AMLDocumentDeserializeTest extends AbstractAMLTest {
 		assertChangesNotified();
 	}
 
+	@Test
+	public void valid_02_missingExternalReference_resolvedByLibraryRepository() throws Exception {
+		File file = testFileLocator.getInvalidTestCaseFile("02_missingExternalReference.aml");
+		URL url = file.toURI().toURL();
+
+		File validFile = testFileLocator.getValidTestCaseFile("b.aml");
+		LibraryRepositoryURLResolver documentURLResolver = new LibraryRepositoryURLResolver(validFile.getParentFile());
+		assertThat(documentURLResolver.getIndexedFilesCount()).isGreaterThan(1);
+		assertThat(documentURLResolver.lookup("Lib/b.aml")).isEqualTo(validFile.toURI().toURL());
+
+		session.setDocumentURLResolver(documentURLResolver);
+		session.loadAMLDocument(url);
+
+		assertSessionHasDocuments(3);
+		assertThat(session.getAMLDocumentByDocumentLocation(new URLDocumentLocation(validFile.toURI().toURL()))).isNotNull();
+		assertChangesNotified();
+	}
+
+	@Test
+	public void valid_02_missingExternalReference_loadedFromMemory() throws Exception {
+		byte[] content = Files.readAllBytes(testFileLocator.getInvalidTestCaseFile("02_missingExternalReference.aml").toPath());
+		Map<String, byte[]> relatedDocuments = new HashMap<String, byte[]>();
+		relatedDocuments.put("01_missingExternalReference.aml", Files.readAllBytes(testFileLocator.getInvalidTestCaseFile("01_missingExternalReference.aml").toPath()));
+		relatedDocuments.put("Lib/b.aml", Files.readAllBytes(testFileLocator.getValidTestCaseFile("b.aml").toPath()));
+
+		AMLDocument document = session.loadAMLDocument(ByteBuffer.wrap(content), relatedDocuments);
+
+		assertSessionHasDocuments(3);
+		assertThat(document.getExplicitlyReferencedDocuments()).hasSize(1);
+		assertChangesNotified();
+	}
+
+	@Test
+	public void valid_b_savedToMemory() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("b.aml");
+		AMLDocument document = session.loadAMLDocument(new FileInputStream(file), null);
+		assertThat(document.getInterfaceClassLibrary("LIB2").getInterfaceClassesCount()).isEqualTo(6);
+
+		MemoryDocumentBundle bundle = new MemoryDocumentBundle();
+		document.saveAs(bundle.getURL("saved/b.aml"), createURLResolver());
+		assertThat(document.getDocumentLocation()).isEqualTo(bundle.getDocumentLocation("saved/b.aml"));
+
+		AMLSession otherSession = amlSessionManager.createSession();
+		AMLDocument savedDocument = otherSession.loadAMLDocument(bundle.getBytes("saved/b.aml"), null);
+		assertThat(savedDocument.getInterfaceClassLibrary("LIB2").getInterfaceClassesCount()).isEqualTo(6);
+		assertThat(otherSession.getAMLDocumentByDocumentLocation(bundle.getDocumentLocation("saved/b.aml"))).isNull();
+	}
+
+	@Test
+	public void valid_copyLibrary_librariesOnly() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("copyLibrary.aml");
+		AMLDocument document = session.loadAMLDocument(file.toURI().toURL(), AMLProjection.librariesOnly());
+
+		assertThat(document.getInstanceHierarchiesCount()).isEqualTo(0);
+		assertThat(document.getInterfaceClassLibrariesCount()).isEqualTo(3);
+		assertThat(document.getRoleClassLibrariesCount()).isEqualTo(6);
+		assertThat(document.getSystemUnitClassLibrariesCount()).isEqualTo(2);
+		assertThat(document.getProjection()).isNotNull();
+		try {
+			document.save(null);
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	public void valid_copyLibrary_projectedInstanceHierarchy() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("copyLibrary.aml");
+		AMLProjection projection = new AMLProjection().includeInstanceHierarchies("Beispiel-Struktur").includeLibraries("ADKRoleLib");
+		AMLDocument document = session.loadAMLDocument(file.toURI().toURL(), projection);
+
+		assertThat(document.getInstanceHierarchy("Beispiel-Struktur")).isNotNull();
+		assertThat(document.getRoleClassLibrary("ADKRoleLib")).isNotNull();
+		// referenced by the internal elements
+		assertThat(document.getSystemUnitClassLibrary("AnlagenObjekte")).isNotNull();
+		assertThat(document.getInterfaceClassLibrary("ADKInterfaceLib")).isNotNull();
+		assertThat(document.getSystemUnitClassLibrary("Symbole")).isNull();
+	}
+
+	@Test
+	public void valid_copyLibrary_splitParsing() throws Exception {
+		URL url = testFileLocator.getValidTestCaseFile("copyLibrary.aml").toURI().toURL();
+
+		AMLSession sequentialSession = amlSessionManager.createSession();
+		sequentialSession.setXMLBackend(new MappedCAEXBackend());
+		sequentialSession.setParallelParsingThreshold(-1);
+		String sequentialContent = getContent(sequentialSession.loadAMLDocument(url));
+
+		// every instance hierarchy and library parsed on its own
+		session.setXMLBackend(new MappedCAEXBackend());
+		session.setParallelParsingThreshold(0);
+		AMLDocument document = session.loadAMLDocument(url);
+		assertThat(getContent(document)).isEqualTo(sequentialContent);
+	}
+
+	@Test
+	public void valid_05_interfaceClassWithAttributes_spilledValues() throws Exception {
+		URL url = testFileLocator.getValidTestCaseFile("05_interfaceClassWithAttributes.aml").toURI().toURL();
+
+		AMLSession memorySession = amlSessionManager.createSession();
+		String memoryContent = getContent(memorySession.loadAMLDocument(url));
+
+		session.setValueSpillThreshold(1);
+		AMLDocument document = session.loadAMLDocument(url);
+		AMLAttributeImpl attribute = (AMLAttributeImpl) document.getInterfaceClassLibrary("Lib").getInterfaceClass("Class").getAttribute("attribute");
+		assertThat(attribute.getStoredValue()).isNotNull();
+		assertThat(attribute.getValue()).isEqualTo("value");
+		assertThat(getContent(document)).isEqualTo(memoryContent);
+
+		attribute.setValue("new value");
+		assertThat(attribute.getStoredValue()).isNull();
+		assertThat(attribute.getValue()).isEqualTo("new value");
+	}
+
+	@Test
+	public void valid_05_interfaceClassWithAttributes_spilledValuesUndone() throws Exception {
+		URL url = testFileLocator.getValidTestCaseFile("05_interfaceClassWithAttributes.aml").toURI().toURL();
+		session.setValueSpillThreshold(1);
+		AMLDocument document = session.loadAMLDocument(url);
+		AMLAttributeImpl attribute = (AMLAttributeImpl) document.getInterfaceClassLibrary("Lib").getInterfaceClass("Class").getAttribute("attribute");
+		AMLValueStore.StoredValue oldValue = attribute.getStoredValue();
+
+		AMLValueStore.ValueWriter writer = ((AMLSessionImpl) session).getValueStore().createWriter();
+		writer.write("new value");
+		AMLValueStore.StoredValue newValue = writer.close();
+
+		Savepoint undo = session.createSavepoint();
+		attribute.setValue(newValue);
+		Savepoint redo = session.createSavepoint();
+		assertThat(attribute.getStoredValue()).isSameAs(newValue);
+
+		// the change keeps the stored values instead of reading them
+		undo.restore();
+		assertThat(attribute.getStoredValue()).isSameAs(oldValue);
+		assertThat(attribute.getValue()).isEqualTo("value");
+		redo.restore();
+		assertThat(attribute.getStoredValue()).isSameAs(newValue);
+		assertThat(attribute.getValue()).isEqualTo("new value");
+
+		undo.delete();
+		redo.delete();
+	}
+
+	@Test
+	public void valid_30_mirror_loadLimits() throws Exception {
+		URL url = testFileLocator.getValidTestCaseFile("30_mirror.aml").toURI().toURL();
+		session.setLoadLimits(new AMLLoadLimits().maxFiles(1));
+		try {
+			session.loadAMLDocument(url);
+			fail();
+		} catch (AMLLoadLimitExceededException e) {
+			assertThat(e.getLimit()).isEqualTo(AMLLoadLimits.Limit.FILES);
+			assertThat(e.getMaximum()).isEqualTo(1);
+		}
+		assertSessionHasNoDocuments();
+		assertNoChangesNotified();
+
+		session.setLoadLimits(new AMLLoadLimits().maxFiles(3).maxElements(1));
+		try {
+			session.loadAMLDocument(url);
+			fail();
+		} catch (AMLLoadLimitExceededException e) {
+			assertThat(e.getLimit()).isEqualTo(AMLLoadLimits.Limit.ELEMENTS);
+		}
+		assertSessionHasNoDocuments();
+
+		session.setLoadLimits(new AMLLoadLimits().maxFiles(3).maxBytes(new File(url.toURI()).length()));
+		try {
+			session.loadAMLDocument(url);
+			fail();
+		} catch (AMLLoadLimitExceededException e) {
+			assertThat(e.getLimit()).isEqualTo(AMLLoadLimits.Limit.BYTES);
+		}
+		assertSessionHasNoDocuments();
+
+		session.setLoadLimits(new AMLLoadLimits().maxFiles(3));
+		session.loadAMLDocument(url);
+		assertThat(session.getDocumentsCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void valid_05_interfaceClassWithAttributes_loadLimitsOfUnknownSize() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("05_interfaceClassWithAttributes.aml");
+		File directory = createTemporaryDirectory("limits");
+		try {
+			File archive = new File(directory, "documents.zip");
+			ZipOutputStream outputStream = new ZipOutputStream(new FileOutputStream(archive));
+			try {
+				outputStream.putNextEntry(new ZipEntry("document.aml"));
+				Files.copy(file.toPath(), outputStream);
+				outputStream.closeEntry();
+			} finally {
+				outputStream.close();
+			}
+			// the size of a document in an archive is not known before it is read
+			URL url = new URL("jar:" + archive.toURI().toURL() + "!/document.aml");
+
+			session.setLoadLimits(new AMLLoadLimits().maxBytes(file.length() - 1));
+			try {
+				session.loadAMLDocument(url);
+				fail();
+			} catch (AMLLoadLimitExceededException e) {
+				assertThat(e.getLimit()).isEqualTo(AMLLoadLimits.Limit.BYTES);
+			}
+			assertSessionHasNoDocuments();
+
+			session.setLoadLimits(new AMLLoadLimits().maxBytes(file.length()));
+			session.loadAMLDocument(url);
+			assertThat(session.getDocumentsCount()).isEqualTo(1);
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void loadLimitsOfStream() throws Exception {
+		final long[] read = new long[1];
+		InputStream inputStream = new InputStream() {
+			@Override
+			public int read() {
+				return read[0]++ < 10000000 ? ' ' : -1;
+			}
+		};
+		session.setLoadLimits(new AMLLoadLimits().maxBytes(1000));
+		try {
+			session.loadAMLDocument(inputStream, null);
+			fail();
+		} catch (AMLLoadLimitExceededException e) {
+			assertThat(e.getLimit()).isEqualTo(AMLLoadLimits.Limit.BYTES);
+		}
+		// the stream is not copied up to its end
+		assertThat(read[0]).isLessThan(1000000);
+		assertSessionHasNoDocuments();
+	}
+
+	@Test
+	public void valid_05_interfaceClassWithAttributeHierarchy_loadLimits() throws Exception {
+		URL url = testFileLocator.getValidTestCaseFile("05_interfaceClassWithAttributeHierarchy.aml").toURI().toURL();
+		session.setLoadLimits(new AMLLoadLimits().maxDepth(1));
+		try {
+			session.loadAMLDocument(url);
+			fail();
+		} catch (AMLLoadLimitExceededException e) {
+			assertThat(e.getLimit()).isEqualTo(AMLLoadLimits.Limit.DEPTH);
+			assertThat(e.getLocation()).contains("line");
+		}
+		assertSessionHasNoDocuments();
+
+		session.setLoadLimits(new AMLLoadLimits().maxDepth(2).maxValueLength(0));
+		try {
+			session.loadAMLDocument(url);
+			fail();
+		} catch (AMLLoadLimitExceededException e) {
+			assertThat(e.getLimit()).isEqualTo(AMLLoadLimits.Limit.VALUE_LENGTH);
+		}
+		assertSessionHasNoDocuments();
+
+		session.setLoadLimits(new AMLLoadLimits().maxDepth(2));
+		session.loadAMLDocument(url);
+		assertThat(session.getDocumentsCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void valid_30_mirror_progress() throws Exception {
+		URL url = testFileLocator.getValidTestCaseFile("30_mirror.aml").toURI().toURL();
+		ProgressStatistics statistics = new ProgressStatistics();
+		statistics.cancel();
+		session.setProgressMonitor(statistics);
+		try {
+			session.loadAMLDocument(url);
+			fail();
+		} catch (AMLCanceledException e) {
+		}
+		assertSessionHasNoDocuments();
+		assertNoChangesNotified();
+
+		statistics = new ProgressStatistics();
+		session.setProgressMonitor(statistics);
+		AMLDocument document = session.loadAMLDocument(url);
+		assertThat(session.getDocumentsCount()).isEqualTo(3);
+		assertThat(statistics.getWorked()).isEqualTo(2);
+		assertThat(statistics.getFilesCount()).isEqualTo(3);
+		assertThat(statistics.getBytesCount()).isGreaterThan(new File(url.toURI()).length());
+		assertThat(statistics.getElementsParsedCount()).isGreaterThan(3);
+		assertThat(statistics.getInstructionsExecutedCount()).isGreaterThan(statistics.getElementsParsedCount());
+		assertThat(statistics.getPhaseTime(Phase.PARSE, TimeUnit.NANOSECONDS)).isGreaterThan(0);
+		assertThat(statistics.getPhaseTime(Phase.EXECUTE, TimeUnit.NANOSECONDS)).isGreaterThan(0);
+		assertThat(statistics.getPhaseTime(Phase.SAVE, TimeUnit.NANOSECONDS)).isEqualTo(0);
+
+		getContent(document);
+		assertThat(statistics.getElementsWrittenCount()).isGreaterThan(0);
+		assertThat(statistics.getPhaseTime(Phase.SAVE, TimeUnit.NANOSECONDS)).isGreaterThan(0);
+
+		statistics.cancel();
+		try {
+			getContent(document);
+			fail();
+		} catch (SerializerException e) {
+			assertThat(e.getCause()).isInstanceOf(AMLCanceledException.class);
+		}
+	}
+
+	@Test
+	public void valid_01_explicitExternalReference_package() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("01_explicitExternalReference.aml");
+		AMLDocument document = session.loadAMLDocument(file.toURI().toURL());
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		document.saveAsPackage(outputStream);
+
+		AMLXPackage amlxPackage = AMLXPackage.read(new ByteArrayInputStream(outputStream.toByteArray()));
+		assertThat(amlxPackage.getRootDocumentPath()).isEqualTo("01_explicitExternalReference.aml");
+		assertThat(amlxPackage.getBundle().contains("lib/b.aml")).isTrue();
+
+		AMLSession otherSession = amlSessionManager.createSession();
+		AMLDocument loadedDocument = amlxPackage.load(otherSession);
+		assertThat(otherSession.getDocumentsCount()).isEqualTo(2);
+		AMLDocument library = loadedDocument.getExplicitlyReferencedDocuments().iterator().next();
+		assertThat(library.getDocumentLocation()).isEqualTo(amlxPackage.getBundle().getDocumentLocation("lib/b.aml"));
+		assertThat(library.getInterfaceClassLibrary("LIB2").getInterfaceClassesCount()).isEqualTo(6);
+	}
+
 	@Test
 	public void valid_01_explicitExternalReference() throws Exception {
 		File file = testFileLocator.getValidTestCaseFile("01_explicitExternalReference.aml");
@@ -617,6 +971,49 @@ public class AMLDocumentDeserializeTest extends AbstractAMLTest {
 		}
 	}
 
+	@Test
+	public void invalid_03_unresolvedInterfaceClassLib_message() throws Exception {
+		File file = testFileLocator.getInvalidTestCaseFile("03_unresolvedInterfaceClassLib.aml");
+		try {
+			session.loadAMLDocument(file.toURI().toURL());
+			fail();
+		} catch (AMLUnresolvedDependenciesException e) {
+			assertThat(getMessages(e)).containsOnly("LIB1/Class1 references undefined LIB_XXX/Class1");
+		}
+	}
+
+	@Test
+	public void invalid_20_cycleInInterfaceClassBaseClasses() throws Exception {
+		File file = testFileLocator.getInvalidTestCaseFile("20_cycleInInterfaceClassBaseClasses.aml");
+		try {
+			session.loadAMLDocument(file.toURI().toURL());
+			fail();
+		} catch (AMLUnresolvedDependenciesException e) {
+			assertThat(getMessages(e)).containsOnly("LIB1/Class1 is part of a dependency cycle through LIB1/Class2",
+					"LIB1/Class2 is part of a dependency cycle through LIB1/Class1", "LIB1/Class3 depends on LIB1/Class1 which is part of a dependency cycle");
+		}
+	}
+
+	@Test
+	public void invalid_21_interfaceClassWithUnresolvedBaseClass() throws Exception {
+		File file = testFileLocator.getInvalidTestCaseFile("21_interfaceClassWithUnresolvedBaseClass.aml");
+		try {
+			session.loadAMLDocument(file.toURI().toURL());
+			fail();
+		} catch (AMLUnresolvedDependenciesException e) {
+			assertThat(getMessages(e)).containsOnly("LIB1/Class1 depends on LIB1/Class2 which could not be created",
+					"LIB1/Class2 references undefined LIB_XXX/Class1");
+		}
+	}
+
+	private static List<String> getMessages(AMLValidationException e) {
+		List<String> messages = new ArrayList<String>();
+		for (AMLValidationResult result : e.getValidationResultList().getValidationResults()) {
+			messages.add(result.getMessage());
+		}
+		return messages;
+	}
+
 	@Test
 	public void valid_10_internalElementWithInterface() throws Exception {
 		File file = testFileLocator.getValidTestCaseFile("10_internalElementWithInterface.aml");
@@ -806,6 +1203,325 @@ public class AMLDocumentDeserializeTest extends AbstractAMLTest {
 		assertThat(class1_4.getBaseInterfaceClass()).isSameAs(class1_1);
 	}
 	
+	@Test
+	public void valid_24_streamInternalElementWithLink() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("24_internalElementWithLink.aml");
+		URL url = file.toURI().toURL();
+
+		final StringBuilder result = new StringBuilder();
+		session.streamAMLDocument(url, new AMLStreamHandler() {
+			@Override
+			public void startInstanceHierarchy(String name) {
+				result.append("startInstanceHierarchy ").append(name).append("\n");
+			}
+
+			@Override
+			public void endInstanceHierarchy(String name) {
+				result.append("endInstanceHierarchy ").append(name).append("\n");
+			}
+
+			@Override
+			public void startInternalElement(UUID id, String name, String refBaseSystemUnitPath) {
+				result.append("startInternalElement ").append(name).append("\n");
+			}
+
+			@Override
+			public void endInternalElement(UUID id, String name) {
+				result.append("endInternalElement ").append(name).append("\n");
+			}
+
+			@Override
+			public void attribute(String path, String name, String value, String defaultValue, String unit, String dataType) {
+				result.append("attribute ").append(path).append("\n");
+			}
+
+			@Override
+			public void internalLink(String name, String refPartnerSideA, String refPartnerSideB) {
+				result.append("internalLink ").append(name).append(" ").append(refPartnerSideA).append(" ").append(refPartnerSideB).append("\n");
+			}
+		});
+
+		assertThat(result.toString()).isEqualTo(
+				"startInstanceHierarchy InstanceHierarchy\n" + "startInternalElement InternalElement\n" + "startInternalElement a\n" + "endInternalElement a\n"
+						+ "startInternalElement b\n" + "endInternalElement b\n"
+						+ "internalLink new link {c94d2e2c-ba2f-40eb-91c5-3b8070769078}:newClass {c94d2e2c-ba2f-40eb-91c5-3b8070769079}:newClass\n"
+						+ "endInternalElement InternalElement\n" + "endInstanceHierarchy InstanceHierarchy\n");
+		assertSessionHasNoDocuments();
+		assertNoChangesNotified();
+	}
+
+	@Test
+	public void valid_24_mappedInternalElementWithLink() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("24_internalElementWithLink.aml");
+		URL url = file.toURI().toURL();
+
+		session.setXMLBackend(new MappedCAEXBackend());
+		AMLDocument document = session.loadAMLDocument(url);
+
+		AMLInstanceHierarchy instanceHierarchy = document.getInstanceHierarchy("InstanceHierarchy");
+		AMLInternalElement internalElement = instanceHierarchy.getInternalElements().iterator().next();
+		assertThat(internalElement.getName()).isEqualTo("InternalElement");
+		assertThat(internalElement.getInternalElementsCount()).isEqualTo(2);
+		assertThat(internalElement.getInternalLinks().iterator().next().getName()).isEqualTo("new link");
+		assertThat(document.getInterfaceClassLibrary("Lib").getVersion()).isEqualTo("1.0.0");
+	}
+
+	@Test
+	public void valid_24_snapshotInternalElementWithLink() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("24_internalElementWithLink.aml");
+		URL url = file.toURI().toURL();
+		File directory = createTemporaryDirectory("snapshots");
+		SnapshotCAEXBackend backend = new SnapshotCAEXBackend(directory);
+
+		try {
+			session.setXMLBackend(backend);
+			session.loadAMLDocument(url);
+			assertThat(backend.getSnapshotFile(file).isFile()).isTrue();
+
+			AMLSession snapshotSession = amlSessionManager.createSession();
+			snapshotSession.setXMLBackend(backend);
+			AMLDocument document = snapshotSession.loadAMLDocument(url);
+
+			AMLInstanceHierarchy instanceHierarchy = document.getInstanceHierarchy("InstanceHierarchy");
+			AMLInternalElement internalElement = instanceHierarchy.getInternalElements().iterator().next();
+			assertThat(internalElement.getName()).isEqualTo("InternalElement");
+			assertThat(internalElement.getInternalElementsCount()).isEqualTo(2);
+			assertThat(internalElement.getInternalLinks().iterator().next().getName()).isEqualTo("new link");
+			assertThat(document.getInterfaceClassLibrary("Lib").getVersion()).isEqualTo("1.0.0");
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void valid_b_sharedLibrary() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("b.aml");
+		URL url = file.toURI().toURL();
+
+		amlSessionManager.setShareLibraries(true);
+		try {
+			// the first session parses and caches the library, the others replay it
+			amlSessionManager.createSession().loadAMLDocument(url);
+			assertThat(SharedLibraryCAEXBackend.getCachedDocumentsCount()).isGreaterThanOrEqualTo(1);
+			AMLDocument document1 = amlSessionManager.createSession().loadAMLDocument(url);
+			AMLDocument document2 = amlSessionManager.createSession().loadAMLDocument(url);
+
+			assertThat(document2).isNotSameAs(document1);
+			assertThat(document2.getInterfaceClassLibrary("LIB2").getInterfaceClassesCount()).isEqualTo(6);
+			assertThat(document2.getWriterName()).isSameAs(document1.getWriterName());
+		} finally {
+			amlSessionManager.setShareLibraries(false);
+			SharedLibraryCAEXBackend.clearCache();
+		}
+	}
+
+	@Test
+	public void valid_30_lazyMirror() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("30_mirror.aml");
+		URL url = file.toURI().toURL();
+
+		session.setLazyLoading(true);
+		AMLDocument document = session.loadAMLDocument(url);
+		Savepoint accessSavepoint = session.createSavepoint();
+
+		AMLInstanceHierarchy instanceHierarchy = document.getInstanceHierarchy("InstanceHierarchy");
+		assertThat(instanceHierarchy.getInternalElementsCount() + instanceHierarchy.getGroupsCount()).isEqualTo(2);
+		assertThat(document.isDirty()).isFalse();
+		assertThat(accessSavepoint.hasChanges()).isFalse();
+		accessSavepoint.delete();
+		assertNoChangesNotified();
+	}
+
+	@Test
+	public void valid_09_lazyLoadFailed_retried() throws Exception {
+		File directory = createTemporaryDirectory("lazy");
+		File file = new File(directory, "09_instanceHierarchyWithInternalElements.aml");
+		File movedFile = new File(directory, "moved.aml");
+		Files.copy(testFileLocator.getValidTestCaseFile(file.getName()).toPath(), file.toPath());
+		try {
+			session.setLazyLoading(true);
+			AMLDocument document = session.loadAMLDocument(file.toURI().toURL());
+			AMLInstanceHierarchy instanceHierarchy = document.getInstanceHierarchy("InstanceHierarchy");
+
+			assertThat(file.renameTo(movedFile)).isTrue();
+			try {
+				instanceHierarchy.getInternalElementsCount();
+				fail();
+			} catch (RuntimeException e) {
+			}
+
+			// the content is not lost, it is loaded once the file is back
+			assertThat(movedFile.renameTo(file)).isTrue();
+			assertThat(instanceHierarchy.getInternalElementsCount()).isEqualTo(1);
+			assertThat(instanceHierarchy.getInternalElements().iterator().next().getInternalElementsCount()).isEqualTo(1);
+			assertThat(document.isDirty()).isFalse();
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void valid_09_lazyLoadChangedFile() throws Exception {
+		File directory = createTemporaryDirectory("lazy");
+		File file = new File(directory, "09_instanceHierarchyWithInternalElements.aml");
+		Files.copy(testFileLocator.getValidTestCaseFile(file.getName()).toPath(), file.toPath());
+		try {
+			session.setLazyLoading(true);
+			AMLDocument document = session.loadAMLDocument(file.toURI().toURL());
+			AMLInstanceHierarchy instanceHierarchy = document.getInstanceHierarchy("InstanceHierarchy");
+
+			// another instance hierarchy in front would otherwise be taken for this one
+			String content = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+			content = content.replace("<InstanceHierarchy Name=\"InstanceHierarchy\">", "<InstanceHierarchy Name=\"Other\" /><InstanceHierarchy Name=\"InstanceHierarchy\">");
+			Files.write(file.toPath(), content.getBytes("UTF-8"));
+			for (int i = 0; i < 2; i++) {
+				try {
+					instanceHierarchy.getInternalElementsCount();
+					fail();
+				} catch (RuntimeException e) {
+					assertThat(e.getCause().getMessage()).contains("was changed since it was loaded");
+				}
+			}
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void valid_30_trustedMirror() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("30_mirror.aml");
+		URL url = file.toURI().toURL();
+
+		final List<AMLDocument> announcedDocuments = new ArrayList<AMLDocument>();
+		final List<Integer> announcedInstanceHierarchies = new ArrayList<Integer>();
+		session.addChangeListener(new AMLSessionChangeListener() {
+			@Override
+			public void sessionChangeTransactionBegin() {
+			}
+
+			@Override
+			public void sessionChangeTransactionEnd() {
+			}
+
+			@Override
+			public void sessionChangeDocumentAdded(AMLDocument document) {
+				announcedDocuments.add(document);
+				announcedInstanceHierarchies.add(document.getInstanceHierarchiesCount());
+			}
+
+			@Override
+			public void sessionChangeDocumentRemoving(AMLDocument document) {
+			}
+		});
+
+		session.setTrustedLoading(true);
+		Savepoint loadSavepoint = session.createSavepoint();
+		AMLDocument document = session.loadAMLDocument(url);
+		assertThat(loadSavepoint.hasChanges()).isFalse();
+		loadSavepoint.delete();
+
+		// every document announced once, with its content
+		assertThat(announcedDocuments).hasSize(session.getDocumentsCount()).doesNotHaveDuplicates();
+		assertThat(announcedInstanceHierarchies.get(announcedDocuments.indexOf(document))).isEqualTo(1);
+		AMLInstanceHierarchy instanceHierarchy = document.getInstanceHierarchy("InstanceHierarchy");
+		assertThat(instanceHierarchy.getInternalElementsCount() + instanceHierarchy.getGroupsCount()).isEqualTo(2);
+
+		// the ids collected at the end include the mirror
+		UUID mirrorId = UUID.fromString("c94d2e2c-ba2f-40eb-91c5-3b8070769078");
+		assertThat(instanceHierarchy.validateInternalElementCreate(mirrorId).isAnyOperationNotPermitted()).isTrue();
+	}
+
+	@Test
+	public void valid_30_trustedInvalid() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("30_mirror.aml");
+		URL url = file.toURI().toURL();
+
+		final List<AMLDocument> announcedDocuments = new ArrayList<AMLDocument>();
+		session.addChangeListener(new AMLSessionChangeListener() {
+			@Override
+			public void sessionChangeTransactionBegin() {
+			}
+
+			@Override
+			public void sessionChangeTransactionEnd() {
+			}
+
+			@Override
+			public void sessionChangeDocumentAdded(AMLDocument document) {
+				announcedDocuments.add(document);
+			}
+
+			@Override
+			public void sessionChangeDocumentRemoving(AMLDocument document) {
+			}
+		});
+
+		// rejects documents with instance hierarchies, the referenced libraries are valid
+		final boolean[] rejecting = { true };
+		final List<AMLDocument> validatedDocuments = new ArrayList<AMLDocument>();
+		final int[] sessionValidations = { 0 };
+		session.setValidator(new AMLValidatorFactory() {
+			@Override
+			public AMLValidator createValidator(AMLSession session) throws AMLValidationException {
+				return new AMLValidatorAdapter() {
+					@Override
+					public void dispose() {
+					}
+
+					@Override
+					public AMLValidationResultList validateSession() {
+						sessionValidations[0]++;
+						return AMLValidationResultListImpl.EMPTY;
+					}
+
+					@Override
+					public AMLValidationResultList validateDocument(AMLDocument document) {
+						validatedDocuments.add(document);
+						if (!rejecting[0] || document.getInstanceHierarchiesCount() == 0)
+							return AMLValidationResultListImpl.EMPTY;
+						AMLValidationResultImpl validationResult = new AMLValidationResultImpl(document, Severity.AML_ERROR, "Invalid document");
+						validationResult.setOperationPermitted(false);
+						return new AMLValidationResultListImpl(validationResult);
+					}
+				};
+			}
+		});
+		try {
+			session.setTrustedLoading(true);
+			try {
+				session.loadAMLDocument(url);
+				fail();
+			} catch (AMLValidationException e) {
+			}
+			// nothing is left or announced
+			assertThat(validatedDocuments).isNotEmpty();
+			assertThat(session.getDocumentsCount()).isEqualTo(0);
+			assertThat(announcedDocuments).isEmpty();
+
+			rejecting[0] = false;
+			validatedDocuments.clear();
+			AMLDocument document = session.loadAMLDocument(url);
+			assertThat(document.getInstanceHierarchiesCount()).isEqualTo(1);
+			assertThat(validatedDocuments).hasSize(3);
+			assertThat(announcedDocuments).hasSize(3);
+
+			// only the new documents are validated, not the session as a whole
+			assertThat(sessionValidations[0]).isEqualTo(1);
+		} finally {
+			session.unsetValidator();
+		}
+	}
+
+	@Test
+	public void valid_29_lastWritingDateTime() throws Exception {
+		File file = testFileLocator.getValidTestCaseFile("29_frameAttribute.aml");
+		URL url = file.toURI().toURL();
+
+		AMLDocument document = session.loadAMLDocument(url);
+		// 2013-07-22T15:12:37+0200
+		assertThat(document.getLastWritingDate().getTime()).isEqualTo(1374498757000L);
+	}
+
 	@Test
 	public void valid_references() throws Exception {
 		
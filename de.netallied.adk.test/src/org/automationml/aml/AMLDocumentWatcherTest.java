@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.automationml.AMLDocumentWatcher;
+import org.automationml.URLDocumentLocation;
+import org.automationml.XMLBackend;
+import org.junit.Test;
+
+public class AMLDocumentWatcherTest extends AbstractAMLTest {
+
+	private static class CountingBackend implements XMLBackend {
+		final XMLBackend backend;
+		final List<String> readFiles = new ArrayList<String>();
+
+		CountingBackend(XMLBackend backend) {
+			this.backend = backend;
+		}
+
+		@Override
+		public XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+			return backend.createXMLStreamReader(inputStream);
+		}
+
+		@Override
+		public XMLStreamReader createXMLStreamReader(URL url) throws IOException, XMLStreamException {
+			String location = url.toExternalForm();
+			readFiles.add(location.substring(location.lastIndexOf('/') + 1));
+			return backend.createXMLStreamReader(url);
+		}
+
+		@Override
+		public boolean exists(URL url) {
+			return backend.exists(url);
+		}
+
+		@Override
+		public XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String encoding) throws XMLStreamException {
+			return backend.createXMLStreamWriter(outputStream, encoding);
+		}
+	}
+
+	private static final String DIAMOND = "03_explicitExternalReference_diamond";
+
+	private TestFileLocator testFileLocator = new TestFileLocator(getClass());
+
+	@Test
+	public void valid_05_interfaceClassWithAttributes_reloaded() throws Exception {
+		File directory = createTemporaryDirectory("reload");
+		File file = new File(directory, "05_interfaceClassWithAttributes.aml");
+		String content = new String(Files.readAllBytes(testFileLocator.getValidTestCaseFile("05_interfaceClassWithAttributes.aml").toPath()), "UTF-8");
+		Files.write(file.toPath(), content.getBytes("UTF-8"));
+
+		AMLDocumentWatcher watcher = new AMLDocumentWatcher(session);
+		try {
+			AMLDocument document = session.loadAMLDocument(file.toURI().toURL());
+			AMLInterfaceClass interfaceClass = document.getInterfaceClassLibrary("Lib").getInterfaceClass("Class");
+			AMLAttribute attribute = interfaceClass.getAttribute("attribute");
+			attachDocumentChangeListener(document);
+
+			watcher.reload(document);
+			assertThat(documentChangeListener.result.toString()).isEmpty();
+
+			content = content.replace("<Value>value</Value>", "<Value>changed</Value>");
+			content = content.replace("</InterfaceClassLib>", "<InterfaceClass Name=\"Class2\" /></InterfaceClassLib>");
+			Files.write(file.toPath(), content.getBytes("UTF-8"));
+			assertThat(watcher.reload(document)).isEmpty();
+
+			assertThat(document.getInterfaceClassLibrary("Lib").getInterfaceClass("Class")).isSameAs(interfaceClass);
+			assertThat(interfaceClass.getAttribute("attribute")).isSameAs(attribute);
+			assertThat(attribute.getValue()).isEqualTo("changed");
+			assertThat(document.getInterfaceClassLibrary("Lib").getInterfaceClass("Class2")).isNotNull();
+			assertThat(document.isDirty()).isFalse();
+			assertThat(documentChangeListener.result.toString()).contains("Modified").contains("Created").excludes("Deleting");
+		} finally {
+			watcher.close();
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void valid_09_instanceHierarchyWithInternalElements_movedInternalElement() throws Exception {
+		File directory = createTemporaryDirectory("reload");
+		File file = copy(directory, "09_instanceHierarchyWithInternalElements.aml");
+
+		AMLDocumentWatcher watcher = new AMLDocumentWatcher(session);
+		try {
+			AMLDocument document = session.loadAMLDocument(file.toURI().toURL());
+			AMLInstanceHierarchy instanceHierarchy = document.getInstanceHierarchy("InstanceHierarchy");
+			AMLInternalElement internalElement = instanceHierarchy.getInternalElements().iterator().next();
+			AMLInternalElement internalElement2 = internalElement.getInternalElements().iterator().next();
+			attachDocumentChangeListener(document);
+
+			// InternalElement2 is moved from InternalElement to the instance hierarchy
+			String element2 = "<InternalElement Name=\"InternalElement2\" ID=\"{44d76aac-0fce-46fa-a813-90ffdc27a5f5}\" />";
+			String content = read(file);
+			content = content.replace(element2, "").replace("</InstanceHierarchy>", element2 + "</InstanceHierarchy>");
+			Files.write(file.toPath(), content.getBytes("UTF-8"));
+			assertThat(watcher.reload(document)).isEmpty();
+
+			assertThat(instanceHierarchy.getInternalElementsCount()).isEqualTo(2);
+			assertThat(internalElement.getInternalElementsCount()).isEqualTo(0);
+			assertThat(internalElement2.isDeleted()).isFalse();
+			assertThat(internalElement2.getParent()).isSameAs(instanceHierarchy);
+			assertThat(document.isDirty()).isFalse();
+			assertThat(documentChangeListener.result.toString()).contains("Reparented").excludes("Created").excludes("Deleting");
+		} finally {
+			watcher.close();
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void valid_05_interfaceClassWithAttributes_changedFileReloaded() throws Exception {
+		File directory = createTemporaryDirectory("reload");
+		File file = copy(directory, "05_interfaceClassWithAttributes.aml");
+		AMLDocument document = session.loadAMLDocument(file.toURI().toURL());
+		AMLAttribute attribute = document.getInterfaceClassLibrary("Lib").getInterfaceClass("Class").getAttribute("attribute");
+
+		AMLDocumentWatcher watcher = new AMLDocumentWatcher(session);
+		try {
+			final CountDownLatch changed = new CountDownLatch(1);
+			final List<AMLDocument> reloadedDocuments = new ArrayList<AMLDocument>();
+			watcher.addListener(new AMLDocumentWatcher.Listener() {
+				@Override
+				public void documentChanged(AMLDocument document) {
+					changed.countDown();
+				}
+
+				@Override
+				public void documentReloaded(AMLDocument document, List<String> unreconciledElements) {
+					reloadedDocuments.add(document);
+				}
+			});
+			assertThat(watcher.hasChangedDocuments()).isFalse();
+
+			Files.write(file.toPath(), read(file).replace("<Value>value</Value>", "<Value>changed</Value>").getBytes("UTF-8"));
+			assertThat(changed.await(60, TimeUnit.SECONDS)).isTrue();
+			assertThat(watcher.hasChangedDocuments()).isTrue();
+			assertThat(attribute.getValue()).isEqualTo("value");
+
+			assertThat(watcher.reloadChangedDocuments()).containsExactly(document);
+			assertThat(reloadedDocuments).containsExactly(document);
+			assertThat(attribute.getValue()).isEqualTo("changed");
+		} finally {
+			watcher.close();
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void valid_03_explicitExternalReference_diamond_onlyChangedDocumentParsed() throws Exception {
+		File directory = createTemporaryDirectory("reload");
+		for (String suffix : new String[] { "", "_a", "_b", "_c" })
+			copy(directory, DIAMOND + suffix + ".aml");
+		File file = new File(directory, DIAMOND + ".aml");
+		File fileC = new File(directory, DIAMOND + "_c.aml");
+		CountingBackend backend = new CountingBackend(session.getXMLBackend());
+		session.setXMLBackend(backend);
+
+		AMLDocumentWatcher watcher = new AMLDocumentWatcher(session);
+		try {
+			AMLDocument document = session.loadAMLDocument(file.toURI().toURL());
+			AMLDocument documentC = session.getAMLDocumentByDocumentLocation(new URLDocumentLocation(fileC.toURI().toURL()));
+
+			// the referenced documents are parsed the first time only
+			backend.readFiles.clear();
+			addInstanceHierarchy(file, "Reloaded1");
+			watcher.reload(document);
+			assertThat(backend.readFiles).containsOnly(DIAMOND + ".aml", DIAMOND + "_a.aml", DIAMOND + "_b.aml", DIAMOND + "_c.aml");
+			assertThat(document.getInstanceHierarchy("Reloaded1")).isNotNull();
+
+			backend.readFiles.clear();
+			addInstanceHierarchy(file, "Reloaded2");
+			watcher.reload(document);
+			assertThat(backend.readFiles).containsExactly(DIAMOND + ".aml");
+			assertThat(document.getInstanceHierarchy("Reloaded2")).isNotNull();
+
+			// a changed referenced document is parsed again
+			backend.readFiles.clear();
+			addInstanceHierarchy(fileC, "ReloadedC");
+			watcher.reload(documentC);
+			assertThat(backend.readFiles).containsExactly(DIAMOND + "_c.aml");
+			assertThat(documentC.getInstanceHierarchy("ReloadedC")).isNotNull();
+
+			backend.readFiles.clear();
+			watcher.reload(document);
+			assertThat(backend.readFiles).containsOnly(DIAMOND + ".aml", DIAMOND + "_a.aml", DIAMOND + "_b.aml", DIAMOND + "_c.aml");
+			assertThat(session.getDocumentsCount()).isEqualTo(4);
+		} finally {
+			watcher.close();
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void valid_03_explicitExternalReference_diamond_changedReferencedDocumentParsed() throws Exception {
+		File directory = createTemporaryDirectory("reload");
+		for (String suffix : new String[] { "", "_a", "_b", "_c" })
+			copy(directory, DIAMOND + suffix + ".aml");
+		File file = new File(directory, DIAMOND + ".aml");
+		File fileC = new File(directory, DIAMOND + "_c.aml");
+		CountingBackend backend = new CountingBackend(session.getXMLBackend());
+		session.setXMLBackend(backend);
+
+		AMLDocument document = session.loadAMLDocument(file.toURI().toURL());
+		final AMLDocument documentC = session.getAMLDocumentByDocumentLocation(new URLDocumentLocation(fileC.toURI().toURL()));
+
+		AMLDocumentWatcher watcher = new AMLDocumentWatcher(session);
+		try {
+			final CountDownLatch changed = new CountDownLatch(1);
+			watcher.addListener(new AMLDocumentWatcher.Listener() {
+				@Override
+				public void documentChanged(AMLDocument document) {
+					if (document == documentC)
+						changed.countDown();
+				}
+
+				@Override
+				public void documentReloaded(AMLDocument document, List<String> unreconciledElements) {
+				}
+			});
+			watcher.reload(document);
+
+			// the referenced document changed since it was parsed for the last reload, which must not reuse it
+			addInstanceHierarchy(fileC, "ReloadedC");
+			assertThat(changed.await(60, TimeUnit.SECONDS)).isTrue();
+			backend.readFiles.clear();
+			watcher.reload(document);
+			assertThat(backend.readFiles).containsOnly(DIAMOND + ".aml", DIAMOND + "_a.aml", DIAMOND + "_b.aml", DIAMOND + "_c.aml");
+
+			assertThat(watcher.reloadChangedDocuments()).contains(documentC);
+			assertThat(documentC.getInstanceHierarchy("ReloadedC")).isNotNull();
+		} finally {
+			watcher.close();
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void valid_03_explicitExternalReference_diamond_failedReloadUndone() throws Exception {
+		File directory = createTemporaryDirectory("reload");
+		for (String suffix : new String[] { "", "_a", "_b", "_c" })
+			copy(directory, DIAMOND + suffix + ".aml");
+		File file = new File(directory, DIAMOND + ".aml");
+		File fileC = new File(directory, DIAMOND + "_c.aml");
+		String element = "<InternalElement Name=\"InternalElement\" ID=\"{534f4b37-b973-43da-b85c-b7fef52895fa}\" />";
+		Files.write(file.toPath(),
+				read(file).replace("</CAEXFile>", "<InstanceHierarchy Name=\"Root\">" + element + "</InstanceHierarchy></CAEXFile>").getBytes("UTF-8"));
+
+		AMLDocumentWatcher watcher = new AMLDocumentWatcher(session);
+		try {
+			session.loadAMLDocument(file.toURI().toURL());
+			AMLDocument documentC = session.getAMLDocumentByDocumentLocation(new URLDocumentLocation(fileC.toURI().toURL()));
+			String writerName = documentC.getWriterName();
+			attachDocumentChangeListener(documentC);
+
+			// the header and a new library are applied before the internal element, whose id is used by the referring document
+			String content = read(fileC).replace("<WriterName>", "<WriterName>changed ").replace("</CAEXFile>",
+					"<InterfaceClassLib Name=\"Lib\" /><InstanceHierarchy Name=\"C\">" + element + "</InstanceHierarchy></CAEXFile>");
+			Files.write(fileC.toPath(), content.getBytes("UTF-8"));
+			try {
+				watcher.reload(documentC);
+				fail();
+			} catch (AMLValidationException e) {
+			}
+
+			assertThat(documentC.getWriterName()).isEqualTo(writerName);
+			assertThat(documentC.getInterfaceClassLibrariesCount()).isEqualTo(0);
+			assertThat(documentC.getInstanceHierarchiesCount()).isEqualTo(0);
+			assertThat(documentC.isDirty()).isFalse();
+			assertThat(session.getDocumentsCount()).isEqualTo(4);
+		} finally {
+			watcher.close();
+			deleteDirectory(directory);
+		}
+	}
+
+	private File copy(File directory, String name) throws Exception {
+		File file = new File(directory, name);
+		Files.copy(testFileLocator.getValidTestCaseFile(name).toPath(), file.toPath());
+		return file;
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+	}
+
+	private static void addInstanceHierarchy(File file, String name) throws IOException {
+		Files.write(file.toPath(), read(file).replace("</CAEXFile>", "<InstanceHierarchy Name=\"" + name + "\" /></CAEXFile>").getBytes("UTF-8"));
+	}
+}
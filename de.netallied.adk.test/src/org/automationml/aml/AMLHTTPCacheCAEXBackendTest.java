@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+import static org.automationml.aml.AMLSessionManager.amlSessionManager;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.automationml.HTTPCacheCAEXBackend;
+import org.automationml.URLDocumentLocation;
+import org.junit.Test;
+
+public class AMLHTTPCacheCAEXBackendTest extends AbstractAMLTest {
+
+	private TestFileLocator testFileLocator = new TestFileLocator(getClass());
+
+	@Test
+	public void valid_01_explicitExternalReference_httpCache() throws Exception {
+		final File directory = testFileLocator.getValidTestCaseFile(".").getCanonicalFile();
+		final List<String> requests = new ArrayList<String>();
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				File file = new File(directory, exchange.getRequestURI().getPath());
+				String etag = "\"" + file.length() + "-" + file.lastModified() + "\"";
+				synchronized (requests) {
+					requests.add(exchange.getRequestURI().getPath());
+				}
+				if (!file.isFile()) {
+					exchange.sendResponseHeaders(404, -1);
+				} else if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					exchange.sendResponseHeaders(304, -1);
+				} else {
+					byte[] content = Files.readAllBytes(file.toPath());
+					exchange.getResponseHeaders().set("ETag", etag);
+					exchange.sendResponseHeaders(200, content.length);
+					exchange.getResponseBody().write(content);
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+		File cacheDirectory = createTemporaryDirectory("httpCache");
+		try {
+			URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/01_explicitExternalReference.aml");
+
+			// checking the existence and reading cost one request per document
+			HTTPCacheCAEXBackend backend = new HTTPCacheCAEXBackend(cacheDirectory);
+			session.setXMLBackend(backend);
+			AMLDocument document = session.loadAMLDocument(url);
+			assertThat(session.getDocumentsCount()).isEqualTo(2);
+			AMLDocument referencedDocument = document.getExplicitlyReferencedDocuments().iterator().next();
+			assertThat(((URLDocumentLocation) referencedDocument.getDocumentLocation()).getUrl().getProtocol()).isEqualTo("http");
+			assertThat(requests).hasSize(2);
+			assertThat(backend.getDownloadsCount()).isEqualTo(2);
+
+			// a new cache on the same directory asks whether the copies are still valid
+			AMLSession otherSession = amlSessionManager.createSession();
+			HTTPCacheCAEXBackend otherBackend = new HTTPCacheCAEXBackend(cacheDirectory);
+			otherBackend.setMaxAge(0);
+			otherSession.setXMLBackend(otherBackend);
+			otherSession.loadAMLDocument(url);
+			assertThat(otherSession.getDocumentsCount()).isEqualTo(2);
+			assertThat(otherBackend.getDownloadsCount()).isEqualTo(0);
+			assertThat(otherBackend.getRequestsCount()).isGreaterThan(0);
+
+			server.stop(0);
+			requests.clear();
+			AMLSession offlineSession = amlSessionManager.createSession();
+			HTTPCacheCAEXBackend offlineBackend = new HTTPCacheCAEXBackend(cacheDirectory);
+			offlineBackend.setOffline(true);
+			offlineSession.setXMLBackend(offlineBackend);
+			offlineSession.loadAMLDocument(url);
+			assertThat(offlineSession.getDocumentsCount()).isEqualTo(2);
+			assertThat(offlineBackend.getRequestsCount()).isEqualTo(0);
+			assertThat(requests).isEmpty();
+
+			try {
+				offlineSession.loadAMLDocument(new URL("http://localhost:" + server.getAddress().getPort() + "/b.aml?uncached"));
+				fail();
+			} catch (FileNotFoundException e) {
+			}
+		} finally {
+			server.stop(0);
+			deleteDirectory(cacheDirectory);
+		}
+	}
+
+	@Test
+	public void httpCache_serverError() throws Exception {
+		final byte[] content = Files.readAllBytes(testFileLocator.getValidTestCaseFile("05_interfaceClassWithAttributes.aml").toPath());
+		final AtomicInteger status = new AtomicInteger(200);
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				if (status.get() == 200) {
+					exchange.sendResponseHeaders(200, content.length);
+					exchange.getResponseBody().write(content);
+				} else {
+					exchange.sendResponseHeaders(status.get(), -1);
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+		File cacheDirectory = createTemporaryDirectory("httpCache");
+		try {
+			String base = "http://localhost:" + server.getAddress().getPort() + "/";
+			URL url = new URL(base + "05_interfaceClassWithAttributes.aml");
+			HTTPCacheCAEXBackend backend = new HTTPCacheCAEXBackend(cacheDirectory);
+			backend.setMaxAge(0);
+			File cachedFile = backend.getCachedFile(url);
+
+			// a failing server is like an unreachable one, the cached copy is used
+			status.set(503);
+			assertThat(backend.getCachedFile(url)).isEqualTo(cachedFile);
+			assertThat(backend.exists(url)).isTrue();
+			session.setXMLBackend(backend);
+			session.loadAMLDocument(url);
+			assertThat(session.getDocumentsCount()).isEqualTo(1);
+
+			// without a cached copy there is nothing to fall back to
+			try {
+				backend.getCachedFile(new URL(base + "uncached.aml"));
+				fail();
+			} catch (FileNotFoundException e) {
+				fail();
+			} catch (IOException e) {
+			}
+
+			// a document which is not found any more is not taken from the cache
+			status.set(404);
+			try {
+				backend.getCachedFile(url);
+				fail();
+			} catch (FileNotFoundException e) {
+			}
+			assertThat(backend.exists(url)).isFalse();
+			assertThat(backend.getDownloadsCount()).isEqualTo(1);
+		} finally {
+			server.stop(0);
+			deleteDirectory(cacheDirectory);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+import static org.automationml.aml.AMLSessionManager.amlSessionManager;
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.automationml.MappedCAEXBackend;
+import org.junit.Test;
+
+public class AMLIncrementalSaveTest extends AbstractAMLTest {
+
+	private TestFileLocator testFileLocator = new TestFileLocator(getClass());
+
+	@Test
+	public void valid_copyLibrary_savedIncrementally() throws Exception {
+		File directory = createTemporaryDirectory("incremental");
+		File file = new File(directory, "copyLibrary.aml");
+		Files.copy(testFileLocator.getValidTestCaseFile("copyLibrary.aml").toPath(), file.toPath());
+		String original = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+		String originalSymbols = getElementText(original, "SystemUnitClassLib Name=\"Symbole\"", "SystemUnitClassLib");
+		String originalInterfaces = getElementText(original, "InterfaceClassLib Name=\"ADKInterfaceLib\"", "InterfaceClassLib");
+		AMLDocumentURLResolver urlResolver = createURLResolver();
+		try {
+			session.setXMLBackend(new MappedCAEXBackend());
+			session.setIncrementalSaving(true);
+			AMLDocument document = session.loadAMLDocument(file.toURI().toURL());
+			document.getInterfaceClassLibrary("ADKInterfaceLib").getInterfaceClass("ADKProjectedImageInterface").getAttribute("zOrder").setValue("1");
+			String content = getContent(document);
+			document.save(urlResolver);
+
+			// only the changed library is written again, the others are copied with their indentation
+			String saved = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+			assertThat(saved).contains(originalSymbols);
+			assertThat(saved).doesNotContain(originalInterfaces);
+			AMLSession otherSession = amlSessionManager.createSession();
+			assertThat(getContent(otherSession.loadAMLDocument(file.toURI().toURL()))).isEqualTo(content);
+
+			// the regions of the written file are known as well
+			String savedInterfaces = getElementText(saved, "InterfaceClassLib Name=\"ADKInterfaceLib\"", "InterfaceClassLib");
+			document.getSystemUnitClassLibrary("Symbole").getSystemUnitClass("VISchalter").setDescription("switch");
+			content = getContent(document);
+			document.save(urlResolver);
+			saved = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+			assertThat(saved).contains(savedInterfaces);
+			assertThat(saved).doesNotContain(originalSymbols);
+			otherSession = amlSessionManager.createSession();
+			assertThat(getContent(otherSession.loadAMLDocument(file.toURI().toURL()))).isEqualTo(content);
+
+			// renaming writes the document completely
+			document.getSystemUnitClassLibrary("Symbole").setName("Symbols");
+			content = getContent(document);
+			document.save(urlResolver);
+			saved = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+			assertThat(saved.replaceAll("<LastWritingDateTime>[^<]*</LastWritingDateTime>", "")).isEqualTo(content);
+			assertThat(directory.list()).hasSize(1);
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void valid_copyLibrary_otherNamespaceSavedCompletely() throws Exception {
+		File directory = createTemporaryDirectory("incremental");
+		File file = new File(directory, "copyLibrary.aml");
+		String original = new String(Files.readAllBytes(testFileLocator.getValidTestCaseFile("copyLibrary.aml").toPath()), "UTF-8");
+		// the libraries copied could use the prefix, which is not declared again when saving
+		Files.write(file.toPath(), original.replace("xmlns:xsi=", "xmlns:other=\"urn:other\" xmlns:xsi=").getBytes("UTF-8"));
+		try {
+			session.setXMLBackend(new MappedCAEXBackend());
+			session.setIncrementalSaving(true);
+			AMLDocument document = session.loadAMLDocument(file.toURI().toURL());
+			document.getInterfaceClassLibrary("ADKInterfaceLib").getInterfaceClass("ADKProjectedImageInterface").getAttribute("zOrder").setValue("1");
+			String content = getContent(document);
+			document.save(createURLResolver());
+
+			String saved = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+			assertThat(saved.replaceAll("<LastWritingDateTime>[^<]*</LastWritingDateTime>", "")).isEqualTo(content);
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	private static String getElementText(String content, String startTag, String name) {
+		int start = content.indexOf("<" + startTag);
+		int end = content.indexOf("</" + name + ">", start) + name.length() + 3;
+		return content.substring(start, end);
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+import static org.automationml.aml.AMLSessionManager.amlSessionManager;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.automationml.SerializerException;
+import org.automationml.URLDocumentLocation;
+import org.junit.Test;
+
+public class AMLSessionSaveAllTest extends AbstractAMLTest {
+
+	private TestFileLocator testFileLocator = new TestFileLocator(getClass());
+
+	@Test
+	public void valid_03_explicitExternalReference_diamond_savedAll() throws Exception {
+		File directory = copyDiamond();
+		AMLDocumentURLResolver urlResolver = createURLResolver();
+		try {
+			AMLDocument document = session.loadAMLDocument(new File(directory, "03_explicitExternalReference_diamond.aml").toURI().toURL());
+			assertThat(session.getDocumentsCount()).isEqualTo(4);
+			document.createInterfaceClassLibrary("SavedLib");
+			Map<AMLDocument, String> contents = new HashMap<AMLDocument, String>();
+			for (AMLDocument amlDocument : session.getDocuments()) {
+				amlDocument.setDirty();
+				contents.put(amlDocument, getContent(amlDocument));
+			}
+
+			session.saveAll(urlResolver);
+			for (AMLDocument amlDocument : session.getDocuments()) {
+				assertThat(amlDocument.isDirty()).isFalse();
+				File file = new File(((URLDocumentLocation) amlDocument.getDocumentLocation()).getUrl().toURI());
+				String content = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+				assertThat(content.replaceAll("<LastWritingDateTime>[^<]*</LastWritingDateTime>", "")).isEqualTo(contents.get(amlDocument));
+			}
+			assertThat(directory.list()).hasSize(4);
+
+			AMLSession otherSession = amlSessionManager.createSession();
+			AMLDocument savedDocument = otherSession.loadAMLDocument(new File(directory, "03_explicitExternalReference_diamond.aml").toURI().toURL());
+			assertThat(savedDocument.getInterfaceClassLibrary("SavedLib")).isNotNull();
+			assertThat(otherSession.getDocumentsCount()).isEqualTo(4);
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void valid_03_explicitExternalReference_diamond_savedAll_serializationFails() throws Exception {
+		File directory = copyDiamond();
+		try {
+			final AMLDocument document = session.loadAMLDocument(new File(directory, "03_explicitExternalReference_diamond.aml").toURI().toURL());
+			Map<String, byte[]> files = readFiles(directory);
+			for (AMLDocument amlDocument : session.getDocuments()) {
+				amlDocument.setDirty();
+			}
+
+			// the referring document can not be serialized, the others can
+			final AMLDocumentURLResolver urlResolver = createURLResolver();
+			try {
+				session.saveAll(new AMLDocumentURLResolver() {
+					@Override
+					public URL getUrl(AMLDocument amlDocument) {
+						return urlResolver.getUrl(amlDocument);
+					}
+
+					@Override
+					public boolean isRelative(AMLDocument baseDocument, AMLDocument referencedDocument) {
+						if (baseDocument == document)
+							throw new IllegalStateException("Failing on purpose");
+						return true;
+					}
+				});
+				fail();
+			} catch (SerializerException e) {
+				assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+			}
+			for (AMLDocument amlDocument : session.getDocuments()) {
+				assertThat(amlDocument.isDirty()).isTrue();
+			}
+			assertSameFiles(directory, files);
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void valid_03_explicitExternalReference_diamond_savedAll_replacingFails() throws Exception {
+		File directory = copyDiamond();
+		try {
+			session.loadAMLDocument(new File(directory, "03_explicitExternalReference_diamond.aml").toURI().toURL());
+			List<AMLDocument> documents = new ArrayList<AMLDocument>();
+			for (AMLDocument amlDocument : session.getDocuments()) {
+				amlDocument.setDirty();
+				documents.add(amlDocument);
+			}
+
+			// the file of the second document is replaced by a directory, which a file can not replace
+			File blockedFile = getFile(documents.get(1));
+			blockedFile.delete();
+			blockedFile.mkdir();
+			new File(blockedFile, "blocker").createNewFile();
+			Map<String, byte[]> files = readFiles(directory);
+
+			try {
+				session.saveAll(createURLResolver());
+				fail();
+			} catch (IOException e) {
+			}
+			assertThat(documents.get(0).isDirty()).isFalse();
+			assertThat(Files.readAllBytes(getFile(documents.get(0)).toPath())).isNotEqualTo(files.get(getFile(documents.get(0)).getName()));
+			files.remove(getFile(documents.get(0)).getName());
+			for (AMLDocument amlDocument : documents.subList(1, documents.size())) {
+				assertThat(amlDocument.isDirty()).isTrue();
+			}
+			assertSameFiles(directory, files);
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	private File copyDiamond() throws Exception {
+		File directory = createTemporaryDirectory("saveAll");
+		for (String suffix : new String[] { "", "_a", "_b", "_c" }) {
+			String name = "03_explicitExternalReference_diamond" + suffix + ".aml";
+			Files.copy(testFileLocator.getValidTestCaseFile(name).toPath(), new File(directory, name).toPath());
+		}
+		return directory;
+	}
+
+	private static File getFile(AMLDocument document) throws Exception {
+		return new File(((URLDocumentLocation) document.getDocumentLocation()).getUrl().toURI());
+	}
+
+	private static Map<String, byte[]> readFiles(File directory) throws IOException {
+		Map<String, byte[]> files = new HashMap<String, byte[]>();
+		for (File file : directory.listFiles()) {
+			if (file.isFile())
+				files.put(file.getName(), Files.readAllBytes(file.toPath()));
+		}
+		return files;
+	}
+
+	// no file touched and no temporary file left behind
+	private static void assertSameFiles(File directory, Map<String, byte[]> files) throws IOException {
+		for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+			assertThat(Files.readAllBytes(new File(directory, entry.getKey()).toPath())).describedAs(entry.getKey()).isEqualTo(entry.getValue());
+		}
+		for (String name : directory.list()) {
+			assertThat(name).doesNotMatch(".*\\.tmp");
+		}
+		assertThat(Arrays.asList(directory.list())).containsOnly("03_explicitExternalReference_diamond.aml", "03_explicitExternalReference_diamond_a.aml",
+				"03_explicitExternalReference_diamond_b.aml", "03_explicitExternalReference_diamond_c.aml");
+	}
+}
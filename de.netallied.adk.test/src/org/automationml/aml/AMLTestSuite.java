@@ -5,6 +5,8 @@
 package org.automationml.aml;
 
 import org.automationml.internal.SavepointManagerTest;
+import org.automationml.internal.aml.persistence.AMLExternalReferenceResolverTest;
+import org.automationml.internal.aml.persistence.AMLValueDecoderTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
@@ -14,6 +16,8 @@ import org.junit.runners.Suite;
 		SavepointManagerTest.class, AMLClassLibraryTest.class, AMLInterfaceValidatorTest.class, AMLRoleValidatorTest.class, AMLSystemUnitValidatorTest.class,
 		AMLAttributeTest.class, AMLInstanceHierarchyTest.class, AMLInternalElementTest.class, AMLExternalInterfaceTest.class, AMLSupportedRoleClassTest.class,
 		AMLInternalLinkTest.class, AMLMirrorObjectTest.class, AMLFacetTest.class, AMLCOLLADAInterfaceTest.class, AMLDocumentSerializeTest.class,
-		AMLGroupTest.class})
+		AMLGroupTest.class, AMLDocumentWatcherTest.class, AMLSessionSaveAllTest.class, AMLIncrementalSaveTest.class, AMLDirectCAEXBackendTest.class,
+		AMLHTTPCacheCAEXBackendTest.class, AMLValueDecoderTest.class,
+		AMLExternalReferenceResolverTest.class})
 public class AMLTestSuite {
 }
\ No newline at end of file
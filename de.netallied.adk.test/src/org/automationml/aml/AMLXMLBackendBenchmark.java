@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.automationml.MappedCAEXBackend;
+import org.automationml.SnapshotCAEXBackend;
+import org.automationml.StAXBackend;
+import org.automationml.XMLBackend;
+import org.automationml.internal.aml.persistence.AMLSerializer;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.automationml.aml.AMLSessionManager.amlSessionManager;
+
+/**
+ * Compares load and save times of the available {@link XMLBackend}s on the valid sample files. Backends whose factories are not on the class path
+ * are skipped.
+ */
+@Ignore
+public class AMLXMLBackendBenchmark {
+
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 20;
+
+	private TestFileLocator testFileLocator = new TestFileLocator(getClass());
+
+	private AMLDocumentURLResolver urlResolver = AbstractAMLTest.createURLResolver();
+
+	@Test
+	public void compareBackends() throws Exception {
+		List<URL> urls = new ArrayList<URL>();
+		File folder = testFileLocator.getValidTestCaseFile("").getAbsoluteFile();
+		for (File file : folder.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(".aml");
+			}
+		})) {
+			URL url = file.toURI().toURL();
+			try {
+				amlSessionManager.createSession().loadAMLDocument(url);
+				urls.add(url);
+			} catch (Exception e) {
+				System.out.println("skipping " + file.getName() + ": " + e);
+			}
+		}
+
+		Map<String, XMLBackend> backends = new LinkedHashMap<String, XMLBackend>();
+		backends.put("default", StAXBackend.getDefault());
+		addBackend(backends, "woodstox", StAXBackend.WOODSTOX_INPUT_FACTORY, StAXBackend.WOODSTOX_OUTPUT_FACTORY);
+		addBackend(backends, "aalto", StAXBackend.AALTO_INPUT_FACTORY, StAXBackend.AALTO_OUTPUT_FACTORY);
+		backends.put("mapped", new MappedCAEXBackend());
+		backends.put("snapshot", new SnapshotCAEXBackend(Files.createTempDirectory("snapshots").toFile()));
+
+		for (Map.Entry<String, XMLBackend> entry : backends.entrySet()) {
+			for (int i = 0; i < WARMUP_ROUNDS; i++)
+				run(entry.getValue(), urls);
+			long[] times = new long[2];
+			for (int i = 0; i < ROUNDS; i++) {
+				long[] roundTimes = run(entry.getValue(), urls);
+				times[0] += roundTimes[0];
+				times[1] += roundTimes[1];
+			}
+			System.out.println(String.format("%-10s load %8.2f ms  save %8.2f ms  (%d files, average of %d rounds)", entry.getKey(), times[0] / 1e6 / ROUNDS,
+					times[1] / 1e6 / ROUNDS, urls.size(), ROUNDS));
+		}
+	}
+
+	private void addBackend(Map<String, XMLBackend> backends, String name, String inputFactoryClassName, String outputFactoryClassName) {
+		try {
+			backends.put(name, StAXBackend.create(inputFactoryClassName, outputFactoryClassName));
+		} catch (ReflectiveOperationException e) {
+			System.out.println(name + " not available: " + e);
+		}
+	}
+
+	private long[] run(XMLBackend backend, List<URL> urls) throws Exception {
+		long loadTime = 0;
+		long saveTime = 0;
+		for (URL url : urls) {
+			AMLSession session = amlSessionManager.createSession();
+			session.setXMLBackend(backend);
+
+			long start = System.nanoTime();
+			session.loadAMLDocument(url);
+			loadTime += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (AMLDocument document : session.getDocuments()) {
+				AMLSerializer.serialize(document, urlResolver, new ByteArrayOutputStream());
+			}
+			saveTime += System.nanoTime() - start;
+		}
+		return new long[] { loadTime, saveTime };
+	}
+}
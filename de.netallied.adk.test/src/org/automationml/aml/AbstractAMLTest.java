@@ -4,10 +4,16 @@
  *******************************************************************************/
 package org.automationml.aml;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.automationml.Savepoint;
+import org.automationml.URLDocumentLocation;
 import org.automationml.internal.SavepointManager;
 import org.automationml.internal.aml.AMLSessionImpl;
 import org.junit.After;
@@ -197,4 +203,47 @@ public abstract class AbstractAMLTest {
 		return list;
 	}
 
+	/**
+	 * Returns a resolver saving every document to the URL it was loaded from, referencing the other documents relatively.
+	 */
+	public static AMLDocumentURLResolver createURLResolver() {
+		return new AMLDocumentURLResolver() {
+			@Override
+			public URL getUrl(AMLDocument document) {
+				return ((URLDocumentLocation) document.getDocumentLocation()).getUrl();
+			}
+
+			@Override
+			public boolean isRelative(AMLDocument baseDocument, AMLDocument referencedDocument) {
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns the document as it would be saved, without the writing time.
+	 */
+	public static String getContent(AMLDocument document) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		document.saveTo(outputStream, createURLResolver());
+		return new String(outputStream.toByteArray(), "UTF-8").replaceAll("<LastWritingDateTime>[^<]*</LastWritingDateTime>", "");
+	}
+
+	/**
+	 * Creates an empty temporary directory, which is removed by {@link #deleteDirectory(File)}.
+	 */
+	public static File createTemporaryDirectory(String prefix) throws IOException {
+		return Files.createTempDirectory(prefix).toFile();
+	}
+
+	public static void deleteDirectory(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				deleteDirectory(file);
+			}
+		}
+		directory.delete();
+	}
+
 }
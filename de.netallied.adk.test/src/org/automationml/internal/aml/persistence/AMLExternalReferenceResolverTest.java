@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml.persistence;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.automationml.XMLBackend;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AMLExternalReferenceResolverTest {
+
+	private static class CountingBackend implements XMLBackend {
+		boolean exists = true;
+		int existsCount;
+
+		@Override
+		public XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public XMLStreamReader createXMLStreamReader(URL url) throws IOException, XMLStreamException {
+			throw new FileNotFoundException(url.toString());
+		}
+
+		@Override
+		public boolean exists(URL url) {
+			existsCount++;
+			return exists;
+		}
+
+		@Override
+		public XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String encoding) throws XMLStreamException {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private AMLExternalReferenceResolver resolver;
+	private CountingBackend backend;
+	private URL url;
+
+	@Before
+	public void createResolver() throws Exception {
+		backend = new CountingBackend();
+		resolver = new AMLExternalReferenceResolver();
+		resolver.setXMLBackend(backend);
+		url = new URL("http://localhost/a.aml");
+	}
+
+	@Test
+	public void exists_rememberedWithinMaxAge() throws Exception {
+		assertThat(resolver.exists(url)).isTrue();
+		backend.exists = false;
+		assertThat(resolver.exists(url)).isTrue();
+		assertThat(backend.existsCount).isEqualTo(1);
+	}
+
+	@Test
+	public void exists_checkedAgainAfterMaxAge() throws Exception {
+		resolver.setMaxAge(0);
+		assertThat(resolver.exists(url)).isTrue();
+		backend.exists = false;
+		assertThat(resolver.exists(url)).isFalse();
+		assertThat(backend.existsCount).isEqualTo(2);
+
+		backend.exists = true;
+		assertThat(resolver.exists(url)).isTrue();
+		assertThat(backend.existsCount).isEqualTo(3);
+	}
+
+	@Test
+	public void exists_checkedAgainWhenForgotten() throws Exception {
+		assertThat(resolver.exists(url)).isTrue();
+		backend.exists = false;
+		resolver.forget(url);
+		assertThat(resolver.exists(url)).isFalse();
+		assertThat(backend.existsCount).isEqualTo(2);
+	}
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml.persistence;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+public class AMLValueDecoderTest {
+
+	@Test
+	public void parseDouble_significantDigits() throws Exception {
+		assertSameDouble("123456789012345");
+		assertSameDouble("1234567890123456");
+		assertSameDouble("-123456789012345");
+		assertSameDouble("0.123456789012345");
+		assertSameDouble("0.1234567890123456");
+		assertSameDouble("0.000000000000000000001");
+		assertSameDouble("12345678901234567890");
+		assertSameDouble("1.7976931348623157e308");
+	}
+
+	@Test
+	public void parseDouble_exponents() throws Exception {
+		assertSameDouble("1e22");
+		assertSameDouble("1e23");
+		assertSameDouble("1e-22");
+		assertSameDouble("1e-23");
+		assertSameDouble("123456789012345e22");
+		assertSameDouble("123456789012345e23");
+		assertSameDouble("123456789012345E-22");
+		assertSameDouble("123456789012345E-23");
+		assertSameDouble("1.5e+22");
+	}
+
+	@Test
+	public void parseDouble_specialValues() throws Exception {
+		assertThat(AMLValueDecoder.parseDouble("INF")).isEqualTo(Double.POSITIVE_INFINITY);
+		assertThat(AMLValueDecoder.parseDouble("+INF")).isEqualTo(Double.POSITIVE_INFINITY);
+		assertThat(AMLValueDecoder.parseDouble("-INF")).isEqualTo(Double.NEGATIVE_INFINITY);
+		assertSameDouble("NaN");
+		assertSameDouble("Infinity");
+		assertSameDouble("-0");
+		assertSameDouble("-0.0");
+		assertSameDouble("0");
+	}
+
+	@Test
+	public void parseDouble_whitespace() throws Exception {
+		assertSameDouble(" 1.5");
+		assertSameDouble("1.5 ");
+		assertSameDouble("\t1.5\n");
+		assertSameDouble(" 1e23 ");
+		assertThat(AMLValueDecoder.parseDouble(" INF ")).isEqualTo(Double.POSITIVE_INFINITY);
+	}
+
+	@Test
+	public void parseDouble_malformed() throws Exception {
+		assertNoDouble("");
+		assertNoDouble("1e");
+		assertNoDouble("1.5x");
+		assertNoDouble("--1");
+		assertNoDouble("inf");
+	}
+
+	@Test
+	public void parseUUID_braced() throws Exception {
+		assertThat(AMLValueDecoder.parseUUID("{c94d2e2c-ba2f-40eb-91c5-3b8070769077}")).isEqualTo(
+				UUID.fromString("c94d2e2c-ba2f-40eb-91c5-3b8070769077"));
+		assertThat(AMLValueDecoder.parseUUID("{C94D2E2C-BA2F-40EB-91C5-3B8070769077}")).isEqualTo(
+				UUID.fromString("C94D2E2C-BA2F-40EB-91C5-3B8070769077"));
+		// like before, braces are removed wherever they are
+		assertThat(AMLValueDecoder.parseUUID("{c94d2e2c-ba2f-40eb-91c5-3b8070769077")).isEqualTo(
+				UUID.fromString("c94d2e2c-ba2f-40eb-91c5-3b8070769077"));
+		assertThat(AMLValueDecoder.parseUUID("c94d2e2c-ba2f-40eb-91c5-3b8070769077}")).isEqualTo(
+				UUID.fromString("c94d2e2c-ba2f-40eb-91c5-3b8070769077"));
+	}
+
+	@Test
+	public void parseUUID_unbraced() throws Exception {
+		assertThat(AMLValueDecoder.parseUUID("c94d2e2c-ba2f-40eb-91c5-3b8070769077")).isEqualTo(
+				UUID.fromString("c94d2e2c-ba2f-40eb-91c5-3b8070769077"));
+		assertThat(AMLValueDecoder.parseUUID("ffffffff-ffff-ffff-ffff-ffffffffffff")).isEqualTo(
+				UUID.fromString("ffffffff-ffff-ffff-ffff-ffffffffffff"));
+		assertThat(AMLValueDecoder.parseUUID("1-2-3-4-5")).isEqualTo(UUID.fromString("1-2-3-4-5"));
+		assertThat(AMLValueDecoder.parseUUID("{1-2-3-4-5}")).isEqualTo(UUID.fromString("1-2-3-4-5"));
+	}
+
+	@Test
+	public void parseUUID_malformed() throws Exception {
+		assertThat(AMLValueDecoder.parseUUID(null)).isNull();
+		assertThat(AMLValueDecoder.parseUUID("")).isNull();
+		assertThat(AMLValueDecoder.parseUUID("Class1")).isNull();
+		assertThat(AMLValueDecoder.parseUUID("c94d2e2c-ba2f-40eb-91c5-3b807076907x")).isNull();
+		assertThat(AMLValueDecoder.parseUUID("c94d2e2cba2f40eb91c53b8070769077")).isNull();
+		assertThat(AMLValueDecoder.parseUUID("c94d2e2c-ba2f-40eb-91c5")).isNull();
+	}
+
+	@Test
+	public void parseDateTime_offsetWithoutColon() throws Exception {
+		assertThat(AMLValueDecoder.parseDateTime("2013-07-22T15:12:37+0200")).isEqualTo(new Date(1374498757000L));
+		assertSameDate("2013-07-22T15:12:37+0200");
+		assertSameDate("2013-07-22T15:12:37-0530");
+		assertSameDate("2013-07-22T15:12:37+0000");
+		assertSameDate("2012-02-29T23:59:59+0100");
+		assertSameDate("1600-01-01T00:00:00+0000");
+	}
+
+	@Test
+	public void parseDateTime_offsetWithColon() throws Exception {
+		// like before the offset is not understood and the value is read as local time
+		assertSameDate("2013-07-22T15:12:37+02:00");
+		assertSameDate("2013-07-22T15:12:37-05:30");
+	}
+
+	@Test
+	public void parseDateTime_localTime() throws Exception {
+		assertSameDate("2013-07-22T15:12:37");
+		assertSameDate("2012-02-29T00:00:00");
+	}
+
+	@Test
+	public void parseDateTime_outOfRange() throws Exception {
+		assertSameDate("2013-02-30T15:12:37+0200");
+		assertSameDate("2013-07-22T24:12:37+0200");
+		assertSameDate("2013-13-22T15:12:37");
+		assertSameDate("1500-07-22T15:12:37+0200");
+	}
+
+	@Test
+	public void parseDateTime_malformed() throws Exception {
+		assertThat(AMLValueDecoder.parseDateTime("")).isNull();
+		assertThat(AMLValueDecoder.parseDateTime("2013-07-22")).isNull();
+		assertThat(AMLValueDecoder.parseDateTime("2013-07-22 15:12:37")).isNull();
+		assertThat(AMLValueDecoder.parseDateTime("yesterday")).isNull();
+	}
+
+	private static void assertSameDouble(String value) {
+		double expected = Double.valueOf(value).doubleValue();
+		double actual = AMLValueDecoder.parseDouble(value);
+		assertThat(Double.doubleToLongBits(actual)).describedAs(value).isEqualTo(Double.doubleToLongBits(expected));
+	}
+
+	private static void assertNoDouble(String value) {
+		try {
+			AMLValueDecoder.parseDouble(value);
+			fail("NumberFormatException expected for " + value);
+		} catch (NumberFormatException e) {
+		}
+	}
+
+	private static void assertSameDate(String value) {
+		assertThat(AMLValueDecoder.parseDateTime(value)).describedAs(value).isEqualTo(parseWithFormats(value));
+	}
+
+	private static Date parseWithFormats(String value) {
+		try {
+			return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").parse(value);
+		} catch (ParseException e) {
+			try {
+				return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").parse(value);
+			} catch (ParseException ex) {
+				return null;
+			}
+		}
+	}
+}
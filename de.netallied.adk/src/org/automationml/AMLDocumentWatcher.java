@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.automationml.aml.AMLDocument;
+import org.automationml.aml.AMLDocumentElement;
+import org.automationml.aml.AMLInstanceHierarchy;
+import org.automationml.aml.AMLInterfaceClassLibrary;
+import org.automationml.aml.AMLRoleClassLibrary;
+import org.automationml.aml.AMLSession;
+import org.automationml.aml.AMLSessionManager;
+import org.automationml.aml.AMLSystemUnitClassLibrary;
+import org.automationml.internal.aml.AMLDocumentReconciler;
+
+/**
+ * Watches the files of the documents of a session and reloads changed documents in place. A changed file is parsed into a separate session and
+ * the differences are applied to the loaded document, see {@link AMLDocumentReconciler}. Elements keep their identity, change listeners are only
+ * told about real differences and only the changed elements are validated again.
+ * <p>
+ * The separate session is kept between reloads, so the documents referenced by a changed document are only parsed the first time. It is
+ * discarded as soon as one of its documents has changed itself.
+ * <p>
+ * Changes are only recorded by the watching thread, the documents are reloaded in the thread calling {@link #reloadChangedDocuments()}, as the
+ * session is not thread safe.
+ */
+public class AMLDocumentWatcher implements Closeable {
+
+	public interface Listener {
+		/**
+		 * Called from the watching thread as soon as the file of the document has changed.
+		 */
+		void documentChanged(AMLDocument document);
+
+		/**
+		 * Called after the document was reloaded, with the paths of the elements whose differences were not applied.
+		 */
+		void documentReloaded(AMLDocument document, List<String> unreconciledElements);
+	}
+
+	private final AMLSession session;
+	private final WatchService watchService;
+	private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+	private final Map<Path, AMLDocument> documents = new HashMap<Path, AMLDocument>();
+	private final Set<AMLDocument> changedDocuments = new LinkedHashSet<AMLDocument>();
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private final Thread thread;
+	private AMLSession sourceSession;
+	private int reloadsCount;
+
+	/**
+	 * Watches all documents of the session which are loaded from files.
+	 */
+	public AMLDocumentWatcher(AMLSession session) throws IOException {
+		this.session = session;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		for (AMLDocument document : session.getDocuments())
+			watch(document);
+
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				processEvents();
+			}
+		}, "AMLDocumentWatcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Watches a document loaded later on. Returns false if the document is not loaded from a file.
+	 */
+	public boolean watch(AMLDocument document) throws IOException {
+		Path path = getPath(document);
+		if (path == null)
+			return false;
+		Path directory = path.getParent();
+		synchronized (this) {
+			if (!directories.containsValue(directory)) {
+				WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+				directories.put(key, directory);
+			}
+			documents.put(path, document);
+		}
+		return true;
+	}
+
+	public synchronized void unwatch(AMLDocument document) {
+		documents.values().remove(document);
+		changedDocuments.remove(document);
+	}
+
+	private static Path getPath(AMLDocument document) {
+		DocumentLocation location = document.getDocumentLocation();
+		if (!(location instanceof URLDocumentLocation))
+			return null;
+		URL url = ((URLDocumentLocation) location).getUrl();
+		if (url == null || !"file".equals(url.getProtocol()))
+			return null;
+		try {
+			return Paths.get(url.toURI()).toAbsolutePath().normalize();
+		} catch (URISyntaxException e) {
+			return null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	private void processEvents() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				List<AMLDocument> changed = new ArrayList<AMLDocument>();
+				synchronized (this) {
+					Path directory = directories.get(key);
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (directory == null || !(event.context() instanceof Path))
+							continue;
+						AMLDocument document = documents.get(directory.resolve((Path) event.context()));
+						if (document != null && changedDocuments.add(document))
+							changed.add(document);
+					}
+					if (!key.reset())
+						directories.remove(key);
+				}
+				for (AMLDocument document : changed) {
+					for (Listener listener : listeners)
+						listener.documentChanged(document);
+				}
+			}
+		} catch (InterruptedException e) {
+		} catch (ClosedWatchServiceException e) {
+		}
+	}
+
+	public synchronized boolean hasChangedDocuments() {
+		return !changedDocuments.isEmpty();
+	}
+
+	/**
+	 * Reloads the documents whose files have changed since the last call and returns them. Documents failing to load are kept as changed, the
+	 * ones changing again while they are reloaded are left for the next call.
+	 */
+	public List<AMLDocument> reloadChangedDocuments() throws Exception {
+		List<AMLDocument> documents;
+		synchronized (this) {
+			documents = new ArrayList<AMLDocument>(changedDocuments);
+		}
+		List<AMLDocument> reloadedDocuments = new ArrayList<AMLDocument>();
+		for (AMLDocument document : documents) {
+			synchronized (this) {
+				if (!changedDocuments.remove(document))
+					continue;
+			}
+			try {
+				reload(document);
+			} catch (Exception e) {
+				synchronized (this) {
+					changedDocuments.add(document);
+				}
+				throw e;
+			}
+			reloadedDocuments.add(document);
+		}
+		return reloadedDocuments;
+	}
+
+	/**
+	 * Reloads the document from its location, whether its file has changed or not. Unsaved changes of the document are overwritten, it stays
+	 * dirty if it was before. If applying the differences fails, the document is left unchanged. Returns the paths of the elements whose
+	 * differences were not applied.
+	 */
+	public List<String> reload(AMLDocument document) throws Exception {
+		URL url = ((URLDocumentLocation) document.getDocumentLocation()).getUrl();
+		AMLDocument sourceDocument = loadSourceDocument(url);
+
+		boolean dirty = document.isDirty();
+		AMLDocumentReconciler reconciler = new AMLDocumentReconciler(document, sourceDocument);
+		session.beginSessionChanges();
+		try {
+			reconciler.reconcile();
+		} finally {
+			session.endSessionChanges();
+			// a failed reconciliation is undone as well
+			if (!dirty)
+				document.unsetDirty();
+			dropSourceDocument(sourceDocument);
+		}
+
+		List<String> unreconciledElements = reconciler.getUnreconciledElements();
+		for (Listener listener : listeners)
+			listener.documentReloaded(document, unreconciledElements);
+		return unreconciledElements;
+	}
+
+	// loaded under a new fragment each time, so the documents loaded before are not asked for it, but the ones it references are reused
+	private AMLDocument loadSourceDocument(URL url) throws Exception {
+		if (sourceSession != null && isSourceSessionOutdated(url))
+			closeSourceSession();
+		if (sourceSession == null) {
+			sourceSession = AMLSessionManager.amlSessionManager.createSession();
+			sourceSession.setXMLBackend(new SourceXMLBackend(session.getXMLBackend()));
+			sourceSession.setDocumentURLResolver(session.getDocumentURLResolver());
+		}
+		try {
+			return sourceSession.loadAMLDocument(new URL(url, "#reload-" + ++reloadsCount));
+		} catch (Exception e) {
+			closeSourceSession();
+			throw e;
+		}
+	}
+
+	// the referenced documents parsed before are outdated once one of them has changed
+	private boolean isSourceSessionOutdated(URL url) throws Exception {
+		if (sourceSession.getAMLDocumentByDocumentLocation(new URLDocumentLocation(url)) != null)
+			return true;
+		List<AMLDocument> documents;
+		synchronized (this) {
+			documents = new ArrayList<AMLDocument>(changedDocuments);
+		}
+		for (AMLDocument document : documents) {
+			DocumentLocation location = document.getDocumentLocation();
+			if (location instanceof URLDocumentLocation && sourceSession.getAMLDocumentByDocumentLocation(location) != null)
+				return true;
+		}
+		return false;
+	}
+
+	private void dropSourceDocument(AMLDocument sourceDocument) throws Exception {
+		try {
+			List<AMLDocumentElement> elements = new ArrayList<AMLDocumentElement>();
+			for (AMLInstanceHierarchy instanceHierarchy : sourceDocument.getInstanceHierarchies())
+				elements.add(instanceHierarchy);
+			for (AMLSystemUnitClassLibrary library : sourceDocument.getSystemUnitClassLibraries())
+				elements.add(library);
+			for (AMLRoleClassLibrary library : sourceDocument.getRoleClassLibraries())
+				elements.add(library);
+			for (AMLInterfaceClassLibrary library : sourceDocument.getInterfaceClassLibraries())
+				elements.add(library);
+			for (AMLDocumentElement element : elements)
+				element.deepDelete();
+			List<AMLDocument> referencedDocuments = new ArrayList<AMLDocument>();
+			for (AMLDocument referencedDocument : sourceDocument.getExplicitlyReferencedDocuments())
+				referencedDocuments.add(referencedDocument);
+			for (AMLDocument referencedDocument : referencedDocuments)
+				sourceDocument.removeExplicitExternalReference(referencedDocument);
+			sourceDocument.deepDelete();
+		} catch (Exception e) {
+			closeSourceSession();
+			throw e;
+		}
+	}
+
+	private void closeSourceSession() {
+		if (sourceSession == null)
+			return;
+		sourceSession.close();
+		sourceSession = null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+		thread.interrupt();
+		closeSourceSession();
+	}
+
+	/**
+	 * Reads the documents of the separate session without the fragment telling the reloads apart.
+	 */
+	private static class SourceXMLBackend implements XMLBackend {
+
+		private final XMLBackend backend;
+
+		SourceXMLBackend(XMLBackend backend) {
+			this.backend = backend;
+		}
+
+		private static URL withoutFragment(URL url) {
+			if (url.getRef() == null)
+				return url;
+			String location = url.toExternalForm();
+			try {
+				return new URL(location.substring(0, location.indexOf('#')));
+			} catch (MalformedURLException e) {
+				return url;
+			}
+		}
+
+		@Override
+		public XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+			return backend.createXMLStreamReader(inputStream);
+		}
+
+		@Override
+		public XMLStreamReader createXMLStreamReader(URL url) throws IOException, XMLStreamException {
+			return backend.createXMLStreamReader(withoutFragment(url));
+		}
+
+		@Override
+		public boolean exists(URL url) {
+			return backend.exists(withoutFragment(url));
+		}
+
+		@Override
+		public XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String encoding) throws XMLStreamException {
+			return backend.createXMLStreamWriter(outputStream, encoding);
+		}
+	}
+}
@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.automationml.aml.AMLDocument;
+import org.automationml.aml.AMLDocumentURLResolver;
+import org.automationml.aml.AMLSession;
+import org.automationml.internal.ParallelZipWriter;
+import org.automationml.internal.aml.persistence.AMLSerializer;
+
+/**
+ * AutomationML container, an OPC package holding a root document and the documents it references. A package is read into a
+ * {@link MemoryDocumentBundle} without extracting it, so the external references of its documents are resolved within the package.
+ * <p>
+ * Written packages contain the document and all documents it references directly or indirectly, in one pass with the entries deflated in
+ * parallel. The document is put on the top level and all others into <code>lib/</code>, so every reference stays within the package.
+ */
+public class AMLXPackage {
+
+	public static final String EXTENSION = ".amlx";
+	public static final String ROOT_DOCUMENT_RELATIONSHIP = "http://schemas.automationml.org/container/relationship/RootDocument";
+	public static final String LIBRARY_RELATIONSHIP = "http://schemas.automationml.org/container/relationship/Library";
+	public static final String CONTENT_TYPE = "model/vnd.automationml+xml";
+
+	private static final String CONTENT_TYPES_ENTRY = "[Content_Types].xml";
+	private static final String RELATIONSHIPS_DIRECTORY = "_rels/";
+	private static final String RELATIONSHIPS_EXTENSION = ".rels";
+	private static final String RELATIONSHIPS_CONTENT_TYPE = "application/vnd.openxmlformats-package.relationships+xml";
+	private static final String LIBRARY_DIRECTORY = "lib/";
+	// only used to relate the entries to each other while writing
+	private static final String PACKAGE_ROOT = "file:/package/";
+
+	private final MemoryDocumentBundle bundle;
+	private final String rootDocumentPath;
+
+	private AMLXPackage(MemoryDocumentBundle bundle, String rootDocumentPath) {
+		this.bundle = bundle;
+		this.rootDocumentPath = rootDocumentPath;
+	}
+
+	public static AMLXPackage read(File file) throws IOException {
+		InputStream inputStream = new BufferedInputStream(new FileInputStream(file), 65536);
+		try {
+			return read(inputStream);
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Reads the package up to the end of the stream, it is not closed.
+	 */
+	public static AMLXPackage read(InputStream inputStream) throws IOException {
+		MemoryDocumentBundle bundle = new MemoryDocumentBundle();
+		ZipInputStream zipInputStream = new ZipInputStream(inputStream, StandardCharsets.UTF_8);
+		ZipEntry entry;
+		while ((entry = zipInputStream.getNextEntry()) != null) {
+			if (!entry.isDirectory())
+				bundle.put(entry.getName(), zipInputStream);
+			zipInputStream.closeEntry();
+		}
+
+		String rootDocumentPath = findRootDocument(bundle);
+		if (rootDocumentPath == null)
+			throw new IOException("No root document in package");
+		return new AMLXPackage(bundle, rootDocumentPath);
+	}
+
+	// by its relationship, or the only document on the top level
+	private static String findRootDocument(MemoryDocumentBundle bundle) throws IOException {
+		byte[] relationships = bundle.getBytes(RELATIONSHIPS_DIRECTORY + RELATIONSHIPS_EXTENSION);
+		if (relationships != null) {
+			try {
+				XMLStreamReader reader = StAXBackend.getDefault().createXMLStreamReader(new ByteArrayInputStream(relationships));
+				try {
+					while (reader.hasNext()) {
+						if (reader.next() != XMLStreamConstants.START_ELEMENT || !"Relationship".equals(reader.getLocalName()))
+							continue;
+						String target = reader.getAttributeValue(null, "Target");
+						if (ROOT_DOCUMENT_RELATIONSHIP.equals(reader.getAttributeValue(null, "Type")) && target != null)
+							return target.startsWith("/") ? target.substring(1) : target;
+					}
+				} finally {
+					reader.close();
+				}
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		String rootDocumentPath = null;
+		for (String path : bundle.getPaths()) {
+			if (path.indexOf('/') >= 0 || !path.toLowerCase().endsWith(".aml"))
+				continue;
+			if (rootDocumentPath != null)
+				return null;
+			rootDocumentPath = path;
+		}
+		return rootDocumentPath;
+	}
+
+	public MemoryDocumentBundle getBundle() {
+		return bundle;
+	}
+
+	public String getRootDocumentPath() {
+		return rootDocumentPath;
+	}
+
+	public URL getRootDocumentURL() {
+		return bundle.getURL(rootDocumentPath);
+	}
+
+	/**
+	 * Loads the root document and the documents it references into the session.
+	 */
+	public AMLDocument load(AMLSession session) throws Exception {
+		return session.loadAMLDocument(getRootDocumentURL());
+	}
+
+	public static void write(AMLDocument document, File file) throws Exception {
+		OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file), 65536);
+		try {
+			write(document, outputStream);
+		} finally {
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * Writes the document as root document of a package, the stream is not closed.
+	 */
+	public static void write(AMLDocument document, OutputStream outputStream) throws Exception {
+		final Map<AMLDocument, String> entryNames = getEntryNames(document);
+
+		AMLDocumentURLResolver urlResolver = new AMLDocumentURLResolver() {
+			@Override
+			public URL getUrl(AMLDocument document) {
+				try {
+					return new URL(PACKAGE_ROOT + entryNames.get(document));
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+
+			@Override
+			public boolean isRelative(AMLDocument baseDocument, AMLDocument referencedDocument) {
+				return true;
+			}
+		};
+
+		ParallelZipWriter zipWriter = new ParallelZipWriter(outputStream);
+		try {
+			String rootEntryName = entryNames.get(document);
+			zipWriter.addEntry(CONTENT_TYPES_ENTRY, createContentTypes());
+			zipWriter.addEntry(RELATIONSHIPS_DIRECTORY + RELATIONSHIPS_EXTENSION, createRelationships(ROOT_DOCUMENT_RELATIONSHIP, "/" + rootEntryName));
+			if (entryNames.size() > 1) {
+				Map<String, String> libraries = new LinkedHashMap<String, String>();
+				for (String entryName : entryNames.values()) {
+					if (!entryName.equals(rootEntryName))
+						libraries.put(entryName, LIBRARY_RELATIONSHIP);
+				}
+				zipWriter.addEntry(getRelationshipsEntryName(rootEntryName), createRelationships(libraries));
+			}
+
+			// serialized one after the other, compressed while the next one is serialized
+			for (Map.Entry<AMLDocument, String> entry : entryNames.entrySet()) {
+				ByteArrayOutputStream content = new ByteArrayOutputStream(65536);
+				AMLSerializer.serialize(entry.getKey(), urlResolver, content);
+				zipWriter.addEntry(entry.getValue(), content.toByteArray());
+			}
+			zipWriter.finish();
+		} catch (Exception e) {
+			zipWriter.abort();
+			throw e;
+		}
+	}
+
+	// in reference order, starting with the document
+	private static Map<AMLDocument, String> getEntryNames(AMLDocument document) {
+		Map<AMLDocument, String> entryNames = new LinkedHashMap<AMLDocument, String>();
+		Set<String> usedNames = new HashSet<String>();
+		List<AMLDocument> documents = new ArrayList<AMLDocument>();
+		documents.add(document);
+		addEntryName(entryNames, usedNames, document, "");
+		for (int i = 0; i < documents.size(); i++) {
+			for (AMLDocument referencedDocument : documents.get(i).getExplicitlyReferencedDocuments()) {
+				if (entryNames.containsKey(referencedDocument))
+					continue;
+				documents.add(referencedDocument);
+				addEntryName(entryNames, usedNames, referencedDocument, LIBRARY_DIRECTORY);
+			}
+		}
+		return entryNames;
+	}
+
+	private static void addEntryName(Map<AMLDocument, String> entryNames, Set<String> usedNames, AMLDocument document, String directory) {
+		URL url = getUrl(document);
+		String fileName = url == null ? "" : toEntryName(new File(url.getPath()).getName());
+		if (fileName.isEmpty())
+			fileName = MemoryDocumentBundle.DOCUMENT_PATH;
+
+		String name = directory + fileName;
+		for (int i = 2; !usedNames.add(name.toLowerCase()); i++) {
+			int extension = fileName.lastIndexOf('.');
+			name = directory + (extension > 0 ? fileName.substring(0, extension) + "_" + i + fileName.substring(extension) : fileName + "_" + i);
+		}
+		entryNames.put(document, name);
+	}
+
+	private static URL getUrl(AMLDocument document) {
+		DocumentLocation location = document.getDocumentLocation();
+		return location instanceof URLDocumentLocation ? ((URLDocumentLocation) location).getUrl() : null;
+	}
+
+	// entry names are written into the external references as they are, so only characters without escaping are kept
+	private static String toEntryName(String name) {
+		StringBuilder entryName = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			boolean valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '.' || c == '-' || c == '_' || c == '/';
+			entryName.append(valid ? c : '_');
+		}
+		return entryName.toString();
+	}
+
+	private static String getRelationshipsEntryName(String entryName) {
+		int separator = entryName.lastIndexOf('/');
+		return entryName.substring(0, separator + 1) + RELATIONSHIPS_DIRECTORY + entryName.substring(separator + 1) + RELATIONSHIPS_EXTENSION;
+	}
+
+	private static byte[] createContentTypes() {
+		StringBuilder content = new StringBuilder();
+		content.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		content.append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+		content.append("<Default Extension=\"aml\" ContentType=\"").append(CONTENT_TYPE).append("\"/>");
+		content.append("<Default Extension=\"rels\" ContentType=\"").append(RELATIONSHIPS_CONTENT_TYPE).append("\"/>");
+		content.append("</Types>");
+		return content.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] createRelationships(String type, String target) {
+		Map<String, String> relationships = new LinkedHashMap<String, String>();
+		relationships.put(target, type);
+		return createRelationships(relationships);
+	}
+
+	private static byte[] createRelationships(Map<String, String> targetTypes) {
+		StringBuilder content = new StringBuilder();
+		content.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		content.append("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+		int id = 1;
+		for (Map.Entry<String, String> relationship : targetTypes.entrySet()) {
+			String target = relationship.getKey().startsWith("/") ? relationship.getKey() : "/" + relationship.getKey();
+			content.append("<Relationship Id=\"R").append(id++).append("\" Type=\"").append(relationship.getValue());
+			content.append("\" Target=\"").append(target).append("\"/>");
+		}
+		content.append("</Relationships>");
+		return content.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String toString() {
+		return "AMLXPackage [" + rootDocumentPath + ", " + bundle + "]";
+	}
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.automationml.internal.CAEXStreamWriter;
+
+/**
+ * {@link XMLBackend} writing UTF-8 documents with a {@link CAEXStreamWriter}, which encodes directly into a byte buffer. The documents are the
+ * same byte for byte as the ones written by the StAX writer of the JDK. Other encodings and all reading are left to the given backend.
+ */
+public class DirectCAEXBackend implements XMLBackend {
+
+	private final XMLBackend backend;
+
+	public DirectCAEXBackend() {
+		this(StAXBackend.getDefault());
+	}
+
+	public DirectCAEXBackend(XMLBackend backend) {
+		this.backend = backend;
+	}
+
+	@Override
+	public XMLStreamReader createXMLStreamReader(URL url) throws IOException, XMLStreamException {
+		return backend.createXMLStreamReader(url);
+	}
+
+	@Override
+	public boolean exists(URL url) {
+		return backend.exists(url);
+	}
+
+	@Override
+	public XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+		return backend.createXMLStreamReader(inputStream);
+	}
+
+	@Override
+	public XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String encoding) throws XMLStreamException {
+		if (!"UTF-8".equalsIgnoreCase(encoding))
+			return backend.createXMLStreamWriter(outputStream, encoding);
+		return new CAEXStreamWriter(outputStream);
+	}
+
+	@Override
+	public String toString() {
+		return "DirectCAEXBackend [" + backend + "]";
+	}
+}
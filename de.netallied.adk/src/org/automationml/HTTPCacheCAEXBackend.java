@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * {@link XMLBackend} keeping the documents referenced by <code>http</code> and <code>https</code> URLs in the given directory. A document is
+ * downloaded once and stored under the SHA-256 hash of its content, later loads ask the server with the <code>ETag</code> and
+ * <code>Last-Modified</code> of the cached copy whether it has changed. A copy checked within the maximum age is used without asking, so checking
+ * that a referenced document exists and reading it costs one request. If the server can not be reached or answers with a server error, the
+ * cached copy is used.
+ * <p>
+ * In offline mode the server is never asked, documents which are not cached can not be loaded then. Cached documents are read as local files by
+ * the given backend, other URLs are left to it.
+ */
+public class HTTPCacheCAEXBackend implements XMLBackend {
+
+	public static final long DEFAULT_MAX_AGE = 60000;
+
+	private static final String CONTENT_DIRECTORY = "content";
+	private static final String INDEX_DIRECTORY = "index";
+
+	private static class Entry {
+		final String etag;
+		final String lastModified;
+		final String hash;
+		volatile long validated;
+
+		Entry(String etag, String lastModified, String hash) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+
+	private final File directory;
+	private final XMLBackend backend;
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+	private final AtomicInteger requestsCount = new AtomicInteger();
+	private final AtomicInteger downloadsCount = new AtomicInteger();
+	private volatile boolean offline;
+	private volatile long maxAge = DEFAULT_MAX_AGE;
+
+	public HTTPCacheCAEXBackend(File directory) {
+		this(directory, StAXBackend.getDefault());
+	}
+
+	public HTTPCacheCAEXBackend(File directory, XMLBackend backend) {
+		this.directory = directory;
+		this.backend = backend;
+		new File(directory, CONTENT_DIRECTORY).mkdirs();
+		new File(directory, INDEX_DIRECTORY).mkdirs();
+	}
+
+	/**
+	 * Only the cached documents are read, the server is never asked.
+	 */
+	public void setOffline(boolean offline) {
+		this.offline = offline;
+	}
+
+	public boolean isOffline() {
+		return offline;
+	}
+
+	/**
+	 * Sets the time in milliseconds a cached copy is used without asking the server again, 0 asks for every read.
+	 */
+	public void setMaxAge(long maxAge) {
+		this.maxAge = maxAge;
+	}
+
+	public long getMaxAge() {
+		return maxAge;
+	}
+
+	/**
+	 * Returns the number of requests sent to servers.
+	 */
+	public int getRequestsCount() {
+		return requestsCount.get();
+	}
+
+	/**
+	 * Returns the number of requests which have downloaded a document, the others found the cached copy unchanged.
+	 */
+	public int getDownloadsCount() {
+		return downloadsCount.get();
+	}
+
+	@Override
+	public XMLStreamReader createXMLStreamReader(URL url) throws IOException, XMLStreamException {
+		if (!isRemote(url))
+			return backend.createXMLStreamReader(url);
+		return backend.createXMLStreamReader(getCachedFile(url).toURI().toURL());
+	}
+
+	@Override
+	public boolean exists(URL url) {
+		if (!isRemote(url))
+			return backend.exists(url);
+		try {
+			getCachedFile(url);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static boolean isRemote(URL url) {
+		return "http".equals(url.getProtocol()) || "https".equals(url.getProtocol());
+	}
+
+	/**
+	 * Returns the cached copy of the document at the URL, which is downloaded or checked first unless the cache is offline or the copy was
+	 * checked within the maximum age.
+	 */
+	public File getCachedFile(URL url) throws IOException {
+		String location = url.toExternalForm();
+		Object lock = locks.putIfAbsent(location, location);
+		if (lock == null)
+			lock = location;
+		synchronized (lock) {
+			Entry entry = getEntry(location);
+			if (offline) {
+				if (entry == null)
+					throw new FileNotFoundException(location + " is not cached");
+				return getContentFile(entry.hash);
+			}
+			if (entry != null && System.currentTimeMillis() - entry.validated < maxAge)
+				return getContentFile(entry.hash);
+
+			try {
+				entry = fetch(url, location, entry);
+			} catch (FileNotFoundException e) {
+				throw e;
+			} catch (IOException e) {
+				// the server can not be reached or fails, the cached copy has to do
+				if (entry == null)
+					throw e;
+			}
+			return getContentFile(entry.hash);
+		}
+	}
+
+	private Entry getEntry(String location) {
+		Entry entry = entries.get(location);
+		if (entry == null) {
+			entry = readIndex(location);
+			if (entry == null)
+				return null;
+			entries.put(location, entry);
+		}
+		if (!getContentFile(entry.hash).isFile()) {
+			entries.remove(location);
+			return null;
+		}
+		return entry;
+	}
+
+	private Entry fetch(URL url, String location, Entry entry) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		if (entry != null) {
+			if (entry.etag != null)
+				connection.setRequestProperty("If-None-Match", entry.etag);
+			if (entry.lastModified != null)
+				connection.setRequestProperty("If-Modified-Since", entry.lastModified);
+		}
+		requestsCount.incrementAndGet();
+		try {
+			int status = connection.getResponseCode();
+			if (status == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+				entry.validated = System.currentTimeMillis();
+				return entry;
+			}
+			if (status >= HttpURLConnection.HTTP_INTERNAL_ERROR)
+				throw new IOException(location + ": " + status + " " + connection.getResponseMessage());
+			if (status != HttpURLConnection.HTTP_OK)
+				throw new FileNotFoundException(location + ": " + status + " " + connection.getResponseMessage());
+
+			String hash = download(connection);
+			downloadsCount.incrementAndGet();
+			Entry newEntry = new Entry(connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), hash);
+			newEntry.validated = System.currentTimeMillis();
+			writeIndex(location, newEntry);
+			entries.put(location, newEntry);
+			return newEntry;
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	// the content is stored under its hash, an unchanged document downloaded again replaces nothing
+	private String download(HttpURLConnection connection) throws IOException {
+		File temporaryFile = File.createTempFile("download", ".tmp", directory);
+		try {
+			MessageDigest digest = createDigest();
+			InputStream inputStream = connection.getInputStream();
+			try {
+				OutputStream outputStream = new FileOutputStream(temporaryFile);
+				try {
+					byte[] buffer = new byte[65536];
+					int count;
+					while ((count = inputStream.read(buffer)) > 0) {
+						digest.update(buffer, 0, count);
+						outputStream.write(buffer, 0, count);
+					}
+				} finally {
+					outputStream.close();
+				}
+			} finally {
+				inputStream.close();
+			}
+			String hash = toHex(digest.digest());
+			File contentFile = getContentFile(hash);
+			if (!contentFile.isFile())
+				Files.move(temporaryFile.toPath(), contentFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			return hash;
+		} finally {
+			temporaryFile.delete();
+		}
+	}
+
+	private Entry readIndex(String location) {
+		File indexFile = getIndexFile(location);
+		if (!indexFile.isFile())
+			return null;
+		Properties properties = new Properties();
+		try {
+			InputStream inputStream = new FileInputStream(indexFile);
+			try {
+				properties.load(inputStream);
+			} finally {
+				inputStream.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		String hash = properties.getProperty("hash");
+		if (hash == null || !location.equals(properties.getProperty("url")))
+			return null;
+		return new Entry(properties.getProperty("etag"), properties.getProperty("lastModified"), hash);
+	}
+
+	private void writeIndex(String location, Entry entry) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("url", location);
+		properties.setProperty("hash", entry.hash);
+		if (entry.etag != null)
+			properties.setProperty("etag", entry.etag);
+		if (entry.lastModified != null)
+			properties.setProperty("lastModified", entry.lastModified);
+
+		File indexFile = getIndexFile(location);
+		File temporaryFile = File.createTempFile("index", ".tmp", directory);
+		try {
+			OutputStream outputStream = new FileOutputStream(temporaryFile);
+			try {
+				properties.store(outputStream, null);
+			} finally {
+				outputStream.close();
+			}
+			Files.move(temporaryFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temporaryFile.delete();
+		}
+	}
+
+	private File getContentFile(String hash) {
+		return new File(new File(directory, CONTENT_DIRECTORY), hash + ".aml");
+	}
+
+	private File getIndexFile(String location) {
+		MessageDigest digest = createDigest();
+		return new File(new File(directory, INDEX_DIRECTORY), toHex(digest.digest(location.getBytes(StandardCharsets.UTF_8))) + ".properties");
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder(2 * bytes.length);
+		for (byte b : bytes)
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return builder.toString();
+	}
+
+	/**
+	 * Removes all cached documents.
+	 */
+	public void clear() {
+		entries.clear();
+		for (String name : new String[] { CONTENT_DIRECTORY, INDEX_DIRECTORY }) {
+			File[] files = new File(directory, name).listFiles();
+			if (files == null)
+				continue;
+			for (File file : files)
+				file.delete();
+		}
+	}
+
+	@Override
+	public XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+		return backend.createXMLStreamReader(inputStream);
+	}
+
+	@Override
+	public XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String encoding) throws XMLStreamException {
+		return backend.createXMLStreamWriter(outputStream, encoding);
+	}
+
+	@Override
+	public String toString() {
+		return "HTTPCacheCAEXBackend [" + directory + ", " + backend + "]";
+	}
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.automationml.internal.aml.AMLElementNames;
+
+/**
+ * {@link DocumentURLResolver} finding referenced documents in a directory tree of library files. The tree is indexed once, only the header of
+ * every CAEX file up to its first library or instance hierarchy is read. A path is looked up by its longest trailing part matching a file of the
+ * tree, by the <code>FileName</code> of a CAEX file and by the aliases the files of the tree reference each other with. If a part matches several
+ * files, the first one in path order is used.
+ * <p>
+ * Paths not found in the tree are left to the given fallback resolver, or resolved against the base URL.
+ */
+public class LibraryRepositoryURLResolver implements DocumentURLResolver {
+
+	private static final String EXTENSION = ".aml";
+
+	private static class Header {
+		final Path file;
+		final String fileName;
+		final List<String[]> externalReferences = new ArrayList<String[]>();
+
+		Header(Path file, String fileName) {
+			this.file = file;
+			this.fileName = fileName;
+		}
+	}
+
+	private final File directory;
+	private final XMLBackend backend;
+	private final DocumentURLResolver fallback;
+
+	private volatile Map<String, URL> paths = Collections.emptyMap();
+	private volatile Map<String, URL> aliases = Collections.emptyMap();
+	private volatile int indexedFilesCount;
+
+	public LibraryRepositoryURLResolver(File directory) throws IOException {
+		this(directory, StAXBackend.getDefault(), null);
+	}
+
+	public LibraryRepositoryURLResolver(File directory, XMLBackend backend, DocumentURLResolver fallback) throws IOException {
+		this.directory = directory;
+		this.backend = backend;
+		this.fallback = fallback;
+		refresh();
+	}
+
+	/**
+	 * Indexes the directory tree again.
+	 */
+	public synchronized void refresh() throws IOException {
+		final List<Path> files = new ArrayList<Path>();
+		Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				if (attributes.isRegularFile() && file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(EXTENSION))
+					files.add(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Collections.sort(files);
+
+		Path root = directory.toPath();
+		List<Header> headers = new ArrayList<Header>();
+		Map<String, URL> paths = new HashMap<String, URL>();
+		Map<Path, URL> locations = new HashMap<Path, URL>();
+		for (Path file : files) {
+			Header header = readHeader(file);
+			if (header == null)
+				continue;
+			headers.add(header);
+			URL url = file.toUri().toURL();
+			locations.put(file.toAbsolutePath().normalize(), url);
+
+			Path relativePath = root.relativize(file);
+			for (int i = relativePath.getNameCount() - 1; i >= 0; i--) {
+				String key = toKey(relativePath.subpath(i, relativePath.getNameCount()).toString());
+				if (!paths.containsKey(key))
+					paths.put(key, url);
+			}
+		}
+
+		// the file names in the documents come second to the actual ones
+		for (Header header : headers) {
+			if (header.fileName == null)
+				continue;
+			String key = toKey(getLastSegment(header.fileName));
+			if (!key.isEmpty() && !paths.containsKey(key))
+				paths.put(key, header.file.toUri().toURL());
+		}
+
+		Map<String, URL> aliases = new HashMap<String, URL>();
+		for (Header header : headers) {
+			for (String[] externalReference : header.externalReferences) {
+				String alias = externalReference[0];
+				if (alias == null || alias.isEmpty() || aliases.containsKey(alias))
+					continue;
+				try {
+					URL url = locations.get(header.file.resolveSibling(toKey(externalReference[1])).toAbsolutePath().normalize());
+					if (url != null)
+						aliases.put(alias, url);
+				} catch (InvalidPathException e) {
+					// no file of the tree
+				}
+			}
+		}
+
+		this.paths = paths;
+		this.aliases = aliases;
+		this.indexedFilesCount = headers.size();
+	}
+
+	// null if the file is no CAEX file
+	private Header readHeader(Path file) {
+		try {
+			XMLStreamReader reader = backend.createXMLStreamReader(file.toUri().toURL());
+			try {
+				reader.nextTag();
+				if (!AMLElementNames.ELEMENT_CAEX_FILE.equals(reader.getLocalName()))
+					return null;
+				Header header = new Header(file, reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_FILE_NAME));
+				int depth = 1;
+				while (depth > 0 && reader.hasNext()) {
+					int event = reader.next();
+					if (event == XMLStreamConstants.END_ELEMENT) {
+						depth--;
+					} else if (event == XMLStreamConstants.START_ELEMENT) {
+						if (depth++ > 1)
+							continue;
+						String name = reader.getLocalName();
+						if (AMLElementNames.ELEMENT_EXTERNAL_REFERENCE.equals(name)) {
+							String path = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_PATH);
+							if (path != null)
+								header.externalReferences.add(new String[] { reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_ALIAS), path });
+						} else if (name.equals(AMLElementNames.ELEMENT_INSTANCE_HIERARCHY) || name.endsWith("Lib")) {
+							break;
+						}
+					}
+				}
+				return header;
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			return null;
+		} catch (XMLStreamException e) {
+			return null;
+		}
+	}
+
+	private static String toKey(String path) {
+		String key = path.replace('\\', '/');
+		while (key.startsWith("./"))
+			key = key.substring(2);
+		return key;
+	}
+
+	private static String getLastSegment(String path) {
+		String key = toKey(path);
+		return key.substring(key.lastIndexOf('/') + 1);
+	}
+
+	/**
+	 * Returns the number of CAEX files in the index.
+	 */
+	public int getIndexedFilesCount() {
+		return indexedFilesCount;
+	}
+
+	/**
+	 * Returns the file of the tree the given path or alias is resolved to, or null.
+	 */
+	public URL lookup(String pathString) {
+		URL url = aliases.get(pathString);
+		if (url != null)
+			return url;
+
+		Map<String, URL> paths = this.paths;
+		String key = toKey(pathString);
+		int start = 0;
+		while (true) {
+			url = paths.get(key.substring(start));
+			if (url != null)
+				return url;
+			int separator = key.indexOf('/', start);
+			if (separator < 0)
+				return null;
+			start = separator + 1;
+		}
+	}
+
+	@Override
+	public URL getResolvedURL(URL baseUrl, String pathString) {
+		URL url = lookup(pathString);
+		if (url != null)
+			return url;
+		if (fallback != null)
+			return fallback.getResolvedURL(baseUrl, pathString);
+		try {
+			return new URL(baseUrl, pathString);
+		} catch (MalformedURLException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LibraryRepositoryURLResolver [" + directory + ", " + indexedFilesCount + " files]";
+	}
+}
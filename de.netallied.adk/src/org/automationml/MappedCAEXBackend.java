@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.automationml.internal.MappedCAEXStreamReader;
+
+/**
+ * {@link XMLBackend} reading local files by tokenizing a memory mapped copy in place, so only the names and values the model keeps become strings.
+ * Files that are not UTF-8 encoded or have a document type declaration, other URLs, input streams and all writing are left to the given backend.
+ * <p>
+ * A mapping is released when it is garbage collected, on Windows the file can not be overwritten before.
+ */
+public class MappedCAEXBackend implements XMLBackend {
+
+	private final XMLBackend backend;
+
+	public MappedCAEXBackend() {
+		this(StAXBackend.getDefault());
+	}
+
+	public MappedCAEXBackend(XMLBackend backend) {
+		this.backend = backend;
+	}
+
+	@Override
+	public XMLStreamReader createXMLStreamReader(URL url) throws IOException, XMLStreamException {
+		File file = toFile(url);
+		if (file == null)
+			return backend.createXMLStreamReader(url);
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+				return backend.createXMLStreamReader(url);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			XMLStreamReader reader = MappedCAEXStreamReader.create(buffer, url.toString());
+			if (reader != null)
+				return reader;
+		} finally {
+			randomAccessFile.close();
+		}
+		return backend.createXMLStreamReader(url);
+	}
+
+	static File toFile(URL url) {
+		if (!"file".equals(url.getProtocol()))
+			return null;
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException e) {
+			return null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public boolean exists(URL url) {
+		return backend.exists(url);
+	}
+
+	@Override
+	public XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+		return backend.createXMLStreamReader(inputStream);
+	}
+
+	@Override
+	public XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String encoding) throws XMLStreamException {
+		return backend.createXMLStreamWriter(outputStream, encoding);
+	}
+
+	@Override
+	public String toString() {
+		return "MappedCAEXBackend [" + backend + "]";
+	}
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Documents kept in memory under relative paths, for instance a payload and the libraries it references. Every document has a URL of its own
+ * which can be loaded, saved and used as {@link URLDocumentLocation} like any other. External references are resolved against it within the
+ * bundle, so documents referencing each other are read without touching the file system.
+ * <p>
+ * Byte arrays and buffers are not copied, they must not be changed while the bundle is in use.
+ */
+public class MemoryDocumentBundle {
+
+	public static final String PROTOCOL = "aml-memory";
+	public static final String DOCUMENT_PATH = "document.aml";
+
+	private static final AtomicLong bundleCount = new AtomicLong();
+
+	private final String id = "bundle" + bundleCount.incrementAndGet();
+	private final Map<String, ByteBuffer> contents = Collections.synchronizedMap(new LinkedHashMap<String, ByteBuffer>());
+
+	private final URLStreamHandler handler = new URLStreamHandler() {
+		@Override
+		protected URLConnection openConnection(URL url) throws IOException {
+			return new MemoryConnection(url);
+		}
+
+		// the bundle id is no host, it must never be looked up
+		@Override
+		protected InetAddress getHostAddress(URL url) {
+			return null;
+		}
+	};
+
+	private class MemoryConnection extends URLConnection {
+		private ByteBuffer content;
+
+		MemoryConnection(URL url) {
+			super(url);
+		}
+
+		@Override
+		public void connect() throws IOException {
+			if (connected)
+				return;
+			content = getBundleContent(url);
+			if (content == null)
+				throw new FileNotFoundException(url.toString());
+			connected = true;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			connect();
+			return new ByteBufferInputStream(content.duplicate());
+		}
+
+		@Override
+		public OutputStream getOutputStream() throws IOException {
+			final String path = getPath(url);
+			return new ByteArrayOutputStream() {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					contents.put(path, ByteBuffer.wrap(toByteArray()));
+				}
+			};
+		}
+
+		@Override
+		public long getContentLengthLong() {
+			try {
+				connect();
+			} catch (IOException e) {
+				return -1;
+			}
+			return content.remaining();
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0)
+				return 0;
+			if (!buffer.hasRemaining())
+				return -1;
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long count) {
+			int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+			buffer.position(buffer.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	public MemoryDocumentBundle() {
+	}
+
+	/**
+	 * Creates a bundle of the given documents, keyed by the paths they are referenced with.
+	 */
+	public MemoryDocumentBundle(Map<String, byte[]> documents) {
+		if (documents == null)
+			return;
+		for (Map.Entry<String, byte[]> entry : documents.entrySet())
+			put(entry.getKey(), entry.getValue());
+	}
+
+	public URL put(String path, byte[] content) {
+		return put(path, ByteBuffer.wrap(content));
+	}
+
+	/**
+	 * Adds the remaining content of the buffer, its position is not changed.
+	 */
+	public URL put(String path, ByteBuffer content) {
+		String normalizedPath = normalize(path);
+		contents.put(normalizedPath, content.slice().asReadOnlyBuffer());
+		return createURL(normalizedPath);
+	}
+
+	/**
+	 * Reads the stream up to its end, it is not closed.
+	 */
+	public URL put(String path, InputStream inputStream) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(inputStream.available(), 8192));
+		byte[] buffer = new byte[65536];
+		int count;
+		while ((count = inputStream.read(buffer)) > 0)
+			outputStream.write(buffer, 0, count);
+		return put(path, outputStream.toByteArray());
+	}
+
+	/**
+	 * Returns the URL of the document with the given path, whether it exists or not.
+	 */
+	public URL getURL(String path) {
+		return createURL(normalize(path));
+	}
+
+	public DocumentLocation getDocumentLocation(String path) {
+		return new URLDocumentLocation(getURL(path));
+	}
+
+	/**
+	 * Returns a copy of the content of the given document, or null.
+	 */
+	public byte[] getBytes(String path) {
+		ByteBuffer content = contents.get(normalize(path));
+		if (content == null)
+			return null;
+		byte[] bytes = new byte[content.remaining()];
+		content.duplicate().get(bytes);
+		return bytes;
+	}
+
+	public boolean contains(String path) {
+		return contents.containsKey(normalize(path));
+	}
+
+	public List<String> getPaths() {
+		synchronized (contents) {
+			return new ArrayList<String>(contents.keySet());
+		}
+	}
+
+	/**
+	 * Returns whether the URL is one of a document of this bundle.
+	 */
+	public boolean contains(URL url) {
+		return PROTOCOL.equals(url.getProtocol()) && id.equals(url.getHost()) && contents.containsKey(getPath(url));
+	}
+
+	private ByteBuffer getBundleContent(URL url) {
+		if (!id.equals(url.getHost()))
+			return null;
+		return contents.get(getPath(url));
+	}
+
+	private URL createURL(String path) {
+		try {
+			return new URL(PROTOCOL, id, -1, "/" + path, handler);
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	private static String getPath(URL url) {
+		return normalize(url.getPath());
+	}
+
+	// relative to the bundle, references above the root of the bundle stay within it
+	private static String normalize(String path) {
+		List<String> segments = new ArrayList<String>();
+		for (String segment : path.replace('\\', '/').split("/")) {
+			if (segment.isEmpty() || segment.equals("."))
+				continue;
+			if (segment.equals("..")) {
+				if (!segments.isEmpty())
+					segments.remove(segments.size() - 1);
+				continue;
+			}
+			segments.add(segment);
+		}
+		StringBuilder normalizedPath = new StringBuilder();
+		for (String segment : segments) {
+			if (normalizedPath.length() > 0)
+				normalizedPath.append('/');
+			normalizedPath.append(segment);
+		}
+		return normalizedPath.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "MemoryDocumentBundle [" + id + ", " + contents.keySet() + "]";
+	}
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.automationml.internal.CAEXSnapshotReader;
+import org.automationml.internal.CAEXSnapshotReader.SharedSnapshot;
+import org.automationml.internal.CAEXSnapshotRecorder;
+import org.automationml.internal.aml.AMLElementNames;
+
+/**
+ * {@link XMLBackend} keeping the parsed content of library documents, documents without instance hierarchy, in a cache shared by the whole
+ * process. Every session still builds its own model from it, but the file is neither read nor parsed again, and the names and values of all
+ * sessions are the same string instances.
+ * <p>
+ * Entries are keyed by the canonical location of a document. A local file is reused while its size and modification time are unchanged, or its
+ * size and CRC-32 if only the modification time differs. Other URLs are read completely and reused if size and CRC-32 match.
+ */
+public class SharedLibraryCAEXBackend implements XMLBackend {
+
+	private static class Entry {
+		final long size;
+		volatile long lastModified;
+		final long checksum;
+		final SharedSnapshot snapshot;
+
+		Entry(long size, long lastModified, long checksum, SharedSnapshot snapshot) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.checksum = checksum;
+			this.snapshot = snapshot;
+		}
+	}
+
+	private static final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+
+	private final XMLBackend backend;
+
+	public SharedLibraryCAEXBackend() {
+		this(StAXBackend.getDefault());
+	}
+
+	public SharedLibraryCAEXBackend(XMLBackend backend) {
+		this.backend = backend;
+	}
+
+	/**
+	 * Returns the number of library documents in the cache.
+	 */
+	public static int getCachedDocumentsCount() {
+		return cache.size();
+	}
+
+	/**
+	 * Returns the size of all cached snapshots in bytes, without the shared strings.
+	 */
+	public static long getCachedBytes() {
+		long bytes = 0;
+		for (Entry entry : cache.values())
+			bytes += entry.snapshot.getSize();
+		return bytes;
+	}
+
+	public static void clearCache() {
+		cache.clear();
+	}
+
+	@Override
+	public XMLStreamReader createXMLStreamReader(URL url) throws IOException, XMLStreamException {
+		File file = MappedCAEXBackend.toFile(url);
+		if (file != null && file.isFile())
+			return createFileReader(url, file);
+
+		String location = url.toExternalForm();
+		byte[] content = readFully(url);
+		long checksum = checksum(content);
+		Entry entry = cache.get(location);
+		if (entry != null && entry.size == content.length && entry.checksum == checksum)
+			return entry.snapshot.createReader(url.toString());
+		return record(backend.createXMLStreamReader(new ByteArrayInputStream(content)), location, content.length, 0, checksum);
+	}
+
+	private XMLStreamReader createFileReader(URL url, File file) throws IOException, XMLStreamException {
+		String location = file.getCanonicalPath();
+		long size = file.length();
+		long lastModified = file.lastModified();
+		Entry entry = cache.get(location);
+		if (entry != null && entry.size == size) {
+			if (entry.lastModified == lastModified)
+				return entry.snapshot.createReader(url.toString());
+			// touched, checked out or copied again without changes
+			if (CAEXSnapshotRecorder.checksum(file) == entry.checksum) {
+				entry.lastModified = lastModified;
+				return entry.snapshot.createReader(url.toString());
+			}
+		}
+
+		XMLStreamReader reader = backend.createXMLStreamReader(url);
+		// checked again when the content is recorded, a modification in between is not cached
+		return record(reader, location, size, lastModified, -1);
+	}
+
+	private XMLStreamReader record(XMLStreamReader reader, final String location, final long size, final long lastModified, final long checksum) {
+		return new CAEXSnapshotRecorder(reader) {
+			@Override
+			protected void recorded() {
+				if (containsElement(AMLElementNames.ELEMENT_INSTANCE_HIERARCHY))
+					return;
+				try {
+					long contentChecksum = checksum;
+					if (contentChecksum == -1) {
+						File file = new File(location);
+						contentChecksum = CAEXSnapshotRecorder.checksum(file);
+						if (file.length() != size || file.lastModified() != lastModified)
+							return;
+					}
+					ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+					writeTo(outputStream, location, size, lastModified, contentChecksum);
+					cache.put(location, new Entry(size, lastModified, contentChecksum, CAEXSnapshotReader.share(outputStream.toByteArray())));
+				} catch (Exception e) {
+					// the document has been read nonetheless, it is just not cached
+				}
+			}
+		};
+	}
+
+	private static byte[] readFully(URL url) throws IOException {
+		InputStream inputStream = url.openStream();
+		try {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			byte[] buffer = new byte[65536];
+			int count;
+			while ((count = inputStream.read(buffer)) > 0)
+				outputStream.write(buffer, 0, count);
+			return outputStream.toByteArray();
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	private static long checksum(byte[] content) {
+		CRC32 crc = new CRC32();
+		crc.update(content, 0, content.length);
+		return crc.getValue();
+	}
+
+	@Override
+	public boolean exists(URL url) {
+		return backend.exists(url);
+	}
+
+	@Override
+	public XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+		return backend.createXMLStreamReader(inputStream);
+	}
+
+	@Override
+	public XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String encoding) throws XMLStreamException {
+		return backend.createXMLStreamWriter(outputStream, encoding);
+	}
+
+	@Override
+	public String toString() {
+		return "SharedLibraryCAEXBackend [" + backend + "]";
+	}
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.automationml.internal.CAEXSnapshotReader;
+import org.automationml.internal.CAEXSnapshotRecorder;
+
+/**
+ * {@link XMLBackend} keeping a binary snapshot of every local file it reads in the given directory. The first load parses the file with the given
+ * backend and records the snapshot, later loads replay the snapshot instead of parsing the XML again. A snapshot is used as long as the size and
+ * modification time of the file are unchanged, or its size and CRC-32 if only the modification time differs. Otherwise the file is parsed and
+ * the snapshot replaced.
+ * <p>
+ * Other URLs, input streams and all writing are left to the given backend.
+ */
+public class SnapshotCAEXBackend implements XMLBackend {
+
+	private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+	private final File directory;
+	private final XMLBackend backend;
+
+	public SnapshotCAEXBackend(File directory) {
+		this(directory, StAXBackend.getDefault());
+	}
+
+	public SnapshotCAEXBackend(File directory, XMLBackend backend) {
+		this.directory = directory;
+		this.backend = backend;
+		directory.mkdirs();
+	}
+
+	@Override
+	public XMLStreamReader createXMLStreamReader(URL url) throws IOException, XMLStreamException {
+		File file = MappedCAEXBackend.toFile(url);
+		if (file == null || !file.isFile())
+			return backend.createXMLStreamReader(url);
+
+		long size = file.length();
+		long lastModified = file.lastModified();
+		File snapshot = getSnapshotFile(file);
+		if (snapshot.isFile()) {
+			CAEXSnapshotReader reader = CAEXSnapshotReader.create(Files.readAllBytes(snapshot.toPath()), url.toString());
+			if (reader != null && isUpToDate(reader, file, size, lastModified, snapshot))
+				return reader;
+		}
+		return record(backend.createXMLStreamReader(url), file, size, lastModified, snapshot);
+	}
+
+	private XMLStreamReader record(XMLStreamReader reader, final File file, final long size, final long lastModified, final File snapshot) {
+		return new CAEXSnapshotRecorder(reader) {
+			@Override
+			protected void recorded() {
+				try {
+					write(this, file, size, lastModified, snapshot);
+				} catch (IOException e) {
+					// the snapshot is only a cache, the document has been read nonetheless
+				}
+			}
+		};
+	}
+
+	// unless the file was modified while it was read
+	private void write(CAEXSnapshotRecorder recorder, File file, long size, long lastModified, File snapshot) throws IOException {
+		if (file.length() != size || file.lastModified() != lastModified)
+			return;
+		long checksum = CAEXSnapshotRecorder.checksum(file);
+		if (file.length() != size || file.lastModified() != lastModified)
+			return;
+
+		File temporaryFile = File.createTempFile(snapshot.getName(), ".tmp", directory);
+		try {
+			OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(temporaryFile));
+			try {
+				recorder.writeTo(outputStream, file.getAbsolutePath(), size, lastModified, checksum);
+			} finally {
+				outputStream.close();
+			}
+			try {
+				Files.move(temporaryFile.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			temporaryFile.delete();
+		}
+	}
+
+	private boolean isUpToDate(CAEXSnapshotReader reader, File file, long size, long lastModified, File snapshot) throws IOException {
+		if (!reader.getSourcePath().equals(file.getAbsolutePath()) || reader.getSourceSize() != size)
+			return false;
+		if (reader.getSourceLastModified() == lastModified)
+			return true;
+
+		// touched, checked out or copied again without changes
+		if (CAEXSnapshotRecorder.checksum(file) != reader.getSourceChecksum())
+			return false;
+		CAEXSnapshotRecorder.updateSourceLastModified(snapshot, lastModified);
+		return true;
+	}
+
+	/**
+	 * Returns the file the snapshot of the given file is kept in, whether it exists or not.
+	 */
+	public File getSnapshotFile(File file) {
+		String path = file.getAbsolutePath();
+		return new File(directory, file.getName() + "." + Integer.toHexString(path.hashCode()) + SNAPSHOT_EXTENSION);
+	}
+
+	/**
+	 * Deletes all snapshots in the directory.
+	 */
+	public void clear() {
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			if (file.getName().endsWith(SNAPSHOT_EXTENSION))
+				file.delete();
+		}
+	}
+
+	@Override
+	public boolean exists(URL url) {
+		return backend.exists(url);
+	}
+
+	@Override
+	public XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+		return backend.createXMLStreamReader(inputStream);
+	}
+
+	@Override
+	public XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String encoding) throws XMLStreamException {
+		return backend.createXMLStreamWriter(outputStream, encoding);
+	}
+
+	@Override
+	public String toString() {
+		return "SnapshotCAEXBackend [" + directory + ", " + backend + "]";
+	}
+}
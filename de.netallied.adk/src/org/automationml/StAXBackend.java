@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * {@link XMLBackend} holding one configured pair of StAX factories, so the service lookup of {@link XMLInputFactory#newInstance()} and
+ * {@link XMLOutputFactory#newInstance()} is done once instead of for every file.
+ */
+public class StAXBackend implements XMLBackend {
+
+	public static final String WOODSTOX_INPUT_FACTORY = "com.ctc.wstx.stax.WstxInputFactory";
+	public static final String WOODSTOX_OUTPUT_FACTORY = "com.ctc.wstx.stax.WstxOutputFactory";
+	public static final String AALTO_INPUT_FACTORY = "com.fasterxml.aalto.stax.InputFactoryImpl";
+	public static final String AALTO_OUTPUT_FACTORY = "com.fasterxml.aalto.stax.OutputFactoryImpl";
+
+	private static StAXBackend defaultBackend;
+
+	private final XMLInputFactory inputFactory;
+	private final XMLOutputFactory outputFactory;
+
+	public StAXBackend(XMLInputFactory inputFactory, XMLOutputFactory outputFactory) {
+		this.inputFactory = inputFactory;
+		this.outputFactory = outputFactory;
+	}
+
+	/**
+	 * Returns the backend using the factories found by the StAX service lookup.
+	 */
+	public static synchronized StAXBackend getDefault() {
+		if (defaultBackend == null)
+			defaultBackend = new StAXBackend(XMLInputFactory.newInstance(), XMLOutputFactory.newInstance());
+		return defaultBackend;
+	}
+
+	/**
+	 * Creates a backend from the given factory implementations, e.g. {@link #WOODSTOX_INPUT_FACTORY} and {@link #WOODSTOX_OUTPUT_FACTORY}.
+	 */
+	public static StAXBackend create(String inputFactoryClassName, String outputFactoryClassName) throws ReflectiveOperationException {
+		ClassLoader classLoader = StAXBackend.class.getClassLoader();
+		XMLInputFactory inputFactory = (XMLInputFactory) Class.forName(inputFactoryClassName, true, classLoader).newInstance();
+		XMLOutputFactory outputFactory = (XMLOutputFactory) Class.forName(outputFactoryClassName, true, classLoader).newInstance();
+		return new StAXBackend(inputFactory, outputFactory);
+	}
+
+	public XMLInputFactory getInputFactory() {
+		return inputFactory;
+	}
+
+	public XMLOutputFactory getOutputFactory() {
+		return outputFactory;
+	}
+
+	// factories are only required to be thread safe once configured, which not every implementation guarantees
+	@Override
+	public XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+		synchronized (inputFactory) {
+			return inputFactory.createXMLStreamReader(inputStream);
+		}
+	}
+
+	@Override
+	public XMLStreamReader createXMLStreamReader(URL url) throws IOException, XMLStreamException {
+		final InputStream inputStream = url.openStream();
+		XMLStreamReader reader;
+		try {
+			reader = createXMLStreamReader(inputStream);
+		} catch (XMLStreamException e) {
+			inputStream.close();
+			throw e;
+		}
+		return new StreamReaderDelegate(reader) {
+			@Override
+			public void close() throws XMLStreamException {
+				try {
+					super.close();
+				} finally {
+					try {
+						inputStream.close();
+					} catch (IOException e) {
+						throw new XMLStreamException(e);
+					}
+				}
+			}
+		};
+	}
+
+	@Override
+	public boolean exists(URL url) {
+		try {
+			InputStream stream = url.openStream();
+			stream.close();
+		} catch (IOException e) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String encoding) throws XMLStreamException {
+		synchronized (outputFactory) {
+			return outputFactory.createXMLStreamWriter(outputStream, encoding);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "StAXBackend [" + inputFactory.getClass().getName() + ", " + outputFactory.getClass().getName() + "]";
+	}
+}
@@ -58,6 +58,8 @@ public class URLDocumentLocation implements DocumentLocation {
 
 	@Override
 	public OutputStream createOutputStream() throws Exception {
+		if (MemoryDocumentBundle.PROTOCOL.equals(url.getProtocol()))
+			return url.openConnection().getOutputStream();
 		return new FileOutputStream(new File(url.toURI()));
 	}
 
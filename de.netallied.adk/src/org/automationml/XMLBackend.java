@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Creates the StAX readers and writers used to load and save documents of a session. Implementations have to be safe for concurrent use, as
+ * referenced documents are parsed in parallel.
+ */
+public interface XMLBackend {
+
+	XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException;
+
+	/**
+	 * Opens the document at the given URL, closing the returned reader also closes the underlying input.
+	 */
+	XMLStreamReader createXMLStreamReader(URL url) throws IOException, XMLStreamException;
+
+	/**
+	 * Returns whether a document can be read from the given URL. Only asked for URLs which are no local files, before their document is read.
+	 */
+	boolean exists(URL url);
+
+	XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String encoding) throws XMLStreamException;
+
+}
@@ -0,0 +1,25 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+import org.automationml.DeserializerException;
+import org.automationml.internal.ProgressMonitor;
+
+/**
+ * Thrown by a load of an {@link AMLSession} when the {@link ProgressMonitor} set with {@link AMLSession#setProgressMonitor(ProgressMonitor)} was
+ * canceled, monitors which can be canceled are the ones reporting the progress in detail. The monitor is asked between the files and batches
+ * of elements, so a load stops soon after it was canceled, not at once. A canceled save throws a {@link org.automationml.SerializerException}
+ * caused by it.
+ * <p>
+ * A load canceled while its files are parsed has not created anything. Once the elements are created, the ones created so far are left like
+ * after any other failing load.
+ */
+@SuppressWarnings("serial")
+public class AMLCanceledException extends DeserializerException {
+
+	public AMLCanceledException() {
+		super("Canceled by the progress monitor");
+	}
+}
@@ -4,6 +4,7 @@
  *******************************************************************************/
 package org.automationml.aml;
 
+import java.io.OutputStream;
 import java.net.URL;
 import java.util.Date;
 
@@ -73,6 +74,11 @@ public interface AMLDocument extends AMLDocumentElement, AMLElement {
 	
 	DocumentLocation getDocumentLocation();
 
+	/**
+	 * Returns the projection the document was loaded with, or null if it was loaded completely.
+	 */
+	AMLProjection getProjection();
+
 	Iterable<AMLDocument> getReferencedDocuments();
 
 	int getReferencedDocumentsCount();
@@ -121,6 +127,16 @@ public interface AMLDocument extends AMLDocumentElement, AMLElement {
 
 	void save(AMLDocumentURLResolver urlResolver) throws Exception;
 
+	/**
+	 * Writes the document to the stream, its location and dirty state are left as they are.
+	 */
+	void saveTo(OutputStream outputStream, AMLDocumentURLResolver urlResolver) throws Exception;
+
+	/**
+	 * Writes the document and all documents it references into one AMLX package.
+	 */
+	void saveAsPackage(OutputStream outputStream) throws Exception;
+
 	AMLInstanceHierarchy createInstanceHierarchy(String name, AMLInstanceHierarchy instanceHierarchy) throws AMLValidationException;
 
 	AMLInterfaceClassLibrary createInterfaceClassLibrary(String name,	AMLInterfaceClassLibrary interfaceClassLibrary) throws AMLValidationException;
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+import org.automationml.aml.AMLLoadLimits.Limit;
+import org.automationml.DeserializerException;
+
+/**
+ * Thrown when loading a document exceeds one of the {@link AMLLoadLimits} of the session, nothing of the document is created then.
+ */
+@SuppressWarnings("serial")
+public class AMLLoadLimitExceededException extends DeserializerException {
+
+	private final Limit limit;
+	private final long maximum;
+	private final String location;
+
+	public AMLLoadLimitExceededException(Limit limit, long maximum, String location) {
+		super("Load limit " + limit + " of " + maximum + " exceeded" + (location == null ? "" : " at " + location));
+		this.limit = limit;
+		this.maximum = maximum;
+		this.location = location;
+	}
+
+	public Limit getLimit() {
+		return limit;
+	}
+
+	public long getMaximum() {
+		return maximum;
+	}
+
+	/**
+	 * Returns the file, and the line if known, where the limit was exceeded.
+	 */
+	public String getLocation() {
+		return location;
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+/**
+ * Limits the cost of loading a document and the documents it references, see {@link AMLSession#setLoadLimits(AMLLoadLimits)}. The limits are
+ * checked while reading, before the elements are created, a load exceeding one is rejected with an {@link AMLLoadLimitExceededException}.
+ * Limits not set are unlimited.
+ */
+public class AMLLoadLimits {
+
+	public enum Limit {
+		/**
+		 * Nesting of internal elements and attributes within each other.
+		 */
+		DEPTH,
+		/**
+		 * Internal elements and attributes of all loaded files.
+		 */
+		ELEMENTS,
+		/**
+		 * Characters of an attribute value or additional information.
+		 */
+		VALUE_LENGTH,
+		/**
+		 * Files loaded, the document itself and all files it references directly or indirectly.
+		 */
+		FILES,
+		/**
+		 * Bytes of all loaded files. Files whose size is not known in advance, like the ones read from a stream or an archive, are counted while
+		 * they are read.
+		 */
+		BYTES
+	}
+
+	private final long[] maximums = new long[Limit.values().length];
+
+	public AMLLoadLimits() {
+		for (int i = 0; i < maximums.length; i++)
+			maximums[i] = -1;
+	}
+
+	/**
+	 * Sets the maximum of the limit, a negative maximum removes the limit.
+	 */
+	public AMLLoadLimits set(Limit limit, long maximum) {
+		maximums[limit.ordinal()] = maximum;
+		return this;
+	}
+
+	public AMLLoadLimits maxDepth(int depth) {
+		return set(Limit.DEPTH, depth);
+	}
+
+	public AMLLoadLimits maxElements(long elements) {
+		return set(Limit.ELEMENTS, elements);
+	}
+
+	public AMLLoadLimits maxValueLength(int length) {
+		return set(Limit.VALUE_LENGTH, length);
+	}
+
+	public AMLLoadLimits maxFiles(int files) {
+		return set(Limit.FILES, files);
+	}
+
+	public AMLLoadLimits maxBytes(long bytes) {
+		return set(Limit.BYTES, bytes);
+	}
+
+	/**
+	 * Returns the maximum of the limit, or a negative value if it is not limited.
+	 */
+	public long get(Limit limit) {
+		return maximums[limit.ordinal()];
+	}
+
+	public boolean isLimited(Limit limit) {
+		return maximums[limit.ordinal()] >= 0;
+	}
+
+	/**
+	 * Returns false if the value exceeds the maximum of the limit.
+	 */
+	public boolean permits(Limit limit, long value) {
+		long maximum = maximums[limit.ordinal()];
+		return maximum < 0 || value <= maximum;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("AMLLoadLimits [");
+		for (Limit limit : Limit.values()) {
+			if (limit.ordinal() > 0)
+				builder.append(", ");
+			builder.append(limit).append('=').append(maximums[limit.ordinal()]);
+		}
+		return builder.append(']').toString();
+	}
+}
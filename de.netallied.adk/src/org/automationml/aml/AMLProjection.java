@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.automationml.internal.aml.AMLElementNames;
+
+/**
+ * Selects the instance hierarchies and class libraries of a document to load, see {@link AMLSession#loadAMLDocument(java.net.URL, AMLProjection)}.
+ * Left out parts are skipped while reading and never created. Parts the loaded ones refer to, by a class path or an id, are loaded nevertheless.
+ * <p>
+ * The projection applies to the loaded document only, the documents it references are loaded completely. A document loaded with a projection
+ * can not be saved to its location, as the left out parts would be lost.
+ */
+public class AMLProjection {
+
+	public interface Filter {
+		/**
+		 * Called for the instance hierarchies and class libraries of the document with the CAEX element name, for instance
+		 * <code>InstanceHierarchy</code> or <code>RoleClassLib</code>, and the name of the element.
+		 */
+		boolean excludes(String elementName, String name);
+	}
+
+	private Set<String> instanceHierarchies;
+	private Set<String> libraries;
+	private final List<Filter> filters = new ArrayList<Filter>();
+
+	/**
+	 * Returns a projection loading the class libraries only.
+	 */
+	public static AMLProjection librariesOnly() {
+		return new AMLProjection().includeInstanceHierarchies();
+	}
+
+	/**
+	 * Loads the named instance hierarchies only, without names none.
+	 */
+	public AMLProjection includeInstanceHierarchies(String... names) {
+		if (instanceHierarchies == null)
+			instanceHierarchies = new HashSet<String>();
+		Collections.addAll(instanceHierarchies, names);
+		return this;
+	}
+
+	/**
+	 * Loads the named class libraries only, without names none.
+	 */
+	public AMLProjection includeLibraries(String... names) {
+		if (libraries == null)
+			libraries = new HashSet<String>();
+		Collections.addAll(libraries, names);
+		return this;
+	}
+
+	public AMLProjection exclude(Filter filter) {
+		filters.add(filter);
+		return this;
+	}
+
+	public boolean includes(String elementName, String name) {
+		Set<String> names = AMLElementNames.ELEMENT_INSTANCE_HIERARCHY.equals(elementName) ? instanceHierarchies : libraries;
+		if (names != null && !names.contains(name))
+			return false;
+		for (Filter filter : filters) {
+			if (filter.excludes(elementName, name))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "AMLProjection [instanceHierarchies=" + instanceHierarchies + ", libraries=" + libraries + ", filters=" + filters.size() + "]";
+	}
+}
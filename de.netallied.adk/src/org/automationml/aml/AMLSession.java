@@ -4,11 +4,15 @@
  *******************************************************************************/
 package org.automationml.aml;
 
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Map;
 
 import org.automationml.DocumentLocation;
 import org.automationml.DocumentURLResolver;
 import org.automationml.Savepoint;
+import org.automationml.XMLBackend;
 import org.automationml.internal.ProgressMonitor;
 
 public interface AMLSession extends AMLObject {
@@ -20,6 +24,28 @@ public interface AMLSession extends AMLObject {
 	AMLDocument createAMLDocument(URL url);
 
 	AMLDocument loadAMLDocument(URL url) throws Exception;
+
+	/**
+	 * Loads the parts of the document selected by the projection. If the document is already loaded, it is returned as it is.
+	 */
+	AMLDocument loadAMLDocument(URL url, AMLProjection projection) throws Exception;
+
+	/**
+	 * Loads a document from memory, its external references are looked up in the related documents by their path.
+	 */
+	AMLDocument loadAMLDocument(byte[] content, Map<String, byte[]> relatedDocuments) throws Exception;
+
+	AMLDocument loadAMLDocument(ByteBuffer content, Map<String, byte[]> relatedDocuments) throws Exception;
+
+	AMLDocument loadAMLDocument(InputStream inputStream, Map<String, byte[]> relatedDocuments) throws Exception;
+
+	void streamAMLDocument(URL url, AMLStreamHandler streamHandler) throws Exception;
+
+	/**
+	 * Saves all dirty documents of the session to their locations. The documents are written concurrently, to temporary files next to their
+	 * files, and replace their files only once all of them are written. If one of them can not be written, none is saved.
+	 */
+	void saveAll(AMLDocumentURLResolver urlResolver) throws Exception;
 	
 	AMLDocument getRootDocument(AMLDocument documentInScope);
 	
@@ -47,6 +73,72 @@ public interface AMLSession extends AMLObject {
 
 	ProgressMonitor getProgressMonitor();
 
+	void setXMLBackend(XMLBackend xmlBackend);
+
+	XMLBackend getXMLBackend();
+
+	void setLazyLoading(boolean lazyLoading);
+
+	boolean isLazyLoading();
+
+	/**
+	 * Keeps the line and column of every reference while loading, to report them if it can not be resolved.
+	 */
+	void setKeepSourceLocations(boolean keepSourceLocations);
+
+	boolean isKeepSourceLocations();
+
+	/**
+	 * Files of at least the given size in bytes are split at their instance hierarchies and class libraries, which are parsed in parallel then.
+	 * Only files read by the {@link org.automationml.MappedCAEXBackend} can be split, a negative size disables splitting.
+	 */
+	void setParallelParsingThreshold(long fileSize);
+
+	long getParallelParsingThreshold();
+
+	/**
+	 * Loads documents known to be valid, for instance written by this library, without asking the validator for every element, recording
+	 * changes or notifying document change listeners. Each loaded document is validated once as a whole, see
+	 * {@link AMLValidator#validateDocument(AMLDocument)}, and announced when they are complete. If building or validating them fails, the loaded
+	 * documents are removed again without being announced. Ids are only checked to be unique within each loaded document.
+	 */
+	void setTrustedLoading(boolean trustedLoading);
+
+	boolean isTrustedLoading();
+
+	/**
+	 * Keeps where the instance hierarchies and class libraries of documents are in the files they are loaded from or saved to. Saving such a
+	 * document copies the unchanged ones from its file instead of writing them again, and replaces the file by a temporary file next to it.
+	 * Only files read by the {@link org.automationml.MappedCAEXBackend} are known after loading, all files once they are saved.
+	 * <p>
+	 * Which of them are changed is known from the changes recorded by the savepoints. A change made without a current savepoint, undoing or
+	 * redoing changes, renaming, moving or deleting elements and changing external references make the next save write every document completely.
+	 */
+	void setIncrementalSaving(boolean incrementalSaving);
+
+	boolean isIncrementalSaving();
+
+	/**
+	 * Attribute values and additional information of at least the given number of characters are kept in a temporary file of the session while
+	 * loading instead of the heap, they are read from there when asked for and written from there when saved. A negative length keeps all
+	 * values in memory.
+	 */
+	void setValueSpillThreshold(int length);
+
+	int getValueSpillThreshold();
+
+	/**
+	 * Loads from now on are rejected with an {@link AMLLoadLimitExceededException} as soon as they exceed one of the limits, null removes all
+	 * limits.
+	 */
+	void setLoadLimits(AMLLoadLimits loadLimits);
+
+	AMLLoadLimits getLoadLimits();
+
+	void setStringPool(AMLStringPool stringPool);
+
+	AMLStringPool getStringPool();
+
 	AMLValidator getValidator();
 
 	void setValidator(AMLValidatorFactory validatorFactory) throws AMLValidatorException;
@@ -54,4 +146,10 @@ public interface AMLSession extends AMLObject {
 	void unsetValidator();
 
 	void enableNotify(boolean enable);
+
+	/**
+	 * Releases the temporary file of spilled values, see {@link #setValueSpillThreshold(int)}. The documents of the session must not be used
+	 * anymore.
+	 */
+	void close();
 }
@@ -4,13 +4,30 @@
  *******************************************************************************/
 package org.automationml.aml;
 
+import org.automationml.SharedLibraryCAEXBackend;
 import org.automationml.internal.aml.AMLSessionImpl;
 
 public class AMLSessionManager {
 
 	public static final AMLSessionManager amlSessionManager = new AMLSessionManager();
 
+	private volatile boolean shareLibraries;
+
 	public AMLSession createSession() {
-		return new AMLSessionImpl();
+		AMLSessionImpl session = new AMLSessionImpl();
+		if (shareLibraries)
+			session.setXMLBackend(new SharedLibraryCAEXBackend(session.getXMLBackend()));
+		return session;
+	}
+
+	/**
+	 * Sessions created from now on read library documents through the process wide cache of {@link SharedLibraryCAEXBackend}.
+	 */
+	public void setShareLibraries(boolean shareLibraries) {
+		this.shareLibraries = shareLibraries;
+	}
+
+	public boolean isShareLibraries() {
+		return shareLibraries;
 	}
 }
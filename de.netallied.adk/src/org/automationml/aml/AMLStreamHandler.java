@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+import java.util.UUID;
+
+/**
+ * Receives the instance hierarchies of a document streamed by {@link AMLSession#streamAMLDocument(java.net.URL, AMLStreamHandler)} in document
+ * order. Class libraries and external references are skipped. Nested attributes are reported before the attribute containing them.
+ */
+public interface AMLStreamHandler {
+
+	void startInstanceHierarchy(String name);
+
+	void endInstanceHierarchy(String name);
+
+	void startInternalElement(UUID id, String name, String refBaseSystemUnitPath);
+
+	void endInternalElement(UUID id, String name);
+
+	void attribute(String path, String name, String value, String defaultValue, String unit, String dataType);
+
+	void internalLink(String name, String refPartnerSideA, String refPartnerSideB);
+
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.aml;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deduplicates the strings repeated throughout a model, like attribute names, data types, units, RefSemantic and class paths, so equal values
+ * share one instance. Every session has its own pool by default, sessions loading the same libraries can share {@link #getGlobal()} instead.
+ * The pool is thread safe.
+ */
+public class AMLStringPool {
+
+	// String object and array header, the characters counted with two bytes
+	private static final int STRING_OVERHEAD = 40;
+
+	private static AMLStringPool globalPool;
+
+	private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<String, String>();
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong savedBytes = new AtomicLong();
+
+	/**
+	 * Returns the pool shared by all sessions using it. It is never cleared implicitly.
+	 */
+	public static synchronized AMLStringPool getGlobal() {
+		if (globalPool == null)
+			globalPool = new AMLStringPool();
+		return globalPool;
+	}
+
+	/**
+	 * Returns the pooled instance equal to the given string, adding the string if there is none yet.
+	 */
+	public String intern(String string) {
+		if (string == null)
+			return null;
+		requestCount.incrementAndGet();
+		String pooled = strings.get(string);
+		if (pooled == null) {
+			pooled = strings.putIfAbsent(string, string);
+			if (pooled == null)
+				return string;
+		}
+		if (pooled != string) {
+			hitCount.incrementAndGet();
+			savedBytes.addAndGet(STRING_OVERHEAD + 2L * string.length());
+		}
+		return pooled;
+	}
+
+	public int getSize() {
+		return strings.size();
+	}
+
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * Returns how often an equal string was already pooled and the requested instance could be dropped.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public double getHitRate() {
+		long requests = requestCount.get();
+		return requests == 0 ? 0 : (double) hitCount.get() / requests;
+	}
+
+	/**
+	 * Returns an estimate of the heap no longer retained by duplicates, assuming two bytes per character.
+	 */
+	public long getSavedBytes() {
+		return savedBytes.get();
+	}
+
+	/**
+	 * Removes all strings and resets the statistics. Strings already pooled stay shared by the elements holding them.
+	 */
+	public void clear() {
+		strings.clear();
+		requestCount.set(0);
+		hitCount.set(0);
+		savedBytes.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d strings, %d requests, hit rate %.1f%%, about %d bytes saved", getSize(), getRequestCount(), getHitRate() * 100,
+				getSavedBytes());
+	}
+}
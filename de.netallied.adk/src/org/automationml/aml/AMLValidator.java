@@ -13,6 +13,12 @@ public interface AMLValidator {
 
 	AMLValidationResultList validateSession();
 
+	/**
+	 * Validates a document as a whole. Asked for the documents of a trusted load, see {@link AMLSession#setTrustedLoading(boolean)}, which are
+	 * built without asking for their elements one by one.
+	 */
+	AMLValidationResultList validateDocument(AMLDocument document);
+
 	// --
 	AMLValidationResultList validateInterfaceClassLibraryCreate(AMLDocument document, String name);
 
@@ -158,6 +158,11 @@ public abstract class AMLValidatorAdapter implements AMLValidator {
 		return AMLValidationResultList.EMPTY;
 	}
 
+	@Override
+	public AMLValidationResultList validateDocument(AMLDocument document) {
+		return AMLValidationResultList.EMPTY;
+	}
+
 	@Override
 	public AMLValidationResultList validateInterfaceClassLibraryCreate(AMLDocument document, String name) {
 		return new AMLValidationResultListImpl(document, Severity.OK, "");
@@ -36,6 +36,11 @@ public abstract class AbstractCreateDocumentElementChange extends AbstractDocume
 		parentIdentifier = null;
 	}
 
+	@Override
+	public boolean isLocal() {
+		return true;
+	}
+
 	@Override
 	public boolean mergeInto(Change change) {
 		return false;
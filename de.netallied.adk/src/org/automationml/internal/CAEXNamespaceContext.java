@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+
+/**
+ * {@link NamespaceContext} of the CAEX readers and writers, which do not process namespaces. Besides the prefixes bound by XML itself it knows
+ * the prefixes declared in the document, usually only <code>xsi</code>. Declarations are not scoped to the element declaring them.
+ */
+class CAEXNamespaceContext implements NamespaceContext {
+
+	private final Map<String, String> namespaceURIs = new LinkedHashMap<String, String>();
+
+	CAEXNamespaceContext() {
+		declare(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI);
+		declare(XMLConstants.XMLNS_ATTRIBUTE, XMLConstants.XMLNS_ATTRIBUTE_NS_URI);
+	}
+
+	void declare(String prefix, String namespaceURI) {
+		namespaceURIs.put(prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix, namespaceURI);
+	}
+
+	@Override
+	public String getNamespaceURI(String prefix) {
+		if (prefix == null)
+			throw new IllegalArgumentException("Prefix must not be null");
+		String namespaceURI = namespaceURIs.get(prefix);
+		return namespaceURI == null ? XMLConstants.NULL_NS_URI : namespaceURI;
+	}
+
+	@Override
+	public String getPrefix(String namespaceURI) {
+		Iterator<String> prefixes = getPrefixes(namespaceURI);
+		return prefixes.hasNext() ? prefixes.next() : null;
+	}
+
+	@Override
+	public Iterator<String> getPrefixes(String namespaceURI) {
+		if (namespaceURI == null)
+			throw new IllegalArgumentException("Namespace URI must not be null");
+		List<String> prefixes = new ArrayList<String>(1);
+		for (Map.Entry<String, String> entry : namespaceURIs.entrySet()) {
+			if (entry.getValue().equals(namespaceURI))
+				prefixes.add(entry.getKey());
+		}
+		return prefixes.iterator();
+	}
+}
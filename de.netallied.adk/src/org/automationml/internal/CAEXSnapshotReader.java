@@ -0,0 +1,608 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Replays a document from a snapshot written by {@link CAEXSnapshotRecorder}. The snapshot holds the elements, attributes and text of the
+ * document already decoded, names and values are stored once and shared by every occurrence. White space between tags, comments and processing
+ * instructions are not part of it, which {@link #nextTag()} and {@link #getElementText()} skip anyway.
+ * <p>
+ * Layout: magic, version, size, last modified time and CRC-32 of the source file, the source path, XML version and encoding, followed by the
+ * events. Names and values are referenced by their index in the order of first occurrence, a new one is written in place as UTF-8.
+ */
+public class CAEXSnapshotReader implements XMLStreamReader {
+
+	static final int MAGIC = 0x414D4C53;
+	static final int VERSION = 1;
+	static final int LAST_MODIFIED_OFFSET = 16;
+
+	static final byte EVENT_START_ELEMENT = 1;
+	static final byte EVENT_END_ELEMENT = 2;
+	static final byte EVENT_CHARACTERS = 3;
+	static final byte EVENT_END_DOCUMENT = 4;
+
+	private static class Name {
+		final String localName;
+		final String prefix;
+
+		Name(String qualifiedName) {
+			int index = qualifiedName.indexOf(':');
+			this.localName = index < 0 ? qualifiedName.intern() : qualifiedName.substring(index + 1).intern();
+			this.prefix = index < 0 ? "" : qualifiedName.substring(0, index).intern();
+		}
+	}
+
+	/**
+	 * A snapshot decoded once, its readers share the names and values instead of decoding them again.
+	 */
+	public static class SharedSnapshot {
+		private final byte[] data;
+		private final Name[] names;
+		private final String[] values;
+
+		private SharedSnapshot(byte[] data, Name[] names, String[] values) {
+			this.data = data;
+			this.names = names;
+			this.values = values;
+		}
+
+		public CAEXSnapshotReader createReader(String systemId) {
+			try {
+				return new CAEXSnapshotReader(data, systemId, names, values);
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		public int getSize() {
+			return data.length;
+		}
+	}
+
+	private class LocationImpl implements Location {
+		private final int lineNumber;
+		private final int columnNumber;
+
+		LocationImpl() {
+			lineNumber = line;
+			columnNumber = column;
+		}
+
+		@Override
+		public int getLineNumber() {
+			return lineNumber;
+		}
+
+		@Override
+		public int getColumnNumber() {
+			return columnNumber;
+		}
+
+		@Override
+		public int getCharacterOffset() {
+			return -1;
+		}
+
+		@Override
+		public String getPublicId() {
+			return null;
+		}
+
+		@Override
+		public String getSystemId() {
+			return systemId;
+		}
+	}
+
+	private final byte[] data;
+	private final String systemId;
+	private final boolean shared;
+	private final long sourceSize;
+	private final long sourceLastModified;
+	private final long sourceChecksum;
+	private final String sourcePath;
+	private final String version;
+	private final String encoding;
+
+	private int pos;
+	private int line;
+	private int column;
+
+	private int eventType = START_DOCUMENT;
+	private Name element;
+	private Name[] elementStack = new Name[16];
+	private int depth;
+
+	private Name[] attributeNames = new Name[8];
+	private String[] attributeValues = new String[8];
+	private int attributeCount;
+
+	private String text;
+
+	private Name[] names = new Name[64];
+	private int namesCount;
+	private String[] values = new String[256];
+	private int valuesCount;
+
+	private CAEXSnapshotReader(byte[] data, String systemId, Name[] sharedNames, String[] sharedValues) throws XMLStreamException {
+		this.data = data;
+		this.systemId = systemId;
+		this.shared = sharedNames != null;
+		if (shared) {
+			names = sharedNames;
+			values = sharedValues;
+		}
+		if (readInt() != MAGIC || readInt() != VERSION)
+			throw new XMLStreamException("Not a snapshot of version " + VERSION);
+		sourceSize = readLong();
+		sourceLastModified = readLong();
+		sourceChecksum = readLong();
+		sourcePath = readString();
+		version = emptyToNull(readString());
+		encoding = emptyToNull(readString());
+	}
+
+	/**
+	 * Returns a reader positioned on START_DOCUMENT, or null if the data is no snapshot of the current version.
+	 */
+	public static CAEXSnapshotReader create(byte[] data, String systemId) {
+		try {
+			return new CAEXSnapshotReader(data, systemId, null, null);
+		} catch (XMLStreamException e) {
+			return null;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Decodes the whole snapshot once, so readers created from the result share its names and values.
+	 */
+	public static SharedSnapshot share(byte[] data) throws XMLStreamException {
+		CAEXSnapshotReader reader = new CAEXSnapshotReader(data, null, null, null);
+		while (reader.next() != END_DOCUMENT) {
+		}
+		Name[] names = new Name[reader.namesCount];
+		System.arraycopy(reader.names, 0, names, 0, names.length);
+		String[] values = new String[reader.valuesCount];
+		System.arraycopy(reader.values, 0, values, 0, values.length);
+		return new SharedSnapshot(data, names, values);
+	}
+
+	public long getSourceSize() {
+		return sourceSize;
+	}
+
+	public long getSourceLastModified() {
+		return sourceLastModified;
+	}
+
+	public long getSourceChecksum() {
+		return sourceChecksum;
+	}
+
+	public String getSourcePath() {
+		return sourcePath;
+	}
+
+	private static String emptyToNull(String string) {
+		return string.isEmpty() ? null : string;
+	}
+
+	private byte get() throws XMLStreamException {
+		if (pos >= data.length)
+			throw new XMLStreamException("Truncated snapshot", getLocation());
+		return data[pos++];
+	}
+
+	private int readInt() throws XMLStreamException {
+		return (get() & 0xFF) << 24 | (get() & 0xFF) << 16 | (get() & 0xFF) << 8 | (get() & 0xFF);
+	}
+
+	private long readLong() throws XMLStreamException {
+		return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+	}
+
+	private int readVarInt() throws XMLStreamException {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = get();
+			result |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return result;
+		}
+		throw new XMLStreamException("Corrupt snapshot", getLocation());
+	}
+
+	private String readString() throws XMLStreamException {
+		int length = readVarInt();
+		if (length < 0 || pos + length > data.length)
+			throw new XMLStreamException("Truncated snapshot", getLocation());
+		String string = new String(data, pos, length, StandardCharsets.UTF_8);
+		pos += length;
+		return string;
+	}
+
+	private void skipString() throws XMLStreamException {
+		int length = readVarInt();
+		if (length < 0 || pos + length > data.length)
+			throw new XMLStreamException("Truncated snapshot", getLocation());
+		pos += length;
+	}
+
+	private Name readName() throws XMLStreamException {
+		int index = readVarInt();
+		if (index < namesCount)
+			return names[index];
+		if (index != namesCount)
+			throw new XMLStreamException("Corrupt snapshot", getLocation());
+		if (shared) {
+			skipString();
+			return names[namesCount++];
+		}
+		if (namesCount == names.length) {
+			Name[] newNames = new Name[namesCount * 2];
+			System.arraycopy(names, 0, newNames, 0, namesCount);
+			names = newNames;
+		}
+		return names[namesCount++] = new Name(readString());
+	}
+
+	private String readValue() throws XMLStreamException {
+		int index = readVarInt();
+		if (index < valuesCount)
+			return values[index];
+		if (index != valuesCount)
+			throw new XMLStreamException("Corrupt snapshot", getLocation());
+		if (shared) {
+			skipString();
+			return values[valuesCount++];
+		}
+		if (valuesCount == values.length) {
+			String[] newValues = new String[valuesCount * 2];
+			System.arraycopy(values, 0, newValues, 0, valuesCount);
+			values = newValues;
+		}
+		return values[valuesCount++] = readString();
+	}
+
+	@Override
+	public int next() throws XMLStreamException {
+		if (eventType == END_DOCUMENT)
+			throw new XMLStreamException("No more events", getLocation());
+
+		switch (get()) {
+		case EVENT_START_ELEMENT:
+			line = readVarInt();
+			column = readVarInt();
+			element = readName();
+			attributeCount = readVarInt();
+			if (attributeCount > attributeNames.length) {
+				attributeNames = new Name[attributeCount];
+				attributeValues = new String[attributeCount];
+			}
+			for (int i = 0; i < attributeCount; i++) {
+				attributeNames[i] = readName();
+				attributeValues[i] = readValue();
+			}
+			if (depth == elementStack.length) {
+				Name[] newElementStack = new Name[depth * 2];
+				System.arraycopy(elementStack, 0, newElementStack, 0, depth);
+				elementStack = newElementStack;
+			}
+			elementStack[depth++] = element;
+			return eventType = START_ELEMENT;
+		case EVENT_END_ELEMENT:
+			if (depth == 0)
+				throw new XMLStreamException("Corrupt snapshot", getLocation());
+			element = elementStack[--depth];
+			return eventType = END_ELEMENT;
+		case EVENT_CHARACTERS:
+			text = readValue();
+			return eventType = CHARACTERS;
+		case EVENT_END_DOCUMENT:
+			if (depth != 0)
+				throw new XMLStreamException("Corrupt snapshot", getLocation());
+			return eventType = END_DOCUMENT;
+		default:
+			throw new XMLStreamException("Corrupt snapshot", getLocation());
+		}
+	}
+
+	@Override
+	public String getElementText() throws XMLStreamException {
+		require(START_ELEMENT, null, null);
+		String elementText = "";
+		switch (next()) {
+		case CHARACTERS:
+			elementText = text;
+			if (next() != END_ELEMENT)
+				throw new XMLStreamException("Element text content may not contain START_ELEMENT", getLocation());
+			return elementText;
+		case END_ELEMENT:
+			return elementText;
+		default:
+			throw new XMLStreamException("Element text content may not contain START_ELEMENT", getLocation());
+		}
+	}
+
+	@Override
+	public int nextTag() throws XMLStreamException {
+		int event = next();
+		// only the white space content of elements without children is kept
+		if (event == CHARACTERS && isWhiteSpace())
+			event = next();
+		if (event == CHARACTERS)
+			throw new XMLStreamException("Found text while looking for a start or end tag", getLocation());
+		if (event != START_ELEMENT && event != END_ELEMENT)
+			throw new XMLStreamException("Expected a start or end tag", getLocation());
+		return event;
+	}
+
+	@Override
+	public void require(int type, String namespaceURI, String localName) throws XMLStreamException {
+		if (eventType != type)
+			throw new XMLStreamException("Expected event " + type + " but was " + eventType, getLocation());
+		if (localName != null && !localName.equals(getLocalName()))
+			throw new XMLStreamException("Expected element " + localName + " but was " + getLocalName(), getLocation());
+	}
+
+	@Override
+	public boolean hasNext() throws XMLStreamException {
+		return eventType != END_DOCUMENT;
+	}
+
+	@Override
+	public void close() throws XMLStreamException {
+	}
+
+	@Override
+	public int getEventType() {
+		return eventType;
+	}
+
+	@Override
+	public boolean isStartElement() {
+		return eventType == START_ELEMENT;
+	}
+
+	@Override
+	public boolean isEndElement() {
+		return eventType == END_ELEMENT;
+	}
+
+	@Override
+	public boolean isCharacters() {
+		return eventType == CHARACTERS;
+	}
+
+	@Override
+	public boolean isWhiteSpace() {
+		if (eventType != CHARACTERS)
+			return false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r')
+				return false;
+		}
+		return true;
+	}
+
+	private void requireElement() {
+		if (eventType != START_ELEMENT && eventType != END_ELEMENT)
+			throw new IllegalStateException("Not on a start or end tag");
+	}
+
+	private void requireStartElement() {
+		if (eventType != START_ELEMENT)
+			throw new IllegalStateException("Not on a start tag");
+	}
+
+	@Override
+	public String getLocalName() {
+		requireElement();
+		return element.localName;
+	}
+
+	@Override
+	public QName getName() {
+		requireElement();
+		return new QName(null, element.localName, element.prefix);
+	}
+
+	@Override
+	public boolean hasName() {
+		return eventType == START_ELEMENT || eventType == END_ELEMENT;
+	}
+
+	@Override
+	public String getPrefix() {
+		requireElement();
+		return element.prefix;
+	}
+
+	@Override
+	public String getNamespaceURI() {
+		return null;
+	}
+
+	@Override
+	public String getNamespaceURI(String prefix) {
+		return null;
+	}
+
+	@Override
+	public NamespaceContext getNamespaceContext() {
+		throw new UnsupportedOperationException("Namespaces are not supported");
+	}
+
+	@Override
+	public int getNamespaceCount() {
+		return 0;
+	}
+
+	@Override
+	public String getNamespacePrefix(int index) {
+		throw new IndexOutOfBoundsException();
+	}
+
+	@Override
+	public String getNamespaceURI(int index) {
+		throw new IndexOutOfBoundsException();
+	}
+
+	@Override
+	public int getAttributeCount() {
+		requireStartElement();
+		return attributeCount;
+	}
+
+	@Override
+	public String getAttributeValue(String namespaceURI, String localName) {
+		requireStartElement();
+		for (int i = 0; i < attributeCount; i++) {
+			if (attributeNames[i].localName.equals(localName))
+				return attributeValues[i];
+		}
+		return null;
+	}
+
+	@Override
+	public String getAttributeValue(int index) {
+		getAttributeNameEntry(index);
+		return attributeValues[index];
+	}
+
+	@Override
+	public QName getAttributeName(int index) {
+		Name name = getAttributeNameEntry(index);
+		return new QName(null, name.localName, name.prefix);
+	}
+
+	@Override
+	public String getAttributeNamespace(int index) {
+		getAttributeNameEntry(index);
+		return null;
+	}
+
+	@Override
+	public String getAttributeLocalName(int index) {
+		return getAttributeNameEntry(index).localName;
+	}
+
+	@Override
+	public String getAttributePrefix(int index) {
+		return getAttributeNameEntry(index).prefix;
+	}
+
+	private Name getAttributeNameEntry(int index) {
+		requireStartElement();
+		if (index >= attributeCount)
+			throw new IndexOutOfBoundsException();
+		return attributeNames[index];
+	}
+
+	@Override
+	public String getAttributeType(int index) {
+		getAttributeNameEntry(index);
+		return "CDATA";
+	}
+
+	@Override
+	public boolean isAttributeSpecified(int index) {
+		getAttributeNameEntry(index);
+		return true;
+	}
+
+	@Override
+	public boolean hasText() {
+		return eventType == CHARACTERS;
+	}
+
+	@Override
+	public String getText() {
+		if (!hasText())
+			throw new IllegalStateException("Event has no text");
+		return text;
+	}
+
+	@Override
+	public char[] getTextCharacters() {
+		return getText().toCharArray();
+	}
+
+	@Override
+	public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length) throws XMLStreamException {
+		String text = getText();
+		int count = Math.min(length, text.length() - sourceStart);
+		if (count <= 0)
+			return 0;
+		text.getChars(sourceStart, sourceStart + count, target, targetStart);
+		return count;
+	}
+
+	@Override
+	public int getTextStart() {
+		return 0;
+	}
+
+	@Override
+	public int getTextLength() {
+		return getText().length();
+	}
+
+	@Override
+	public String getPITarget() {
+		return null;
+	}
+
+	@Override
+	public String getPIData() {
+		return null;
+	}
+
+	@Override
+	public Location getLocation() {
+		return new LocationImpl();
+	}
+
+	@Override
+	public String getEncoding() {
+		return encoding;
+	}
+
+	@Override
+	public String getVersion() {
+		return version;
+	}
+
+	@Override
+	public boolean isStandalone() {
+		return false;
+	}
+
+	@Override
+	public boolean standaloneSet() {
+		return false;
+	}
+
+	@Override
+	public String getCharacterEncodingScheme() {
+		return encoding;
+	}
+
+	@Override
+	public Object getProperty(String name) {
+		return null;
+	}
+}
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * Passes the events of a reader through and records them in the format read by {@link CAEXSnapshotReader}. When the root element is closed,
+ * {@link #recorded()} is called and the snapshot can be written. A document not read up to the end of its root element is never complete.
+ */
+public class CAEXSnapshotRecorder extends StreamReaderDelegate {
+
+	private final String version;
+	private final String encoding;
+
+	private final ByteArrayOutputStream events = new ByteArrayOutputStream(8192);
+	private final Map<String, Integer> names = new HashMap<String, Integer>();
+	private final Map<String, Integer> values = new HashMap<String, Integer>();
+	private final StringBuilder text = new StringBuilder();
+	private boolean leaf;
+	private int depth;
+	private boolean finished;
+
+	public CAEXSnapshotRecorder(XMLStreamReader reader) {
+		super(reader);
+		this.version = reader.getVersion();
+		this.encoding = reader.getCharacterEncodingScheme();
+	}
+
+	/**
+	 * Returns the CRC-32 of the file content.
+	 */
+	public static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[65536];
+		InputStream inputStream = new FileInputStream(file);
+		try {
+			int count;
+			while ((count = inputStream.read(buffer)) > 0)
+				crc.update(buffer, 0, count);
+		} finally {
+			inputStream.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Stores a new modification time of the source file in the snapshot, after its content was found to be unchanged.
+	 */
+	public static void updateSourceLastModified(File snapshot, long sourceLastModified) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(snapshot, "rw");
+		try {
+			file.seek(CAEXSnapshotReader.LAST_MODIFIED_OFFSET);
+			file.writeLong(sourceLastModified);
+		} finally {
+			file.close();
+		}
+	}
+
+	@Override
+	public int next() throws XMLStreamException {
+		int event = super.next();
+		if (finished)
+			return event;
+
+		switch (event) {
+		case START_ELEMENT:
+			writeText(false);
+			events.write(CAEXSnapshotReader.EVENT_START_ELEMENT);
+			writeVarInt(getLocation().getLineNumber());
+			writeVarInt(getLocation().getColumnNumber());
+			writeName(getPrefix(), getLocalName());
+			int attributeCount = getAttributeCount();
+			writeVarInt(attributeCount);
+			for (int i = 0; i < attributeCount; i++) {
+				writeName(getAttributePrefix(i), getAttributeLocalName(i));
+				writeValue(getAttributeValue(i));
+			}
+			leaf = true;
+			depth++;
+			break;
+		case END_ELEMENT:
+			writeText(leaf);
+			events.write(CAEXSnapshotReader.EVENT_END_ELEMENT);
+			leaf = false;
+			if (--depth == 0)
+				finish();
+			break;
+		case CHARACTERS:
+		case CDATA:
+		case SPACE:
+			text.append(getText());
+			break;
+		case END_DOCUMENT:
+			finish();
+			break;
+		default:
+			break;
+		}
+		return event;
+	}
+
+	// white space between tags is dropped, within an element without children it is the element text
+	private void writeText(boolean keepWhiteSpace) {
+		if (text.length() == 0)
+			return;
+		String string = text.toString();
+		text.setLength(0);
+		if (!keepWhiteSpace && isWhiteSpace(string))
+			return;
+		events.write(CAEXSnapshotReader.EVENT_CHARACTERS);
+		writeValue(string);
+	}
+
+	private static boolean isWhiteSpace(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r')
+				return false;
+		}
+		return true;
+	}
+
+	private void writeName(String prefix, String localName) {
+		write(names, prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName);
+	}
+
+	private void writeValue(String value) {
+		write(values, value);
+	}
+
+	private void write(Map<String, Integer> table, String string) {
+		Integer index = table.get(string);
+		if (index != null) {
+			writeVarInt(index);
+			return;
+		}
+		writeVarInt(table.size());
+		table.put(string, table.size());
+		writeString(string);
+	}
+
+	private void writeString(String string) {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		events.write(bytes, 0, bytes.length);
+	}
+
+	private void writeVarInt(int value) {
+		while ((value & ~0x7F) != 0) {
+			events.write(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		events.write(value);
+	}
+
+	@Override
+	public String getElementText() throws XMLStreamException {
+		require(START_ELEMENT, null, null);
+		StringBuilder content = new StringBuilder();
+		while (true) {
+			switch (next()) {
+			case CHARACTERS:
+			case CDATA:
+			case SPACE:
+				content.append(getText());
+				break;
+			case COMMENT:
+			case PROCESSING_INSTRUCTION:
+				break;
+			case END_ELEMENT:
+				return content.toString();
+			case START_ELEMENT:
+				throw new XMLStreamException("Element text content may not contain START_ELEMENT", getLocation());
+			default:
+				throw new XMLStreamException("Unexpected end of document when reading element text content", getLocation());
+			}
+		}
+	}
+
+	@Override
+	public int nextTag() throws XMLStreamException {
+		while (true) {
+			int event = next();
+			switch (event) {
+			case START_ELEMENT:
+			case END_ELEMENT:
+				return event;
+			case CHARACTERS:
+			case CDATA:
+			case SPACE:
+				if (!isWhiteSpace())
+					throw new XMLStreamException("Found text while looking for a start or end tag", getLocation());
+				break;
+			case COMMENT:
+			case PROCESSING_INSTRUCTION:
+				break;
+			default:
+				throw new XMLStreamException("Expected a start or end tag", getLocation());
+			}
+		}
+	}
+
+	private void finish() {
+		finished = true;
+		events.write(CAEXSnapshotReader.EVENT_END_DOCUMENT);
+		recorded();
+	}
+
+	/**
+	 * Called once the root element is closed.
+	 */
+	protected void recorded() {
+	}
+
+	/**
+	 * Returns whether the recorded document contains an element of the given name.
+	 */
+	public boolean containsElement(String name) {
+		return names.containsKey(name);
+	}
+
+	/**
+	 * Writes the complete snapshot, the given size, modification time and checksum identify the content it was recorded from.
+	 */
+	public void writeTo(OutputStream outputStream, String sourcePath, long sourceSize, long sourceLastModified, long sourceChecksum) throws IOException {
+		if (!finished)
+			throw new IllegalStateException("Document not read completely");
+		DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+		dataOutputStream.writeInt(CAEXSnapshotReader.MAGIC);
+		dataOutputStream.writeInt(CAEXSnapshotReader.VERSION);
+		dataOutputStream.writeLong(sourceSize);
+		dataOutputStream.writeLong(sourceLastModified);
+		dataOutputStream.writeLong(sourceChecksum);
+		writeHeaderString(dataOutputStream, sourcePath);
+		writeHeaderString(dataOutputStream, version);
+		writeHeaderString(dataOutputStream, encoding);
+		events.writeTo(dataOutputStream);
+		dataOutputStream.flush();
+	}
+
+	private void writeHeaderString(DataOutputStream outputStream, String string) throws IOException {
+		byte[] bytes = (string == null ? "" : string).getBytes(StandardCharsets.UTF_8);
+		int length = bytes.length;
+		while ((length & ~0x7F) != 0) {
+			outputStream.write(length & 0x7F | 0x80);
+			length >>>= 7;
+		}
+		outputStream.write(length);
+		outputStream.write(bytes);
+	}
+}
@@ -0,0 +1,501 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a UTF-8 encoded document directly into a byte buffer, which is written to the output stream whenever it is full. Element and attribute
+ * names are encoded once per virtual machine, ASCII text is escaped and copied byte by byte. The writer is not namespace aware: prefixes are
+ * written as part of the names and namespace URIs are ignored, the declared prefixes are only known to the {@link #getNamespaceContext()
+ * namespace context}.
+ * <p>
+ * The output is the same as the one of the StAX writer of the JDK, including its handling of surrogates: a surrogate is combined with whatever
+ * character follows, and one left at the end is dropped.
+ */
+public class CAEXStreamWriter implements XMLStreamWriter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	// room for the longest sequence written for a single character
+	private static final int CHARACTER_RESERVE = 16;
+	private static final int MAX_CACHED_NAMES = 1024;
+
+	private static final ConcurrentMap<String, byte[]> names = new ConcurrentHashMap<String, byte[]>();
+
+	private static final byte[] LT = ascii("&lt;");
+	private static final byte[] GT = ascii("&gt;");
+	private static final byte[] AMP = ascii("&amp;");
+	private static final byte[] QUOT = ascii("&quot;");
+	private static final byte[] HEX_DIGITS = ascii("0123456789abcdef");
+
+	private final OutputStream outputStream;
+	private final CAEXNamespaceContext namespaceContext = new CAEXNamespaceContext();
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int pos;
+
+	private byte[][] elementStack = new byte[16][];
+	private int depth;
+	private boolean startTagOpen;
+	private boolean emptyElement;
+	private int surrogate;
+
+	public CAEXStreamWriter(OutputStream outputStream) {
+		this.outputStream = outputStream;
+	}
+
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static byte[] getName(String name) {
+		byte[] bytes = names.get(name);
+		if (bytes != null)
+			return bytes;
+		bytes = name.getBytes(StandardCharsets.UTF_8);
+		if (names.size() < MAX_CACHED_NAMES)
+			names.putIfAbsent(name, bytes);
+		return bytes;
+	}
+
+	@Override
+	public void writeStartDocument() throws XMLStreamException {
+		write("<?xml version=\"1.0\" ?>");
+	}
+
+	@Override
+	public void writeStartDocument(String version) throws XMLStreamException {
+		write("<?xml version=\"");
+		write(version);
+		write("\"?>");
+	}
+
+	@Override
+	public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+		write("<?xml version=\"");
+		write(version);
+		write("\" encoding=\"");
+		write(encoding);
+		write("\"?>");
+	}
+
+	@Override
+	public void writeStartElement(String localName) throws XMLStreamException {
+		closeStartTag();
+		byte[] name = getName(localName);
+		if (depth == elementStack.length) {
+			byte[][] stack = new byte[2 * depth][];
+			System.arraycopy(elementStack, 0, stack, 0, depth);
+			elementStack = stack;
+		}
+		elementStack[depth++] = name;
+		writeByte('<');
+		write(name);
+		startTagOpen = true;
+	}
+
+	@Override
+	public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+		writeStartElement(localName);
+	}
+
+	@Override
+	public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+		writeStartElement(prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName);
+	}
+
+	@Override
+	public void writeEmptyElement(String localName) throws XMLStreamException {
+		closeStartTag();
+		writeByte('<');
+		write(getName(localName));
+		startTagOpen = true;
+		emptyElement = true;
+	}
+
+	@Override
+	public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+		writeEmptyElement(localName);
+	}
+
+	@Override
+	public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+		writeEmptyElement(prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName);
+	}
+
+	@Override
+	public void writeEndElement() throws XMLStreamException {
+		closeStartTag();
+		if (depth == 0)
+			throw new XMLStreamException("No element to end");
+		byte[] name = elementStack[--depth];
+		elementStack[depth] = null;
+		writeByte('<');
+		writeByte('/');
+		write(name);
+		writeByte('>');
+	}
+
+	@Override
+	public void writeEndDocument() throws XMLStreamException {
+		while (depth > 0)
+			writeEndElement();
+		closeStartTag();
+	}
+
+	@Override
+	public void writeAttribute(String localName, String value) throws XMLStreamException {
+		if (!startTagOpen)
+			throw new XMLStreamException("Attribute not associated with any element");
+		writeByte(' ');
+		write(getName(localName));
+		writeByte('=');
+		writeByte('"');
+		writeEscaped(value, true);
+		writeByte('"');
+	}
+
+	@Override
+	public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+		writeAttribute(prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName, value);
+	}
+
+	@Override
+	public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+		writeAttribute(localName, value);
+	}
+
+	/**
+	 * Writes the id in braces as CAEX does, without creating a string for it.
+	 */
+	public void writeAttribute(String localName, UUID id) throws XMLStreamException {
+		if (!startTagOpen)
+			throw new XMLStreamException("Attribute not associated with any element");
+		writeByte(' ');
+		write(getName(localName));
+		writeByte('=');
+		writeByte('"');
+		writeByte('{');
+		ensureCapacity(36);
+		long mostSignificantBits = id.getMostSignificantBits();
+		long leastSignificantBits = id.getLeastSignificantBits();
+		writeHex(mostSignificantBits >>> 32, 8);
+		buffer[pos++] = '-';
+		writeHex(mostSignificantBits >>> 16, 4);
+		buffer[pos++] = '-';
+		writeHex(mostSignificantBits, 4);
+		buffer[pos++] = '-';
+		writeHex(leastSignificantBits >>> 48, 4);
+		buffer[pos++] = '-';
+		writeHex(leastSignificantBits, 12);
+		writeByte('}');
+		writeByte('"');
+	}
+
+	private void writeHex(long value, int digits) {
+		for (int i = digits - 1; i >= 0; i--) {
+			buffer[pos + i] = HEX_DIGITS[(int) (value & 0xF)];
+			value >>>= 4;
+		}
+		pos += digits;
+	}
+
+	@Override
+	public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+		if (prefix == null || prefix.isEmpty() || "xmlns".equals(prefix)) {
+			writeDefaultNamespace(namespaceURI);
+		} else {
+			writeAttribute("xmlns:" + prefix, namespaceURI);
+			namespaceContext.declare(prefix, namespaceURI);
+		}
+	}
+
+	@Override
+	public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+		writeAttribute("xmlns", namespaceURI);
+		namespaceContext.declare("", namespaceURI);
+	}
+
+	@Override
+	public void writeComment(String data) throws XMLStreamException {
+		closeStartTag();
+		write("<!--");
+		if (data != null)
+			write(data);
+		write("-->");
+	}
+
+	@Override
+	public void writeProcessingInstruction(String target) throws XMLStreamException {
+		closeStartTag();
+		write("<?");
+		write(target);
+		write("?>");
+	}
+
+	@Override
+	public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+		closeStartTag();
+		write("<?");
+		write(target);
+		writeByte(' ');
+		write(data);
+		write("?>");
+	}
+
+	@Override
+	public void writeCData(String data) throws XMLStreamException {
+		closeStartTag();
+		write("<![CDATA[");
+		write(data);
+		write("]]>");
+	}
+
+	@Override
+	public void writeDTD(String dtd) throws XMLStreamException {
+		write(dtd);
+	}
+
+	@Override
+	public void writeEntityRef(String name) throws XMLStreamException {
+		closeStartTag();
+		writeByte('&');
+		write(name);
+		writeByte(';');
+	}
+
+	@Override
+	public void writeCharacters(String text) throws XMLStreamException {
+		closeStartTag();
+		// like the JDK writer, which writes nothing for null
+		if (text != null)
+			writeEscaped(text, false);
+	}
+
+	@Override
+	public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+		closeStartTag();
+		int end = start + len;
+		for (int i = start; i < end; i++) {
+			if (pos > BUFFER_SIZE - CHARACTER_RESERVE)
+				flushBuffer();
+			writeEscaped(text[i], false);
+		}
+	}
+
+	private void writeEscaped(String text, boolean attribute) throws XMLStreamException {
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			if (pos > BUFFER_SIZE - CHARACTER_RESERVE)
+				flushBuffer();
+			writeEscaped(text.charAt(i), attribute);
+		}
+	}
+
+	// the caller has made room for the character
+	private void writeEscaped(char c, boolean attribute) {
+		if (c < 0x80 && surrogate == 0) {
+			switch (c) {
+			case '<':
+				writeReserved(LT);
+				return;
+			case '>':
+				writeReserved(GT);
+				return;
+			case '&':
+				writeReserved(AMP);
+				return;
+			case '"':
+				if (attribute) {
+					writeReserved(QUOT);
+					return;
+				}
+				break;
+			}
+			buffer[pos++] = (byte) c;
+			return;
+		}
+		switch (c) {
+		case '<':
+			encode('&');
+			encode('l');
+			encode('t');
+			encode(';');
+			return;
+		case '>':
+			encode('&');
+			encode('g');
+			encode('t');
+			encode(';');
+			return;
+		case '&':
+			encode('&');
+			encode('a');
+			encode('m');
+			encode('p');
+			encode(';');
+			return;
+		case '"':
+			if (attribute) {
+				encode('&');
+				encode('q');
+				encode('u');
+				encode('o');
+				encode('t');
+				encode(';');
+				return;
+			}
+			break;
+		}
+		encode(c);
+	}
+
+	private void writeReserved(byte[] bytes) {
+		System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+		pos += bytes.length;
+	}
+
+	// encodes like the UTF-8 writer of the JDK, which pairs a surrogate with the next character without checking it
+	private void encode(int c) {
+		if (surrogate != 0) {
+			int codePoint = (((surrogate & 0x3FF) << 10) | (c & 0x3FF)) + 0x10000;
+			buffer[pos++] = (byte) (0xF0 | (codePoint >> 18));
+			buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+			buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+			buffer[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+			surrogate = 0;
+		} else if (c < 0x80) {
+			buffer[pos++] = (byte) c;
+		} else if (c < 0x800) {
+			buffer[pos++] = (byte) (0xC0 | (c >> 6));
+			buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+		} else if (Character.isSurrogate((char) c)) {
+			surrogate = c;
+		} else {
+			buffer[pos++] = (byte) (0xE0 | (c >> 12));
+			buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+		}
+	}
+
+	private void closeStartTag() throws XMLStreamException {
+		if (!startTagOpen)
+			return;
+		if (emptyElement)
+			writeByte('/');
+		writeByte('>');
+		startTagOpen = false;
+		emptyElement = false;
+	}
+
+	// markup and unescaped strings
+	private void write(String text) throws XMLStreamException {
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			if (pos > BUFFER_SIZE - CHARACTER_RESERVE)
+				flushBuffer();
+			encode(text.charAt(i));
+		}
+	}
+
+	private void write(byte[] bytes) throws XMLStreamException {
+		int offset = 0;
+		if (surrogate != 0) {
+			ensureCapacity(CHARACTER_RESERVE);
+			encode(bytes[0]);
+			offset = 1;
+		}
+		if (bytes.length - offset > BUFFER_SIZE - pos) {
+			flushBuffer();
+			if (bytes.length - offset > BUFFER_SIZE) {
+				writeToStream(bytes, offset, bytes.length - offset);
+				return;
+			}
+		}
+		System.arraycopy(bytes, offset, buffer, pos, bytes.length - offset);
+		pos += bytes.length - offset;
+	}
+
+	private void writeByte(char c) throws XMLStreamException {
+		ensureCapacity(CHARACTER_RESERVE);
+		encode(c);
+	}
+
+	private void ensureCapacity(int count) throws XMLStreamException {
+		if (pos > BUFFER_SIZE - count)
+			flushBuffer();
+	}
+
+	private void flushBuffer() throws XMLStreamException {
+		writeToStream(buffer, 0, pos);
+		pos = 0;
+	}
+
+	private void writeToStream(byte[] bytes, int offset, int length) throws XMLStreamException {
+		try {
+			outputStream.write(bytes, offset, length);
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void flush() throws XMLStreamException {
+		flushBuffer();
+		try {
+			outputStream.flush();
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	/**
+	 * Writes the buffer to the output stream, which is not closed.
+	 */
+	@Override
+	public void close() throws XMLStreamException {
+		flush();
+	}
+
+	@Override
+	public String getPrefix(String uri) throws XMLStreamException {
+		return namespaceContext.getPrefix(uri);
+	}
+
+	@Override
+	public void setPrefix(String prefix, String uri) throws XMLStreamException {
+		namespaceContext.declare(prefix, uri);
+	}
+
+	@Override
+	public void setDefaultNamespace(String uri) throws XMLStreamException {
+		namespaceContext.declare("", uri);
+	}
+
+	/**
+	 * Ignored, the prefixes are written as part of the names and need no context.
+	 */
+	@Override
+	public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+	}
+
+	@Override
+	public NamespaceContext getNamespaceContext() {
+		return namespaceContext;
+	}
+
+	@Override
+	public Object getProperty(String name) throws IllegalArgumentException {
+		throw new IllegalArgumentException("Property " + name + " is not supported");
+	}
+}
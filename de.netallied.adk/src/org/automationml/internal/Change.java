@@ -19,6 +19,14 @@ public abstract class Change {
 	 */
 	public abstract boolean mergeInto(Change change);
 
+	/**
+	 * Returns whether the change only alters how its own element is written. Renaming, moving or deleting an element also alters how other
+	 * elements refer to it, which are written again then, see {@link org.automationml.aml.AMLSession#setIncrementalSaving(boolean)}.
+	 */
+	public boolean isLocal() {
+		return false;
+	}
+
 	protected abstract void notifyChangeListenersBeforeUndo();
 
 	protected abstract void notifyChangeListenersAfterUndo();
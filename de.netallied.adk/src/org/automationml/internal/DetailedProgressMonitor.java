@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal;
+
+import java.net.URL;
+
+/**
+ * {@link ProgressMonitor} told in detail what loads and saves are doing. Counts are reported in batches, as the files and parts of large files
+ * are parsed in parallel the methods are called from several threads at once.
+ * <p>
+ * The monitor is asked whether it has been canceled between the batches, a canceled load or save stops with an
+ * {@link org.automationml.aml.AMLCanceledException}.
+ */
+public interface DetailedProgressMonitor extends ProgressMonitor {
+
+	public enum Phase {
+		/** reading the files and creating the instructions */
+		PARSE,
+		/** binding the references between the files */
+		RESOLVE,
+		/** creating the elements */
+		EXECUTE,
+		/** creating the internal links and attaching lazily loaded instance hierarchies */
+		LINK,
+		/** writing a document */
+		SAVE
+	}
+
+	/**
+	 * Called before a file is read, with its size in bytes if it is known in advance, -1 otherwise.
+	 */
+	public void fileResolved(URL url, long size);
+
+	public void elementsParsed(int count);
+
+	public void instructionsExecuted(int count);
+
+	public void elementsWritten(int count);
+
+	/**
+	 * Called at the end of a load or save with the time spent in the phase. A load of lazily loaded instance hierarchies reports its phases
+	 * again.
+	 */
+	public void phaseFinished(Phase phase, long nanos);
+
+	public boolean isCanceled();
+}
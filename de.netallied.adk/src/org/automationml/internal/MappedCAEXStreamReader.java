@@ -0,0 +1,993 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Tokenizes a UTF-8 encoded document without document type declaration directly in a (memory mapped) buffer. Markup is only scanned, names are
+ * interned once per distinct name, and attribute values and text are decoded to strings only when they are asked for. The reader is not namespace
+ * aware: prefixes are kept in the names and attributes are looked up by their local name. Namespace declarations are reported as such, and are
+ * known to the {@link #getNamespaceContext() namespace context} from then on.
+ */
+public class MappedCAEXStreamReader implements XMLStreamReader {
+
+	private static class Name {
+		final byte[] bytes;
+		final int hash;
+		final String qualifiedName;
+		final String localName;
+		final String prefix;
+
+		Name(byte[] bytes, int hash, String qualifiedName) {
+			this.bytes = bytes;
+			this.hash = hash;
+			this.qualifiedName = qualifiedName.intern();
+			int index = qualifiedName.indexOf(':');
+			this.localName = index < 0 ? this.qualifiedName : qualifiedName.substring(index + 1).intern();
+			this.prefix = index < 0 ? "" : qualifiedName.substring(0, index).intern();
+		}
+	}
+
+	private class LocationImpl implements Location {
+		private final int lineNumber;
+		private final int columnNumber;
+		private final int characterOffset;
+
+		LocationImpl() {
+			lineNumber = line;
+			columnNumber = pos - lineStart + 1;
+			characterOffset = pos;
+		}
+
+		@Override
+		public int getLineNumber() {
+			return lineNumber;
+		}
+
+		@Override
+		public int getColumnNumber() {
+			return columnNumber;
+		}
+
+		@Override
+		public int getCharacterOffset() {
+			return characterOffset;
+		}
+
+		@Override
+		public String getPublicId() {
+			return null;
+		}
+
+		@Override
+		public String getSystemId() {
+			return systemId;
+		}
+	}
+
+	private final ByteBuffer buffer;
+	private final int limit;
+	private final String systemId;
+	private final String version;
+	private final String encoding;
+
+	private int pos;
+	private int line = 1;
+	private int lineStart;
+
+	private int eventType = START_DOCUMENT;
+	private Name element;
+	private boolean emptyElement;
+	private int tagStart;
+	private int tagLine;
+	private int tagLineStart;
+	private Name[] elementStack = new Name[16];
+	private int depth;
+
+	private Name[] attributeNames = new Name[8];
+	private int[] attributeValueStarts = new int[8];
+	private int[] attributeValueEnds = new int[8];
+	private int attributeCount;
+
+	private int textStart;
+	private int textEnd;
+	private boolean whiteSpace;
+	private Name piTarget;
+
+	private Name[] names = new Name[256];
+	private int namesCount;
+
+	private char[] chars = new char[256];
+	private int charsLength;
+
+	private final CAEXNamespaceContext namespaceContext = new CAEXNamespaceContext();
+	// the declarations of the current start tag
+	private String[] namespacePrefixes = new String[2];
+	private String[] namespaceURIs = new String[2];
+	private int namespaceCount;
+
+	private MappedCAEXStreamReader(ByteBuffer buffer, int pos, int limit, String systemId, String version, String encoding) {
+		this.buffer = buffer;
+		this.limit = limit;
+		this.pos = pos;
+		this.systemId = systemId;
+		this.version = version;
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Returns a reader positioned on START_DOCUMENT, or null if the document is not UTF-8 encoded or has a document type declaration.
+	 */
+	public static MappedCAEXStreamReader create(ByteBuffer buffer, String systemId) {
+		int pos = 0;
+		if (startsWith(buffer, 0, (byte) 0xEF, (byte) 0xBB, (byte) 0xBF))
+			pos = 3;
+		else if (buffer.limit() >= 2 && (buffer.get(0) == 0 || buffer.get(1) == 0 || (buffer.get(0) & 0xFE) == 0xFE))
+			return null;
+
+		String version = null;
+		String encoding = null;
+		if (startsWith(buffer, pos, "<?xml") && buffer.limit() > pos + 5 && isWhiteSpace(buffer.get(pos + 5))) {
+			int end = indexOf(buffer, pos, "?>");
+			if (end < 0)
+				return null;
+			String declaration = ascii(buffer, pos + 5, end);
+			version = pseudoAttribute(declaration, "version");
+			encoding = pseudoAttribute(declaration, "encoding");
+			if (encoding != null && !encoding.equalsIgnoreCase("UTF-8") && !encoding.equalsIgnoreCase("US-ASCII"))
+				return null;
+			pos = end + 2;
+		}
+
+		if (hasDocumentTypeDeclaration(buffer, pos))
+			return null;
+		return new MappedCAEXStreamReader(buffer, pos, buffer.limit(), systemId, version, encoding);
+	}
+
+	/**
+	 * Returns the size of the tokenized document in bytes.
+	 */
+	public int getLength() {
+		return limit;
+	}
+
+	/**
+	 * Returns the position of the last start tag in the buffer, the location of an end tag is the position after it.
+	 */
+	public int getTagStart() {
+		return tagStart;
+	}
+
+	/**
+	 * Skips the current element like reading up to its end tag and returns a reader of just this element, positioned on START_DOCUMENT. The
+	 * returned reader shares the buffer and reports the same locations, so the element can be parsed on its own, also in another thread.
+	 */
+	public MappedCAEXStreamReader splitElement() throws XMLStreamException {
+		if (eventType != START_ELEMENT)
+			throw new IllegalStateException("Not on a start element");
+		int start = tagStart;
+		int startLine = tagLine;
+		int startLineStart = tagLineStart;
+		// an empty element is not pushed
+		int endDepth = emptyElement ? depth : depth - 1;
+		while (next() != END_ELEMENT || depth != endDepth) {
+		}
+
+		MappedCAEXStreamReader reader = new MappedCAEXStreamReader(buffer, start, pos, systemId, version, encoding);
+		reader.line = startLine;
+		reader.lineStart = startLineStart;
+		return reader;
+	}
+
+	private static boolean hasDocumentTypeDeclaration(ByteBuffer buffer, int pos) {
+		while (pos < buffer.limit()) {
+			byte b = buffer.get(pos);
+			if (isWhiteSpace(b)) {
+				pos++;
+			} else if (startsWith(buffer, pos, "<!--")) {
+				pos = indexOf(buffer, pos + 4, "-->");
+				if (pos < 0)
+					return false;
+				pos += 3;
+			} else if (startsWith(buffer, pos, "<?")) {
+				pos = indexOf(buffer, pos + 2, "?>");
+				if (pos < 0)
+					return false;
+				pos += 2;
+			} else {
+				return startsWith(buffer, pos, "<!DOCTYPE");
+			}
+		}
+		return false;
+	}
+
+	private static String pseudoAttribute(String declaration, String name) {
+		int index = declaration.indexOf(name);
+		if (index < 0)
+			return null;
+		index = declaration.indexOf('=', index + name.length());
+		if (index < 0)
+			return null;
+		index++;
+		while (index < declaration.length() && declaration.charAt(index) <= ' ')
+			index++;
+		if (index == declaration.length())
+			return null;
+		char quote = declaration.charAt(index);
+		int end = declaration.indexOf(quote, index + 1);
+		if (end < 0)
+			return null;
+		return declaration.substring(index + 1, end);
+	}
+
+	private static String ascii(ByteBuffer buffer, int start, int end) {
+		StringBuilder builder = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			builder.append((char) (buffer.get(i) & 0xFF));
+		}
+		return builder.toString();
+	}
+
+	private static boolean startsWith(ByteBuffer buffer, int pos, byte... prefix) {
+		if (pos + prefix.length > buffer.limit())
+			return false;
+		for (int i = 0; i < prefix.length; i++) {
+			if (buffer.get(pos + i) != prefix[i])
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean startsWith(ByteBuffer buffer, int pos, String prefix) {
+		if (pos + prefix.length() > buffer.limit())
+			return false;
+		for (int i = 0; i < prefix.length(); i++) {
+			if (buffer.get(pos + i) != prefix.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	private static int indexOf(ByteBuffer buffer, int pos, String terminator) {
+		byte first = (byte) terminator.charAt(0);
+		for (int i = pos; i < buffer.limit(); i++) {
+			if (buffer.get(i) == first && startsWith(buffer, i, terminator))
+				return i;
+		}
+		return -1;
+	}
+
+	private static boolean isWhiteSpace(byte b) {
+		return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+	}
+
+	@Override
+	public int next() throws XMLStreamException {
+		if (eventType == END_DOCUMENT)
+			throw new XMLStreamException("No more events", getLocation());
+
+		if (emptyElement) {
+			emptyElement = false;
+			return eventType = END_ELEMENT;
+		}
+
+		if (pos >= limit) {
+			if (depth != 0)
+				throw new XMLStreamException("Unexpected end of document, element " + elementStack[depth - 1].qualifiedName + " is not closed",
+						getLocation());
+			return eventType = END_DOCUMENT;
+		}
+
+		if (buffer.get(pos) != '<') {
+			scanText();
+			// like the JDK reader, white space outside of the root element is not reported
+			if (depth == 0 && whiteSpace)
+				return next();
+			return eventType = CHARACTERS;
+		}
+
+		if (startsWith(buffer, pos, "</")) {
+			pos += 2;
+			element = readName();
+			skipWhiteSpace();
+			expect('>');
+			if (depth == 0 || elementStack[depth - 1] != element)
+				throw new XMLStreamException("Unexpected end tag " + element.qualifiedName, getLocation());
+			depth--;
+			return eventType = END_ELEMENT;
+		}
+
+		if (startsWith(buffer, pos, "<!--")) {
+			pos += 4;
+			scanTo("-->");
+			return eventType = COMMENT;
+		}
+
+		if (startsWith(buffer, pos, "<![CDATA[")) {
+			pos += 9;
+			scanTo("]]>");
+			return eventType = CDATA;
+		}
+
+		if (startsWith(buffer, pos, "<!"))
+			throw new XMLStreamException("Document type declarations are not supported", getLocation());
+
+		if (startsWith(buffer, pos, "<?")) {
+			pos += 2;
+			piTarget = readName();
+			skipWhiteSpace();
+			scanTo("?>");
+			return eventType = PROCESSING_INSTRUCTION;
+		}
+
+		tagStart = pos;
+		tagLine = line;
+		tagLineStart = lineStart;
+		pos++;
+		readStartTag();
+		return eventType = START_ELEMENT;
+	}
+
+	private void readStartTag() throws XMLStreamException {
+		element = readName();
+		attributeCount = 0;
+		namespaceCount = 0;
+		while (true) {
+			skipWhiteSpace();
+			byte b = get(pos);
+			if (b == '>') {
+				pos++;
+				break;
+			}
+			if (b == '/') {
+				pos++;
+				expect('>');
+				emptyElement = true;
+				break;
+			}
+
+			Name name = readName();
+			skipWhiteSpace();
+			expect('=');
+			skipWhiteSpace();
+			byte quote = get(pos);
+			if (quote != '"' && quote != '\'')
+				throw new XMLStreamException("Attribute value of " + name.qualifiedName + " is not quoted", getLocation());
+			int start = ++pos;
+			while (true) {
+				b = get(pos);
+				if (b == quote)
+					break;
+				if (b == '<')
+					throw new XMLStreamException("Attribute value of " + name.qualifiedName + " contains '<'", getLocation());
+				if (b == '\n') {
+					line++;
+					lineStart = pos + 1;
+				}
+				pos++;
+			}
+			// namespace declarations are no attributes
+			if (name.qualifiedName == "xmlns")
+				declareNamespace("", start, pos);
+			else if (name.prefix == "xmlns")
+				declareNamespace(name.localName, start, pos);
+			else
+				addAttribute(name, start, pos);
+			pos++;
+		}
+
+		if (!emptyElement) {
+			if (depth == elementStack.length) {
+				Name[] newElementStack = new Name[depth * 2];
+				System.arraycopy(elementStack, 0, newElementStack, 0, depth);
+				elementStack = newElementStack;
+			}
+			elementStack[depth++] = element;
+		}
+	}
+
+	private void declareNamespace(String prefix, int start, int end) throws XMLStreamException {
+		charsLength = 0;
+		decode(start, end, true, true);
+		String namespaceURI = new String(chars, 0, charsLength);
+		namespaceContext.declare(prefix, namespaceURI);
+		if (namespaceCount == namespacePrefixes.length) {
+			String[] newNamespacePrefixes = new String[namespaceCount * 2];
+			String[] newNamespaceURIs = new String[namespaceCount * 2];
+			System.arraycopy(namespacePrefixes, 0, newNamespacePrefixes, 0, namespaceCount);
+			System.arraycopy(namespaceURIs, 0, newNamespaceURIs, 0, namespaceCount);
+			namespacePrefixes = newNamespacePrefixes;
+			namespaceURIs = newNamespaceURIs;
+		}
+		namespacePrefixes[namespaceCount] = prefix;
+		namespaceURIs[namespaceCount] = namespaceURI;
+		namespaceCount++;
+	}
+
+	private void addAttribute(Name name, int start, int end) {
+		if (attributeCount == attributeNames.length) {
+			int length = attributeCount * 2;
+			Name[] newAttributeNames = new Name[length];
+			int[] newAttributeValueStarts = new int[length];
+			int[] newAttributeValueEnds = new int[length];
+			System.arraycopy(attributeNames, 0, newAttributeNames, 0, attributeCount);
+			System.arraycopy(attributeValueStarts, 0, newAttributeValueStarts, 0, attributeCount);
+			System.arraycopy(attributeValueEnds, 0, newAttributeValueEnds, 0, attributeCount);
+			attributeNames = newAttributeNames;
+			attributeValueStarts = newAttributeValueStarts;
+			attributeValueEnds = newAttributeValueEnds;
+		}
+		attributeNames[attributeCount] = name;
+		attributeValueStarts[attributeCount] = start;
+		attributeValueEnds[attributeCount] = end;
+		attributeCount++;
+	}
+
+	private void scanText() {
+		textStart = pos;
+		whiteSpace = true;
+		while (pos < limit) {
+			byte b = buffer.get(pos);
+			if (b == '<')
+				break;
+			if (b == '\n') {
+				line++;
+				lineStart = pos + 1;
+			} else if (b != ' ' && b != '\t' && b != '\r') {
+				whiteSpace = false;
+			}
+			pos++;
+		}
+		textEnd = pos;
+	}
+
+	private void scanTo(String terminator) throws XMLStreamException {
+		textStart = pos;
+		byte first = (byte) terminator.charAt(0);
+		while (true) {
+			byte b = get(pos);
+			if (b == first && startsWith(buffer, pos, terminator))
+				break;
+			if (b == '\n') {
+				line++;
+				lineStart = pos + 1;
+			}
+			pos++;
+		}
+		textEnd = pos;
+		pos += terminator.length();
+	}
+
+	private byte get(int index) throws XMLStreamException {
+		if (index >= limit)
+			throw new XMLStreamException("Unexpected end of document", getLocation());
+		return buffer.get(index);
+	}
+
+	private void expect(char c) throws XMLStreamException {
+		if (get(pos) != c)
+			throw new XMLStreamException("Expected '" + c + "'", getLocation());
+		pos++;
+	}
+
+	private void skipWhiteSpace() {
+		while (pos < limit) {
+			byte b = buffer.get(pos);
+			if (b == '\n') {
+				line++;
+				lineStart = pos + 1;
+			} else if (b != ' ' && b != '\t' && b != '\r') {
+				return;
+			}
+			pos++;
+		}
+	}
+
+	private Name readName() throws XMLStreamException {
+		int start = pos;
+		int hash = 0;
+		while (pos < limit) {
+			byte b = buffer.get(pos);
+			if (b <= ' ' && b >= 0 || b == '>' || b == '/' || b == '=' || b == '?' || b == '<' || b == '"' || b == '\'')
+				break;
+			hash = 31 * hash + b;
+			pos++;
+		}
+		if (pos == start)
+			throw new XMLStreamException("Name expected", getLocation());
+		return getName(start, pos, hash);
+	}
+
+	private Name getName(int start, int end, int hash) {
+		int mask = names.length - 1;
+		int index = hash & mask;
+		for (Name name = names[index]; name != null; name = names[index = (index + 1) & mask]) {
+			if (name.hash == hash && equals(name.bytes, start, end))
+				return name;
+		}
+
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		Name name = new Name(bytes, hash, new String(bytes, StandardCharsets.UTF_8));
+		names[index] = name;
+		if (++namesCount * 2 > names.length)
+			rehashNames();
+		return name;
+	}
+
+	private boolean equals(byte[] bytes, int start, int end) {
+		if (bytes.length != end - start)
+			return false;
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] != buffer.get(start + i))
+				return false;
+		}
+		return true;
+	}
+
+	private void rehashNames() {
+		Name[] oldNames = names;
+		names = new Name[oldNames.length * 2];
+		int mask = names.length - 1;
+		for (Name name : oldNames) {
+			if (name == null)
+				continue;
+			int index = name.hash & mask;
+			while (names[index] != null)
+				index = (index + 1) & mask;
+			names[index] = name;
+		}
+	}
+
+	private void append(char c) {
+		if (charsLength == chars.length) {
+			char[] newChars = new char[chars.length * 2];
+			System.arraycopy(chars, 0, newChars, 0, charsLength);
+			chars = newChars;
+		}
+		chars[charsLength++] = c;
+	}
+
+	private void appendCodePoint(int codePoint) {
+		if (Character.isBmpCodePoint(codePoint)) {
+			append((char) codePoint);
+		} else {
+			append(Character.highSurrogate(codePoint));
+			append(Character.lowSurrogate(codePoint));
+		}
+	}
+
+	private void decodeUTF8(int start, int end) {
+		for (int i = start; i < end;) {
+			i = decodeUTF8(i, end, buffer.get(i));
+		}
+	}
+
+	// appends the character starting at the given index, malformed sequences are replaced
+	private int decodeUTF8(int index, int end, byte b) {
+		if (b >= 0) {
+			append((char) b);
+			return index + 1;
+		}
+		int length;
+		int codePoint;
+		if ((b & 0xE0) == 0xC0) {
+			length = 1;
+			codePoint = b & 0x1F;
+		} else if ((b & 0xF0) == 0xE0) {
+			length = 2;
+			codePoint = b & 0x0F;
+		} else if ((b & 0xF8) == 0xF0) {
+			length = 3;
+			codePoint = b & 0x07;
+		} else {
+			append('\uFFFD');
+			return index + 1;
+		}
+		if (index + length >= end) {
+			append('\uFFFD');
+			return end;
+		}
+		for (int i = 1; i <= length; i++) {
+			byte continuation = buffer.get(index + i);
+			if ((continuation & 0xC0) != 0x80) {
+				append('\uFFFD');
+				return index + i;
+			}
+			codePoint = codePoint << 6 | continuation & 0x3F;
+		}
+		appendCodePoint(codePoint);
+		return index + length + 1;
+	}
+
+	// appends text with normalized line ends, attribute values also get their white space normalized
+	private void decode(int start, int end, boolean references, boolean attribute) throws XMLStreamException {
+		for (int i = start; i < end;) {
+			byte b = buffer.get(i);
+			if (b == '&' && references) {
+				i = decodeReference(i, end);
+			} else if (b == '\r') {
+				if (i + 1 < end && buffer.get(i + 1) == '\n')
+					i++;
+				append(attribute ? ' ' : '\n');
+				i++;
+			} else if (attribute && (b == '\n' || b == '\t')) {
+				append(' ');
+				i++;
+			} else {
+				i = decodeUTF8(i, end, b);
+			}
+		}
+	}
+
+	private int decodeReference(int start, int end) throws XMLStreamException {
+		int semicolon = start + 1;
+		while (semicolon < end && buffer.get(semicolon) != ';')
+			semicolon++;
+		if (semicolon == end)
+			throw new XMLStreamException("Unterminated entity reference", getLocation());
+
+		String name = ascii(buffer, start + 1, semicolon);
+		if (name.equals("lt"))
+			append('<');
+		else if (name.equals("gt"))
+			append('>');
+		else if (name.equals("amp"))
+			append('&');
+		else if (name.equals("apos"))
+			append('\'');
+		else if (name.equals("quot"))
+			append('"');
+		else if (name.startsWith("#")) {
+			try {
+				if (name.startsWith("#x"))
+					appendCodePoint(Integer.parseInt(name.substring(2), 16));
+				else
+					appendCodePoint(Integer.parseInt(name.substring(1)));
+			} catch (IllegalArgumentException e) {
+				throw new XMLStreamException("Invalid character reference &" + name + ";", getLocation());
+			}
+		} else
+			throw new XMLStreamException("Undeclared entity &" + name + ";", getLocation());
+		return semicolon + 1;
+	}
+
+	private String decodeText() throws XMLStreamException {
+		charsLength = 0;
+		decode(textStart, textEnd, eventType == CHARACTERS, false);
+		return new String(chars, 0, charsLength);
+	}
+
+	@Override
+	public String getElementText() throws XMLStreamException {
+		require(START_ELEMENT, null, null);
+		charsLength = 0;
+		while (true) {
+			switch (next()) {
+			case CHARACTERS:
+				decode(textStart, textEnd, true, false);
+				break;
+			case CDATA:
+				decode(textStart, textEnd, false, false);
+				break;
+			case COMMENT:
+			case PROCESSING_INSTRUCTION:
+				break;
+			case END_ELEMENT:
+				return new String(chars, 0, charsLength);
+			case START_ELEMENT:
+				throw new XMLStreamException("Element text content may not contain START_ELEMENT", getLocation());
+			default:
+				throw new XMLStreamException("Unexpected end of document when reading element text content", getLocation());
+			}
+		}
+	}
+
+	@Override
+	public int nextTag() throws XMLStreamException {
+		while (true) {
+			int event = next();
+			switch (event) {
+			case START_ELEMENT:
+			case END_ELEMENT:
+				return event;
+			case CHARACTERS:
+				if (!whiteSpace)
+					throw new XMLStreamException("Found text while looking for a start or end tag", getLocation());
+				break;
+			case COMMENT:
+			case PROCESSING_INSTRUCTION:
+				break;
+			default:
+				throw new XMLStreamException("Expected a start or end tag", getLocation());
+			}
+		}
+	}
+
+	@Override
+	public void require(int type, String namespaceURI, String localName) throws XMLStreamException {
+		if (eventType != type)
+			throw new XMLStreamException("Expected event " + type + " but was " + eventType, getLocation());
+		if (localName != null && !localName.equals(getLocalName()))
+			throw new XMLStreamException("Expected element " + localName + " but was " + getLocalName(), getLocation());
+	}
+
+	@Override
+	public boolean hasNext() throws XMLStreamException {
+		return eventType != END_DOCUMENT;
+	}
+
+	@Override
+	public void close() throws XMLStreamException {
+		// the mapping is released with the buffer
+	}
+
+	@Override
+	public int getEventType() {
+		return eventType;
+	}
+
+	@Override
+	public boolean isStartElement() {
+		return eventType == START_ELEMENT;
+	}
+
+	@Override
+	public boolean isEndElement() {
+		return eventType == END_ELEMENT;
+	}
+
+	@Override
+	public boolean isCharacters() {
+		return eventType == CHARACTERS;
+	}
+
+	@Override
+	public boolean isWhiteSpace() {
+		return eventType == CHARACTERS && whiteSpace;
+	}
+
+	private void requireElement() {
+		if (eventType != START_ELEMENT && eventType != END_ELEMENT)
+			throw new IllegalStateException("Not on a start or end tag");
+	}
+
+	private void requireStartElement() {
+		if (eventType != START_ELEMENT)
+			throw new IllegalStateException("Not on a start tag");
+	}
+
+	@Override
+	public String getLocalName() {
+		if (eventType == PROCESSING_INSTRUCTION)
+			return null;
+		requireElement();
+		return element.localName;
+	}
+
+	@Override
+	public QName getName() {
+		requireElement();
+		return new QName(null, element.localName, element.prefix);
+	}
+
+	@Override
+	public boolean hasName() {
+		return eventType == START_ELEMENT || eventType == END_ELEMENT;
+	}
+
+	@Override
+	public String getPrefix() {
+		requireElement();
+		return element.prefix;
+	}
+
+	@Override
+	public String getNamespaceURI() {
+		return null;
+	}
+
+	@Override
+	public String getNamespaceURI(String prefix) {
+		String namespaceURI = namespaceContext.getNamespaceURI(prefix);
+		return namespaceURI.isEmpty() ? null : namespaceURI;
+	}
+
+	@Override
+	public NamespaceContext getNamespaceContext() {
+		return namespaceContext;
+	}
+
+	@Override
+	public int getNamespaceCount() {
+		requireElement();
+		return eventType == START_ELEMENT ? namespaceCount : 0;
+	}
+
+	@Override
+	public String getNamespacePrefix(int index) {
+		if (index >= getNamespaceCount())
+			throw new IndexOutOfBoundsException();
+		return namespacePrefixes[index].isEmpty() ? null : namespacePrefixes[index];
+	}
+
+	@Override
+	public String getNamespaceURI(int index) {
+		if (index >= getNamespaceCount())
+			throw new IndexOutOfBoundsException();
+		return namespaceURIs[index];
+	}
+
+	@Override
+	public int getAttributeCount() {
+		requireStartElement();
+		return attributeCount;
+	}
+
+	@Override
+	public String getAttributeValue(String namespaceURI, String localName) {
+		requireStartElement();
+		for (int i = 0; i < attributeCount; i++) {
+			if (attributeNames[i].localName.equals(localName))
+				return getAttributeValue(i);
+		}
+		return null;
+	}
+
+	@Override
+	public String getAttributeValue(int index) {
+		requireStartElement();
+		if (index >= attributeCount)
+			throw new IndexOutOfBoundsException();
+		charsLength = 0;
+		try {
+			decode(attributeValueStarts[index], attributeValueEnds[index], true, true);
+		} catch (XMLStreamException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+		return new String(chars, 0, charsLength);
+	}
+
+	@Override
+	public QName getAttributeName(int index) {
+		Name name = getAttributeNameEntry(index);
+		return new QName(null, name.localName, name.prefix);
+	}
+
+	@Override
+	public String getAttributeNamespace(int index) {
+		getAttributeNameEntry(index);
+		return null;
+	}
+
+	@Override
+	public String getAttributeLocalName(int index) {
+		return getAttributeNameEntry(index).localName;
+	}
+
+	@Override
+	public String getAttributePrefix(int index) {
+		return getAttributeNameEntry(index).prefix;
+	}
+
+	private Name getAttributeNameEntry(int index) {
+		requireStartElement();
+		if (index >= attributeCount)
+			throw new IndexOutOfBoundsException();
+		return attributeNames[index];
+	}
+
+	@Override
+	public String getAttributeType(int index) {
+		getAttributeNameEntry(index);
+		return "CDATA";
+	}
+
+	@Override
+	public boolean isAttributeSpecified(int index) {
+		getAttributeNameEntry(index);
+		return true;
+	}
+
+	@Override
+	public boolean hasText() {
+		return eventType == CHARACTERS || eventType == CDATA || eventType == COMMENT;
+	}
+
+	@Override
+	public String getText() {
+		if (!hasText())
+			throw new IllegalStateException("Event has no text");
+		try {
+			return decodeText();
+		} catch (XMLStreamException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public char[] getTextCharacters() {
+		return getText().toCharArray();
+	}
+
+	@Override
+	public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length) throws XMLStreamException {
+		String text = getText();
+		int count = Math.min(length, text.length() - sourceStart);
+		if (count <= 0)
+			return 0;
+		text.getChars(sourceStart, sourceStart + count, target, targetStart);
+		return count;
+	}
+
+	@Override
+	public int getTextStart() {
+		return 0;
+	}
+
+	@Override
+	public int getTextLength() {
+		return getText().length();
+	}
+
+	@Override
+	public String getPITarget() {
+		return eventType == PROCESSING_INSTRUCTION ? piTarget.qualifiedName : null;
+	}
+
+	@Override
+	public String getPIData() {
+		if (eventType != PROCESSING_INSTRUCTION)
+			return null;
+		charsLength = 0;
+		decodeUTF8(textStart, textEnd);
+		return new String(chars, 0, charsLength);
+	}
+
+	@Override
+	public Location getLocation() {
+		return new LocationImpl();
+	}
+
+	@Override
+	public String getEncoding() {
+		return "UTF-8";
+	}
+
+	@Override
+	public String getVersion() {
+		return version;
+	}
+
+	@Override
+	public boolean isStandalone() {
+		return false;
+	}
+
+	@Override
+	public boolean standaloneSet() {
+		return false;
+	}
+
+	@Override
+	public String getCharacterEncodingScheme() {
+		return encoding;
+	}
+
+	@Override
+	public Object getProperty(String name) {
+		return null;
+	}
+}
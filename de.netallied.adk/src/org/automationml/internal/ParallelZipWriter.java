@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a zip archive in one pass. Entries are deflated in parallel and written in the order they were added, as soon as they and all entries
+ * before them are compressed. At most twice as many entries as threads are held in memory. Archives needing ZIP64 are not supported.
+ */
+public class ParallelZipWriter {
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int VERSION = 20;
+	private static final int FLAG_UTF8 = 0x0800;
+	private static final int METHOD_STORED = 0;
+	private static final int METHOD_DEFLATED = 8;
+	private static final long MAX_SIZE = 0xFFFFFFFFL;
+
+	private static class Entry {
+		final byte[] name;
+		int method;
+		long crc;
+		long size;
+		long compressedSize;
+		byte[] data;
+		long offset;
+
+		Entry(String name) {
+			this.name = name.getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	private final OutputStream outputStream;
+	private final ExecutorService executor;
+	private final int threadsCount;
+	private final int level;
+	private final int dosTime;
+	private final Deque<Future<Entry>> pendingEntries = new ArrayDeque<Future<Entry>>();
+	private final List<Entry> writtenEntries = new ArrayList<Entry>();
+	private long offset;
+
+	public ParallelZipWriter(OutputStream outputStream) {
+		this(outputStream, Runtime.getRuntime().availableProcessors(), Deflater.DEFAULT_COMPRESSION);
+	}
+
+	public ParallelZipWriter(OutputStream outputStream, int threadsCount, int level) {
+		this.outputStream = outputStream;
+		this.threadsCount = Math.max(1, threadsCount);
+		this.level = level;
+		this.executor = Executors.newFixedThreadPool(this.threadsCount);
+		this.dosTime = toDosTime(System.currentTimeMillis());
+	}
+
+	/**
+	 * Adds an entry, the content must not be changed afterwards.
+	 */
+	public void addEntry(final String name, final byte[] content) throws IOException {
+		pendingEntries.add(executor.submit(new Callable<Entry>() {
+			@Override
+			public Entry call() {
+				return deflate(name, content);
+			}
+		}));
+		while (!pendingEntries.isEmpty() && (pendingEntries.peek().isDone() || pendingEntries.size() > 2 * threadsCount))
+			writeEntry(take());
+	}
+
+	private Entry deflate(String name, byte[] content) {
+		Entry entry = new Entry(name);
+		CRC32 crc = new CRC32();
+		crc.update(content, 0, content.length);
+		entry.crc = crc.getValue();
+		entry.size = content.length;
+
+		Deflater deflater = new Deflater(level, true);
+		try {
+			deflater.setInput(content);
+			deflater.finish();
+			ByteArrayOutputStream deflated = new ByteArrayOutputStream(Math.max(64, content.length / 4));
+			byte[] buffer = new byte[65536];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				deflated.write(buffer, 0, count);
+			}
+			if (deflated.size() < content.length) {
+				entry.method = METHOD_DEFLATED;
+				entry.data = deflated.toByteArray();
+			} else {
+				entry.method = METHOD_STORED;
+				entry.data = content;
+			}
+		} finally {
+			deflater.end();
+		}
+		return entry;
+	}
+
+	private Entry take() throws IOException {
+		try {
+			return pendingEntries.poll().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private void writeEntry(Entry entry) throws IOException {
+		if (entry.size > MAX_SIZE || entry.data.length > MAX_SIZE || offset > MAX_SIZE)
+			throw new IOException("Entry " + new String(entry.name, StandardCharsets.UTF_8) + " requires ZIP64");
+		entry.offset = offset;
+		entry.compressedSize = entry.data.length;
+		ByteArrayOutputStream header = new ByteArrayOutputStream(30 + entry.name.length);
+		writeInt(header, LOCAL_HEADER_SIGNATURE);
+		writeShort(header, VERSION);
+		writeShort(header, FLAG_UTF8);
+		writeShort(header, entry.method);
+		writeInt(header, dosTime);
+		writeInt(header, (int) entry.crc);
+		writeInt(header, entry.data.length);
+		writeInt(header, (int) entry.size);
+		writeShort(header, entry.name.length);
+		writeShort(header, 0);
+		header.write(entry.name);
+		header.writeTo(outputStream);
+		outputStream.write(entry.data);
+		offset += header.size() + entry.data.length;
+
+		entry.data = null;
+		writtenEntries.add(entry);
+	}
+
+	/**
+	 * Writes the remaining entries and the central directory. The output stream is not closed.
+	 */
+	public void finish() throws IOException {
+		try {
+			while (!pendingEntries.isEmpty())
+				writeEntry(take());
+
+			if (writtenEntries.size() > 0xFFFF || offset > MAX_SIZE)
+				throw new IOException("Archive requires ZIP64");
+			ByteArrayOutputStream directory = new ByteArrayOutputStream();
+			for (Entry entry : writtenEntries) {
+				writeInt(directory, CENTRAL_HEADER_SIGNATURE);
+				writeShort(directory, VERSION);
+				writeShort(directory, VERSION);
+				writeShort(directory, FLAG_UTF8);
+				writeShort(directory, entry.method);
+				writeInt(directory, dosTime);
+				writeInt(directory, (int) entry.crc);
+				writeInt(directory, (int) entry.compressedSize);
+				writeInt(directory, (int) entry.size);
+				writeShort(directory, entry.name.length);
+				writeShort(directory, 0);
+				writeShort(directory, 0);
+				writeShort(directory, 0);
+				writeShort(directory, 0);
+				writeInt(directory, 0);
+				writeInt(directory, (int) entry.offset);
+				directory.write(entry.name);
+			}
+			writeInt(directory, END_SIGNATURE);
+			writeShort(directory, 0);
+			writeShort(directory, 0);
+			writeShort(directory, writtenEntries.size());
+			writeShort(directory, writtenEntries.size());
+			writeInt(directory, directory.size() - 12);
+			writeInt(directory, (int) offset);
+			writeShort(directory, 0);
+			directory.writeTo(outputStream);
+			outputStream.flush();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Stops all compression without finishing the archive.
+	 */
+	public void abort() {
+		executor.shutdownNow();
+	}
+
+	private static int toDosTime(long time) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		int year = Math.max(1980, calendar.get(Calendar.YEAR));
+		return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 | calendar.get(Calendar.DAY_OF_MONTH) << 16
+				| calendar.get(Calendar.HOUR_OF_DAY) << 11 | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+	}
+
+	private static void writeShort(ByteArrayOutputStream outputStream, int value) {
+		outputStream.write(value);
+		outputStream.write(value >>> 8);
+	}
+
+	private static void writeInt(ByteArrayOutputStream outputStream, int value) {
+		writeShort(outputStream, value);
+		writeShort(outputStream, value >>> 16);
+	}
+}
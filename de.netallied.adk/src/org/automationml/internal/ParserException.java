@@ -4,8 +4,10 @@
  *******************************************************************************/
 package org.automationml.internal;
 
+import org.automationml.DeserializerException;
+
 @SuppressWarnings("serial")
-public class ParserException extends Exception {
+public class ParserException extends DeserializerException {
 
 	public ParserException(String string) {
 		super(string);
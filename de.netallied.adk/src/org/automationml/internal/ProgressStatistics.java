@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link DetailedProgressMonitor} summing up what it is told, for instance to find out where the time of a load goes. It can be canceled from
+ * another thread.
+ */
+public class ProgressStatistics implements DetailedProgressMonitor {
+
+	private final AtomicLong worked = new AtomicLong();
+	private final AtomicLong files = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong elementsParsed = new AtomicLong();
+	private final AtomicLong instructionsExecuted = new AtomicLong();
+	private final AtomicLong elementsWritten = new AtomicLong();
+	private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+	private volatile boolean canceled;
+
+	@Override
+	public void worked(int i) {
+		worked.addAndGet(i);
+	}
+
+	@Override
+	public void fileResolved(URL url, long size) {
+		files.incrementAndGet();
+		if (size > 0)
+			bytes.addAndGet(size);
+	}
+
+	@Override
+	public void elementsParsed(int count) {
+		elementsParsed.addAndGet(count);
+	}
+
+	@Override
+	public void instructionsExecuted(int count) {
+		instructionsExecuted.addAndGet(count);
+	}
+
+	@Override
+	public void elementsWritten(int count) {
+		elementsWritten.addAndGet(count);
+	}
+
+	@Override
+	public void phaseFinished(Phase phase, long nanos) {
+		phaseNanos.addAndGet(phase.ordinal(), nanos);
+	}
+
+	public void cancel() {
+		canceled = true;
+	}
+
+	@Override
+	public boolean isCanceled() {
+		return canceled;
+	}
+
+	public long getWorked() {
+		return worked.get();
+	}
+
+	public long getFilesCount() {
+		return files.get();
+	}
+
+	/**
+	 * Returns the size of the files read as far as it was known in advance.
+	 */
+	public long getBytesCount() {
+		return bytes.get();
+	}
+
+	public long getElementsParsedCount() {
+		return elementsParsed.get();
+	}
+
+	public long getInstructionsExecutedCount() {
+		return instructionsExecuted.get();
+	}
+
+	public long getElementsWrittenCount() {
+		return elementsWritten.get();
+	}
+
+	public long getPhaseTime(Phase phase, TimeUnit unit) {
+		return unit.convert(phaseNanos.get(phase.ordinal()), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("ProgressStatistics [files=").append(files).append(", bytes=").append(bytes).append(", elementsParsed=")
+				.append(elementsParsed).append(", instructionsExecuted=").append(instructionsExecuted).append(", elementsWritten=").append(elementsWritten);
+		for (Phase phase : Phase.values())
+			builder.append(", ").append(phase.name().toLowerCase()).append("=").append(getPhaseTime(phase, TimeUnit.MILLISECONDS)).append("ms");
+		return builder.append("]").toString();
+	}
+}
@@ -17,6 +17,7 @@ public class SavepointManager {
 	private List<SavepointImpl> savepoints = new ArrayList<SavepointImpl>();
 	private List<SavepointImpl> savepointBranch  = new ArrayList<SavepointImpl>();
 	private int currentSavepointIndex = -1;
+	private int suspendCount;
 	private AMLSessionImpl session;
 
 	public SavepointManager(AMLSessionImpl session) {
@@ -112,9 +113,13 @@ public class SavepointManager {
 	}
 
 	public void addChange(Change change) {
+		if (suspendCount != 0)
+			return;
+
 		AMLDocumentImpl document = SavepointManager.getDocument(change);
 		if( document != null)
 			document.incrementChangesCount();
+		discardSourceRegions(change, document);
 
 		SavepointImpl savepoint = getCurrentSavepoint();
 		if (savepoint == null)
@@ -124,6 +129,16 @@ public class SavepointManager {
 		change = savepoint.addChange(change);
 	}
 
+	// saving copies the top level elements unchanged in the files of the documents, see AMLSession.setIncrementalSaving
+	private void discardSourceRegions(Change change, AMLDocumentImpl document) {
+		if (!session.isIncrementalSaving())
+			return;
+		if (!change.isLocal())
+			session.discardSourceRegions();
+		else if (document != null)
+			document.discardSourceRegion(((AbstractDocumentElementChange<?>) change).getDocumentElement());
+	}
+
 	static AMLDocumentImpl getDocument(Change change) {
 		if(!( change instanceof AbstractDocumentElementChange))
 			return null;
@@ -142,6 +157,10 @@ public class SavepointManager {
 		if (targetSavepointIndex == -1)
 			throwSavepointDeletedException();
 
+		// undoing and redoing is not recorded as changes
+		if (session.isIncrementalSaving())
+			session.discardSourceRegions();
+
 		if (targetSavepointIndex <= currentSavepointIndex) {
 			
 			int startSavepointIndex = currentSavepointIndex;
@@ -239,7 +258,23 @@ public class SavepointManager {
 	}
 
 	public boolean hasCurrentSavepoint() {
-		return currentSavepointIndex != -1;
+		return suspendCount == 0 && currentSavepointIndex != -1;
+	}
+
+	/**
+	 * Changes made until the matching {@link #resume()} are neither recorded nor counted as document changes, e.g. elements completing a lazily
+	 * loaded document.
+	 */
+	public void suspend() {
+		suspendCount++;
+	}
+
+	public void resume() {
+		suspendCount--;
+	}
+
+	public boolean isSuspended() {
+		return suspendCount != 0;
 	}
 
 	public Iterable<SavepointImpl> getSavepoints() {
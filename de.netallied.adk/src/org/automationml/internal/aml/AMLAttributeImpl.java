@@ -133,6 +133,9 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 		public final static int CHANGE_VALUE = 6;
 		private String oldValue;
 		private String newValue;
+		// spilled values are kept as handles and only read back when undone or redone
+		private AMLValueStore.StoredValue oldStoredValue;
+		private AMLValueStore.StoredValue newStoredValue;
 		private int changedItem;
 
 		public ModifyAttributeChange(int changedItem, AMLAttributeImpl element) {
@@ -166,7 +169,8 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 				this.oldValue = attribute.getDefaultValue();
 				break;
 			case CHANGE_VALUE:
-				this.oldValue = attribute.getValue();
+				this.oldStoredValue = attribute.storedValue;
+				this.oldValue = attribute.value;
 				break;
 			default:
 				break;
@@ -176,6 +180,12 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 
 		public void setNewValue(String newName) {
 			this.newValue = newName;
+			this.newStoredValue = null;
+		}
+
+		public void setNewValue(AMLValueStore.StoredValue newStoredValue) {
+			this.newValue = null;
+			this.newStoredValue = newStoredValue;
 		}
 
 		@Override
@@ -208,9 +218,14 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 				attribute._setDefaultValue(oldValue);
 				break;
 			case CHANGE_VALUE:
-				if (newValue == null)
-					newValue = attribute.getValue();
-				attribute._setValue(oldValue);
+				if (newValue == null && newStoredValue == null) {
+					newValue = attribute.value;
+					newStoredValue = attribute.storedValue;
+				}
+				if (oldStoredValue != null)
+					attribute._setValue(oldStoredValue);
+				else
+					attribute._setValue(oldValue);
 				break;
 			default:
 				break;
@@ -239,19 +254,28 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 				attribute._setDefaultValue(newValue);
 				break;
 			case CHANGE_VALUE:
-				attribute._setValue(newValue);
+				if (newStoredValue != null)
+					attribute._setValue(newStoredValue);
+				else
+					attribute._setValue(newValue);
 				break;
 			default:
 				break;
 			}
 		}
 
+		@Override
+		public boolean isLocal() {
+			return changedItem != CHANGE_NAME;
+		}
+
 		@Override
 		public boolean mergeInto(Change _change) {
 			if (!(_change instanceof ModifyAttributeChange))
 				return false;
 			ModifyAttributeChange change = (ModifyAttributeChange) _change;
-			change.setNewValue(newValue);
+			change.newValue = newValue;
+			change.newStoredValue = newStoredValue;
 			return true;
 		}
 
@@ -260,6 +284,8 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 			// this is not really required, but helpful for debugging
 			oldValue = null;
 			newValue = null;
+			oldStoredValue = null;
+			newStoredValue = null;
 		}
 
 		@Override
@@ -339,6 +365,11 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 			attribute._addRefSemantic(refSemantic);
 		}
 
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean mergeInto(Change change) {
 			if (!(change instanceof AddRefSemanticChange))
@@ -408,6 +439,11 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 			attribute._removeRefSemantic(refSemantic);
 		}
 
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean mergeInto(Change change) {
 			if (!(change instanceof AddRefSemanticChange))
@@ -501,6 +537,11 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 			}
 		}
 
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public void undo() throws Exception {
 			AbstractAMLDocumentElement documentElement = (AbstractAMLDocumentElement) parentIdentifier.getDocumentElement();
@@ -630,6 +671,11 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 			
 		}
 
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean mergeInto(Change _change) {
 			if (!(_change instanceof ModifyConstraintChange))
@@ -1062,6 +1108,7 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 	private String description;
 	private String defaultValue;
 	private String value;
+	private AMLValueStore.StoredValue storedValue;
 	
 	private Set<String> refSemantics = new LinkedHashSet<String>();
 	private Map<String,  Constraint> constraints = new LinkedHashMap<String, Constraint>();
@@ -1144,13 +1191,13 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 	}
 
 	public void _setDataType(String dataType) {
-		this.dataType = dataType;
+		this.dataType = getSession().intern(dataType);
 		if (this.dataType == null)
 			this.dataType = "";
 	}
 
 	public void _setUnit(String unit) {
-		this.unit = unit;
+		this.unit = getSession().intern(unit);
 		if (this.unit == null)
 			this.unit = "";
 	}
@@ -1165,6 +1212,12 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 		this.value = value;
 		if (this.value == null)
 			this.value = "";
+		this.storedValue = null;
+	}
+
+	public void _setValue(AMLValueStore.StoredValue storedValue) {
+		this.value = null;
+		this.storedValue = storedValue;
 	}
 
 	@Override
@@ -1309,6 +1362,7 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 	}
 
 	public void _setName(String name) throws AMLNameAlreadyInUseException {
+		name = getSession().intern(name);
 		AMLAttributeContainerHelper.renameAttribute(attributeContainer, this, name);		
 		this.name = name;	
 		for (AMLAttributeImpl referrer : cachedReferrers) {
@@ -1417,6 +1471,20 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 		getDocument().notifyElementModified(this);
 	}
 
+	/**
+	 * Sets a value spilled to the value store of the session while loading, it is read when asked for.
+	 */
+	public void setValue(AMLValueStore.StoredValue storedValue) {
+		assertNotDeleted();
+		if (getSession().getSavepointManager().hasCurrentSavepoint()) {
+			ModifyAttributeChange change = new ModifyAttributeChange(ModifyAttributeChange.CHANGE_VALUE, this);
+			change.setNewValue(storedValue);
+			getSavepointManager().addChange(change);
+		}
+		_setValue(storedValue);
+		getDocument().notifyElementModified(this);
+	}
+
 	@Override
 	public Iterable<AMLAttribute> getAttributes() {
 		return AMLAttributeContainerHelper.getAttributes(attributes);
@@ -1429,9 +1497,18 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 
 	@Override
 	public String getValue() {
+		if (storedValue != null)
+			return storedValue.getValue();
 		return value;
 	}
 
+	/**
+	 * Returns the value if it is kept in the value store of the session, otherwise null.
+	 */
+	public AMLValueStore.StoredValue getStoredValue() {
+		return storedValue;
+	}
+
 	@Override
 	public String getName() {
 		return name;
@@ -1704,7 +1781,7 @@ public class AMLAttributeImpl extends AbstractAMLDocumentElement implements AMLA
 	}
 
 	private void _addRefSemantic(String refSemantic) {
-		refSemantics.add(refSemantic);
+		refSemantics.add(getSession().intern(refSemantic));
 	}
 
 	@Override
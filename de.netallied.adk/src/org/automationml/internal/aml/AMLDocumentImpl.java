@@ -5,11 +5,10 @@
 package org.automationml.internal.aml;
 
 import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -17,6 +16,7 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 
+import org.automationml.AMLXPackage;
 import org.automationml.DocumentLocation;
 import org.automationml.URLDocumentLocation;
 import org.automationml.aml.AMLDocument;
@@ -30,6 +30,7 @@ import org.automationml.aml.AMLInterfaceClass;
 import org.automationml.aml.AMLInterfaceClassLibrary;
 import org.automationml.aml.AMLInvalidReferenceException;
 import org.automationml.aml.AMLNameAlreadyInUseException;
+import org.automationml.aml.AMLProjection;
 import org.automationml.aml.AMLRoleClass;
 import org.automationml.aml.AMLRoleClassLibrary;
 import org.automationml.aml.AMLSystemUnitClass;
@@ -45,7 +46,9 @@ import org.automationml.internal.Change;
 import org.automationml.internal.Identifier;
 import org.automationml.internal.IdentifierManager;
 import org.automationml.internal.ReadOnlyIterable;
+import org.automationml.internal.SavepointManager;
 import org.automationml.internal.aml.persistence.AMLSerializer;
+import org.automationml.internal.aml.persistence.AMLSourceRegions;
 
 public class AMLDocumentImpl extends AMLElementImpl implements AMLDocument {
 
@@ -172,6 +175,11 @@ public class AMLDocumentImpl extends AMLElementImpl implements AMLDocument {
 			document._addExplicitExternalReference(explicitExternalReference);
 		}
 
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean mergeInto(Change change) {
 			return true;
@@ -285,6 +293,8 @@ public class AMLDocumentImpl extends AMLElementImpl implements AMLDocument {
 	private Map<String, AMLInstanceHierarchy> instanceHierarchies = new LinkedHashMap<String, AMLInstanceHierarchy>();
 	private boolean dirty;
 	private int changesCount;
+	private AMLProjection projection;
+	private AMLSourceRegions sourceRegions;
 
 	public interface DocumentItemTraverser {
 		void traverse(AMLDocumentElement element) throws Exception;
@@ -444,9 +454,71 @@ public class AMLDocumentImpl extends AMLElementImpl implements AMLDocument {
 		return systemUnitClassLibrary;
 	}
 
+	@Override
+	public AMLProjection getProjection() {
+		return projection;
+	}
+
+	public void setProjection(AMLProjection projection) {
+		this.projection = projection;
+	}
+
+	// the parts left out would be lost
+	private void assertNotProjected() {
+		if (projection != null)
+			throw new IllegalStateException("Document loaded with " + projection + " can not be saved to its location");
+	}
+
+	// lazily loaded instance hierarchies are loaded before the document is written on another thread, loading changes the session
+	void prepareSave() {
+		assertNotDeleted();
+		assertNotProjected();
+		for (AMLInstanceHierarchy instanceHierarchy : instanceHierarchies.values()) {
+			((AMLInstanceHierarchyImpl) instanceHierarchy)._getInternalElements();
+		}
+	}
+
+	public AMLSourceRegions getSourceRegions() {
+		return sourceRegions;
+	}
+
+	public void setSourceRegions(AMLSourceRegions sourceRegions) {
+		this.sourceRegions = sourceRegions;
+	}
+
+	/**
+	 * The instance hierarchy or class library containing the element is written again when the document is saved.
+	 */
+	public void discardSourceRegion(AMLDocumentElement element) {
+		if (sourceRegions == null)
+			return;
+		while (element != null && !(element.getParent() instanceof AMLDocument))
+			element = element.getParent();
+		if (element != null)
+			sourceRegions.discard(element);
+	}
+
+	// modifications without a current savepoint are not recorded as changes, so it is not known which elements refer to the modified one
+	private void discardModifiedSourceRegion(AMLDocumentElement element) {
+		if (!session.isIncrementalSaving())
+			return;
+		SavepointManager savepointManager = getSavepointManager();
+		if (savepointManager.isSuspended())
+			return;
+		if (savepointManager.hasCurrentSavepoint())
+			discardSourceRegion(element);
+		else
+			session.discardSourceRegions();
+	}
+
 	@Override
 	public void save(AMLDocumentURLResolver urlResolver) throws Exception {
+		if (session.isIncrementalSaving()) {
+			getDocumentManager().saveDocuments(Collections.<AMLDocument> singletonList(this), urlResolver);
+			return;
+		}
 		assertNotDeleted();
+		assertNotProjected();
 		OutputStream outputStream = getDocumentLocation().createOutputStream();
 		try {
 			AMLSerializer.serialize(this, urlResolver, outputStream);
@@ -460,20 +532,36 @@ public class AMLDocumentImpl extends AMLElementImpl implements AMLDocument {
 	@Override
 	public void saveAs(URL newUrl, AMLDocumentURLResolver urlResolver) throws Exception {
 		assertNotDeleted();
+		if (getDocumentLocation().equals(new URLDocumentLocation(newUrl)))
+			assertNotProjected();
 		getDocumentManager().relocate(this, newUrl);
-		OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(new File(newUrl.toURI())));
+		sourceRegions = null;
+		OutputStream outputStream = new BufferedOutputStream(getDocumentLocation().createOutputStream());
 		try {
 			AMLSerializer.serialize(this, urlResolver, outputStream);
 		} finally {
 			if (outputStream != null)
 				outputStream.close();
 		}
+		projection = null;
 		beginDocumentChanges();
 		unsetDirty();
 
 		endDocumentChanges();
 	}
 
+	@Override
+	public void saveTo(OutputStream outputStream, AMLDocumentURLResolver urlResolver) throws Exception {
+		assertNotDeleted();
+		AMLSerializer.serialize(this, urlResolver, outputStream);
+	}
+
+	@Override
+	public void saveAsPackage(OutputStream outputStream) throws Exception {
+		assertNotDeleted();
+		AMLXPackage.write(this, outputStream);
+	}
+
 	public void iterate(AMLDocumentTraverser traverser, int depthfirst) {
 		assertNotDeleted();
 		// TODO implement
@@ -817,18 +905,23 @@ public class AMLDocumentImpl extends AMLElementImpl implements AMLDocument {
 	}
 
 	public void notifyElementCreated(AMLDocumentElement documentElement, AMLDocumentElement parent) {
+		discardModifiedSourceRegion(parent);
 		session.getDocumentManager().notifyElementCreated(this, documentElement, parent);
 	}
 
 	public void notifyElementModified(AMLDocumentElement documentElement) {
+		discardModifiedSourceRegion(documentElement);
 		session.getDocumentManager().notifyElementModified(this, documentElement);
 	}
 
 	public void notifyElementDeleting(AMLDocumentElement documentElement, AMLDocumentElement oldParent) {
+		discardModifiedSourceRegion(documentElement);
 		session.getDocumentManager().notifyElementDeleting(documentElement, oldParent);
 	}
 
 	public void notifyElementReparented(AMLDocumentElement documentElement, AMLDocumentElement oldParent, AMLDocumentElement newParent) {
+		discardModifiedSourceRegion(oldParent);
+		discardModifiedSourceRegion(newParent);
 		session.getDocumentManager().notifyElementReparented(documentElement, oldParent, newParent);
 	}
 
@@ -4,39 +4,70 @@
  *******************************************************************************/
 package org.automationml.internal.aml;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.automationml.Deserializer;
 import org.automationml.DocumentLocation;
 import org.automationml.URLDocumentLocation;
 import org.automationml.aml.AMLDocument;
 import org.automationml.aml.AMLDocumentChangeListener;
 import org.automationml.aml.AMLDocumentElement;
 import org.automationml.aml.AMLDocumentScopeInvalidException;
+import org.automationml.aml.AMLDocumentURLResolver;
+import org.automationml.aml.AMLProjection;
 import org.automationml.aml.AMLValidationResult;
 import org.automationml.aml.AMLValidationResultList;
 import org.automationml.internal.ReadOnlyIterable;
 import org.automationml.internal.aml.persistence.AMLDeserializer;
+import org.automationml.internal.aml.persistence.AMLSerializer;
+import org.automationml.internal.aml.persistence.AMLSourceRegions;
 
 public class AMLDocumentManager {
 
 	public static class MemoryDocumentLocation implements DocumentLocation {
+		private volatile byte[] content;
 
 		@Override
 		public OutputStream createOutputStream() {
-			return new ByteArrayOutputStream();
+			return new ByteArrayOutputStream() {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					content = toByteArray();
+				}
+			};
+		}
+
+		/**
+		 * Returns what the document was saved last, or null.
+		 */
+		public byte[] getContent() {
+			return content;
 		}
 
 		@Override
@@ -121,6 +152,7 @@ public class AMLDocumentManager {
 
 	private Map<ImplicitDocumentReference, ImplicitDocumentReference> implicitExternalReferencesCache = new LinkedHashMap<ImplicitDocumentReference, ImplicitDocumentReference>();
 	private Map<AMLDocument, AMLDocumentScope> cachedDocumentScopes = new LinkedHashMap<AMLDocument, AMLDocumentScope>();
+	private Set<AMLDocument> bulkLoadedDocuments;
 
 	private AMLSessionImpl session;
 
@@ -170,41 +202,174 @@ public class AMLDocumentManager {
 	}
 
 	public AMLDocument openDocument(URL url) throws Exception {
+		return openDocument(url, null);
+	}
+
+	public AMLDocument openDocument(URL url, AMLProjection projection) throws Exception {
 
-		url.openStream().close(); // check for availability
+		// check for availability, local files without opening them
+		if (!session.getExternalReferenceResolver().exists(url))
+			throw new FileNotFoundException(url.toString());
 
-		Deserializer deserializer = new AMLDeserializer();
+		AMLDeserializer deserializer = new AMLDeserializer();
+		deserializer.setProjection(projection);
 		deserializer.deserialize(url, session);
 
 		DocumentLocation location = new URLDocumentLocation(url);
 		AMLDocument document = getDocument(location);
+		if (document != null)
+			((AMLDocumentImpl) document).setProjection(projection);
 
 		return document;
 	}
 
-	public boolean saveDocument(AMLDocument document, URL urlToSave) throws URISyntaxException {
+	/**
+	 * Saves the documents to their locations, see {@link org.automationml.aml.AMLSession#saveAll(AMLDocumentURLResolver)}. The documents are
+	 * serialized concurrently, a document with a file to a temporary file in the same directory, others to memory. Once all of them are
+	 * serialized, the temporary files replace the files and the others are written to their locations. If one of them can not be replaced or
+	 * written, the remaining ones are left as they are and only the documents saved before are not dirty anymore.
+	 */
+	public void saveDocuments(List<AMLDocument> documents, final AMLDocumentURLResolver urlResolver) throws Exception {
+		if (documents.isEmpty())
+			return;
+		for (AMLDocument document : documents) {
+			((AMLDocumentImpl) document).prepareSave();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(documents.size(), Runtime.getRuntime().availableProcessors()));
+		List<PendingSave> pendingSaves = new ArrayList<PendingSave>();
+		Exception failure = null;
+		try {
+			List<Future<PendingSave>> futures = new ArrayList<Future<PendingSave>>();
+			for (final AMLDocument document : documents) {
+				futures.add(executor.submit(new Callable<PendingSave>() {
+					@Override
+					public PendingSave call() throws Exception {
+						return PendingSave.write(document, urlResolver);
+					}
+				}));
+			}
+			// every document is waited for, none of them must be left behind half written
+			for (Future<PendingSave> future : futures) {
+				try {
+					pendingSaves.add(future.get());
+				} catch (ExecutionException e) {
+					if (failure == null)
+						failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
 
-		if (!documentToProperties.containsKey(document))
-			return false;
+		if (failure != null) {
+			for (PendingSave pendingSave : pendingSaves) {
+				pendingSave.discard();
+			}
+			throw failure;
+		}
+		for (int i = 0; i < pendingSaves.size(); i++) {
+			try {
+				pendingSaves.get(i).commit();
+			} catch (Exception e) {
+				for (PendingSave pendingSave : pendingSaves.subList(i, pendingSaves.size())) {
+					pendingSave.discard();
+				}
+				throw e;
+			}
+			pendingSaves.get(i).document.unsetDirty();
+		}
+	}
 
-		DocumentProperties properties = documentToProperties.get(document);
-		if (properties == null)
-			return false;
+	// a serialized document waiting for the others
+	private static class PendingSave {
+		private final AMLDocument document;
+		private final DocumentLocation location;
+		private File file;
+		private File temporaryFile;
+		private ByteArrayOutputStream content;
+		private AMLSourceRegions sourceRegions;
 
-		if (urlToSave == null) {
-			DocumentLocation location = properties.location;
+		private PendingSave(AMLDocument document) {
+			this.document = document;
+			this.location = document.getDocumentLocation();
+		}
 
-			if (location instanceof URLDocumentLocation)
-				urlToSave = ((URLDocumentLocation) location).getUrl();
+		static PendingSave write(AMLDocument document, AMLDocumentURLResolver urlResolver) throws Exception {
+			PendingSave pendingSave = new PendingSave(document);
+			try {
+				pendingSave.serialize(urlResolver);
+			} catch (Exception e) {
+				pendingSave.discard();
+				throw e;
+			}
+			return pendingSave;
 		}
-		if (urlToSave == null)
-			return false;
 
-//		Serializer serializer = new AMLSerializer();
-//
-//		File file = new File(urlToSave.toURI());
-		// return serializer.serialize(document, file);
-		return true;
+		private void serialize(AMLDocumentURLResolver urlResolver) throws Exception {
+			file = getFile(location);
+			if (file == null) {
+				content = new ByteArrayOutputStream();
+				AMLSerializer.serialize(document, urlResolver, content);
+				return;
+			}
+			temporaryFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+			if (document.getSession().isIncrementalSaving()) {
+				// the unchanged parts are copied from the file, which is replaced only once the temporary file is complete
+				FileOutputStream outputStream = new FileOutputStream(temporaryFile);
+				try {
+					sourceRegions = AMLSerializer.serialize(document, urlResolver, outputStream, file, ((AMLDocumentImpl) document).getSourceRegions());
+				} finally {
+					outputStream.close();
+				}
+				return;
+			}
+			OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(temporaryFile));
+			try {
+				AMLSerializer.serialize(document, urlResolver, outputStream);
+			} finally {
+				outputStream.close();
+			}
+		}
+
+		void commit() throws Exception {
+			if (temporaryFile == null) {
+				OutputStream outputStream = location.createOutputStream();
+				try {
+					content.writeTo(outputStream);
+				} finally {
+					outputStream.close();
+				}
+				return;
+			}
+			try {
+				Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			if (sourceRegions != null) {
+				sourceRegions.recordFileState();
+				((AMLDocumentImpl) document).setSourceRegions(sourceRegions);
+			}
+		}
+
+		void discard() {
+			if (temporaryFile != null)
+				temporaryFile.delete();
+		}
+
+		private static File getFile(DocumentLocation location) {
+			if (!(location instanceof URLDocumentLocation))
+				return null;
+			URL url = ((URLDocumentLocation) location).getUrl();
+			if (!"file".equals(url.getProtocol()))
+				return null;
+			try {
+				return new File(url.toURI());
+			} catch (URISyntaxException e) {
+				return null;
+			}
+		}
 	}
 
 	public void addExplicitDocumentReference(AMLDocument referrer, AMLDocument referenced) throws AMLDocumentScopeInvalidException {
@@ -363,6 +528,27 @@ public class AMLDocumentManager {
 		return new ReadOnlyIterable<AMLDocument>(explicitDocumentReferences);
 	}
 
+	/**
+	 * Until {@link #endBulkLoad()} unique ids are only added to the scope of their own document, instead of to every scope containing it.
+	 */
+	public void beginBulkLoad() {
+		bulkLoadedDocuments = new LinkedHashSet<AMLDocument>();
+	}
+
+	// the scopes containing the loaded documents collect their ids again when they are used next
+	public void endBulkLoad() throws AMLDocumentScopeInvalidException {
+		Set<AMLDocument> documents = bulkLoadedDocuments;
+		bulkLoadedDocuments = null;
+		for (AMLDocumentScope scope : cachedDocumentScopes.values()) {
+			for (AMLDocument document : documents) {
+				if (scope.contains(document)) {
+					scope.invalidate();
+					break;
+				}
+			}
+		}
+	}
+
 	public AMLDocumentScope getDocumentScope(AMLDocument rootDocument) {
 		AMLDocumentScope cachedDocumentScope = cachedDocumentScopes.get(rootDocument);
 		if (cachedDocumentScope == null) {
@@ -674,6 +860,12 @@ public class AMLDocumentManager {
 	}
 
 	public void addUniqueId(AMLDocumentElement documentElement, UUID id) throws AMLDocumentScopeInvalidException {
+		if (bulkLoadedDocuments != null) {
+			AMLDocument document = documentElement.getDocument();
+			bulkLoadedDocuments.add(document);
+			getDocumentScope(document).addUniqueId(document, id);
+			return;
+		}
 		for (AMLDocumentScope scope : cachedDocumentScopes.values()) {
 			if (scope.contains(documentElement.getDocument())) {
 				scope.addUniqueId(documentElement.getDocument(), id);
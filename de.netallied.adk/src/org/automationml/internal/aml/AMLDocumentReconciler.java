@@ -0,0 +1,684 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.automationml.DocumentLocation;
+import org.automationml.Savepoint;
+import org.automationml.URLDocumentLocation;
+import org.automationml.aml.AMLAttribute;
+import org.automationml.aml.AMLAttributeContainer;
+import org.automationml.aml.AMLDocument;
+import org.automationml.aml.AMLDocumentElement;
+import org.automationml.aml.AMLElement;
+import org.automationml.aml.AMLExternalInterface;
+import org.automationml.aml.AMLExternalInterfaceContainer;
+import org.automationml.aml.AMLInstanceHierarchy;
+import org.automationml.aml.AMLInterfaceClass;
+import org.automationml.aml.AMLInterfaceClassContainer;
+import org.automationml.aml.AMLInterfaceClassLibrary;
+import org.automationml.aml.AMLInternalElement;
+import org.automationml.aml.AMLInternalElementContainer;
+import org.automationml.aml.AMLRenamable;
+import org.automationml.aml.AMLRoleClass;
+import org.automationml.aml.AMLRoleClassContainer;
+import org.automationml.aml.AMLRoleClassLibrary;
+import org.automationml.aml.AMLSupportedRoleClass;
+import org.automationml.aml.AMLSupportedRoleClassContainer;
+import org.automationml.aml.AMLSystemUnitClass;
+import org.automationml.aml.AMLSystemUnitClassContainer;
+import org.automationml.aml.AMLSystemUnitClassLibrary;
+import org.automationml.aml.AMLValidationException;
+import org.automationml.internal.SavepointImpl;
+
+/**
+ * Brings a document up to date with a freshly loaded copy of it from another session. Libraries, classes and instance hierarchies are matched by
+ * name, internal elements and external interfaces by id, referenced classes by class path. Only differing values are set, so change listeners are
+ * told about real differences only, and every element which is still there keeps its identity, also an internal element moved to another parent.
+ * <p>
+ * Internal links, groups, mirror objects, facets, role requirements, frame attributes, COLLADA interfaces, mapping objects and attribute
+ * constraints are left as they are. Elements where they differ are reported by {@link #getUnreconciledElements()}.
+ */
+public class AMLDocumentReconciler {
+
+	private static class Header {
+		final String writerName;
+		final String writerID;
+		final String writerVendor;
+		final String writerVendorURL;
+		final String writerVersion;
+		final String writerRelease;
+		final Date lastWritingDate;
+		final String writerProjectTitle;
+		final String writerProjectID;
+
+		Header(AMLDocument document) {
+			writerName = document.getWriterName();
+			writerID = document.getWriterID();
+			writerVendor = document.getWriterVendor();
+			writerVendorURL = document.getWriterVendorURL();
+			writerVersion = document.getWriterVersion();
+			writerRelease = document.getWriterRelease();
+			lastWritingDate = document.getLastWritingDate();
+			writerProjectTitle = document.getWriterProjectTitle();
+			writerProjectID = document.getWriterProjectID();
+		}
+
+		void restore(AMLDocument document) {
+			document.setWriterName(writerName);
+			document.setWriterID(writerID);
+			document.setWriterVendor(writerVendor);
+			document.setWriterVendorURL(writerVendorURL);
+			document.setWriterVersion(writerVersion);
+			document.setWriterRelease(writerRelease);
+			document.setLastWritingDate(lastWritingDate);
+			document.setWriterProjectTitle(writerProjectTitle);
+			document.setWriterProjectID(writerProjectID);
+		}
+	}
+
+	private static class ElementProperties {
+		final String description;
+		final String version;
+		final String copyright;
+		final String additionalInformation;
+
+		ElementProperties(AMLElement element) {
+			description = element.getDescription();
+			version = element.getVersion();
+			copyright = element.getCopyright();
+			additionalInformation = element.getAdditionalInformation();
+		}
+
+		void restore(AMLElement element) {
+			element.setDescription(description);
+			element.setVersion(version);
+			element.setCopyright(copyright);
+			element.setAdditionalInformation(additionalInformation);
+		}
+	}
+
+	private final AMLDocument target;
+	private final AMLDocument source;
+	private final List<AMLDocumentElement> deletedElements = new ArrayList<AMLDocumentElement>();
+	private final List<AMLDocument> removedReferences = new ArrayList<AMLDocument>();
+	private final List<String> unreconciledElements = new ArrayList<String>();
+	private final Map<UUID, AMLInternalElement> targetInternalElements = new HashMap<UUID, AMLInternalElement>();
+	private final Set<UUID> sourceInternalElementIds = new HashSet<UUID>();
+	// the header and these properties are not recorded by savepoints
+	private Header header;
+	private final Map<AMLElement, ElementProperties> modifiedElements = new LinkedHashMap<AMLElement, ElementProperties>();
+	private int changesCount;
+
+	public AMLDocumentReconciler(AMLDocument target, AMLDocument source) {
+		this.target = target;
+		this.source = source;
+	}
+
+	/**
+	 * Returns the number of created, modified, moved and deleted elements. Runs in a savepoint, so a failure undoes the changes made so far.
+	 */
+	public int reconcile() throws Exception {
+		List<SavepointImpl> savepoints = new ArrayList<SavepointImpl>();
+		for (SavepointImpl savepoint : ((AMLSessionImpl) target.getSession()).getSavepointManager().getSavepoints())
+			savepoints.add(savepoint);
+		// the current savepoint is reused as long as it has no changes
+		Savepoint savepoint = target.getSession().createSavepoint();
+		boolean created = !savepoints.contains(savepoint);
+		try {
+			doReconcile();
+		} catch (Exception e) {
+			savepoint.cancel();
+			if (created)
+				savepoint.delete();
+			restoreUnrecorded();
+			throw e;
+		}
+		// the changes are merged into the previous savepoint
+		if (created)
+			savepoint.delete();
+		return changesCount;
+	}
+
+	private void doReconcile() throws AMLValidationException {
+		for (AMLSystemUnitClassLibrary targetLibrary : target.getSystemUnitClassLibraries())
+			indexInternalElements(targetLibrary);
+		for (AMLInstanceHierarchy targetInstanceHierarchy : target.getInstanceHierarchies())
+			indexInternalElements(targetInstanceHierarchy);
+		for (AMLSystemUnitClassLibrary sourceLibrary : source.getSystemUnitClassLibraries())
+			collectInternalElementIds(sourceLibrary);
+		for (AMLInstanceHierarchy sourceInstanceHierarchy : source.getInstanceHierarchies())
+			collectInternalElementIds(sourceInstanceHierarchy);
+
+		reconcileExternalReferences();
+		reconcileHeader();
+		reconcileElement(target, source);
+
+		// first all classes, so the references set afterwards find new classes
+		for (AMLInterfaceClassLibrary sourceLibrary : source.getInterfaceClassLibraries()) {
+			AMLInterfaceClassLibrary targetLibrary = target.getInterfaceClassLibrary(sourceLibrary.getName());
+			if (targetLibrary == null)
+				targetLibrary = created(target.createInterfaceClassLibrary(sourceLibrary.getName()));
+			createInterfaceClasses(targetLibrary, sourceLibrary);
+		}
+		for (AMLRoleClassLibrary sourceLibrary : source.getRoleClassLibraries()) {
+			AMLRoleClassLibrary targetLibrary = target.getRoleClassLibrary(sourceLibrary.getName());
+			if (targetLibrary == null)
+				targetLibrary = created(target.createRoleClassLibrary(sourceLibrary.getName()));
+			createRoleClasses(targetLibrary, sourceLibrary);
+		}
+		for (AMLSystemUnitClassLibrary sourceLibrary : source.getSystemUnitClassLibraries()) {
+			AMLSystemUnitClassLibrary targetLibrary = target.getSystemUnitClassLibrary(sourceLibrary.getName());
+			if (targetLibrary == null)
+				targetLibrary = created(target.createSystemUnitClassLibrary(sourceLibrary.getName()));
+			createSystemUnitClasses(targetLibrary, sourceLibrary);
+		}
+
+		for (AMLInterfaceClassLibrary targetLibrary : target.getInterfaceClassLibraries()) {
+			AMLInterfaceClassLibrary sourceLibrary = source.getInterfaceClassLibrary(targetLibrary.getName());
+			if (sourceLibrary == null) {
+				deletedElements.add(targetLibrary);
+				continue;
+			}
+			reconcileElement(targetLibrary, sourceLibrary);
+			reconcileInterfaceClasses(targetLibrary, sourceLibrary);
+		}
+		for (AMLRoleClassLibrary targetLibrary : target.getRoleClassLibraries()) {
+			AMLRoleClassLibrary sourceLibrary = source.getRoleClassLibrary(targetLibrary.getName());
+			if (sourceLibrary == null) {
+				deletedElements.add(targetLibrary);
+				continue;
+			}
+			reconcileElement(targetLibrary, sourceLibrary);
+			reconcileRoleClasses(targetLibrary, sourceLibrary);
+		}
+		for (AMLSystemUnitClassLibrary targetLibrary : target.getSystemUnitClassLibraries()) {
+			AMLSystemUnitClassLibrary sourceLibrary = source.getSystemUnitClassLibrary(targetLibrary.getName());
+			if (sourceLibrary == null) {
+				deletedElements.add(targetLibrary);
+				continue;
+			}
+			reconcileElement(targetLibrary, sourceLibrary);
+			reconcileSystemUnitClasses(targetLibrary, sourceLibrary);
+		}
+
+		for (AMLInstanceHierarchy sourceInstanceHierarchy : source.getInstanceHierarchies()) {
+			AMLInstanceHierarchy targetInstanceHierarchy = target.getInstanceHierarchy(sourceInstanceHierarchy.getName());
+			if (targetInstanceHierarchy == null)
+				targetInstanceHierarchy = created(target.createInstanceHierarchy(sourceInstanceHierarchy.getName()));
+			reconcileElement(targetInstanceHierarchy, sourceInstanceHierarchy);
+			reconcileInternalElements(targetInstanceHierarchy, sourceInstanceHierarchy);
+			checkUnreconciled(targetInstanceHierarchy, sourceInstanceHierarchy.getGroupsCount() != targetInstanceHierarchy.getGroupsCount()
+					|| sourceInstanceHierarchy.getMirrorObjectsCount() != targetInstanceHierarchy.getMirrorObjectsCount());
+		}
+		for (AMLInstanceHierarchy targetInstanceHierarchy : target.getInstanceHierarchies()) {
+			if (source.getInstanceHierarchy(targetInstanceHierarchy.getName()) == null)
+				deletedElements.add(targetInstanceHierarchy);
+		}
+
+		// innermost first, the outer ones may still be referenced by them
+		for (int i = deletedElements.size() - 1; i >= 0; i--) {
+			AMLDocumentElement element = deletedElements.get(i);
+			if (element.isDeleted())
+				continue;
+			// still referenced from other documents
+			if (element.validateDeepDelete().isAnyOperationNotPermitted()) {
+				checkUnreconciled(element, true);
+				continue;
+			}
+			element.deepDelete();
+			changesCount++;
+		}
+		removeExternalReferences();
+	}
+
+	/**
+	 * Returns the paths of the elements with differences which were not reconciled.
+	 */
+	public List<String> getUnreconciledElements() {
+		return unreconciledElements;
+	}
+
+	private void restoreUnrecorded() {
+		if (header != null)
+			header.restore(target);
+		for (Map.Entry<AMLElement, ElementProperties> entry : modifiedElements.entrySet()) {
+			AMLElement element = entry.getKey();
+			if (element instanceof AMLDocumentElement && ((AMLDocumentElement) element).isDeleted())
+				continue;
+			entry.getValue().restore(element);
+			if (element instanceof AMLElementImpl)
+				((AMLElementImpl) element).getDocument().notifyElementModified((AMLElementImpl) element);
+		}
+	}
+
+	private void indexInternalElements(AMLDocumentElement container) {
+		if (container instanceof AMLInternalElementContainer) {
+			for (AMLInternalElement element : ((AMLInternalElementContainer) container).getInternalElements()) {
+				targetInternalElements.put(element.getId(), element);
+				indexInternalElements(element);
+			}
+		}
+		if (container instanceof AMLSystemUnitClassContainer) {
+			for (AMLSystemUnitClass systemUnitClass : ((AMLSystemUnitClassContainer) container).getSystemUnitClasses())
+				indexInternalElements(systemUnitClass);
+		}
+	}
+
+	private void collectInternalElementIds(AMLDocumentElement container) {
+		if (container instanceof AMLInternalElementContainer) {
+			for (AMLInternalElement element : ((AMLInternalElementContainer) container).getInternalElements()) {
+				sourceInternalElementIds.add(element.getId());
+				collectInternalElementIds(element);
+			}
+		}
+		if (container instanceof AMLSystemUnitClassContainer) {
+			for (AMLSystemUnitClass systemUnitClass : ((AMLSystemUnitClassContainer) container).getSystemUnitClasses())
+				collectInternalElementIds(systemUnitClass);
+		}
+	}
+
+	private <T> T created(T element) {
+		changesCount++;
+		return element;
+	}
+
+	private void reconcileExternalReferences() throws AMLValidationException {
+		Set<DocumentLocation> sourceLocations = new HashSet<DocumentLocation>();
+		for (AMLDocument referencedDocument : source.getExplicitlyReferencedDocuments()) {
+			DocumentLocation location = referencedDocument.getDocumentLocation();
+			sourceLocations.add(location);
+			AMLDocument targetDocument = getTargetDocument(location);
+			if (targetDocument == null) {
+				checkUnreconciled(target, true);
+				continue;
+			}
+			if (!contains(target.getExplicitlyReferencedDocuments(), targetDocument)) {
+				target.addExplicitExternalReference(targetDocument);
+				changesCount++;
+			}
+		}
+		// removed at the end, once no element refers to the document any more
+		for (AMLDocument referencedDocument : target.getExplicitlyReferencedDocuments()) {
+			if (!sourceLocations.contains(referencedDocument.getDocumentLocation()))
+				removedReferences.add(referencedDocument);
+		}
+	}
+
+	private void removeExternalReferences() throws AMLValidationException {
+		for (AMLDocument referencedDocument : removedReferences) {
+			if (target.validateRemoveExplicitExternalReference(referencedDocument).isAnyOperationNotPermitted()) {
+				checkUnreconciled(target, true);
+				continue;
+			}
+			target.removeExplicitExternalReference(referencedDocument);
+			changesCount++;
+		}
+	}
+
+	// the documents a new reference points to are loaded into the session
+	private AMLDocument getTargetDocument(DocumentLocation location) {
+		try {
+			AMLDocument document = target.getSession().getAMLDocumentByDocumentLocation(location);
+			if (document == null && location instanceof URLDocumentLocation) {
+				URL url = ((URLDocumentLocation) location).getUrl();
+				document = target.getSession().loadAMLDocument(url);
+			}
+			return document;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static boolean contains(Iterable<AMLDocument> documents, AMLDocument document) {
+		for (AMLDocument element : documents) {
+			if (element == document)
+				return true;
+		}
+		return false;
+	}
+
+	private void reconcileHeader() {
+		header = new Header(target);
+		if (!same(target.getWriterName(), source.getWriterName()))
+			target.setWriterName(source.getWriterName());
+		if (!same(target.getWriterID(), source.getWriterID()))
+			target.setWriterID(source.getWriterID());
+		if (!same(target.getWriterVendor(), source.getWriterVendor()))
+			target.setWriterVendor(source.getWriterVendor());
+		if (!same(target.getWriterVendorURL(), source.getWriterVendorURL()))
+			target.setWriterVendorURL(source.getWriterVendorURL());
+		if (!same(target.getWriterVersion(), source.getWriterVersion()))
+			target.setWriterVersion(source.getWriterVersion());
+		if (!same(target.getWriterRelease(), source.getWriterRelease()))
+			target.setWriterRelease(source.getWriterRelease());
+		if (!same(target.getLastWritingDate(), source.getLastWritingDate()))
+			target.setLastWritingDate(source.getLastWritingDate());
+		if (!same(target.getWriterProjectTitle(), source.getWriterProjectTitle()))
+			target.setWriterProjectTitle(source.getWriterProjectTitle());
+		if (!same(target.getWriterProjectID(), source.getWriterProjectID()))
+			target.setWriterProjectID(source.getWriterProjectID());
+	}
+
+	private void reconcileElement(AMLElement targetElement, AMLElement sourceElement) {
+		if (same(targetElement.getDescription(), sourceElement.getDescription()) && same(targetElement.getVersion(), sourceElement.getVersion())
+				&& same(targetElement.getCopyright(), sourceElement.getCopyright())
+				&& same(targetElement.getAdditionalInformation(), sourceElement.getAdditionalInformation()))
+			return;
+		if (!modifiedElements.containsKey(targetElement))
+			modifiedElements.put(targetElement, new ElementProperties(targetElement));
+		targetElement.setDescription(sourceElement.getDescription());
+		targetElement.setVersion(sourceElement.getVersion());
+		targetElement.setCopyright(sourceElement.getCopyright());
+		targetElement.setAdditionalInformation(sourceElement.getAdditionalInformation());
+		changesCount++;
+		// these setters do not notify on their own
+		if (targetElement instanceof AMLElementImpl)
+			((AMLElementImpl) targetElement).getDocument().notifyElementModified((AMLElementImpl) targetElement);
+	}
+
+	private void reconcileName(AMLRenamable targetElement, AMLRenamable sourceElement) throws AMLValidationException {
+		if (same(targetElement.getName(), sourceElement.getName()))
+			return;
+		targetElement.setName(sourceElement.getName());
+		changesCount++;
+	}
+
+	private void createInterfaceClasses(AMLInterfaceClassContainer targetContainer, AMLInterfaceClassContainer sourceContainer)
+			throws AMLValidationException {
+		for (AMLInterfaceClass sourceClass : sourceContainer.getInterfaceClasses()) {
+			AMLInterfaceClass targetClass = targetContainer.getInterfaceClass(sourceClass.getName());
+			if (targetClass == null)
+				targetClass = created(targetContainer.createInterfaceClass(sourceClass.getName()));
+			createInterfaceClasses(targetClass, sourceClass);
+		}
+	}
+
+	private void reconcileInterfaceClasses(AMLInterfaceClassContainer targetContainer, AMLInterfaceClassContainer sourceContainer)
+			throws AMLValidationException {
+		for (AMLInterfaceClass targetClass : targetContainer.getInterfaceClasses()) {
+			AMLInterfaceClass sourceClass = sourceContainer.getInterfaceClass(targetClass.getName());
+			if (sourceClass == null) {
+				deletedElements.add(targetClass);
+				continue;
+			}
+			reconcileElement(targetClass, sourceClass);
+			AMLInterfaceClass sourceBaseClass = sourceClass.getBaseInterfaceClass();
+			AMLInterfaceClass targetBaseClass = targetClass.getBaseInterfaceClass();
+			String baseClassPath = sourceBaseClass == null ? null : sourceBaseClass.getClassPath();
+			if (!same(targetBaseClass == null ? null : targetBaseClass.getClassPath(), baseClassPath)) {
+				if (baseClassPath == null)
+					targetClass.unsetBaseInterfaceClass();
+				else
+					targetClass.setBaseInterfaceClass(target.getInterfaceClassByPath(baseClassPath));
+				changesCount++;
+			}
+			reconcileAttributes(targetClass, sourceClass);
+			reconcileInterfaceClasses(targetClass, sourceClass);
+		}
+	}
+
+	private void createRoleClasses(AMLRoleClassContainer targetContainer, AMLRoleClassContainer sourceContainer) throws AMLValidationException {
+		for (AMLRoleClass sourceClass : sourceContainer.getRoleClasses()) {
+			AMLRoleClass targetClass = targetContainer.getRoleClass(sourceClass.getName());
+			if (targetClass == null)
+				targetClass = created(targetContainer.createRoleClass(sourceClass.getName()));
+			createRoleClasses(targetClass, sourceClass);
+		}
+	}
+
+	private void reconcileRoleClasses(AMLRoleClassContainer targetContainer, AMLRoleClassContainer sourceContainer) throws AMLValidationException {
+		for (AMLRoleClass targetClass : targetContainer.getRoleClasses()) {
+			AMLRoleClass sourceClass = sourceContainer.getRoleClass(targetClass.getName());
+			if (sourceClass == null) {
+				deletedElements.add(targetClass);
+				continue;
+			}
+			reconcileElement(targetClass, sourceClass);
+			AMLRoleClass sourceBaseClass = sourceClass.getBaseRoleClass();
+			AMLRoleClass targetBaseClass = targetClass.getBaseRoleClass();
+			String baseClassPath = sourceBaseClass == null ? null : sourceBaseClass.getClassPath();
+			if (!same(targetBaseClass == null ? null : targetBaseClass.getClassPath(), baseClassPath)) {
+				if (baseClassPath == null)
+					targetClass.unsetBaseRoleClass();
+				else
+					targetClass.setBaseRoleClass(target.getRoleClassByPath(baseClassPath));
+				changesCount++;
+			}
+			reconcileAttributes(targetClass, sourceClass);
+			reconcileExternalInterfaces(targetClass, sourceClass);
+			reconcileRoleClasses(targetClass, sourceClass);
+		}
+	}
+
+	private void createSystemUnitClasses(AMLSystemUnitClassContainer targetContainer, AMLSystemUnitClassContainer sourceContainer)
+			throws AMLValidationException {
+		for (AMLSystemUnitClass sourceClass : sourceContainer.getSystemUnitClasses()) {
+			AMLSystemUnitClass targetClass = targetContainer.getSystemUnitClass(sourceClass.getName());
+			if (targetClass == null)
+				targetClass = created(targetContainer.createSystemUnitClass(sourceClass.getName()));
+			createSystemUnitClasses(targetClass, sourceClass);
+		}
+	}
+
+	private void reconcileSystemUnitClasses(AMLSystemUnitClassContainer targetContainer, AMLSystemUnitClassContainer sourceContainer)
+			throws AMLValidationException {
+		for (AMLSystemUnitClass targetClass : targetContainer.getSystemUnitClasses()) {
+			AMLSystemUnitClass sourceClass = sourceContainer.getSystemUnitClass(targetClass.getName());
+			if (sourceClass == null) {
+				deletedElements.add(targetClass);
+				continue;
+			}
+			reconcileElement(targetClass, sourceClass);
+			AMLSystemUnitClass sourceBaseClass = sourceClass.getBaseSystemUnitClass();
+			AMLSystemUnitClass targetBaseClass = targetClass.getBaseSystemUnitClass();
+			String baseClassPath = sourceBaseClass == null ? null : sourceBaseClass.getClassPath();
+			if (!same(targetBaseClass == null ? null : targetBaseClass.getClassPath(), baseClassPath)) {
+				if (baseClassPath == null)
+					targetClass.unsetBaseSystemUnitClass();
+				else
+					targetClass.setBaseSystemUnitClass(target.getSystemUnitClassByPath(baseClassPath));
+				changesCount++;
+			}
+			reconcileAttributes(targetClass, sourceClass);
+			reconcileExternalInterfaces(targetClass, sourceClass);
+			reconcileSupportedRoleClasses(targetClass, sourceClass);
+			reconcileInternalElements(targetClass, sourceClass);
+			checkUnreconciled(targetClass, sourceClass.getGroupsCount() != targetClass.getGroupsCount()
+					|| sourceClass.getInternalLinksCount() != targetClass.getInternalLinksCount()
+					|| sourceClass.hasFrameAttribute() != targetClass.hasFrameAttribute()
+					|| (sourceClass.getCOLLADAInterface() == null) != (targetClass.getCOLLADAInterface() == null));
+			reconcileSystemUnitClasses(targetClass, sourceClass);
+		}
+	}
+
+	private void reconcileInternalElements(AMLInternalElementContainer targetContainer, AMLInternalElementContainer sourceContainer)
+			throws AMLValidationException {
+		List<AMLInternalElement> targetElements = new ArrayList<AMLInternalElement>();
+		for (AMLInternalElement targetElement : targetContainer.getInternalElements())
+			targetElements.add(targetElement);
+
+		for (AMLInternalElement sourceElement : sourceContainer.getInternalElements()) {
+			AMLInternalElement targetElement = targetInternalElements.get(sourceElement.getId());
+			if (targetElement == null) {
+				targetElement = created(targetContainer.createInternalElement(sourceElement.getId()));
+				targetInternalElements.put(targetElement.getId(), targetElement);
+			} else if (targetElement.getParent() != targetContainer) {
+				targetElement.reparent(targetElement.getParent(), targetContainer, null, null);
+				changesCount++;
+			}
+			reconcileInternalElement(targetElement, sourceElement);
+		}
+		// the ones moved to another parent are reconciled there
+		for (AMLInternalElement targetElement : targetElements) {
+			if (!sourceInternalElementIds.contains(targetElement.getId()))
+				deletedElements.add(targetElement);
+		}
+	}
+
+	private void reconcileInternalElement(AMLInternalElement targetElement, AMLInternalElement sourceElement) throws AMLValidationException {
+		reconcileName(targetElement, sourceElement);
+		reconcileElement(targetElement, sourceElement);
+		AMLSystemUnitClass sourceBaseClass = sourceElement.getBaseSystemUnitClass();
+		AMLSystemUnitClass targetBaseClass = targetElement.getBaseSystemUnitClass();
+		String baseClassPath = sourceBaseClass == null ? null : sourceBaseClass.getClassPath();
+		if (!same(targetBaseClass == null ? null : targetBaseClass.getClassPath(), baseClassPath)) {
+			if (baseClassPath == null)
+				targetElement.unsetBaseSystemUnitClass();
+			else
+				targetElement.setBaseSystemUnitClass(target.getSystemUnitClassByPath(baseClassPath));
+			changesCount++;
+		}
+		reconcileAttributes(targetElement, sourceElement);
+		reconcileExternalInterfaces(targetElement, sourceElement);
+		reconcileSupportedRoleClasses(targetElement, sourceElement);
+		reconcileInternalElements(targetElement, sourceElement);
+		checkUnreconciled(targetElement, sourceElement.getInternalLinksCount() != targetElement.getInternalLinksCount()
+				|| sourceElement.getMirrorObjectsCount() != targetElement.getMirrorObjectsCount()
+				|| sourceElement.getFacetsCount() != targetElement.getFacetsCount()
+				|| (sourceElement.getRoleRequirements() == null) != (targetElement.getRoleRequirements() == null)
+				|| sourceElement.hasFrameAttribute() != targetElement.hasFrameAttribute()
+				|| (sourceElement.getCOLLADAInterface() == null) != (targetElement.getCOLLADAInterface() == null));
+	}
+
+	private void reconcileExternalInterfaces(AMLExternalInterfaceContainer targetContainer, AMLExternalInterfaceContainer sourceContainer)
+			throws AMLValidationException {
+		Set<UUID> sourceIds = new HashSet<UUID>();
+		for (AMLExternalInterface sourceInterface : sourceContainer.getExternalInterfaces()) {
+			sourceIds.add(sourceInterface.getId());
+			AMLExternalInterface targetInterface = targetContainer.getExternalInterface(sourceInterface.getId());
+			String classPath = sourceInterface.getInterfaceClass().getClassPath();
+			if (targetInterface != null && !same(targetInterface.getInterfaceClass().getClassPath(), classPath)) {
+				checkUnreconciled(targetInterface, true);
+				continue;
+			}
+			if (targetInterface == null)
+				targetInterface = created(targetContainer.createExternalInterface(sourceInterface.getId(), target.getInterfaceClassByPath(classPath)));
+			reconcileName(targetInterface, sourceInterface);
+			reconcileElement(targetInterface, sourceInterface);
+			reconcileAttributes(targetInterface, sourceInterface);
+		}
+		for (AMLExternalInterface targetInterface : targetContainer.getExternalInterfaces()) {
+			if (!sourceIds.contains(targetInterface.getId()))
+				deletedElements.add(targetInterface);
+		}
+	}
+
+	private void reconcileSupportedRoleClasses(AMLSupportedRoleClassContainer targetContainer, AMLSupportedRoleClassContainer sourceContainer)
+			throws AMLValidationException {
+		Set<String> sourceClassPaths = new HashSet<String>();
+		for (AMLSupportedRoleClass sourceRoleClass : sourceContainer.getSupportedRoleClasses()) {
+			String classPath = sourceRoleClass.getRoleClass().getClassPath();
+			sourceClassPaths.add(classPath);
+			AMLRoleClass roleClass = target.getRoleClassByPath(classPath);
+			if (targetContainer.getSupportedRoleClass(roleClass) == null) {
+				targetContainer.createSupportedRoleClass(roleClass);
+				changesCount++;
+			}
+		}
+		for (AMLSupportedRoleClass targetRoleClass : targetContainer.getSupportedRoleClasses()) {
+			if (!sourceClassPaths.contains(targetRoleClass.getRoleClass().getClassPath()))
+				deletedElements.add(targetRoleClass);
+		}
+	}
+
+	private void reconcileAttributes(AMLAttributeContainer targetContainer, AMLAttributeContainer sourceContainer) throws AMLValidationException {
+		Set<String> sourceNames = new HashSet<String>();
+		for (AMLAttribute sourceAttribute : sourceContainer.getAttributes()) {
+			sourceNames.add(sourceAttribute.getName());
+			AMLAttribute targetAttribute = targetContainer.getAttribute(sourceAttribute.getName());
+			if (targetAttribute == null)
+				targetAttribute = created(targetContainer.createAttribute(sourceAttribute.getName()));
+			reconcileAttribute(targetAttribute, sourceAttribute);
+		}
+		for (AMLAttribute targetAttribute : targetContainer.getAttributes()) {
+			if (!sourceNames.contains(targetAttribute.getName()))
+				deletedElements.add(targetAttribute);
+		}
+	}
+
+	private void reconcileAttribute(AMLAttribute targetAttribute, AMLAttribute sourceAttribute) throws AMLValidationException {
+		boolean modified = false;
+		if (!same(targetAttribute.getDescription(), sourceAttribute.getDescription())) {
+			targetAttribute.setDescription(sourceAttribute.getDescription());
+			modified = true;
+		}
+		if (!same(targetAttribute.getDataType(), sourceAttribute.getDataType())) {
+			targetAttribute.setDataType(sourceAttribute.getDataType());
+			modified = true;
+		}
+		if (!same(targetAttribute.getUnit(), sourceAttribute.getUnit())) {
+			targetAttribute.setUnit(sourceAttribute.getUnit());
+			modified = true;
+		}
+		if (!same(targetAttribute.getDefaultValue(), sourceAttribute.getDefaultValue())) {
+			targetAttribute.setDefaultValue(sourceAttribute.getDefaultValue());
+			modified = true;
+		}
+		if (!same(targetAttribute.getValue(), sourceAttribute.getValue())) {
+			targetAttribute.setValue(sourceAttribute.getValue());
+			modified = true;
+		}
+
+		Set<String> sourceRefSemantics = new HashSet<String>();
+		for (String refSemantic : sourceAttribute.getRefSemantics()) {
+			sourceRefSemantics.add(refSemantic);
+			if (!targetAttribute.hasRefSemantic(refSemantic)) {
+				targetAttribute.addRefSemantic(refSemantic);
+				modified = true;
+			}
+		}
+		List<String> removedRefSemantics = new ArrayList<String>();
+		for (String refSemantic : targetAttribute.getRefSemantics()) {
+			if (!sourceRefSemantics.contains(refSemantic))
+				removedRefSemantics.add(refSemantic);
+		}
+		for (String refSemantic : removedRefSemantics) {
+			targetAttribute.removeRefSemantic(refSemantic);
+			modified = true;
+		}
+		if (modified)
+			changesCount++;
+
+		checkUnreconciled(targetAttribute, count(sourceAttribute.getConstraints()) != count(targetAttribute.getConstraints()));
+		reconcileAttributes(targetAttribute, sourceAttribute);
+	}
+
+	private static int count(Iterable<?> iterable) {
+		int count = 0;
+		for (@SuppressWarnings("unused")
+		Object element : iterable)
+			count++;
+		return count;
+	}
+
+	private void checkUnreconciled(AMLDocumentElement element, boolean differs) {
+		if (differs)
+			unreconciledElements.add(getPath(element));
+	}
+
+	private static String getPath(AMLDocumentElement element) {
+		StringBuilder path = new StringBuilder();
+		for (AMLDocumentElement current = element; current != null && !(current instanceof AMLDocument); current = current.getParent()) {
+			String name = current instanceof AMLRenamable ? ((AMLRenamable) current).getName() : current.getClass().getSimpleName();
+			path.insert(0, path.length() == 0 ? name : name + "/");
+		}
+		return path.toString();
+	}
+
+	private static boolean same(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -4,6 +4,7 @@
  *******************************************************************************/
 package org.automationml.internal.aml;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -15,10 +16,14 @@ import java.util.UUID;
 import org.automationml.aml.AMLDocument;
 import org.automationml.aml.AMLDocumentElement;
 import org.automationml.aml.AMLDocumentScopeInvalidException;
+import org.automationml.aml.AMLGroup;
+import org.automationml.aml.AMLGroupContainer;
 import org.automationml.aml.AMLInstanceHierarchy;
 import org.automationml.aml.AMLInterfaceClassLibrary;
 import org.automationml.aml.AMLInternalElement;
 import org.automationml.aml.AMLInternalElementContainer;
+import org.automationml.aml.AMLMirrorContainer;
+import org.automationml.aml.AMLMirrorObject;
 import org.automationml.aml.AMLRoleClassLibrary;
 import org.automationml.aml.AMLSystemUnitClass;
 import org.automationml.aml.AMLSystemUnitClassLibrary;
@@ -513,6 +518,12 @@ public class AMLDocumentScope {
 		Iterator<AMLInstanceHierarchy> instanceHierarchies = document.getInstanceHierarchies().iterator();
 		while (instanceHierarchies.hasNext()) {
 			AMLInternalElementContainer container = instanceHierarchies.next();
+			// not loaded yet, don't load it just to collect its ids
+			Collection<UUID> unloadedIds = ((AMLInstanceHierarchyImpl) container)._getUnloadedInternalElementIds();
+			if (unloadedIds != null) {
+				internalElementIds.addAll(unloadedIds);
+				continue;
+			}
 			collectInternalElementIds(internalElementIds, container);
 		}
 
@@ -545,9 +556,24 @@ public class AMLDocumentScope {
 			internalElementIds.add(internalElement.getId());
 			collectInternalElementIds(internalElementIds, internalElement);
 		}
+		collectMirrorAndGroupIds(internalElementIds, container);
 		return internalElementIds;
 	}
 
+	// added as unique ids on creation as well, so a rebuilt scope knows the same ids as an updated one
+	private void collectMirrorAndGroupIds(Set<UUID> ids, AMLDocumentElement container) {
+		if (container instanceof AMLMirrorContainer) {
+			for (AMLMirrorObject mirror : ((AMLMirrorContainer) container).getMirrorObjects())
+				ids.add(mirror.getId());
+		}
+		if (container instanceof AMLGroupContainer) {
+			for (AMLGroup group : ((AMLGroupContainer) container).getGroups()) {
+				ids.add(group.getId());
+				collectMirrorAndGroupIds(ids, group);
+			}
+		}
+	}
+
 	private Set<UUID> collectUniqueIds(Set<AMLDocument> documents) {
 		Set<UUID> internalElementIds = new LinkedHashSet<UUID>();
 		for (AMLDocument document : documents) {
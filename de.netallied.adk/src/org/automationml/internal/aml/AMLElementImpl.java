@@ -55,6 +55,7 @@ public abstract class AMLElementImpl extends AbstractAMLDocumentElement implemen
 	private String version;
 	private String copyright;
 	private String additionalInformation;
+	private AMLValueStore.StoredValue storedAdditionalInformation;
 	private Collection<AMLElement.Revision> revisions = new ArrayList<AMLElement.Revision>();
 
 	AMLElementImpl(AMLElement element) {
@@ -69,12 +70,12 @@ public abstract class AMLElementImpl extends AbstractAMLDocumentElement implemen
 
 	public void setDescription(String description) {
 		this.description = description;
-
+		discardSourceRegion();
 	}
 
 	public void setVersion(String version) {
 		this.version = version;
-
+		discardSourceRegion();
 	}
 	
 	@Override
@@ -93,16 +94,35 @@ public abstract class AMLElementImpl extends AbstractAMLDocumentElement implemen
 		revision.comment = comment;
 
 		revisions.add(revision);
+		discardSourceRegion();
 	}
 
 	public void setCopyright(String copyright) {
 		this.copyright = copyright;
-
+		discardSourceRegion();
 	}
 
 	public void setAdditionalInformation(String additionalInformation) {
 		this.additionalInformation = additionalInformation;
+		this.storedAdditionalInformation = null;
+		discardSourceRegion();
+	}
 
+	// these properties are not recorded as changes, the element has to be written again by an incremental save
+	private void discardSourceRegion() {
+		if (isDeleted())
+			return;
+		AMLDocumentImpl document = getDocument();
+		if (!document.getSavepointManager().isSuspended())
+			document.discardSourceRegion(this);
+	}
+
+	/**
+	 * Sets additional information spilled to the value store of the session while loading, it is read when asked for.
+	 */
+	public void setAdditionalInformation(AMLValueStore.StoredValue storedAdditionalInformation) {
+		this.additionalInformation = null;
+		this.storedAdditionalInformation = storedAdditionalInformation;
 	}
 
 	@Override
@@ -122,9 +142,18 @@ public abstract class AMLElementImpl extends AbstractAMLDocumentElement implemen
 
 	@Override
 	public String getAdditionalInformation() {
+		if (storedAdditionalInformation != null)
+			return storedAdditionalInformation.getValue();
 		return additionalInformation;
 	}
 
+	/**
+	 * Returns the additional information if it is kept in the value store of the session, otherwise null.
+	 */
+	public AMLValueStore.StoredValue getStoredAdditionalInformation() {
+		return storedAdditionalInformation;
+	}
+
 	@Override
 	public abstract AMLDocumentImpl getDocument();
 
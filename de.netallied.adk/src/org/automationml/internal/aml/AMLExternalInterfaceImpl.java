@@ -287,7 +287,7 @@ public class AMLExternalInterfaceImpl extends AMLElementImpl implements AMLExter
 	}
 
 	private void _setName(String newName) {
-		this.name = newName;
+		this.name = getSession().intern(newName);
 	}
 
 	@Override
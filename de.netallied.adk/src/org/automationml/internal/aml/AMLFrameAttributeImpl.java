@@ -138,6 +138,11 @@ public class AMLFrameAttributeImpl extends AbstractAMLDocumentElement implements
 			}
 		}
 
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean mergeInto(Change _change) {
 			if (!(_change instanceof ModifyFrameAttributeChange))
@@ -4,6 +4,7 @@
  *******************************************************************************/
 package org.automationml.internal.aml;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -125,6 +126,7 @@ public class AMLInstanceHierarchyImpl extends AMLElementImpl implements AMLInsta
 	private LinkedHashMap<UUID, AMLInternalElement> internalElements = new LinkedHashMap<UUID, AMLInternalElement>();
 	private LinkedHashMap<UUID, AMLGroup> groups = new LinkedHashMap<UUID, AMLGroup>();
 	private LinkedHashMap<UUID, AMLMirrorObject> mirrors = new LinkedHashMap<UUID, AMLMirrorObject>();
+	private AMLInstanceHierarchyLoader loader;
 
 	AMLInstanceHierarchyImpl(AMLDocumentImpl amlDocument, String name) {
 		this.document = amlDocument;
@@ -227,12 +229,14 @@ public class AMLInstanceHierarchyImpl extends AMLElementImpl implements AMLInsta
 	@Override
 	public Iterable<AMLInternalElement> getInternalElements() {
 		assertNotDeleted();
+		load();
 		return new ReadOnlyIterable<AMLInternalElement>(internalElements.values());
 	}
 
 	@Override
 	public int getInternalElementsCount() {
 		assertNotDeleted();
+		load();
 		return internalElements.size();
 	}
 
@@ -249,9 +253,33 @@ public class AMLInstanceHierarchyImpl extends AMLElementImpl implements AMLInsta
 
 	@Override
 	public LinkedHashMap<UUID, AMLInternalElement> _getInternalElements() {
+		load();
 		return internalElements;
 	}
 
+	public void setLoader(AMLInstanceHierarchyLoader loader) {
+		this.loader = loader;
+	}
+
+	public Collection<UUID> _getUnloadedInternalElementIds() {
+		if (loader == null)
+			return null;
+		return loader.getInternalElementIds();
+	}
+
+	private void load() {
+		if (loader == null)
+			return;
+		// reset first, the loader adds the elements through the public API, and sets itself again if it fails before that
+		AMLInstanceHierarchyLoader instanceHierarchyLoader = loader;
+		loader = null;
+		try {
+			instanceHierarchyLoader.load();
+		} catch (Exception e) {
+			throw new RuntimeException("InstanceHierarchy " + name + " could not be loaded", e);
+		}
+	}
+
 	@Override
 	protected AMLValidationResultList doValidateDelete(AMLValidator validator) {
 
@@ -294,17 +322,20 @@ public class AMLInstanceHierarchyImpl extends AMLElementImpl implements AMLInsta
 	@Override
 	public Iterable<AMLGroup> getGroups() {
 		assertNotDeleted();
+		load();
 		return new ReadOnlyIterable<AMLGroup>(groups.values());
 	}
 	
 	@Override
 	public int getGroupsCount() {
 		assertNotDeleted();
+		load();
 		return groups.size();
 	}
 
 	@Override
 	public LinkedHashMap<UUID, AMLGroup> _getGroups() {
+		load();
 		return groups;
 	}
 
@@ -353,6 +384,7 @@ public class AMLInstanceHierarchyImpl extends AMLElementImpl implements AMLInsta
 		if (checkedElements.contains(this))
 			return;
 		checkedElements.add(this);
+		load();
 		
 		if (!isDescendantOf(elementToReparent) &&!getDocumentManager().getDocumentScope(document).isInDocumentScope(this))
 			result.addDocumentElementValidationResult(new AMLValidationResultImpl(this, Severity.AML_ERROR, "instance hierarchy is not part of document scope"));
@@ -420,7 +452,7 @@ public class AMLInstanceHierarchyImpl extends AMLElementImpl implements AMLInsta
 		}
 		
 		while (getGroups().iterator().hasNext()) {
-			((AbstractAMLDocumentElement)getGroups().iterator())._doDeepDelete(baseElement);
+			((AbstractAMLDocumentElement)getGroups().iterator().next())._doDeepDelete(baseElement);
 		}
 		
 		delete();
@@ -527,6 +559,7 @@ public class AMLInstanceHierarchyImpl extends AMLElementImpl implements AMLInsta
 	@Override
 	public Iterable<AMLMirrorObject> getMirrorObjects() {
 		assertNotDeleted();
+		load();
 		return new ReadOnlyIterable<AMLMirrorObject>(mirrors.values());
 	}
 
@@ -547,12 +580,14 @@ public class AMLInstanceHierarchyImpl extends AMLElementImpl implements AMLInsta
 	@Override
 	public int getMirrorObjectsCount() {
 		assertNotDeleted();
+		load();
 		return mirrors.size();
 	}
 
 	@Override
 	public LinkedHashMap<UUID, AMLMirrorObject> _getMirrors() {
 		assertNotDeleted();
+		load();
 		return mirrors;
 	}
 
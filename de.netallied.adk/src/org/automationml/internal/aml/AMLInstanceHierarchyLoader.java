@@ -0,0 +1,23 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Creates the content of an instance hierarchy that was skipped while loading the document. It is called on the first access to that content,
+ * and again on the next access if it failed.
+ */
+public interface AMLInstanceHierarchyLoader {
+
+	void load() throws Exception;
+
+	/**
+	 * Returns the ids of all internal elements that {@link #load()} will create, so the document scope knows them without loading.
+	 */
+	Collection<UUID> getInternalElementIds();
+
+}
@@ -230,6 +230,11 @@ public class AMLInternalElementImpl extends AMLElementImpl implements AMLInterna
 			internalElement._setBaseSystemUnitClass(newClass == null ? null : newClass.getDocumentElement() );
 		}
 
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean mergeInto(Change _change) {
 			if (!(_change instanceof ModifyInternalElementClassChange))
@@ -68,6 +68,11 @@ public class AMLMappingObjectImpl extends AMLElementImpl implements AMLMappingOb
 			mappingObject._mapAttribute(roleAttribute.getDocumentElement(), attribute.getDocumentElement());
 		}
 
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean mergeInto(Change _change) {
 			if (!(_change instanceof MappingObjectMapAttributeChange))
@@ -154,6 +159,11 @@ public class AMLMappingObjectImpl extends AMLElementImpl implements AMLMappingOb
 			mappingObject._unmapAttribute(oldRoleAttribute.getDocumentElement());
 		}
 
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean mergeInto(Change _change) {
 			if (!(_change instanceof MappingObjectUnmapAttributeChange))
@@ -239,6 +239,17 @@ public class AMLRoleClassImpl extends AbstractAMLClassImpl<AMLRoleClassImpl> imp
 		}
 		super.doValidateDeepDelete(validator, baseElement, validationResultList);
 	}
+
+	@Override
+	protected void _doDeepDelete(AMLDocumentElement baseElement)
+			throws AMLValidationException {
+
+		while (getExternalInterfaces().iterator().hasNext()) {
+			((AbstractAMLDocumentElement)getExternalInterfaces().iterator().next())._doDeepDelete(baseElement);
+		}
+
+		super._doDeepDelete(baseElement);
+	}
 	
 	@Override
 	public AMLRoleClass createRoleClass(String name, AMLRoleClass roleClass)
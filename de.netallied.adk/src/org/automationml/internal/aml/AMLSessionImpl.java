@@ -4,17 +4,44 @@
  *******************************************************************************/
 package org.automationml.internal.aml;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import org.automationml.DocumentLocation;
 import org.automationml.DocumentURLResolver;
+import org.automationml.MemoryDocumentBundle;
 import org.automationml.Savepoint;
+import org.automationml.StAXBackend;
 import org.automationml.URLDocumentLocation;
+import org.automationml.XMLBackend;
 import org.automationml.aml.AMLDocument;
+import org.automationml.aml.AMLDocumentElement;
+import org.automationml.aml.AMLGroup;
+import org.automationml.aml.AMLGroupContainer;
+import org.automationml.aml.AMLInstanceHierarchy;
+import org.automationml.aml.AMLInterfaceClassLibrary;
+import org.automationml.aml.AMLInternalElement;
+import org.automationml.aml.AMLInternalElementContainer;
+import org.automationml.aml.AMLMirrorContainer;
+import org.automationml.aml.AMLMirrorObject;
+import org.automationml.aml.AMLDocumentURLResolver;
+import org.automationml.aml.AMLLoadLimits;
+import org.automationml.aml.AMLProjection;
+import org.automationml.aml.AMLRoleClassLibrary;
 import org.automationml.aml.AMLSession;
 import org.automationml.aml.AMLSessionChangeListener;
+import org.automationml.aml.AMLStreamHandler;
+import org.automationml.aml.AMLStringPool;
+import org.automationml.aml.AMLSystemUnitClass;
+import org.automationml.aml.AMLSystemUnitClassContainer;
+import org.automationml.aml.AMLSystemUnitClassLibrary;
 import org.automationml.aml.AMLValidationException;
 import org.automationml.aml.AMLValidationResultList;
 import org.automationml.aml.AMLValidator;
@@ -26,6 +53,9 @@ import org.automationml.internal.IdentifierManager;
 import org.automationml.internal.ProgressMonitor;
 import org.automationml.internal.ReadOnlyIterable;
 import org.automationml.internal.SavepointManager;
+import org.automationml.internal.aml.persistence.AMLDeserializer;
+import org.automationml.internal.aml.persistence.AMLExternalReferenceResolver;
+import org.automationml.internal.aml.persistence.AMLLoadBudget;
 
 public class AMLSessionImpl extends AbstractAMLObject implements AMLSession {
 
@@ -77,6 +107,11 @@ public class AMLSessionImpl extends AbstractAMLObject implements AMLSession {
 			identifier.unsetDocumentElement();
 		}
 
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean mergeInto(Change change) {
 			return false;
@@ -91,13 +126,27 @@ public class AMLSessionImpl extends AbstractAMLObject implements AMLSession {
 		}
 	}
 
+	public static final long DEFAULT_PARALLEL_PARSING_THRESHOLD = 16 << 20;
+
 	private final SavepointManager savepointManager = new SavepointManager(this);
 	private final AMLDocumentManager documentManager = new AMLDocumentManager(this);
 	private IdentifierManager identifierManager = new IdentifierManager();
 	private Collection<AMLSessionChangeListener> sessionChangeListeners = new HashSet<AMLSessionChangeListener>();
 	private int sessionChangeTransactionsCount;
 	private DocumentURLResolver documentURLResolver;
+	private final AMLExternalReferenceResolver externalReferenceResolver = new AMLExternalReferenceResolver();
 	private ProgressMonitor progressMonitor;
+	private XMLBackend xmlBackend = StAXBackend.getDefault();
+	private boolean lazyLoading;
+	private boolean keepSourceLocations;
+	private long parallelParsingThreshold = DEFAULT_PARALLEL_PARSING_THRESHOLD;
+	private boolean trustedLoading;
+	private boolean incrementalSaving;
+	private List<AMLDocument> trustedLoadedDocuments;
+	private int valueSpillThreshold = -1;
+	private AMLValueStore valueStore;
+	private AMLLoadLimits loadLimits;
+	private AMLStringPool stringPool = new AMLStringPool();
 	private AMLValidator validator;
 	private boolean notifyEnabled = true;
 
@@ -109,11 +158,19 @@ public class AMLSessionImpl extends AbstractAMLObject implements AMLSession {
 			CreateDocumentChange change = new CreateDocumentChange(document, null);
 			getSavepointManager().addChange(change);
 		}
-		documentAdded(document);
+		documentCreated(document);
 
 		return document;
 	}
 
+	// documents created by a trusted load are announced once they are complete
+	private void documentCreated(AMLDocument document) {
+		if (trustedLoadedDocuments != null)
+			trustedLoadedDocuments.add(document);
+		else
+			documentAdded(document);
+	}
+
 	private AMLDocumentImpl _createAMLDocument() {
 		AMLDocumentImpl document = new AMLDocumentImpl(this);
 		getDocumentManager().registerDocument(document);
@@ -139,7 +196,7 @@ public class AMLSessionImpl extends AbstractAMLObject implements AMLSession {
 			CreateDocumentChange change = new CreateDocumentChange(document, url);
 			getSavepointManager().addChange(change);
 		}
-		documentAdded(document);
+		documentCreated(document);
 		return document;
 	}
 
@@ -155,13 +212,18 @@ public class AMLSessionImpl extends AbstractAMLObject implements AMLSession {
 
 	@Override
 	public AMLDocument loadAMLDocument(URL url) throws Exception {
+		return loadAMLDocument(url, null);
+	}
+
+	@Override
+	public AMLDocument loadAMLDocument(URL url, AMLProjection projection) throws Exception {
 		AMLDocument document = getDocumentManager().getDocument(new URLDocumentLocation(url));
 		if (document != null)
 			return document;
 
 		try {
 			beginSessionChanges();
-			document = getDocumentManager().openDocument(url);
+			document = getDocumentManager().openDocument(url, projection);
 
 			for (AMLDocument amlDocument : getDocuments()) {
 				amlDocument.unsetDirty();
@@ -171,7 +233,55 @@ public class AMLSessionImpl extends AbstractAMLObject implements AMLSession {
 		}
 		return document;
 	}
+
+	@Override
+	public AMLDocument loadAMLDocument(byte[] content, Map<String, byte[]> relatedDocuments) throws Exception {
+		MemoryDocumentBundle bundle = new MemoryDocumentBundle(relatedDocuments);
+		return loadAMLDocument(bundle.put(MemoryDocumentBundle.DOCUMENT_PATH, content));
+	}
+
+	@Override
+	public AMLDocument loadAMLDocument(ByteBuffer content, Map<String, byte[]> relatedDocuments) throws Exception {
+		MemoryDocumentBundle bundle = new MemoryDocumentBundle(relatedDocuments);
+		return loadAMLDocument(bundle.put(MemoryDocumentBundle.DOCUMENT_PATH, content));
+	}
+
+	@Override
+	public AMLDocument loadAMLDocument(InputStream inputStream, Map<String, byte[]> relatedDocuments) throws Exception {
+		MemoryDocumentBundle bundle = new MemoryDocumentBundle(relatedDocuments);
+		AMLLoadLimits loadLimits = getLoadLimits();
+		if (loadLimits == null || !loadLimits.isLimited(AMLLoadLimits.Limit.BYTES))
+			return loadAMLDocument(bundle.put(MemoryDocumentBundle.DOCUMENT_PATH, inputStream));
+
+		// the stream is copied before the load counts its bytes, so the copy stops as soon as it exceeds the limit
+		AMLLoadBudget.CountingInputStream countingStream = new AMLLoadBudget(loadLimits).countBytes(inputStream, null);
+		URL url;
+		try {
+			url = bundle.put(MemoryDocumentBundle.DOCUMENT_PATH, countingStream);
+		} catch (IOException e) {
+			if (countingStream.getLimitExceeded() != null)
+				throw countingStream.getLimitExceeded();
+			throw e;
+		}
+		return loadAMLDocument(url);
+	}
 	
+	// reads the instance hierarchies of the document without adding it to the session
+	@Override
+	public void streamAMLDocument(URL url, AMLStreamHandler streamHandler) throws Exception {
+		new AMLDeserializer().stream(url, this, streamHandler);
+	}
+
+	@Override
+	public void saveAll(AMLDocumentURLResolver urlResolver) throws Exception {
+		List<AMLDocument> documents = new ArrayList<AMLDocument>();
+		for (AMLDocument document : getDocuments()) {
+			if (document.isDirty())
+				documents.add(document);
+		}
+		getDocumentManager().saveDocuments(documents, urlResolver);
+	}
+
 	public SavepointManager getSavepointManager() {
 		return savepointManager;
 	}
@@ -250,6 +360,7 @@ public class AMLSessionImpl extends AbstractAMLObject implements AMLSession {
 	@Override
 	public void setDocumentURLResolver(DocumentURLResolver documentURLResolver) {
 		this.documentURLResolver = documentURLResolver;
+		externalReferenceResolver.clear();
 	}
 
 	@Override
@@ -262,11 +373,242 @@ public class AMLSessionImpl extends AbstractAMLObject implements AMLSession {
 		return documentURLResolver;
 	}
 
+	public AMLExternalReferenceResolver getExternalReferenceResolver() {
+		return externalReferenceResolver;
+	}
+
 	@Override
 	public ProgressMonitor getProgressMonitor() {
 		return progressMonitor;
 	}
 
+	@Override
+	public void setXMLBackend(XMLBackend xmlBackend) {
+		this.xmlBackend = xmlBackend == null ? StAXBackend.getDefault() : xmlBackend;
+		externalReferenceResolver.setXMLBackend(this.xmlBackend);
+	}
+
+	@Override
+	public XMLBackend getXMLBackend() {
+		return xmlBackend;
+	}
+
+	// the internal elements of instance hierarchies loaded from now on are only parsed when first accessed
+	@Override
+	public void setLazyLoading(boolean lazyLoading) {
+		this.lazyLoading = lazyLoading;
+	}
+
+	@Override
+	public boolean isLazyLoading() {
+		return lazyLoading;
+	}
+
+	@Override
+	public void setKeepSourceLocations(boolean keepSourceLocations) {
+		this.keepSourceLocations = keepSourceLocations;
+	}
+
+	@Override
+	public boolean isKeepSourceLocations() {
+		return keepSourceLocations;
+	}
+
+	@Override
+	public void setParallelParsingThreshold(long fileSize) {
+		this.parallelParsingThreshold = fileSize;
+	}
+
+	@Override
+	public long getParallelParsingThreshold() {
+		return parallelParsingThreshold;
+	}
+
+	@Override
+	public void setTrustedLoading(boolean trustedLoading) {
+		this.trustedLoading = trustedLoading;
+	}
+
+	@Override
+	public boolean isTrustedLoading() {
+		return trustedLoading;
+	}
+
+	@Override
+	public void setIncrementalSaving(boolean incrementalSaving) {
+		this.incrementalSaving = incrementalSaving;
+		if (!incrementalSaving)
+			discardSourceRegions();
+	}
+
+	@Override
+	public boolean isIncrementalSaving() {
+		return incrementalSaving;
+	}
+
+	/**
+	 * Saving writes every document completely the next time, a change may affect how any of them refers to the changed elements.
+	 */
+	public void discardSourceRegions() {
+		for (AMLDocument document : getDocuments()) {
+			((AMLDocumentImpl) document).setSourceRegions(null);
+		}
+	}
+
+	@Override
+	public void setValueSpillThreshold(int length) {
+		this.valueSpillThreshold = length;
+	}
+
+	@Override
+	public int getValueSpillThreshold() {
+		return valueSpillThreshold;
+	}
+
+	/**
+	 * Returns the store of spilled values, it is created with the first value.
+	 */
+	public synchronized AMLValueStore getValueStore() throws IOException {
+		if (valueStore == null)
+			valueStore = new AMLValueStore();
+		return valueStore;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (valueStore == null)
+			return;
+		try {
+			valueStore.close();
+		} catch (IOException e) {
+			// the file was tried to be deleted anyway
+		}
+		valueStore = null;
+	}
+
+	/**
+	 * Until {@link #endTrustedLoad()} the validator is not asked and created documents are not announced.
+	 */
+	public void beginTrustedLoad() {
+		trustedLoadedDocuments = new ArrayList<AMLDocument>();
+	}
+
+	/**
+	 * Announces the documents created by the trusted load.
+	 */
+	public void endTrustedLoad() {
+		List<AMLDocument> documents = trustedLoadedDocuments;
+		trustedLoadedDocuments = null;
+		for (AMLDocument document : documents)
+			documentAdded(document);
+	}
+
+	/**
+	 * Validates each document created by the trusted load, once their elements are created and before they are announced. Returns the results
+	 * to be notified once the documents are announced.
+	 */
+	public List<AMLValidationResultList> validateTrustedLoadedDocuments() throws AMLValidationException {
+		List<AMLValidationResultList> validationResultLists = new ArrayList<AMLValidationResultList>();
+		if (validator == null)
+			return validationResultLists;
+		for (AMLDocument document : trustedLoadedDocuments) {
+			AMLValidationResultList validationResultList = validator.validateDocument(document);
+			if (validationResultList.isAnyOperationNotPermitted())
+				throw new AMLValidationException(validationResultList);
+			validationResultLists.add(validationResultList);
+		}
+		return validationResultLists;
+	}
+
+	/**
+	 * Removes the documents created by a failed trusted load, they are not announced. The documents loaded before are left as they are.
+	 */
+	public void removeTrustedLoadedDocuments() throws Exception {
+		// mirrors before the elements they mirror, instances before their classes, classes before their base classes
+		List<AMLDocumentElement> elements = new ArrayList<AMLDocumentElement>();
+		for (AMLDocument document : trustedLoadedDocuments) {
+			for (AMLInstanceHierarchy instanceHierarchy : document.getInstanceHierarchies())
+				collectMirrorObjects(instanceHierarchy, elements);
+			for (AMLSystemUnitClassLibrary library : document.getSystemUnitClassLibraries())
+				collectMirrorObjects(library, elements);
+		}
+		for (AMLDocument document : trustedLoadedDocuments) {
+			for (AMLInstanceHierarchy instanceHierarchy : document.getInstanceHierarchies())
+				elements.add(instanceHierarchy);
+		}
+		for (AMLDocument document : trustedLoadedDocuments) {
+			for (AMLSystemUnitClassLibrary library : document.getSystemUnitClassLibraries())
+				elements.add(library);
+		}
+		for (AMLDocument document : trustedLoadedDocuments) {
+			for (AMLRoleClassLibrary library : document.getRoleClassLibraries())
+				elements.add(library);
+		}
+		for (AMLDocument document : trustedLoadedDocuments) {
+			for (AMLInterfaceClassLibrary library : document.getInterfaceClassLibraries())
+				elements.add(library);
+		}
+		for (AMLDocumentElement element : elements)
+			element.deepDelete();
+
+		// a document can only be removed once no other one refers to it
+		for (AMLDocument document : trustedLoadedDocuments) {
+			List<AMLDocument> referencedDocuments = new ArrayList<AMLDocument>();
+			for (AMLDocument referencedDocument : document.getExplicitlyReferencedDocuments())
+				referencedDocuments.add(referencedDocument);
+			for (AMLDocument referencedDocument : referencedDocuments)
+				document.removeExplicitExternalReference(referencedDocument);
+		}
+		for (AMLDocument document : trustedLoadedDocuments)
+			document.deepDelete();
+		trustedLoadedDocuments.clear();
+	}
+
+	private static void collectMirrorObjects(AMLDocumentElement element, List<AMLDocumentElement> mirrorObjects) {
+		if (element instanceof AMLMirrorContainer) {
+			for (AMLMirrorObject mirrorObject : ((AMLMirrorContainer) element).getMirrorObjects())
+				mirrorObjects.add(mirrorObject);
+		}
+		if (element instanceof AMLGroupContainer) {
+			for (AMLGroup group : ((AMLGroupContainer) element).getGroups())
+				collectMirrorObjects(group, mirrorObjects);
+		}
+		if (element instanceof AMLInternalElementContainer) {
+			for (AMLInternalElement internalElement : ((AMLInternalElementContainer) element).getInternalElements())
+				collectMirrorObjects(internalElement, mirrorObjects);
+		}
+		if (element instanceof AMLSystemUnitClassContainer) {
+			for (AMLSystemUnitClass systemUnitClass : ((AMLSystemUnitClassContainer) element).getSystemUnitClasses())
+				collectMirrorObjects(systemUnitClass, mirrorObjects);
+		}
+	}
+
+	@Override
+	public void setLoadLimits(AMLLoadLimits loadLimits) {
+		this.loadLimits = loadLimits;
+	}
+
+	@Override
+	public AMLLoadLimits getLoadLimits() {
+		return loadLimits;
+	}
+
+	// null disables the deduplication of strings set from now on
+	@Override
+	public void setStringPool(AMLStringPool stringPool) {
+		this.stringPool = stringPool;
+	}
+
+	@Override
+	public AMLStringPool getStringPool() {
+		return stringPool;
+	}
+
+	public String intern(String string) {
+		AMLStringPool stringPool = this.stringPool;
+		return stringPool == null ? string : stringPool.intern(string);
+	}
+
 	public void unsetValidator() {
 		if (this.validator == null)
 			return;
@@ -303,6 +645,8 @@ public class AMLSessionImpl extends AbstractAMLObject implements AMLSession {
 	}
 
 	public AMLValidator getValidator() {
+		if (trustedLoadedDocuments != null)
+			return null;
 		return validator;
 	}
 
@@ -498,7 +498,7 @@ public class AMLSystemUnitClassImpl extends AbstractAMLClassImpl<AMLSystemUnitCl
 		}
 		
 		while (getGroups().iterator().hasNext()) {
-			((AbstractAMLDocumentElement)getGroups().iterator())._doDeepDelete(baseElement);
+			((AbstractAMLDocumentElement)getGroups().iterator().next())._doDeepDelete(baseElement);
 		}
 		
 		while (getExternalInterfaces().iterator().hasNext()) {
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Keeps large attribute values and additional information of a session in a temporary file instead of the heap. A value is written in blocks of
+ * UTF-16 characters, the model holds a {@link StoredValue} which reads it from the file when it is asked for. Values are written by the parsing
+ * threads concurrently, each block is appended on its own.
+ * <p>
+ * The file is deleted by {@link #close()}, the session closes its store when it is closed.
+ */
+public class AMLValueStore {
+
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	/**
+	 * A value in the store, it never changes once it is written.
+	 */
+	public class StoredValue {
+		private final long[] blockPositions;
+		private final int length;
+
+		private StoredValue(long[] blockPositions, int length) {
+			this.blockPositions = blockPositions;
+			this.length = length;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * Reads the value from the store.
+		 */
+		public String getValue() {
+			StringBuilder value = new StringBuilder(length);
+			CharBuffer block = CharBuffer.allocate(BLOCK_SIZE);
+			for (int i = 0; i < blockPositions.length; i++) {
+				readBlock(i, block);
+				value.append(block);
+			}
+			return value.toString();
+		}
+
+		/**
+		 * Writes the value block by block as characters to the writer, without reading it into memory as a whole.
+		 */
+		public void writeTo(XMLStreamWriter writer) throws XMLStreamException {
+			CharBuffer block = CharBuffer.allocate(BLOCK_SIZE);
+			for (int i = 0; i < blockPositions.length; i++) {
+				readBlock(i, block);
+				writer.writeCharacters(block.array(), 0, block.limit());
+			}
+		}
+
+		private void readBlock(int index, CharBuffer block) {
+			int blockLength = Math.min(BLOCK_SIZE, length - index * BLOCK_SIZE);
+			ByteBuffer bytes = ByteBuffer.allocate(2 * blockLength);
+			read(blockPositions[index], bytes);
+			bytes.flip();
+			block.clear();
+			block.put(bytes.asCharBuffer());
+			block.flip();
+		}
+
+		@Override
+		public String toString() {
+			return "StoredValue [length=" + length + "]";
+		}
+	}
+
+	/**
+	 * Writes a value to the store in parts, for instance while it is read from a file.
+	 */
+	public class ValueWriter {
+		private final CharBuffer block = CharBuffer.allocate(BLOCK_SIZE);
+		private final List<Long> blockPositions = new ArrayList<Long>();
+		private int length;
+
+		public void write(String text) throws IOException {
+			int offset = 0;
+			while (offset < text.length()) {
+				int count = Math.min(block.remaining(), text.length() - offset);
+				block.put(text, offset, offset + count);
+				offset += count;
+				if (!block.hasRemaining())
+					flush();
+			}
+		}
+
+		private void flush() throws IOException {
+			block.flip();
+			length += block.remaining();
+			blockPositions.add(append(block));
+			block.clear();
+		}
+
+		/**
+		 * Writes the remaining characters and returns the value.
+		 */
+		public StoredValue close() throws IOException {
+			if (block.position() > 0)
+				flush();
+			long[] positions = new long[blockPositions.size()];
+			for (int i = 0; i < positions.length; i++)
+				positions[i] = blockPositions.get(i);
+			return new StoredValue(positions, length);
+		}
+	}
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final FileChannel channel;
+	private long size;
+
+	public AMLValueStore() throws IOException {
+		file = File.createTempFile("aml", ".values");
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		channel = randomAccessFile.getChannel();
+	}
+
+	public ValueWriter createWriter() {
+		return new ValueWriter();
+	}
+
+	public StoredValue store(String value) throws IOException {
+		ValueWriter writer = createWriter();
+		writer.write(value);
+		return writer.close();
+	}
+
+	private synchronized long append(CharBuffer chars) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(2 * chars.remaining());
+		bytes.asCharBuffer().put(chars);
+		long position = size;
+		while (bytes.hasRemaining())
+			size += channel.write(bytes, size);
+		return position;
+	}
+
+	private void read(long position, ByteBuffer bytes) {
+		try {
+			while (bytes.hasRemaining()) {
+				if (channel.read(bytes, position + bytes.position()) < 0)
+					throw new IOException("Unexpected end of " + file);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Stored value can not be read: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the number of bytes written to the file.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Deletes the file, the values stored so far can not be read anymore. If it can not be deleted now it is left to the exit of the virtual
+	 * machine.
+	 */
+	public void close() throws IOException {
+		try {
+			randomAccessFile.close();
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -183,6 +183,11 @@ public abstract class AbstractAMLClassImpl<T extends AbstractAMLClassImpl<?>> ex
 				newBaseClassIdentifier.release();
 		}
 
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean mergeInto(Change _change) {
 			if (!(_change instanceof ModifyBaseClassChange))
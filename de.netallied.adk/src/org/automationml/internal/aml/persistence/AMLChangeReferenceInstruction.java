@@ -133,4 +133,13 @@ public class AMLChangeReferenceInstruction extends AMLInstruction {
 		return (!referencedIdentifier.isResolved()
 				|| !selfIdentifier.isResolved());
 	}
+
+	@Override
+	public AMLDeserializeIdentifier getUnresolvedDependency() {
+		if (!referencedIdentifier.isResolved())
+			return referencedIdentifier.getUnresolvedDependency();
+		if (!selfIdentifier.isResolved())
+			return selfIdentifier;
+		return null;
+	}
 }
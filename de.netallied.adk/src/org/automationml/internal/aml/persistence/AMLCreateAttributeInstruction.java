@@ -12,6 +12,8 @@ import org.automationml.aml.AMLInternalElement;
 import org.automationml.aml.AMLRoleRequirements;
 import org.automationml.aml.AMLSession;
 import org.automationml.aml.AMLSupportedRoleClass;
+import org.automationml.internal.aml.AMLAttributeImpl;
+import org.automationml.internal.aml.AMLValueStore;
 
 public class AMLCreateAttributeInstruction extends AMLCreateInstruction {
 
@@ -22,6 +24,7 @@ public class AMLCreateAttributeInstruction extends AMLCreateInstruction {
 	public String description = "";
 	public String defaultValue = "";
 	public String value = "";
+	public AMLValueStore.StoredValue storedValue;
 
 	protected AMLCreateAttributeInstruction(AMLSession session, AMLDeserializeIdentifier selfIdentifier, AMLDeserializeIdentifier parentIdentifier) {
 		super(session, selfIdentifier);
@@ -61,7 +64,7 @@ public class AMLCreateAttributeInstruction extends AMLCreateInstruction {
 			attribute.setDefaultValue(defaultValue);
 			attribute.setDescription(description);
 			attribute.setUnit(unit);
-			attribute.setValue(value);
+			setValue(attribute);
 
 			if (selfIdentifier instanceof AMLDeserializeIdentifier) {
 				selfIdentifier.setResolvedElement(attribute);
@@ -83,11 +86,18 @@ public class AMLCreateAttributeInstruction extends AMLCreateInstruction {
 			attribute.setDefaultValue(defaultValue);
 			attribute.setDescription(description);
 			attribute.setUnit(unit);
-			attribute.setValue(value);
+			setValue(attribute);
 
 			if (selfIdentifier instanceof AMLDeserializeIdentifier) {
 				selfIdentifier.setResolvedElement(attribute);
 			}
 		} 
 	}
+
+	protected void setValue(AMLAttribute attribute) {
+		if (storedValue != null)
+			((AMLAttributeImpl) attribute).setValue(storedValue);
+		else
+			attribute.setValue(value);
+	}
 }
@@ -24,9 +24,13 @@ public class AMLCreateDocumentInstruction extends AMLCreateElementInstruction {
 	public String writerProjectTitle;
 	public String writerProjectID;
 	public Date lastWritingDate;
+
+	// the identifier name cannot be parsed back into URLs with a handler of their own, like those of memory documents
+	private final URL url;
 	
-	protected AMLCreateDocumentInstruction(AMLSession session, AMLDeserializeIdentifier selfIdentifier) {
+	protected AMLCreateDocumentInstruction(AMLSession session, AMLDeserializeIdentifier selfIdentifier, URL url) {
 		super(session, selfIdentifier, null, AMLElementType.ELEMENT_CAEX_FILE);
+		this.url = url;
 	}
 
 	@Override
@@ -35,7 +39,6 @@ public class AMLCreateDocumentInstruction extends AMLCreateElementInstruction {
 		if (selfIdentifier == null) {
 			document = session.createAMLDocument();
 		} else {
-			URL url = new URL(selfIdentifier.getName());
 			document = session.createAMLDocument(url);
 			selfIdentifier.setResolvedElement(document);
 		}
@@ -61,4 +64,9 @@ public class AMLCreateDocumentInstruction extends AMLCreateElementInstruction {
 	public boolean hasUnresolvedDependencies() {
 		return false;
 	}
+
+	@Override
+	public AMLDeserializeIdentifier getUnresolvedDependency() {
+		return null;
+	}
 }
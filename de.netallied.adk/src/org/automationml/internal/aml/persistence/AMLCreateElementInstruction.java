@@ -35,7 +35,9 @@ import org.automationml.aml.AMLSupportedRoleClass;
 import org.automationml.aml.AMLSupportedRoleClassContainer;
 import org.automationml.aml.AMLSystemUnitClass;
 import org.automationml.aml.AMLSystemUnitClassLibrary;
+import org.automationml.internal.aml.AMLElementImpl;
 import org.automationml.internal.aml.AMLElementType;
+import org.automationml.internal.aml.AMLValueStore;
 
 public class AMLCreateElementInstruction extends AMLCreateInstruction {
 
@@ -56,6 +58,7 @@ public class AMLCreateElementInstruction extends AMLCreateInstruction {
 	public String version;
 	public String copyright;
 	public String additionalInformation;
+	public AMLValueStore.StoredValue storedAdditionalInformation;
 	public List<Revision> revisions = new ArrayList<Revision>();
 	private List<AMLDeserializeReferenceIdentifier> references = new ArrayList<AMLDeserializeReferenceIdentifier>();
 	public AMLElementType elementType;
@@ -287,7 +290,10 @@ public class AMLCreateElementInstruction extends AMLCreateInstruction {
 
 	protected void setElementProperties(AMLDocumentElement documentItem) {
 		AMLElement element = (AMLElement) documentItem;
-		element.setAdditionalInformation(additionalInformation);
+		if (storedAdditionalInformation != null)
+			((AMLElementImpl) element).setAdditionalInformation(storedAdditionalInformation);
+		else
+			element.setAdditionalInformation(additionalInformation);
 		element.setCopyright(copyright);
 		element.setDescription(description);
 		element.setVersion(version);
@@ -316,4 +322,16 @@ public class AMLCreateElementInstruction extends AMLCreateInstruction {
 		return false;
 	}
 
+	@Override
+	public AMLDeserializeIdentifier getUnresolvedDependency() {
+		AMLDeserializeIdentifier dependency = super.getUnresolvedDependency();
+		if (dependency != null)
+			return dependency;
+		for (AMLDeserializeReferenceIdentifier identifier : references) {
+			if (!identifier.isResolved())
+				return identifier.getUnresolvedDependency();
+		}
+		return null;
+	}
+
 }
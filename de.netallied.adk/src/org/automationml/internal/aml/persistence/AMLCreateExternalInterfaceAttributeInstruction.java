@@ -63,7 +63,7 @@ public class AMLCreateExternalInterfaceAttributeInstruction extends AMLCreateAtt
 		attribute.setDefaultValue(defaultValue);
 		attribute.setDescription(description);
 		attribute.setUnit(unit);
-		attribute.setValue(value);
+		setValue(attribute);
 
 		if (selfIdentifier instanceof AMLDeserializeIdentifier) {
 			selfIdentifier.setResolvedElement(attribute);
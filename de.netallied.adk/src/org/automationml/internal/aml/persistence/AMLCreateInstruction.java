@@ -20,4 +20,12 @@ public abstract class AMLCreateInstruction extends AMLInstruction {
 		return !getParentIdentifier().isResolved();
 	}
 
+	@Override
+	public AMLDeserializeIdentifier getUnresolvedDependency() {
+		AMLDeserializeIdentifier parentIdentifier = getParentIdentifier();
+		if (!parentIdentifier.isResolved())
+			return parentIdentifier;
+		return null;
+	}
+
 }
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml.persistence;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.automationml.internal.ParserException;
+import org.automationml.internal.aml.AMLInstanceHierarchyImpl;
+import org.automationml.internal.aml.AMLInstanceHierarchyLoader;
+
+/**
+ * An instance hierarchy whose internal elements were skipped while loading. It is found again by its position among the instance hierarchies of
+ * its file, so a local file must still have the size and modification time it had when it was loaded.
+ */
+class AMLDeferredInstanceHierarchy implements AMLInstanceHierarchyLoader {
+	final URL url;
+	final int index;
+	final AMLDeserializeIdentifier identifier;
+	final List<UUID> internalElementIds = new ArrayList<UUID>();
+	private final long size;
+	private final long lastModified;
+	AMLDeserializer deserializer;
+
+	AMLDeferredInstanceHierarchy(URL url, int index, AMLDeserializeIdentifier identifier) {
+		this.url = url;
+		this.index = index;
+		this.identifier = identifier;
+		File file = toFile(url);
+		size = file == null ? -1 : file.length();
+		lastModified = file == null ? 0 : file.lastModified();
+	}
+
+	void checkUnchanged() throws ParserException {
+		File file = toFile(url);
+		if (file != null && (file.length() != size || file.lastModified() != lastModified))
+			throw new ParserException("File " + url + " was changed since it was loaded");
+	}
+
+	private static File toFile(URL url) {
+		if (!"file".equals(url.getProtocol()))
+			return null;
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException e) {
+			return null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	AMLInstanceHierarchyImpl getInstanceHierarchy() {
+		return (AMLInstanceHierarchyImpl) identifier.getResolvedElement();
+	}
+
+	@Override
+	public void load() throws Exception {
+		deserializer.load(this);
+	}
+
+	@Override
+	public Collection<UUID> getInternalElementIds() {
+		return internalElementIds;
+	}
+}
@@ -6,6 +6,7 @@ package org.automationml.internal.aml.persistence;
 
 import org.automationml.aml.AMLDocumentElement;
 
+// every parsed element has an identifier of its own, they are compared by identity
 public class AMLDeserializeIdentifier {
 	private final String name;
 	private final AMLDeserializeIdentifier parentIdentifier;
@@ -19,7 +20,7 @@ public class AMLDeserializeIdentifier {
 	}
 
 	public AMLDeserializeIdentifier(String name) {
-		this(name, null, new AMLLocationInFileImpl() );
+		this(name, null, AMLLocationInFileImpl.UNKNOWN);
 	}
 
 	public AMLDocumentElement getResolvedElement() {
@@ -38,40 +39,6 @@ public class AMLDeserializeIdentifier {
 		return name;
 	}
 
-	@Override
-	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((filePosition == null) ? 0 : filePosition.hashCode());
-		result = prime * result + ((name == null) ? 0 : name.hashCode());
-		result = prime * result + ((parentIdentifier == null) ? 0 : parentIdentifier.hashCode());
-		return result;
-	}
-
-	@Override
-	public boolean equals(Object obj) {
-		if (this == obj)
-			return true;
-		if (obj == null)
-			return false;
-		if (getClass() != obj.getClass())
-			return false;
-		AMLDeserializeIdentifier other = (AMLDeserializeIdentifier) obj;
-		if (filePosition != other.filePosition)
-			return false;
-		if (name == null) {
-			if (other.name != null)
-				return false;
-		} else if (!name.equals(other.name))
-			return false;
-		if (parentIdentifier == null) {
-			if (other.parentIdentifier != null)
-				return false;
-		} else if (!parentIdentifier.equals(other.parentIdentifier))
-			return false;
-		return true;
-	}
-
 	@Override
 	public String toString() {
 		return "DeserializeIdentifier [name=" + name + ", parentIdentifier=" + parentIdentifier + ", filePosition=" + filePosition + ", resolvedElement="
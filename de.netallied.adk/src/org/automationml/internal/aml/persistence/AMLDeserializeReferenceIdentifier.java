@@ -30,6 +30,17 @@ public class AMLDeserializeReferenceIdentifier {
 		return name;
 	}
 
+	public AMLDeserializeIdentifier getReferencedIdentifier() {
+		return referencedIdentifier;
+	}
+
+	// references that were never bound to an identifier get a placeholder which is never resolved
+	AMLDeserializeIdentifier getUnresolvedDependency() {
+		if (referencedIdentifier == null)
+			return new AMLDeserializeIdentifier(name);
+		return referencedIdentifier;
+	}
+
 	public void setReferencedIdentifier(AMLDeserializeIdentifier referencedIdentifier) {
 		this.referencedIdentifier = referencedIdentifier;
 	}
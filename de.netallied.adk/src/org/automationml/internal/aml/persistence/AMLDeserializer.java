@@ -4,18 +4,20 @@
  *******************************************************************************/
 package org.automationml.internal.aml.persistence;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -23,9 +25,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.Location;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -34,19 +40,32 @@ import org.automationml.Deserializer;
 import org.automationml.DeserializerException;
 import org.automationml.DocumentLocation;
 import org.automationml.DocumentURLResolver;
+import org.automationml.MemoryDocumentBundle;
 import org.automationml.URLDocumentLocation;
 import org.automationml.aml.AMLCOLLADAInterface;
+import org.automationml.aml.AMLCanceledException;
 import org.automationml.aml.AMLDocument;
+import org.automationml.aml.AMLDocumentScopeInvalidException;
 import org.automationml.aml.AMLInterfaceClass;
+import org.automationml.aml.AMLLoadLimitExceededException;
+import org.automationml.aml.AMLLoadLimits.Limit;
 import org.automationml.aml.AMLNameAlreadyInUseException;
+import org.automationml.aml.AMLProjection;
 import org.automationml.aml.AMLSession;
+import org.automationml.aml.AMLStreamHandler;
 import org.automationml.aml.AMLValidationException;
+import org.automationml.aml.AMLValidationResultList;
+import org.automationml.internal.MappedCAEXStreamReader;
 import org.automationml.internal.ParserException;
+import org.automationml.internal.DetailedProgressMonitor.Phase;
 import org.automationml.internal.ProgressMonitor;
+import org.automationml.internal.aml.AMLDocumentImpl;
 import org.automationml.internal.aml.AMLDocumentManager;
 import org.automationml.internal.aml.AMLElementNames;
 import org.automationml.internal.aml.AMLElementType;
+import org.automationml.internal.aml.AMLInstanceHierarchyImpl;
 import org.automationml.internal.aml.AMLSessionImpl;
+import org.automationml.internal.aml.AMLValueStore;
 
 // Performance comparisons:
 //http://piccolo.sourceforge.net/bench.html
@@ -68,18 +87,92 @@ public class AMLDeserializer implements Deserializer {
 	private List<AMLInstruction> changeInstructions = new ArrayList<AMLInstruction>();
 
 	private Set<URL> missingFiles = new HashSet<URL>();
-	private Set<URL> unresolvedFiles = new HashSet<URL>();
+	private Set<URL> unresolvedFiles = new LinkedHashSet<URL>();
 	private Set<URL> resolvedFiles = new HashSet<URL>();
 
 	private Map<String, AMLDeserializeIdentifier> aMLDeserializeIdentifiers = new LinkedHashMap<String, AMLDeserializeIdentifier>();
+	// the identifier names of this load, every reference shares the instance of the name it refers to
+	private Map<String, String> identifierNames = new HashMap<String, String>();
+
+	// bookkeeping of a single file's parse, needed to merge it into the instructions of the whole load
+	private List<AMLDeserializeIdentifier> createdIdentifiers = new ArrayList<AMLDeserializeIdentifier>();
+	private List<AMLDeserializeReferenceIdentifier> forwardReferences = new ArrayList<AMLDeserializeReferenceIdentifier>();
+	private Map<AMLDocument, String> documentAliases = new LinkedHashMap<AMLDocument, String>();
+
+	// references of merged files that are still waiting for an identifier of a file merged later
+	private Map<String, List<AMLDeserializeReferenceIdentifier>> pendingReferences = new LinkedHashMap<String, List<AMLDeserializeReferenceIdentifier>>();
+
+	private ExecutorService executor;
+
+	// set while streaming a document: the parse functions report to it and only keep the instructions of the enclosing elements
+	private AMLStreamHandler streamHandler;
+
+	// instance hierarchies whose internal elements are parsed on first access, the identifiers are kept until all of them are loaded
+	private boolean lazyLoading;
+	private List<AMLDeferredInstanceHierarchy> deferredInstanceHierarchies = new ArrayList<AMLDeferredInstanceHierarchy>();
+
+	// parts of the loaded document left out by the projection, parsed afterwards as far as the loaded parts refer to them
+	private static class SkippedElement {
+		final AMLElementType elementType;
+		final String name;
+		final int index;
+
+		SkippedElement(AMLElementType elementType, String name, int index) {
+			this.elementType = elementType;
+			this.name = name;
+			this.index = index;
+		}
+	}
+
+	// line and column of the references, only for error messages
+	private boolean sourceLocations;
+
+	private AMLProjection projection;
+	private URL projectedUrl;
+	private AMLDeserializeIdentifier documentIdentifier;
+	private List<SkippedElement> skippedElements = new ArrayList<SkippedElement>();
+
+	// top level elements of a large file, parsed in parallel once the rest of the file is read
+	private static class SplitElement {
+		final AMLElementType elementType;
+		final int index;
+		final XMLStreamReader reader;
+
+		SplitElement(AMLElementType elementType, int index, XMLStreamReader reader) {
+			this.elementType = elementType;
+			this.index = index;
+			this.reader = reader;
+		}
+	}
+
+	private long parallelParsingThreshold = -1;
+	private AMLLoadBudget loadBudget;
+	private AMLLoadProgress loadProgress;
+	private int depth;
+	private List<SplitElement> splitElements = new ArrayList<SplitElement>();
+
+	// where the top level elements are in the files read in place, they are copied from there if they are unchanged when the documents are saved
+	private Map<URL, AMLSourceRegions> sourceRegions = new LinkedHashMap<URL, AMLSourceRegions>();
 
 	private AMLSession session;
 
+	/**
+	 * Loads only the given parts of the document, the documents it references are loaded completely.
+	 */
+	public void setProjection(AMLProjection projection) {
+		this.projection = projection;
+	}
+
 	@Override
 	public void deserialize(URL url, AMLSession session) throws Exception {
 
 		this.session = session;
+		this.lazyLoading = session.isLazyLoading();
+		this.sourceLocations = session.isKeepSourceLocations();
+		this.parallelParsingThreshold = session.getParallelParsingThreshold();
+		this.loadBudget = new AMLLoadBudget(session.getLoadLimits());
 		ProgressMonitor progressMonitor = session.getProgressMonitor();
+		this.loadProgress = new AMLLoadProgress(progressMonitor);
 
 		try {
 			createInstructions(url);
@@ -87,8 +180,10 @@ public class AMLDeserializer implements Deserializer {
 			if (progressMonitor != null)
 				progressMonitor.worked(1);
 
+			long start = System.nanoTime();
 			if (!missingFiles.isEmpty())
 				throw new DeserializerException("The following referenced Files could not be found: " + missingFiles);
+			loadProgress.addPhaseTime(Phase.RESOLVE, start);
 
 			// if (!unresolvedIdentifiers.isEmpty())
 			// throw new DeserializerException("Not all references could be resolved");
@@ -96,7 +191,10 @@ public class AMLDeserializer implements Deserializer {
 			// leave Savepoint management in the hands of application!!!
 			//Savepoint savepoint = session.createSavepoint();
 			try {
-				executeInstructions();
+				if (session.isTrustedLoading())
+					executeTrustedInstructions();
+				else
+					executeInstructions();
 			} catch (Exception e) {
 				//savepoint.restore();
 				throw e;
@@ -104,107 +202,540 @@ public class AMLDeserializer implements Deserializer {
 				//savepoint.delete();
 			}
 
+			start = System.nanoTime();
+			attachDeferredInstanceHierarchies();
+			bindSourceRegions();
+			loadProgress.addPhaseTime(Phase.LINK, start);
+
 			if (progressMonitor != null)
 				progressMonitor.worked(1);
 
 		} finally {
+			loadProgress.finish();
 			unresolvedFiles.clear();
 			resolvedFiles.clear();
 			missingFiles.clear();
-			aMLDeserializeIdentifiers.clear();
+			if (deferredInstanceHierarchies.isEmpty())
+				aMLDeserializeIdentifiers.clear();
+			identifierNames.clear();
+			unresolvedIdentifiers.clear();
+			pendingReferences.clear();
+			sourceRegions.clear();
+			clearInstructions();
+		}
+	}
+
+	private void bindSourceRegions() {
+		for (Map.Entry<URL, AMLSourceRegions> entry : sourceRegions.entrySet()) {
+			AMLDocument document = getDocument(entry.getKey());
+			if (document == null)
+				continue;
+			entry.getValue().bind(document);
+			((AMLDocumentImpl) document).setSourceRegions(entry.getValue());
+		}
+	}
+
+	private void clearInstructions() {
+		identifierToCreateLibraryInstruction.clear();
+		identifierToCreateInstruction.clear();
+		changeInstructions.clear();
+		internalLinkRelatedInstructions.clear();
+		createdIdentifiers.clear();
+		forwardReferences.clear();
+	}
+
+	private void attachDeferredInstanceHierarchies() throws AMLDocumentScopeInvalidException {
+		for (Iterator<AMLDeferredInstanceHierarchy> iterator = deferredInstanceHierarchies.iterator(); iterator.hasNext();) {
+			AMLDeferredInstanceHierarchy deferredInstanceHierarchy = iterator.next();
+			AMLInstanceHierarchyImpl instanceHierarchy = deferredInstanceHierarchy.getInstanceHierarchy();
+			if (instanceHierarchy == null) {
+				iterator.remove();
+				continue;
+			}
+			deferredInstanceHierarchy.deserializer = this;
+			instanceHierarchy.setLoader(deferredInstanceHierarchy);
+			for (UUID id : deferredInstanceHierarchy.internalElementIds) {
+				getDocumentManager().addUniqueId(instanceHierarchy, id);
+			}
+		}
+	}
+
+	// parses the internal elements of a deferred instance hierarchy against the identifiers of the first pass
+	void load(AMLDeferredInstanceHierarchy deferredInstanceHierarchy) throws Exception {
+		List<AMLDeferredInstanceHierarchy> loadedInstanceHierarchies = new ArrayList<AMLDeferredInstanceHierarchy>();
+		loadedInstanceHierarchies.add(deferredInstanceHierarchy);
+		deferredInstanceHierarchies.remove(deferredInstanceHierarchy);
+
+		AMLSessionImpl sessionImpl = (AMLSessionImpl) session;
+		boolean notifyEnabled = sessionImpl.getNotifyEnable();
+		try {
+			try {
+				parseDeferredInstanceHierarchy(deferredInstanceHierarchy);
+
+				// references into hierarchies that are not loaded yet can only be bound by loading them as well
+				if (hasUnboundForwardReferences()) {
+					for (AMLDeferredInstanceHierarchy otherInstanceHierarchy : deferredInstanceHierarchies) {
+						parseDeferredInstanceHierarchy(otherInstanceHierarchy);
+					}
+					loadedInstanceHierarchies.addAll(deferredInstanceHierarchies);
+					deferredInstanceHierarchies.clear();
+				}
+			} catch (Exception e) {
+				// nothing is built yet, the hierarchy stays unloaded and can be loaded again
+				for (AMLDeserializeIdentifier identifier : createdIdentifiers) {
+					if (aMLDeserializeIdentifiers.get(identifier.getName()) == identifier)
+						aMLDeserializeIdentifiers.remove(identifier.getName());
+				}
+				if (!deferredInstanceHierarchies.contains(deferredInstanceHierarchy))
+					deferredInstanceHierarchies.add(deferredInstanceHierarchy);
+				deferredInstanceHierarchy.getInstanceHierarchy().setLoader(deferredInstanceHierarchy);
+				throw e;
+			}
+
+			for (AMLDeferredInstanceHierarchy loadedInstanceHierarchy : loadedInstanceHierarchies) {
+				AMLInstanceHierarchyImpl instanceHierarchy = loadedInstanceHierarchy.getInstanceHierarchy();
+				instanceHierarchy.setLoader(null);
+				for (UUID id : loadedInstanceHierarchy.internalElementIds) {
+					getDocumentManager().removeUniqueId(instanceHierarchy.getDocument(), id);
+				}
+			}
+
+			// completing the loaded document is neither an undoable change nor a modification
+			sessionImpl.getSavepointManager().suspend();
+			sessionImpl.enableNotify(false);
+			try {
+				executeInstructions();
+			} finally {
+				sessionImpl.enableNotify(notifyEnabled);
+				sessionImpl.getSavepointManager().resume();
+			}
+		} finally {
+			getLoadProgress().finish();
 			unresolvedIdentifiers.clear();
-			changeInstructions.clear();
+			clearInstructions();
+			if (deferredInstanceHierarchies.isEmpty())
+				aMLDeserializeIdentifiers.clear();
+			identifierNames.clear();
+		}
+	}
+
+	private boolean hasUnboundForwardReferences() {
+		for (AMLDeserializeReferenceIdentifier reference : forwardReferences) {
+			if (reference.getReferencedIdentifier() == null)
+				return true;
+		}
+		return false;
+	}
+
+	private void parseDeferredInstanceHierarchy(AMLDeferredInstanceHierarchy deferredInstanceHierarchy) throws Exception {
+		deferredInstanceHierarchy.checkUnchanged();
+		XMLStreamReader reader = session.getXMLBackend().createXMLStreamReader(deferredInstanceHierarchy.url);
+		try {
+			reader.require(XMLStreamConstants.START_DOCUMENT, null, null);
+			reader.nextTag();
+			reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_CAEX_FILE);
+
+			int index = 0;
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				if (AMLElementNames.ELEMENT_INSTANCE_HIERARCHY.equals(reader.getLocalName()) && index++ == deferredInstanceHierarchy.index) {
+					parseInstanceHierarchyContent(reader, deferredInstanceHierarchy.identifier, null, null);
+					return;
+				}
+				skipElement(reader);
+			}
+			throw new ParserException("InstanceHierarchy " + deferredInstanceHierarchy.identifier.getName() + " not found in "
+					+ deferredInstanceHierarchy.url);
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void stream(URL url, AMLSession session, AMLStreamHandler streamHandler) throws Exception {
+		this.session = session;
+		this.streamHandler = streamHandler;
+		this.loadBudget = new AMLLoadBudget(session.getLoadLimits());
+		this.loadProgress = new AMLLoadProgress(session.getProgressMonitor());
+		loadBudget.addFile(url.toString());
+		long fileSize = getFileSize(url);
+		loadBudget.addBytes(fileSize, url.toString());
+		loadProgress.fileResolved(url, fileSize);
+
+		AMLLoadBudget.CountingInputStream countingStream = null;
+		XMLStreamReader reader;
+		if (fileSize < 0 && loadBudget.isLimited(Limit.BYTES)) {
+			countingStream = loadBudget.countBytes(url.openStream(), url.toString());
+			reader = session.getXMLBackend().createXMLStreamReader(countingStream);
+		} else
+			reader = session.getXMLBackend().createXMLStreamReader(url);
+		try {
+			reader.require(XMLStreamConstants.START_DOCUMENT, null, null);
+			long start = System.nanoTime();
+			parseDocument(reader, url);
+			loadProgress.addPhaseTime(Phase.PARSE, start);
+		} catch (XMLStreamException e) {
+			checkLimitExceeded(countingStream);
+			throw e;
+		} finally {
+			reader.close();
+			closeQuietly(countingStream);
+			loadProgress.finish();
 			identifierToCreateInstruction.clear();
 		}
 	}
 
+	// the instructions are handed over to the schedulers, which drop every instruction once it is executed, so the elements are built in place of them
 	private void executeInstructions() throws Exception {
+		AMLLoadProgress progress = getLoadProgress();
+		AMLInstructionScheduler scheduler = new AMLInstructionScheduler(takeInstructions(), progress);
+		AMLInstructionScheduler internalLinkScheduler = new AMLInstructionScheduler(internalLinkRelatedInstructions, progress);
+		internalLinkRelatedInstructions.clear();
+
+		long start = System.nanoTime();
+		scheduler.execute();
+		progress.addPhaseTime(Phase.EXECUTE, start);
+		start = System.nanoTime();
+		internalLinkScheduler.execute();
+		progress.addPhaseTime(Phase.LINK, start);
+	}
+
+	// trusted documents are built without asking the validator, recording changes or notifying for every element; the scopes
+	// collect the ids of the new documents once and each new document is validated as a whole before it is announced
+	private void executeTrustedInstructions() throws Exception {
+		AMLSessionImpl sessionImpl = (AMLSessionImpl) session;
+		boolean notifyEnabled = sessionImpl.getNotifyEnable();
+		sessionImpl.getSavepointManager().suspend();
+		sessionImpl.enableNotify(false);
+		sessionImpl.beginTrustedLoad();
+		List<AMLValidationResultList> validationResultLists;
+		try {
+			getDocumentManager().beginBulkLoad();
+			try {
+				executeInstructions();
+			} finally {
+				getDocumentManager().endBulkLoad();
+			}
+			long start = System.nanoTime();
+			validationResultLists = sessionImpl.validateTrustedLoadedDocuments();
+			getLoadProgress().addPhaseTime(Phase.EXECUTE, start);
+		} catch (Exception e) {
+			try {
+				sessionImpl.removeTrustedLoadedDocuments();
+			} catch (Exception removeException) {
+				e.addSuppressed(removeException);
+			}
+			throw e;
+		} finally {
+			sessionImpl.enableNotify(notifyEnabled);
+			sessionImpl.getSavepointManager().resume();
+			sessionImpl.endTrustedLoad();
+		}
+		for (AMLValidationResultList validationResultList : validationResultLists)
+			getDocumentManager().notifyElementValidated(validationResultList);
+	}
+
+	private Collection<AMLInstruction> takeInstructions() {
 		Collection<AMLInstruction> aMLInstructions = new LinkedHashSet<AMLInstruction>();
 		aMLInstructions.addAll(identifierToCreateLibraryInstruction.values());
 		aMLInstructions.addAll(identifierToCreateInstruction.values());
 		aMLInstructions.addAll(changeInstructions);
-
-		executeInstructions(aMLInstructions);
-		aMLInstructions.clear();
-		aMLInstructions.addAll(internalLinkRelatedInstructions);
-		executeInstructions(aMLInstructions);
+		identifierToCreateLibraryInstruction.clear();
+		identifierToCreateInstruction.clear();
+		changeInstructions.clear();
+		return aMLInstructions;
 	}
 
-	private void executeInstructions(Collection<AMLInstruction> amlInstructions) throws Exception, AMLUnresolvedDependenciesException {
-		while (!amlInstructions.isEmpty()) {
+	private void createInstructions(URL url) throws DeserializerException, MalformedURLException, AMLNameAlreadyInUseException {
 
-			boolean anyInstructionExecuted = false;
-			for (Iterator<AMLInstruction> iterator = amlInstructions.iterator(); iterator.hasNext();) {
-				AMLInstruction aMLInstruction = iterator.next();
-				if (aMLInstruction.hasUnresolvedDependencies())
-					continue;
-				aMLInstruction.execute();
-				iterator.remove();
-				anyInstructionExecuted = true;
+		List<URL> files = new ArrayList<URL>();
+		files.add(url);
+		resolvedFiles.add(url);
+		projectedUrl = projection == null ? null : url;
+		AMLDeserializer projectedDeserializer = null;
+
+		try {
+			while (!files.isEmpty()) {
+				long start = System.nanoTime();
+				List<AMLDeserializer> fileDeserializers = createInstructionsFromFiles(files);
+				getLoadProgress().addPhaseTime(Phase.PARSE, start);
+
+				// merge in discovery order so the result does not depend on which file finished first
+				start = System.nanoTime();
+				files = new ArrayList<URL>();
+				for (AMLDeserializer fileDeserializer : fileDeserializers) {
+					mergeInstructions(fileDeserializer);
+					if (!fileDeserializer.skippedElements.isEmpty())
+						projectedDeserializer = fileDeserializer;
+					for (URL referencedFile : fileDeserializer.unresolvedFiles) {
+						if (resolvedFiles.add(referencedFile))
+							files.add(referencedFile);
+					}
+				}
+				getLoadProgress().addPhaseTime(Phase.RESOLVE, start);
 			}
+			if (projectedDeserializer != null) {
+				long start = System.nanoTime();
+				parseReferencedSkippedElements(projectedDeserializer);
+				getLoadProgress().addPhaseTime(Phase.PARSE, start);
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+				executor = null;
+			}
+		}
+	}
+
+	private List<AMLDeserializer> createInstructionsFromFiles(List<URL> urls) throws DeserializerException, MalformedURLException, AMLNameAlreadyInUseException {
+		List<AMLDeserializer> fileDeserializers = new ArrayList<AMLDeserializer>();
+		if (urls.size() == 1) {
+			fileDeserializers.add(createFileDeserializer(urls.get(0)));
+			return fileDeserializers;
+		}
+
+		if (executor == null)
+			executor = Executors.newFixedThreadPool(Math.min(urls.size(), Runtime.getRuntime().availableProcessors()));
+
+		List<Future<AMLDeserializer>> futures = new ArrayList<Future<AMLDeserializer>>();
+		for (final URL url : urls) {
+			futures.add(executor.submit(new Callable<AMLDeserializer>() {
+				@Override
+				public AMLDeserializer call() throws Exception {
+					return createFileDeserializer(url);
+				}
+			}));
+		}
 
-			if (!anyInstructionExecuted)
-				throw new AMLUnresolvedDependenciesException(amlInstructions);
+		for (Future<AMLDeserializer> future : futures) {
+			fileDeserializers.add(getDeserializer(future));
 		}
+		return fileDeserializers;
 	}
 
-	private void createInstructions(URL url) throws ParserException, MalformedURLException, AMLNameAlreadyInUseException {
+	private static AMLDeserializer getDeserializer(Future<AMLDeserializer> future) throws DeserializerException, MalformedURLException,
+			AMLNameAlreadyInUseException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ParserException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof DeserializerException)
+				throw (DeserializerException) cause;
+			if (cause instanceof MalformedURLException)
+				throw (MalformedURLException) cause;
+			if (cause instanceof AMLNameAlreadyInUseException)
+				throw (AMLNameAlreadyInUseException) cause;
+			throw new ParserException(cause);
+		}
+	}
 
-		createInstructionsFromFile(url);
+	private AMLDeserializer createFileDeserializer(URL url) throws DeserializerException, MalformedURLException, AMLNameAlreadyInUseException {
+		AMLDeserializer fileDeserializer = new AMLDeserializer();
+		fileDeserializer.session = session;
+		fileDeserializer.lazyLoading = lazyLoading;
+		fileDeserializer.sourceLocations = sourceLocations;
+		fileDeserializer.parallelParsingThreshold = parallelParsingThreshold;
+		fileDeserializer.loadBudget = getLoadBudget();
+		fileDeserializer.loadProgress = getLoadProgress();
+		if (projectedUrl != null && projectedUrl.toString().equals(url.toString()))
+			fileDeserializer.projection = projection;
+		fileDeserializer.createInstructionsFromFile(url);
+		return fileDeserializer;
+	}
 
+	// skipped parts still referenced are parsed until all references into the document can be resolved
+	private void parseReferencedSkippedElements(AMLDeserializer projectedDeserializer) throws DeserializerException, MalformedURLException,
+			AMLNameAlreadyInUseException {
 		while (true) {
+			Set<String> referencedLibraries = new HashSet<String>();
+			boolean referencesIds = false;
+			for (String name : pendingReferences.keySet()) {
+				int index = name.indexOf(PATH_SEPARATOR);
+				if (index >= 0)
+					referencedLibraries.add(name.substring(0, index));
+				else
+					referencesIds = true;
+			}
 
-			int resolvedFilesCount = resolvedFiles.size();
+			List<SkippedElement> elements = new ArrayList<SkippedElement>();
+			for (Iterator<SkippedElement> iterator = projectedDeserializer.skippedElements.iterator(); iterator.hasNext();) {
+				SkippedElement element = iterator.next();
+				boolean referenced = element.elementType == AMLElementType.ELEMENT_INSTANCE_HIERARCHY ? referencesIds : referencedLibraries
+						.contains(element.name);
+				if (referenced) {
+					elements.add(element);
+					iterator.remove();
+				}
+			}
+			if (elements.isEmpty())
+				return;
+
+			AMLDeserializer fileDeserializer = new AMLDeserializer();
+			fileDeserializer.session = session;
+			fileDeserializer.lazyLoading = lazyLoading;
+			fileDeserializer.sourceLocations = sourceLocations;
+			fileDeserializer.loadBudget = getLoadBudget();
+			fileDeserializer.loadProgress = getLoadProgress();
+			fileDeserializer.parseSkippedElements(projectedUrl, projectedDeserializer.documentIdentifier, elements);
+			mergeInstructions(fileDeserializer);
+		}
+	}
+
+	private void parseSkippedElements(URL url, AMLDeserializeIdentifier documentIdentifier, List<SkippedElement> elements) throws DeserializerException,
+			MalformedURLException, AMLNameAlreadyInUseException {
+		XMLStreamReader reader = null;
+		try {
+			reader = session.getXMLBackend().createXMLStreamReader(url);
+			reader.require(XMLStreamConstants.START_DOCUMENT, null, null);
+			reader.nextTag();
+			reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_CAEX_FILE);
+
+			int instanceHierarchyIndex = 0;
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				AMLElementType elementType = AMLElementNames.getElementType(reader.getLocalName());
+				String name = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_NAME);
+				int index = elementType == AMLElementType.ELEMENT_INSTANCE_HIERARCHY ? instanceHierarchyIndex++ : -1;
+				SkippedElement element = null;
+				for (SkippedElement skippedElement : elements) {
+					if (skippedElement.elementType == elementType && skippedElement.index == index && skippedElement.name.equals(name))
+						element = skippedElement;
+				}
+				if (element == null)
+					skipElement(reader);
+				else if (elementType == AMLElementType.ELEMENT_INSTANCE_HIERARCHY)
+					parseInstanceHierarchy(reader, documentIdentifier, url, index);
+				else
+					parseClassLibrary(reader, documentIdentifier, elementType);
+			}
+		} catch (XMLStreamException e) {
+			throw new ParserException(e);
+		} catch (IOException e) {
+			getExternalReferenceResolver().forget(url);
+			throw new ParserException("File not found : " + url);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					throw new ParserException(e);
+				}
+			}
+		}
+	}
 
-			Iterator<URL> unresolvedFilesIterator = unresolvedFiles.iterator();
-			if (unresolvedFilesIterator.hasNext()) {
-				URL unresolvedFile = unresolvedFilesIterator.next();
-				createInstructionsFromFile(unresolvedFile);
-				resolvedFiles.add(unresolvedFile);
-				unresolvedFiles.remove(unresolvedFile);
+	// binds the identifiers of a file parsed on its own exactly as if it had been parsed after all files merged so far
+	private void mergeInstructions(AMLDeserializer fileDeserializer) {
+		Set<AMLDeserializeIdentifier> fileIdentifiers = Collections.newSetFromMap(new IdentityHashMap<AMLDeserializeIdentifier, Boolean>());
+		fileIdentifiers.addAll(fileDeserializer.createdIdentifiers);
+
+		for (AMLDeserializeReferenceIdentifier reference : fileDeserializer.forwardReferences) {
+			AMLDeserializeIdentifier referencedIdentifier = reference.getReferencedIdentifier();
+			if (referencedIdentifier != null && !fileIdentifiers.contains(referencedIdentifier))
+				continue;
+			AMLDeserializeIdentifier identifier = aMLDeserializeIdentifiers.get(reference.getName());
+			if (identifier != null)
+				reference.setReferencedIdentifier(identifier);
+			else if (referencedIdentifier == null)
+				addPendingReference(reference);
+		}
+
+		for (AMLDeserializeIdentifier identifier : fileDeserializer.createdIdentifiers) {
+			aMLDeserializeIdentifiers.put(identifier.getName(), identifier);
+			List<AMLDeserializeReferenceIdentifier> references = pendingReferences.remove(identifier.getName());
+			if (references == null)
+				continue;
+			for (AMLDeserializeReferenceIdentifier reference : references) {
+				reference.setReferencedIdentifier(identifier);
 			}
+		}
 
-			if (unresolvedIdentifiers.isEmpty() && unresolvedFiles.isEmpty())
-				break;
+		for (Map.Entry<AMLDeserializeIdentifier, AMLCreateInstruction> entry : fileDeserializer.identifierToCreateLibraryInstruction.entrySet()) {
+			if (!identifierToCreateLibraryInstruction.containsKey(entry.getKey()))
+				identifierToCreateLibraryInstruction.put(entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<AMLDeserializeIdentifier, AMLCreateInstruction> entry : fileDeserializer.identifierToCreateInstruction.entrySet()) {
+			if (!identifierToCreateInstruction.containsKey(entry.getKey()))
+				identifierToCreateInstruction.put(entry.getKey(), entry.getValue());
+		}
+		changeInstructions.addAll(fileDeserializer.changeInstructions);
+		internalLinkRelatedInstructions.addAll(fileDeserializer.internalLinkRelatedInstructions);
+		missingFiles.addAll(fileDeserializer.missingFiles);
+		deferredInstanceHierarchies.addAll(fileDeserializer.deferredInstanceHierarchies);
+		sourceRegions.putAll(fileDeserializer.sourceRegions);
+
+		for (Map.Entry<AMLDocument, String> entry : fileDeserializer.documentAliases.entrySet()) {
+			getDocumentManager().setAlias(entry.getKey(), entry.getValue());
+		}
+	}
 
-			if (resolvedFilesCount == resolvedFiles.size())
-				break;
+	private void addPendingReference(AMLDeserializeReferenceIdentifier reference) {
+		List<AMLDeserializeReferenceIdentifier> references = pendingReferences.get(reference.getName());
+		if (references == null) {
+			references = new ArrayList<AMLDeserializeReferenceIdentifier>();
+			pendingReferences.put(reference.getName(), references);
 		}
+		references.add(reference);
 	}
 
-	private void createInstructionsFromFile(URL url) throws ParserException, MalformedURLException, AMLNameAlreadyInUseException {
+	private void createInstructionsFromFile(URL url) throws DeserializerException, MalformedURLException, AMLNameAlreadyInUseException {
+		// files are counted before they are read, if their size is not known in advance while they are read
+		AMLLoadBudget budget = getLoadBudget();
+		budget.addFile(url.toString());
+		long fileSize = getFileSize(url);
+		budget.addBytes(fileSize, url.toString());
+		getLoadProgress().fileResolved(url, fileSize);
+
 		XMLStreamReader reader = null;
-		InputStream is = null;
+		AMLLoadBudget.CountingInputStream countingStream = null;
 		try {
-			is = url.openStream();
-			XMLInputFactory factory = XMLInputFactory.newInstance();
-			reader = factory.createXMLStreamReader(is);
+			if (fileSize < 0 && budget.isLimited(Limit.BYTES)) {
+				countingStream = budget.countBytes(url.openStream(), url.toString());
+				reader = session.getXMLBackend().createXMLStreamReader(countingStream);
+			} else
+				reader = session.getXMLBackend().createXMLStreamReader(url);
 
 			reader.require(XMLStreamConstants.START_DOCUMENT, null, null);
 			parseDocument(reader, url);
 		} catch (XMLStreamException e) {
+			checkLimitExceeded(countingStream);
 			throw new ParserException(e);
 		} catch (IOException e) {
+			checkLimitExceeded(countingStream);
+			getExternalReferenceResolver().forget(url);
 			throw new ParserException("File not found : " + url);
-		} catch (ParserException e) {
+		} catch (DeserializerException e) {
 			throw e;
 		} catch (Exception e) {
 			e.printStackTrace();
 		} finally {
+			closeQuietly(countingStream);
 			if (reader == null)
 				return;
 			try {
 				reader.close();
-				is.close();
 			} catch (XMLStreamException e) {
 				throw new ParserException(e);
-			} catch (IOException e) {
-				throw new ParserException(e);
 			}
 		}
 	}
 
-	private void parseDocument(XMLStreamReader reader, URL url) throws XMLStreamException, ParserException, MalformedURLException, AMLNameAlreadyInUseException {
+	private static void checkLimitExceeded(AMLLoadBudget.CountingInputStream countingStream) throws AMLLoadLimitExceededException {
+		if (countingStream != null && countingStream.getLimitExceeded() != null)
+			throw countingStream.getLimitExceeded();
+	}
+
+	// the readers created from a stream do not close it
+	private static void closeQuietly(InputStream inputStream) {
+		if (inputStream == null)
+			return;
+		try {
+			inputStream.close();
+		} catch (IOException e) {
+		}
+	}
+
+	private void parseDocument(XMLStreamReader reader, URL url) throws XMLStreamException, DeserializerException, MalformedURLException, AMLNameAlreadyInUseException {
 
 		reader.nextTag();
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_CAEX_FILE);
@@ -212,9 +743,12 @@ public class AMLDeserializer implements Deserializer {
 		if (!reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_SCHEMA_VERSION).equals(AMLElementNames.ATTRIBUTE_VALUE_SCHEMA_VERSION))
 			throw new ParserException("Unsupported CAEX version");
 
-		AMLDeserializeIdentifier identifier = createDeserializeIdentifier(url.toString(), null, new AMLLocationInFileImpl());
+		AMLDeserializeIdentifier identifier = createDeserializeIdentifier(url.toString(), null, AMLLocationInFileImpl.UNKNOWN);
+		documentIdentifier = identifier;
 
-		AMLCreateDocumentInstruction instruction = new AMLCreateDocumentInstruction(session, identifier);
+		AMLCreateDocumentInstruction instruction = new AMLCreateDocumentInstruction(session, identifier, url);
+		int instanceHierarchyIndex = 0;
+		AMLSourceRegions regions = createSourceRegions(reader, url);
 
 		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
 			AMLElementType elementType = AMLElementNames.getElementType(reader.getLocalName());
@@ -223,6 +757,12 @@ public class AMLDeserializer implements Deserializer {
 				continue;
 			}
 
+			// the name is read at the start tag, the reader is on the end tag once the element is parsed
+			String regionName = regions != null && isTopLevelElement(elementType) ? reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_NAME) : null;
+			int regionStart = regionName != null ? ((MappedCAEXStreamReader) reader).getTagStart() : -1;
+			if (regions != null && elementType == AMLElementType.ELEMENT_EXTERNAL_REFERENCE)
+				addExternalReferenceRegion(reader, url, regions);
+
 			switch (elementType) {
 			case ELEMENT_ADDITIONAL_INFORMATION:
 				if (reader.getAttributeCount() == 1 && reader.getAttributeLocalName(0) == AMLElementNames.ATTRIBUTE_AUTOMATION_ML_VERSION)
@@ -231,15 +771,23 @@ public class AMLDeserializer implements Deserializer {
 					parseAdditionalInformation(reader, instruction);
 				break;
 			case ELEMENT_EXTERNAL_REFERENCE:
-				parseExternalReferences(reader, identifier, url);
+				if (streamHandler != null)
+					skipElement(reader);
+				else
+					parseExternalReferences(reader, identifier, url);
 				break;
 			case ELEMENT_INTERFACE_CLASS_LIB:
 			case ELEMENT_ROLE_CLASS_LIB:
 			case ELEMENT_SYSTEM_UNIT_CLASS_LIB:
-				parseClassLibrary(reader, identifier, elementType);
+				if (streamHandler != null)
+					skipElement(reader);
+				else if (!isProjected(reader, elementType, -1) && !isSplit(reader, elementType, -1))
+					parseClassLibrary(reader, identifier, elementType);
 				break;
 			case ELEMENT_INSTANCE_HIERARCHY:
-				parseInstanceHierarchy(reader, identifier);
+				int index = instanceHierarchyIndex++;
+				if (!isProjected(reader, elementType, index) && !isSplit(reader, elementType, index))
+					parseInstanceHierarchy(reader, identifier, url, index);
 				break;
 			case ELEMENT_DESCRIPTION:
 			case ELEMENT_VERSION:
@@ -250,14 +798,171 @@ public class AMLDeserializer implements Deserializer {
 			default:
 				// throw new ParserException("Unexpected element " + reader.getLocalName() + " in " + AMLElements.ELEMENT_CAEX_FILE + ".");
 			}
+			if (regionName != null)
+				regions.add(elementType, regionName, regionStart, reader.getLocation().getCharacterOffset());
 		}
+		if (!splitElements.isEmpty())
+			parseSplitElements(url);
 		addInstruction(identifier, instruction, false);
 
 		reader.require(XMLStreamConstants.END_ELEMENT, null, AMLElementNames.ELEMENT_CAEX_FILE);
 	}
 
-	private void parseInstanceHierarchy(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier) throws XMLStreamException, ParserException,
-			AMLNameAlreadyInUseException {
+	// only files read in place have byte positions, and only if their root element declares nothing but what is written again when they are saved
+	private AMLSourceRegions createSourceRegions(XMLStreamReader reader, URL url) {
+		if (streamHandler != null || !session.isIncrementalSaving() || !(reader instanceof MappedCAEXStreamReader) || !"file".equals(url.getProtocol()))
+			return null;
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			if (!"xsi".equals(reader.getNamespacePrefix(i)) || !AMLElementNames.ATTRIBUTE_VALUE_XML_SCHEMA_INSTANCE.equals(reader.getNamespaceURI(i)))
+				return null;
+		}
+		try {
+			AMLSourceRegions regions = new AMLSourceRegions(new File(url.toURI()));
+			regions.recordFileState();
+			sourceRegions.put(url, regions);
+			return regions;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static boolean isTopLevelElement(AMLElementType elementType) {
+		return elementType == AMLElementType.ELEMENT_INSTANCE_HIERARCHY || elementType == AMLElementType.ELEMENT_INTERFACE_CLASS_LIB
+				|| elementType == AMLElementType.ELEMENT_ROLE_CLASS_LIB || elementType == AMLElementType.ELEMENT_SYSTEM_UNIT_CLASS_LIB;
+	}
+
+	private static void addExternalReferenceRegion(XMLStreamReader reader, URL url, AMLSourceRegions regions) throws MalformedURLException {
+		String path = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_PATH);
+		String alias = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_ALIAS);
+		if (path != null && alias != null)
+			regions.addExternalReference(alias, new URL(url, path));
+	}
+
+	// skips the element if the projection leaves it out
+	private boolean isProjected(XMLStreamReader reader, AMLElementType elementType, int index) throws XMLStreamException {
+		if (projection == null)
+			return false;
+		String name = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_NAME);
+		if (name == null || projection.includes(reader.getLocalName(), name))
+			return false;
+		skippedElements.add(new SkippedElement(elementType, name, index));
+		skipElement(reader);
+		return true;
+	}
+
+	// leaves the element of a large file to be parsed in parallel, see parseSplitElements
+	private boolean isSplit(XMLStreamReader reader, AMLElementType elementType, int index) throws XMLStreamException {
+		if (streamHandler != null || parallelParsingThreshold < 0 || !(reader instanceof MappedCAEXStreamReader))
+			return false;
+		MappedCAEXStreamReader mappedReader = (MappedCAEXStreamReader) reader;
+		if (mappedReader.getLength() < parallelParsingThreshold)
+			return false;
+		splitElements.add(new SplitElement(elementType, index, mappedReader.splitElement()));
+		return true;
+	}
+
+	// every element is parsed on its own, the results are added in document order, so the instructions are the same as parsed in place
+	private void parseSplitElements(final URL url) throws DeserializerException, MalformedURLException, AMLNameAlreadyInUseException {
+		List<AMLDeserializer> elementDeserializers = new ArrayList<AMLDeserializer>();
+		if (splitElements.size() == 1) {
+			elementDeserializers.add(createElementDeserializer(url, splitElements.get(0)));
+		} else {
+			ExecutorService elementExecutor = Executors.newFixedThreadPool(Math.min(splitElements.size(), Runtime.getRuntime().availableProcessors()));
+			try {
+				List<Future<AMLDeserializer>> futures = new ArrayList<Future<AMLDeserializer>>();
+				for (final SplitElement element : splitElements) {
+					futures.add(elementExecutor.submit(new Callable<AMLDeserializer>() {
+						@Override
+						public AMLDeserializer call() throws Exception {
+							return createElementDeserializer(url, element);
+						}
+					}));
+				}
+				for (Future<AMLDeserializer> future : futures) {
+					elementDeserializers.add(getDeserializer(future));
+				}
+			} finally {
+				elementExecutor.shutdownNow();
+			}
+		}
+		splitElements.clear();
+
+		Map<String, List<AMLDeserializeReferenceIdentifier>> unresolvedReferences = new HashMap<String, List<AMLDeserializeReferenceIdentifier>>();
+		for (AMLDeserializeReferenceIdentifier reference : unresolvedIdentifiers.values()) {
+			addUnresolvedReference(unresolvedReferences, reference);
+		}
+		for (AMLDeserializer elementDeserializer : elementDeserializers) {
+			addElementInstructions(elementDeserializer, unresolvedReferences);
+		}
+	}
+
+	private AMLDeserializer createElementDeserializer(URL url, SplitElement element) throws DeserializerException, AMLNameAlreadyInUseException {
+		AMLDeserializer elementDeserializer = new AMLDeserializer();
+		elementDeserializer.session = session;
+		elementDeserializer.lazyLoading = lazyLoading;
+		elementDeserializer.sourceLocations = sourceLocations;
+		elementDeserializer.loadBudget = getLoadBudget();
+		elementDeserializer.loadProgress = getLoadProgress();
+		XMLStreamReader reader = element.reader;
+		try {
+			reader.require(XMLStreamConstants.START_DOCUMENT, null, null);
+			reader.nextTag();
+			if (element.elementType == AMLElementType.ELEMENT_INSTANCE_HIERARCHY)
+				elementDeserializer.parseInstanceHierarchy(reader, documentIdentifier, url, element.index);
+			else
+				elementDeserializer.parseClassLibrary(reader, documentIdentifier, element.elementType);
+			reader.close();
+		} catch (XMLStreamException e) {
+			throw new ParserException(e);
+		}
+		return elementDeserializer;
+	}
+
+	// like mergeInstructions, but references are bound as if the element had been parsed in place: references to elements parsed before are
+	// no forward references
+	private void addElementInstructions(AMLDeserializer elementDeserializer, Map<String, List<AMLDeserializeReferenceIdentifier>> unresolvedReferences) {
+		for (AMLDeserializeReferenceIdentifier reference : elementDeserializer.forwardReferences) {
+			AMLDeserializeIdentifier identifier = aMLDeserializeIdentifiers.get(reference.getName());
+			if (identifier != null) {
+				reference.setReferencedIdentifier(identifier);
+				continue;
+			}
+			forwardReferences.add(reference);
+			if (reference.getReferencedIdentifier() == null)
+				addUnresolvedReference(unresolvedReferences, reference);
+		}
+
+		for (AMLDeserializeIdentifier identifier : elementDeserializer.createdIdentifiers) {
+			aMLDeserializeIdentifiers.put(identifier.getName(), identifier);
+			createdIdentifiers.add(identifier);
+			unresolvedIdentifiers.remove(identifier.getName());
+			List<AMLDeserializeReferenceIdentifier> references = unresolvedReferences.remove(identifier.getName());
+			if (references == null)
+				continue;
+			for (AMLDeserializeReferenceIdentifier reference : references) {
+				reference.setReferencedIdentifier(identifier);
+			}
+		}
+
+		identifierToCreateLibraryInstruction.putAll(elementDeserializer.identifierToCreateLibraryInstruction);
+		identifierToCreateInstruction.putAll(elementDeserializer.identifierToCreateInstruction);
+		changeInstructions.addAll(elementDeserializer.changeInstructions);
+		internalLinkRelatedInstructions.addAll(elementDeserializer.internalLinkRelatedInstructions);
+		deferredInstanceHierarchies.addAll(elementDeserializer.deferredInstanceHierarchies);
+	}
+
+	private static void addUnresolvedReference(Map<String, List<AMLDeserializeReferenceIdentifier>> unresolvedReferences,
+			AMLDeserializeReferenceIdentifier reference) {
+		List<AMLDeserializeReferenceIdentifier> references = unresolvedReferences.get(reference.getName());
+		if (references == null) {
+			references = new ArrayList<AMLDeserializeReferenceIdentifier>();
+			unresolvedReferences.put(reference.getName(), references);
+		}
+		references.add(reference);
+	}
+
+	private void parseInstanceHierarchy(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, URL url, int index) throws XMLStreamException,
+			DeserializerException, AMLNameAlreadyInUseException {
 
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_INSTANCE_HIERARCHY);
 
@@ -274,6 +979,26 @@ public class AMLDeserializer implements Deserializer {
 				AMLElementType.ELEMENT_INSTANCE_HIERARCHY);
 		createElementInstruction.name = name;
 		addInstruction(identifier, createElementInstruction, false);
+		if (streamHandler != null)
+			streamHandler.startInstanceHierarchy(name);
+
+		AMLDeferredInstanceHierarchy deferredInstanceHierarchy = null;
+		if (lazyLoading && streamHandler == null) {
+			deferredInstanceHierarchy = new AMLDeferredInstanceHierarchy(url, index, identifier);
+			deferredInstanceHierarchies.add(deferredInstanceHierarchy);
+		}
+
+		parseInstanceHierarchyContent(reader, identifier, createElementInstruction, deferredInstanceHierarchy);
+		if (streamHandler != null) {
+			identifierToCreateInstruction.remove(identifier);
+			streamHandler.endInstanceHierarchy(name);
+		}
+	}
+
+	// without createElementInstruction only the internal elements are parsed, with deferredInstanceHierarchy they are skipped
+	private void parseInstanceHierarchyContent(XMLStreamReader reader, AMLDeserializeIdentifier identifier,
+			AMLCreateElementInstruction createElementInstruction, AMLDeferredInstanceHierarchy deferredInstanceHierarchy) throws XMLStreamException,
+			DeserializerException, AMLNameAlreadyInUseException {
 
 		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
 			AMLElementType elementType = AMLElementNames.getElementType(reader.getLocalName());
@@ -286,10 +1011,16 @@ public class AMLDeserializer implements Deserializer {
 			case ELEMENT_COPYRIGHT:
 			case ELEMENT_ADDITIONAL_INFORMATION:
 			case ELEMENT_REVISION:
-				parseElement(reader, identifier, createElementInstruction);
+				if (createElementInstruction == null)
+					skipElement(reader);
+				else
+					parseElement(reader, identifier, createElementInstruction);
 				break;
 			case ELEMENT_INTERNAL_ELEMENT:
-				parseInternalElement(reader, identifier);
+				if (deferredInstanceHierarchy != null)
+					skipInternalElement(reader, deferredInstanceHierarchy.internalElementIds);
+				else
+					parseInternalElement(reader, identifier);
 				break;
 			default:
 				throw new ParserException("Unexpected element " + reader.getLocalName() + " in " + AMLElementNames.ELEMENT_INSTANCE_HIERARCHY + ".");
@@ -299,23 +1030,45 @@ public class AMLDeserializer implements Deserializer {
 		reader.require(XMLStreamConstants.END_ELEMENT, null, AMLElementNames.ELEMENT_INSTANCE_HIERARCHY);
 	}
 
-	private void parseInternalElement(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier) throws XMLStreamException, ParserException,
+	// collects the ids of the internal elements that are no mirror objects, as the document scope does
+	private void skipInternalElement(XMLStreamReader reader, List<UUID> internalElementIds) throws XMLStreamException, DeserializerException {
+		int depth = 0;
+		while (true) {
+			if (reader.isStartElement()) {
+				depth++;
+				if (AMLElementNames.ELEMENT_INTERNAL_ELEMENT.equals(reader.getLocalName()) && !isMirrorObject(reader))
+					internalElementIds.add(parseInternalElementId(reader));
+			} else if (reader.isEndElement() && --depth == 0) {
+				break;
+			}
+			reader.next();
+		}
+	}
+
+	private boolean isMirrorObject(XMLStreamReader reader) {
+		String refBaseClassPath = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_REF_BASE_SYSTEM_UNIT_PATH);
+		if (refBaseClassPath == null || refBaseClassPath.length() == 0)
+			return false;
+		return AMLValueDecoder.parseUUID(refBaseClassPath) != null;
+	}
+
+	private UUID parseInternalElementId(XMLStreamReader reader) throws DeserializerException {
+		String uuidString = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_ID);
+		if (uuidString == null)
+			throw new ParserException("Missing attribute " + AMLElementNames.ATTRIBUTE_ID + " in element " + AMLElementNames.ELEMENT_INTERNAL_ELEMENT);
+		UUID id = AMLValueDecoder.parseUUID(uuidString);
+		if (id == null)
+			throw new ParserException("Invalid UUID " + uuidString + " in element " + AMLElementNames.ELEMENT_INTERNAL_ELEMENT);
+		return id;
+	}
+
+	private void parseInternalElement(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier) throws XMLStreamException, DeserializerException,
 			AMLNameAlreadyInUseException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_INTERNAL_ELEMENT);
+		enterElement(reader);
 
 		String originalUuidString = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_ID);
-		String uuidString = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_ID);
-		UUID id = null;
-		try {
-			uuidString = uuidString.replace("{", "");
-			uuidString = uuidString.replace("}", "");
-			id = UUID.fromString(uuidString);
-		} catch (Exception e) {
-			throw new ParserException(e);
-		}
-
-		if (id == null)
-			throw new ParserException("Missing attribute " + AMLElementNames.ATTRIBUTE_ID + " in element " + AMLElementNames.ELEMENT_INTERNAL_ELEMENT);
+		UUID id = parseInternalElementId(reader);
 
 		AMLLocationInFile filePosition = getFilePosition(reader);
 		AMLDeserializeIdentifier identifier = createDeserializeIdentifier(originalUuidString, parentIdentifier, filePosition);
@@ -332,11 +1085,7 @@ public class AMLDeserializer implements Deserializer {
 		if (refBaseClassPath != null && refBaseClassPath.length() != 0) {
 
 			// test if UUID
-			String copyRefBaseClassPath = refBaseClassPath;
-			try {
-				copyRefBaseClassPath = copyRefBaseClassPath.replace("{", "");
-				copyRefBaseClassPath = copyRefBaseClassPath.replace("}", "");
-				UUID refId = UUID.fromString(copyRefBaseClassPath);
+			if (AMLValueDecoder.parseUUID(refBaseClassPath) != null) {
 				createElementInstruction.setElementType(AMLElementType.ELEMENT_MIRROR_OBJECT);
 				AMLDeserializeReferenceIdentifier refBaseClassPathIdentifier = getReferencedDeserializeIdentifier(
 						refBaseClassPath,
@@ -344,7 +1093,7 @@ public class AMLDeserializer implements Deserializer {
 						filePosition);
 				createElementInstruction.addReferencedIdentifier(refBaseClassPathIdentifier);
 
-			} catch (Exception e) {
+			} else {
 				filePosition = getFilePosition(reader);
 				AMLDeserializeReferenceIdentifier refBaseClassPathIdentifier = getReferencedDeserializeIdentifier(
 						refBaseClassPath,
@@ -359,6 +1108,8 @@ public class AMLDeserializer implements Deserializer {
 				addInstruction(identifier, changeReferenceInstruction, false);
 			}
 		}
+		if (streamHandler != null)
+			streamHandler.startInternalElement(id, createElementInstruction.name, refBaseClassPath);
 
 		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
 			AMLElementType elementType = AMLElementNames.getElementType(reader.getLocalName());
@@ -398,9 +1149,14 @@ public class AMLDeserializer implements Deserializer {
 		}
 
 		reader.require(XMLStreamConstants.END_ELEMENT, null, AMLElementNames.ELEMENT_INTERNAL_ELEMENT);
+		if (streamHandler != null) {
+			identifierToCreateInstruction.remove(identifier);
+			streamHandler.endInternalElement(id, createElementInstruction.name);
+		}
+		depth--;
 	}
 
-	private void parseInternalLink(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier) throws XMLStreamException, ParserException {
+	private void parseInternalLink(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier) throws XMLStreamException, DeserializerException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_INTERNAL_LINK);
 
 		AMLLocationInFile filePosition = getFilePosition(reader);
@@ -427,7 +1183,9 @@ public class AMLDeserializer implements Deserializer {
 		AMLDeserializeReferenceIdentifier refPartnerSideBIdentifier = getReferencedDeserializeIdentifier(refPartnerSideB, parentIdentifier, filePosition);
 		createInstruction.addReferencedIdentifier(refPartnerSideAIdentifier);
 		createInstruction.addReferencedIdentifier(refPartnerSideBIdentifier);
-		internalLinkRelatedInstructions.add(createInstruction);
+		addInternalLinkRelatedInstruction(createInstruction);
+		if (streamHandler != null)
+			streamHandler.internalLink(name, refPartnerSideA, refPartnerSideB);
 
 		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
 			AMLElementType elementType = AMLElementNames.getElementType(reader.getLocalName());
@@ -442,7 +1200,7 @@ public class AMLDeserializer implements Deserializer {
 	}
 
 	private void parseRoleRequirements(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, String uuidString) throws XMLStreamException,
-			ParserException, AMLNameAlreadyInUseException {
+			DeserializerException, AMLNameAlreadyInUseException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_ROLE_REQUIREMENTS);
 
 		AMLLocationInFile filePosition = getFilePosition(reader);
@@ -517,7 +1275,7 @@ public class AMLDeserializer implements Deserializer {
 	}
 
 	private void parseExternalInterface(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, String path) throws XMLStreamException,
-			ParserException, AMLNameAlreadyInUseException {
+			DeserializerException, AMLNameAlreadyInUseException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_EXTERNAL_INTERFACE);
 
 		String uuidString = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_ID);
@@ -526,13 +1284,9 @@ public class AMLDeserializer implements Deserializer {
 		if (uuidString == null) {
 			id = UUID.randomUUID();
 		} else {
-			try {
-				uuidString = uuidString.replace("{", "");
-				uuidString = uuidString.replace("}", "");
-				id = UUID.fromString(uuidString);
-			} catch (Exception e) {
-				throw new ParserException(e);
-			}
+			id = AMLValueDecoder.parseUUID(uuidString);
+			if (id == null)
+				throw new ParserException("Invalid UUID " + uuidString + " in element " + AMLElementNames.ELEMENT_EXTERNAL_INTERFACE);
 		}
 
 		String name = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_NAME);
@@ -549,7 +1303,7 @@ public class AMLDeserializer implements Deserializer {
 		AMLDeserializeIdentifier identifier = createDeserializeIdentifier(classPath.toString(), parentIdentifier, filePosition);
 		AMLDeserializeReferenceIdentifier refBaseClassPathIdentifier = getReferencedDeserializeIdentifier(refBaseClassPath, parentIdentifier, filePosition);
 		
-		for (AMLDocument existing : session.getDocuments()) {
+		for (AMLDocument existing : streamHandler == null ? session.getDocuments() : Collections.<AMLDocument> emptyList()) {
 			
 			try {
 				AMLInterfaceClass interfaceClass = existing.getInterfaceClassByPath(refBaseClassPath);
@@ -633,7 +1387,7 @@ public class AMLDeserializer implements Deserializer {
 			createElementInstruction.id = id;
 			createElementInstruction.name = name;
 			createElementInstruction.addReferencedIdentifier(refBaseClassPathIdentifier);
-			internalLinkRelatedInstructions.add(createElementInstruction);
+			addInternalLinkRelatedInstruction(createElementInstruction);
 	
 			List<AMLCreateExternalInterfaceAttributeInstruction> attributeInstructions = new ArrayList<AMLCreateExternalInterfaceAttributeInstruction>();
 			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
@@ -666,9 +1420,10 @@ public class AMLDeserializer implements Deserializer {
 	}
 
 	private void parseExternalInterfaceAttribute(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, String path,
-			List<AMLCreateExternalInterfaceAttributeInstruction> attributeInstructions) throws XMLStreamException, ParserException,
+			List<AMLCreateExternalInterfaceAttributeInstruction> attributeInstructions) throws XMLStreamException, DeserializerException,
 			AMLNameAlreadyInUseException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_ATTRIBUTE);
+		enterElement(reader);
 
 		String name = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_NAME);
 		if (name == null)
@@ -700,7 +1455,7 @@ public class AMLDeserializer implements Deserializer {
 				createElementInstruction.description = reader.getElementText();
 				break;
 			case ELEMENT_VALUE:
-				createElementInstruction.value = reader.getElementText();
+				parseValue(reader, createElementInstruction);
 				break;
 			case ELEMENT_DEFAULT_VALUE:
 				createElementInstruction.defaultValue = reader.getElementText();
@@ -715,12 +1470,13 @@ public class AMLDeserializer implements Deserializer {
 				throw new ParserException("Unexpected element " + reader.getLocalName() + " in " + AMLElementNames.ELEMENT_INTERFACE_CLASS + ".");
 			}
 		}
-		internalLinkRelatedInstructions.add(createElementInstruction);
+		addInternalLinkRelatedInstruction(createElementInstruction);
 		reader.require(XMLStreamConstants.END_ELEMENT, null, AMLElementNames.ELEMENT_ATTRIBUTE);
+		depth--;
 	}
 
 	private void parseExternalReferences(XMLStreamReader reader, AMLDeserializeIdentifier documentIdentifier, URL baseUrl) throws XMLStreamException,
-			ParserException {
+			DeserializerException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_EXTERNAL_REFERENCE);
 
 		String pathString = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_PATH);
@@ -759,7 +1515,7 @@ public class AMLDeserializer implements Deserializer {
 				} else {
 					DocumentURLResolver documentURLResolver = session.getDocumentURLResolver();
 					if (documentURLResolver != null) {
-						resolvedUrl = documentURLResolver.getResolvedURL(baseUrl, pathString);
+						resolvedUrl = getExternalReferenceResolver().resolve(documentURLResolver, baseUrl, pathString);
 						url = resolvedUrl;
 						document = getDocument(resolvedUrl);
 					}
@@ -779,7 +1535,7 @@ public class AMLDeserializer implements Deserializer {
 		}
 
 		if (document != null) {
-			getDocumentManager().setAlias(document, alias);
+			documentAliases.put(document, alias);
 			AMLDeserializeReferenceIdentifier referenceIdentifier = getReferencedDeserializeIdentifier(originalUrl.toString());
 			AMLDeserializeIdentifier identifier = new AMLDeserializeIdentifier(originalUrl.toString());
 			identifier.setResolvedElement(document);
@@ -823,18 +1579,16 @@ public class AMLDeserializer implements Deserializer {
 		return ((AMLSessionImpl) session).getDocumentManager();
 	}
 
+	private AMLExternalReferenceResolver getExternalReferenceResolver() {
+		return ((AMLSessionImpl) session).getExternalReferenceResolver();
+	}
+
 	private boolean fileExists(URL url) {
-		try {
-			InputStream stream = url.openStream();
-			stream.close();
-			return true;
-		} catch (IOException e) {
-			return false;
-		}
+		return getExternalReferenceResolver().exists(url);
 	}
 
 	private void parseClassLibrary(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, AMLElementType libraryElementType)
-			throws XMLStreamException, ParserException, AMLNameAlreadyInUseException {
+			throws XMLStreamException, DeserializerException, AMLNameAlreadyInUseException {
 
 		String elementLibraryName = null;
 		switch (libraryElementType) {
@@ -905,7 +1659,7 @@ public class AMLDeserializer implements Deserializer {
 	}
 
 	private void parseClass(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, String pathFragment, AMLElementType elementClassType)
-			throws XMLStreamException, ParserException, AMLNameAlreadyInUseException {
+			throws XMLStreamException, DeserializerException, AMLNameAlreadyInUseException {
 
 		String elementClassName = null;
 		switch (elementClassType) {
@@ -1011,7 +1765,7 @@ public class AMLDeserializer implements Deserializer {
 	}
 
 	private void parseSupportedRoleClass(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, String path) throws XMLStreamException,
-			ParserException, AMLNameAlreadyInUseException {
+			DeserializerException, AMLNameAlreadyInUseException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_SUPPORTED_ROLE_CLASS);
 
 		AMLLocationInFile filePosition = getFilePosition(reader);
@@ -1050,7 +1804,7 @@ public class AMLDeserializer implements Deserializer {
 	}
 
 	private void parseMappingObject(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, String path, AMLLocationInFile filePosition,
-			AMLCreateElementInstruction createInstruction, String refRoleClassPath) throws XMLStreamException, ParserException {
+			AMLCreateElementInstruction createInstruction, String refRoleClassPath) throws XMLStreamException, DeserializerException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_MAPPING_OBJECT);
 		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
 			AMLElementType elementType2 = AMLElementNames.getElementType(reader.getLocalName());
@@ -1096,10 +1850,11 @@ public class AMLDeserializer implements Deserializer {
 		reader.require(XMLStreamConstants.END_ELEMENT, null, AMLElementNames.ELEMENT_ATTRIBUTE_NAME_MAPPING);
 	}
 
-	private void parseAttribute(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, String path, boolean library) throws XMLStreamException, ParserException,
+	private void parseAttribute(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, String path, boolean library) throws XMLStreamException, DeserializerException,
 			AMLNameAlreadyInUseException {
 
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_ATTRIBUTE);
+		enterElement(reader);
 
 		String name = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_NAME);
 		if (name == null)
@@ -1156,7 +1911,7 @@ public class AMLDeserializer implements Deserializer {
 					createElementInstruction.description = reader.getElementText();
 					break;
 				case ELEMENT_VALUE:
-					createElementInstruction.value = reader.getElementText();
+					parseValue(reader, createElementInstruction);
 					break;
 				case ELEMENT_DEFAULT_VALUE:
 					createElementInstruction.defaultValue = reader.getElementText();
@@ -1175,13 +1930,16 @@ public class AMLDeserializer implements Deserializer {
 				}
 			}
 			addInstruction(identifier, createElementInstruction, library);
+			if (streamHandler != null)
+				streamHandler.attribute(classPath.toString(), name, createElementInstruction.value, createElementInstruction.defaultValue,
+						createElementInstruction.unit, createElementInstruction.dataType);
 		}
 		reader.require(XMLStreamConstants.END_ELEMENT, null, AMLElementNames.ELEMENT_ATTRIBUTE);
-
+		depth--;
 	}
 
 	private void parseRefSemantic(XMLStreamReader reader,
-			AMLDeserializeIdentifier parentIdentifier, String path) throws XMLStreamException, ParserException, AMLNameAlreadyInUseException {
+			AMLDeserializeIdentifier parentIdentifier, String path) throws XMLStreamException, DeserializerException, AMLNameAlreadyInUseException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_REF_SEMANTIC);
 		
 		String attributePath = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_CORRESPONDING_ATTRIBUTE_PATH);
@@ -1203,7 +1961,7 @@ public class AMLDeserializer implements Deserializer {
 	}
 
 	private void parseFrameAttributeValues(XMLStreamReader reader, AMLCreateFrameAttributeInstruction createInstruction) throws XMLStreamException,
-			ParserException {
+			DeserializerException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_ATTRIBUTE);
 
 		String name = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_NAME);
@@ -1226,17 +1984,17 @@ public class AMLDeserializer implements Deserializer {
 				break;
 			case ELEMENT_VALUE:
 				if (name.equals("x"))
-					createInstruction.x = Double.valueOf(reader.getElementText());
+					createInstruction.x = AMLValueDecoder.parseDouble(reader.getElementText());
 				else if (name.equals("y"))
-					createInstruction.y = Double.valueOf(reader.getElementText());
+					createInstruction.y = AMLValueDecoder.parseDouble(reader.getElementText());
 				else if (name.equals("z"))
-					createInstruction.z = Double.valueOf(reader.getElementText());
+					createInstruction.z = AMLValueDecoder.parseDouble(reader.getElementText());
 				else if (name.equals("rx"))
-					createInstruction.rx = Double.valueOf(reader.getElementText());
+					createInstruction.rx = AMLValueDecoder.parseDouble(reader.getElementText());
 				else if (name.equals("ry"))
-					createInstruction.ry = Double.valueOf(reader.getElementText());
+					createInstruction.ry = AMLValueDecoder.parseDouble(reader.getElementText());
 				else if (name.equals("rz"))
-					createInstruction.rz = Double.valueOf(reader.getElementText());
+					createInstruction.rz = AMLValueDecoder.parseDouble(reader.getElementText());
 				break;
 
 			default:
@@ -1247,7 +2005,7 @@ public class AMLDeserializer implements Deserializer {
 		reader.require(XMLStreamConstants.END_ELEMENT, null, AMLElementNames.ELEMENT_ATTRIBUTE);
 	}
 
-	private void parseConstraint(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, String path) throws XMLStreamException, ParserException, AMLNameAlreadyInUseException {
+	private void parseConstraint(XMLStreamReader reader, AMLDeserializeIdentifier parentIdentifier, String path) throws XMLStreamException, DeserializerException, AMLNameAlreadyInUseException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_CONSTRAINT);
 
 		String name = reader.getAttributeValue(null, AMLElementNames.ATTRIBUTE_NAME);
@@ -1336,13 +2094,13 @@ public class AMLDeserializer implements Deserializer {
 	}
 
 	private AMLDeserializeReferenceIdentifier getReferencedDeserializeIdentifier(String name) {
-		return getReferencedDeserializeIdentifier(name, null, new AMLLocationInFileImpl());
+		return getReferencedDeserializeIdentifier(name, null, AMLLocationInFileImpl.UNKNOWN);
 	}
 
 	private AMLDeserializeReferenceIdentifier getReferencedDeserializeIdentifier(String name, AMLDeserializeIdentifier parentIdentifier,
 			AMLLocationInFile filePosition) {
 
-		String normalizedName = normalizeName(name);
+		String normalizedName = getIdentifierName(name);
 
 		AMLDeserializeReferenceIdentifier referenceIdentifier = unresolvedIdentifiers.get(normalizedName);
 		if (referenceIdentifier != null)
@@ -1350,17 +2108,34 @@ public class AMLDeserializer implements Deserializer {
 
 		referenceIdentifier = new AMLDeserializeReferenceIdentifier(normalizedName, filePosition);
 
+		if (streamHandler != null)
+			return referenceIdentifier;
+
 		AMLDeserializeIdentifier identifier = aMLDeserializeIdentifiers.get(normalizedName);
-		if (identifier == null)
+		if (identifier == null) {
 			unresolvedIdentifiers.put(normalizedName, referenceIdentifier);
-		else
+			forwardReferences.add(referenceIdentifier);
+		} else
 			referenceIdentifier.setReferencedIdentifier(identifier);
 
 		return referenceIdentifier;
 	}
 
+	// identifier names are kept as map keys until the document is loaded completely and repeat in every reference, they are shared within the
+	// load only and not pooled in the session
+	private String getIdentifierName(String name) {
+		String normalizedName = normalizeName(name);
+		if (streamHandler != null)
+			return normalizedName;
+		String identifierName = identifierNames.get(normalizedName);
+		if (identifierName != null)
+			return identifierName;
+		identifierNames.put(normalizedName, normalizedName);
+		return normalizedName;
+	}
+
 	private String normalizeName(String name) {
-		String copyName = new String(name);
+		String copyName = name;
 		int index = copyName.indexOf('@');
 		if (index >= 0) {
 			int index2 = copyName.lastIndexOf(PATH_SEPARATOR, index);
@@ -1377,11 +2152,17 @@ public class AMLDeserializer implements Deserializer {
 		return aMLDeserializeIdentifiers.containsKey(name);
 	}
 
-	private AMLDeserializeIdentifier createDeserializeIdentifier(String name, AMLDeserializeIdentifier parentIdentifier, AMLLocationInFile filePosition) {
-		String normalizedName = normalizeName(name);
+	private AMLDeserializeIdentifier createDeserializeIdentifier(String name, AMLDeserializeIdentifier parentIdentifier, AMLLocationInFile filePosition)
+			throws AMLCanceledException {
+		getLoadProgress().elementParsed();
+		String normalizedName = getIdentifierName(name);
 
 		AMLDeserializeIdentifier identifier = new AMLDeserializeIdentifier(normalizedName, parentIdentifier, filePosition);
+		if (streamHandler != null)
+			return identifier;
+
 		aMLDeserializeIdentifiers.put(normalizedName, identifier);
+		createdIdentifiers.add(identifier);
 
 		AMLDeserializeReferenceIdentifier unresolvedIdentifier = unresolvedIdentifiers.get(normalizedName);
 		if (unresolvedIdentifier != null) {
@@ -1392,15 +2173,53 @@ public class AMLDeserializer implements Deserializer {
 		return identifier;
 	}
 
+	private AMLLoadBudget getLoadBudget() {
+		if (loadBudget == null)
+			loadBudget = new AMLLoadBudget(session.getLoadLimits());
+		return loadBudget;
+	}
+
+	private AMLLoadProgress getLoadProgress() {
+		if (loadProgress == null)
+			loadProgress = new AMLLoadProgress(session.getProgressMonitor());
+		return loadProgress;
+	}
+
+	// the size of files and in-memory documents is known without reading them, other locations are counted while they are read
+	private long getFileSize(URL url) {
+		if (!getLoadBudget().isLimited(Limit.BYTES) && !getLoadProgress().isReporting())
+			return -1;
+		try {
+			if ("file".equals(url.getProtocol()))
+				return new File(url.toURI()).length();
+			if (MemoryDocumentBundle.PROTOCOL.equals(url.getProtocol()))
+				return url.openConnection().getContentLengthLong();
+		} catch (URISyntaxException e) {
+		} catch (IllegalArgumentException e) {
+		} catch (IOException e) {
+		}
+		return -1;
+	}
+
+	// counts every internal element and attribute, their parse methods decrease the depth again at their end
+	private void enterElement(XMLStreamReader reader) throws AMLLoadLimitExceededException {
+		depth++;
+		AMLLoadBudget budget = getLoadBudget();
+		budget.checkDepth(depth, reader);
+		budget.addElement(reader);
+	}
+
 	private AMLLocationInFile getFilePosition(XMLStreamReader reader) {
+		if (!sourceLocations)
+			return AMLLocationInFileImpl.UNKNOWN;
 		Location location = reader.getLocation();
 		if (location == null)
-			return new AMLLocationInFileImpl();
+			return AMLLocationInFileImpl.UNKNOWN;
 		return new AMLLocationInFileImpl(location.getLineNumber(), location.getColumnNumber());
 	}
 
 	private void parseElement(XMLStreamReader reader, AMLDeserializeIdentifier identifier, AMLCreateElementInstruction changeElementInstruction)
-			throws XMLStreamException, ParserException {
+			throws XMLStreamException, DeserializerException {
 		AMLElementType elementType = AMLElementNames.getElementType(reader.getLocalName());
 		if (elementType == null)
 			return;
@@ -1419,14 +2238,18 @@ public class AMLDeserializer implements Deserializer {
 			changeElementInstruction.copyright = reader.getElementText();
 			break;
 		case ELEMENT_ADDITIONAL_INFORMATION:
-			changeElementInstruction.additionalInformation = reader.getElementText();
+			Object additionalInformation = readValue(reader);
+			if (additionalInformation instanceof AMLValueStore.StoredValue)
+				changeElementInstruction.storedAdditionalInformation = (AMLValueStore.StoredValue) additionalInformation;
+			else
+				changeElementInstruction.additionalInformation = (String) additionalInformation;
 			break;
 		default:
 			break;
 		}
 	}
 
-	private void parseRevision(XMLStreamReader reader, AMLCreateElementInstruction instruction) throws XMLStreamException, ParserException {
+	private void parseRevision(XMLStreamReader reader, AMLCreateElementInstruction instruction) throws XMLStreamException, DeserializerException {
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_REVISION);
 
 		Date revisionDate = null;
@@ -1443,15 +2266,7 @@ public class AMLDeserializer implements Deserializer {
 
 			switch (elementType) {
 			case ELEMENT_REVISION_DATE:
-				String dateString = reader.getElementText();
-				try {
-					revisionDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").parse(dateString);
-				} catch (ParseException e) {
-					try {
-						revisionDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").parse(dateString);
-					} catch (ParseException ex) {
-					}
-				}
+				revisionDate = AMLValueDecoder.parseDateTime(reader.getElementText());
 				break;
 			case ELEMENT_OLD_VERSION:
 				oldVersion = reader.getElementText();
@@ -1475,7 +2290,71 @@ public class AMLDeserializer implements Deserializer {
 		reader.require(XMLStreamConstants.END_ELEMENT, null, AMLElementNames.ELEMENT_REVISION);
 	}
 
-	private void parseAdditionalInformation(XMLStreamReader reader, AMLCreateDocumentInstruction instruction) throws XMLStreamException, ParserException,
+	private void parseValue(XMLStreamReader reader, AMLCreateAttributeInstruction createInstruction) throws XMLStreamException, DeserializerException {
+		Object value = readValue(reader);
+		if (value instanceof AMLValueStore.StoredValue)
+			createInstruction.storedValue = (AMLValueStore.StoredValue) value;
+		else
+			createInstruction.value = (String) value;
+	}
+
+	/**
+	 * Reads the text of the current element like {@link XMLStreamReader#getElementText()}. A text reaching the value spill threshold of the
+	 * session is written to its value store part by part and returned as a {@link AMLValueStore.StoredValue}, otherwise the text is returned.
+	 * The length of the text is checked against the load limits while it is read.
+	 */
+	private Object readValue(XMLStreamReader reader) throws XMLStreamException, DeserializerException {
+		int valueSpillThreshold = streamHandler == null ? session.getValueSpillThreshold() : -1;
+		AMLLoadBudget budget = getLoadBudget();
+		boolean limited = budget.isLimited(Limit.VALUE_LENGTH);
+		if (valueSpillThreshold < 0 && !limited)
+			return reader.getElementText();
+
+		reader.require(XMLStreamConstants.START_ELEMENT, null, null);
+		StringBuilder text = new StringBuilder();
+		long length = 0;
+		AMLValueStore.ValueWriter valueWriter = null;
+		try {
+			while (true) {
+				switch (reader.next()) {
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					String part = reader.getText();
+					length += part.length();
+					if (limited)
+						budget.checkValueLength(length, reader);
+					if (valueWriter != null) {
+						valueWriter.write(part);
+						break;
+					}
+					text.append(part);
+					if (valueSpillThreshold >= 0 && text.length() >= valueSpillThreshold) {
+						valueWriter = ((AMLSessionImpl) session).getValueStore().createWriter();
+						valueWriter.write(text.toString());
+						text = null;
+					}
+					break;
+				case XMLStreamConstants.COMMENT:
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (valueWriter != null)
+						return valueWriter.close();
+					return text.toString();
+				case XMLStreamConstants.START_ELEMENT:
+					throw new XMLStreamException("Element text content may not contain START_ELEMENT", reader.getLocation());
+				default:
+					throw new XMLStreamException("Unexpected end of document when reading element text content", reader.getLocation());
+				}
+			}
+		} catch (IOException e) {
+			throw new ParserException(e);
+		}
+	}
+
+	private void parseAdditionalInformation(XMLStreamReader reader, AMLCreateDocumentInstruction instruction) throws XMLStreamException, DeserializerException,
 			AMLNameAlreadyInUseException {
 
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_ADDITIONAL_INFORMATION);
@@ -1510,18 +2389,8 @@ public class AMLDeserializer implements Deserializer {
 						instruction.writerRelease = reader.getElementText();
 						break;
 					case ELEMENT_LAST_WRITING_DATE_TIME:
-						String dateString = reader.getElementText();
-						Date date;
-						try {
-							date = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").parse(dateString);
-						} catch (ParseException e) {
-							try {
-								date = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").parse(dateString);
-							} catch (ParseException ex) {
-								date = new Date();
-							}
-						}
-						instruction.lastWritingDate = date;
+						Date date = AMLValueDecoder.parseDateTime(reader.getElementText());
+						instruction.lastWritingDate = date != null ? date : new Date();
 						break;
 					case ELEMENT_WRITER_PROJECT_TITLE:
 						instruction.writerProjectTitle = reader.getElementText();
@@ -1544,7 +2413,7 @@ public class AMLDeserializer implements Deserializer {
 		reader.require(XMLStreamConstants.END_ELEMENT, null, AMLElementNames.ELEMENT_ADDITIONAL_INFORMATION);
 	}
 
-	private void parseAMLVersion(XMLStreamReader reader) throws XMLStreamException, ParserException {
+	private void parseAMLVersion(XMLStreamReader reader) throws XMLStreamException, DeserializerException {
 
 		reader.require(XMLStreamConstants.START_ELEMENT, null, AMLElementNames.ELEMENT_ADDITIONAL_INFORMATION);
 
@@ -1556,6 +2425,12 @@ public class AMLDeserializer implements Deserializer {
 	}
 
 	private void addInstruction(AMLDeserializeIdentifier identifier, AMLInstruction aMLInstruction, boolean library) throws AMLNameAlreadyInUseException {
+		if (streamHandler != null) {
+			// only the enclosing elements are looked up while parsing their children, they are removed again at their end tag
+			if (isStreamedContainer(aMLInstruction))
+				identifierToCreateInstruction.put(identifier, (AMLCreateInstruction) aMLInstruction);
+			return;
+		}
 		if (aMLInstruction instanceof AMLCreateInstruction) {
 			if (library) {
 				if (identifierToCreateLibraryInstruction.containsKey(identifier)) {
@@ -1577,4 +2452,16 @@ public class AMLDeserializer implements Deserializer {
 		changeInstructions.add(aMLInstruction);
 	}
 
+	private boolean isStreamedContainer(AMLInstruction aMLInstruction) {
+		if (!(aMLInstruction instanceof AMLCreateElementInstruction))
+			return false;
+		AMLElementType elementType = ((AMLCreateElementInstruction) aMLInstruction).getElementType();
+		return elementType == AMLElementType.ELEMENT_INSTANCE_HIERARCHY || elementType == AMLElementType.ELEMENT_INTERNAL_ELEMENT;
+	}
+
+	private void addInternalLinkRelatedInstruction(AMLInstruction aMLInstruction) {
+		if (streamHandler == null)
+			internalLinkRelatedInstructions.add(aMLInstruction);
+	}
+
 }
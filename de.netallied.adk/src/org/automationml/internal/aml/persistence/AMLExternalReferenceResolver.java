@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml.persistence;
+
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.automationml.DocumentURLResolver;
+import org.automationml.StAXBackend;
+import org.automationml.XMLBackend;
+
+/**
+ * Resolves the external references of a session. The locations a {@link DocumentURLResolver} returned are kept per base URL and path, so every
+ * later load of the same reference only checks that the location still exists. Local files are checked by their attributes, other URLs are
+ * checked by the XML backend of the session and remembered for the maximum age once they exist, or until reading them fails.
+ */
+public class AMLExternalReferenceResolver {
+
+	public static final long DEFAULT_MAX_AGE = 60000;
+
+	private final ConcurrentMap<String, URL> resolvedUrls = new ConcurrentHashMap<String, URL>();
+	private final ConcurrentMap<String, Long> existingUrls = new ConcurrentHashMap<String, Long>();
+	private volatile XMLBackend xmlBackend = StAXBackend.getDefault();
+	private volatile long maxAge = DEFAULT_MAX_AGE;
+
+	/**
+	 * Returns whether a document exists at the given location.
+	 */
+	public boolean exists(URL url) {
+		Path path = toPath(url);
+		if (path != null)
+			return Files.exists(path);
+
+		String location = url.toExternalForm();
+		Long checked = existingUrls.get(location);
+		if (checked != null && System.currentTimeMillis() - checked.longValue() < maxAge)
+			return true;
+		if (!xmlBackend.exists(url)) {
+			existingUrls.remove(location);
+			return false;
+		}
+		existingUrls.put(location, Long.valueOf(System.currentTimeMillis()));
+		return true;
+	}
+
+	/**
+	 * Forgets that a document exists at the given location, for instance because it could not be read.
+	 */
+	public void forget(URL url) {
+		existingUrls.remove(url.toExternalForm());
+	}
+
+	/**
+	 * Sets the time in milliseconds a location which is no local file is known to exist without asking the backend again, 0 asks every time.
+	 */
+	public void setMaxAge(long maxAge) {
+		this.maxAge = maxAge;
+	}
+
+	public long getMaxAge() {
+		return maxAge;
+	}
+
+	/**
+	 * Sets the backend asked whether a document exists at a location which is no local file.
+	 */
+	public void setXMLBackend(XMLBackend xmlBackend) {
+		this.xmlBackend = xmlBackend;
+		existingUrls.clear();
+	}
+
+	/**
+	 * Returns the location the given resolver returns for the path, or the one it returned before if that still exists.
+	 */
+	public URL resolve(DocumentURLResolver documentURLResolver, URL baseUrl, String pathString) {
+		String key = baseUrl + "\n" + pathString;
+		URL url = resolvedUrls.get(key);
+		if (url != null && exists(url))
+			return url;
+
+		url = documentURLResolver.getResolvedURL(baseUrl, pathString);
+		if (url != null)
+			resolvedUrls.put(key, url);
+		else
+			resolvedUrls.remove(key);
+		return url;
+	}
+
+	/**
+	 * Forgets all resolved and existing locations, for instance when the resolver is replaced.
+	 */
+	public void clear() {
+		resolvedUrls.clear();
+		existingUrls.clear();
+	}
+
+	private static Path toPath(URL url) {
+		if (!"file".equals(url.getProtocol()) || url.getQuery() != null || url.getRef() != null)
+			return null;
+		try {
+			return Paths.get(url.toURI());
+		} catch (URISyntaxException e) {
+			return null;
+		} catch (IllegalArgumentException e) {
+			// also an invalid path
+			return null;
+		}
+	}
+}
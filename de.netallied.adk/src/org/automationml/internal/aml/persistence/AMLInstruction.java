@@ -33,6 +33,11 @@ public abstract class AMLInstruction {
 
 	public abstract boolean hasUnresolvedDependencies();
 
+	/**
+	 * Returns the identifier this instruction is currently waiting for, or <code>null</code> if it has no unresolved dependencies.
+	 */
+	public abstract AMLDeserializeIdentifier getUnresolvedDependency();
+
 	@Override
 	public String toString() {
 		return getClass().getSimpleName() + " [selfIdentifier=" + selfIdentifier + "]";
@@ -40,6 +45,8 @@ public abstract class AMLInstruction {
 
 	protected String getLocationAsString(AMLDocumentElement documentElement, AMLDeserializeReferenceIdentifier referencedIdentifier){
 		AMLLocationInFile location = referencedIdentifier.getFilePosition();
+		if (location.getLineNumber() < 0)
+			return String.format(" in %s", documentElement.getDocument().getDocumentLocation());
 		String locationAsString = String.format(" in %s at line %d column %d", documentElement.getDocument().getDocumentLocation(), location.getLineNumber(), location.getColumnNumber());
 		return locationAsString;
 	}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml.persistence;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes a set of {@link AMLInstruction}s in dependency order.
+ * <p>
+ * Every instruction that can not be executed yet is parked on the identifier it is waiting for and is only looked at again once that identifier has been
+ * resolved. The execution order is the same as repeatedly sweeping the instructions in insertion order: an instruction that becomes executable is run
+ * in the current pass if it comes after the instruction that unblocked it, otherwise in the next pass.
+ */
+class AMLInstructionScheduler {
+
+	private final List<AMLInstruction> instructions;
+	private final AMLLoadProgress progress;
+	private final Map<AMLDeserializeIdentifier, List<Integer>> waitingInstructions = new IdentityHashMap<AMLDeserializeIdentifier, List<Integer>>();
+	private final BitSet parkedInstructions = new BitSet();
+
+	private BitSet currentPass = new BitSet();
+	private BitSet nextPass = new BitSet();
+	private int cursor = -1;
+
+	AMLInstructionScheduler(Collection<AMLInstruction> instructions, AMLLoadProgress progress) {
+		this.instructions = new ArrayList<AMLInstruction>(instructions);
+		this.progress = progress;
+	}
+
+	void execute() throws Exception {
+		currentPass.set(0, instructions.size());
+
+		while (true) {
+			int index = currentPass.nextSetBit(cursor + 1);
+			if (index < 0) {
+				if (nextPass.isEmpty() && !wakeUpResolvedInstructions())
+					break;
+				BitSet pass = currentPass;
+				currentPass = nextPass;
+				nextPass = pass;
+				cursor = -1;
+				continue;
+			}
+
+			currentPass.clear(index);
+			cursor = index;
+
+			AMLInstruction instruction = instructions.get(index);
+			if (instruction.hasUnresolvedDependencies()) {
+				park(index, instruction);
+				continue;
+			}
+
+			instruction.execute();
+			progress.instructionExecuted();
+			// the scheduler holds the only reference left, executed instructions make room for the created elements
+			instructions.set(index, null);
+
+			AMLDeserializeIdentifier selfIdentifier = instruction.getSelfIdentifier();
+			if (selfIdentifier != null && selfIdentifier.isResolved())
+				wakeUp(selfIdentifier);
+		}
+
+		if (!parkedInstructions.isEmpty())
+			throw createUnresolvedDependenciesException();
+	}
+
+	private void park(int index, AMLInstruction instruction) {
+		parkedInstructions.set(index);
+		AMLDeserializeIdentifier dependency = instruction.getUnresolvedDependency();
+		if (dependency == null)
+			return;
+		List<Integer> waiting = waitingInstructions.get(dependency);
+		if (waiting == null) {
+			waiting = new ArrayList<Integer>(2);
+			waitingInstructions.put(dependency, waiting);
+		}
+		waiting.add(index);
+	}
+
+	private void wakeUp(AMLDeserializeIdentifier identifier) {
+		List<Integer> waiting = waitingInstructions.remove(identifier);
+		if (waiting == null)
+			return;
+		for (int index : waiting) {
+			parkedInstructions.clear(index);
+			if (index > cursor)
+				currentPass.set(index);
+			else
+				nextPass.set(index);
+		}
+	}
+
+	// identifiers may also get resolved outside of the instruction creating them; pick those up before giving up
+	private boolean wakeUpResolvedInstructions() {
+		boolean anyWokenUp = false;
+		for (int index = parkedInstructions.nextSetBit(0); index >= 0; index = parkedInstructions.nextSetBit(index + 1)) {
+			if (instructions.get(index).hasUnresolvedDependencies())
+				continue;
+			parkedInstructions.clear(index);
+			nextPass.set(index);
+			anyWokenUp = true;
+		}
+		if (anyWokenUp) {
+			waitingInstructions.clear();
+			for (int index = parkedInstructions.nextSetBit(0); index >= 0; index = parkedInstructions.nextSetBit(index + 1)) {
+				parkedInstructions.clear(index);
+				park(index, instructions.get(index));
+			}
+		}
+		return anyWokenUp;
+	}
+
+	private AMLUnresolvedDependenciesException createUnresolvedDependenciesException() {
+		Map<AMLDeserializeIdentifier, AMLInstruction> creatingInstructions = new IdentityHashMap<AMLDeserializeIdentifier, AMLInstruction>();
+		List<AMLInstruction> unresolvedInstructions = new ArrayList<AMLInstruction>();
+		for (int index = parkedInstructions.nextSetBit(0); index >= 0; index = parkedInstructions.nextSetBit(index + 1)) {
+			AMLInstruction instruction = instructions.get(index);
+			unresolvedInstructions.add(instruction);
+			if (instruction instanceof AMLCreateInstruction && !creatingInstructions.containsKey(instruction.getSelfIdentifier()))
+				creatingInstructions.put(instruction.getSelfIdentifier(), instruction);
+		}
+
+		Map<AMLInstruction, String> messages = new LinkedHashMap<AMLInstruction, String>();
+		for (AMLInstruction instruction : unresolvedInstructions) {
+			messages.put(instruction, describeUnresolvedDependency(instruction, creatingInstructions));
+		}
+		return new AMLUnresolvedDependenciesException(unresolvedInstructions, messages);
+	}
+
+	private String describeUnresolvedDependency(AMLInstruction instruction, Map<AMLDeserializeIdentifier, AMLInstruction> creatingInstructions) {
+		String name = instruction.getSelfIdentifier().getName();
+		AMLDeserializeIdentifier dependency = instruction.getUnresolvedDependency();
+		if (dependency == null)
+			return name + " is undefined";
+
+		Map<AMLInstruction, Boolean> visited = new IdentityHashMap<AMLInstruction, Boolean>();
+		AMLDeserializeIdentifier current = dependency;
+		while (current != null) {
+			AMLInstruction creatingInstruction = creatingInstructions.get(current);
+			if (creatingInstruction == null)
+				break;
+			if (creatingInstruction == instruction)
+				return name + " is part of a dependency cycle through " + dependency.getName();
+			if (visited.put(creatingInstruction, Boolean.TRUE) != null)
+				return name + " depends on " + dependency.getName() + " which is part of a dependency cycle";
+			current = creatingInstruction.getUnresolvedDependency();
+		}
+
+		if (creatingInstructions.containsKey(dependency))
+			return name + " depends on " + dependency.getName() + " which could not be created";
+		return name + " references undefined " + dependency.getName();
+	}
+}
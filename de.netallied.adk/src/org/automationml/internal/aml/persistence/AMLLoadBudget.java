@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml.persistence;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamReader;
+
+import org.automationml.aml.AMLLoadLimitExceededException;
+import org.automationml.aml.AMLLoadLimits;
+import org.automationml.aml.AMLLoadLimits.Limit;
+
+/**
+ * Counts what a load has used of the {@link AMLLoadLimits} of the session. One budget is shared by the deserializers of all files of a load,
+ * which parse in parallel.
+ */
+public class AMLLoadBudget {
+
+	private final AMLLoadLimits limits;
+	private final AtomicLong elements = new AtomicLong();
+	private final AtomicLong files = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+
+	public AMLLoadBudget(AMLLoadLimits limits) {
+		this.limits = limits;
+	}
+
+	boolean isLimited(Limit limit) {
+		return limits != null && limits.isLimited(limit);
+	}
+
+	void checkDepth(int depth, XMLStreamReader reader) throws AMLLoadLimitExceededException {
+		if (limits != null && !limits.permits(Limit.DEPTH, depth))
+			throw new AMLLoadLimitExceededException(Limit.DEPTH, limits.get(Limit.DEPTH), getLocation(reader));
+	}
+
+	void checkValueLength(long length, XMLStreamReader reader) throws AMLLoadLimitExceededException {
+		if (limits != null && !limits.permits(Limit.VALUE_LENGTH, length))
+			throw new AMLLoadLimitExceededException(Limit.VALUE_LENGTH, limits.get(Limit.VALUE_LENGTH), getLocation(reader));
+	}
+
+	void addElement(XMLStreamReader reader) throws AMLLoadLimitExceededException {
+		if (isLimited(Limit.ELEMENTS) && !limits.permits(Limit.ELEMENTS, elements.incrementAndGet()))
+			throw new AMLLoadLimitExceededException(Limit.ELEMENTS, limits.get(Limit.ELEMENTS), getLocation(reader));
+	}
+
+	void addFile(String location) throws AMLLoadLimitExceededException {
+		if (isLimited(Limit.FILES))
+			check(Limit.FILES, files.incrementAndGet(), location);
+	}
+
+	/**
+	 * Counts the size of a file before it is read, a negative size is not known and not counted.
+	 */
+	void addBytes(long size, String location) throws AMLLoadLimitExceededException {
+		if (size > 0 && isLimited(Limit.BYTES))
+			check(Limit.BYTES, bytes.addAndGet(size), location);
+	}
+
+	/**
+	 * Returns a stream counting the bytes of a document whose size is not known before it is read, they are counted while it is read.
+	 */
+	public CountingInputStream countBytes(InputStream inputStream, String location) {
+		return new CountingInputStream(inputStream, location);
+	}
+
+	private void check(Limit limit, long value, String location) throws AMLLoadLimitExceededException {
+		if (!limits.permits(limit, value))
+			throw new AMLLoadLimitExceededException(limit, limits.get(limit), location);
+	}
+
+	private static String getLocation(XMLStreamReader reader) {
+		Location location = reader.getLocation();
+		if (location == null)
+			return null;
+		String systemId = location.getSystemId();
+		return (systemId == null ? "" : systemId + ", ") + "line " + location.getLineNumber();
+	}
+
+	/**
+	 * Fails reading with an {@link IOException} as soon as the read bytes exceed the limit, the exceeded limit is kept by the stream as the XML
+	 * parsers wrap the exception.
+	 */
+	public class CountingInputStream extends FilterInputStream {
+
+		private final String location;
+		private AMLLoadLimitExceededException limitExceeded;
+
+		private CountingInputStream(InputStream inputStream, String location) {
+			super(inputStream);
+			this.location = location;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0)
+				count(1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			int count = super.read(bytes, offset, length);
+			if (count > 0)
+				count(count);
+			return count;
+		}
+
+		@Override
+		public long skip(long count) throws IOException {
+			long skipped = super.skip(count);
+			if (skipped > 0)
+				count(skipped);
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		private void count(long count) throws IOException {
+			try {
+				addBytes(count, location);
+			} catch (AMLLoadLimitExceededException e) {
+				limitExceeded = e;
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+
+		/**
+		 * Returns the exceeded limit if reading failed because of it, otherwise null.
+		 */
+		public AMLLoadLimitExceededException getLimitExceeded() {
+			return limitExceeded;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml.persistence;
+
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.automationml.aml.AMLCanceledException;
+import org.automationml.internal.DetailedProgressMonitor;
+import org.automationml.internal.DetailedProgressMonitor.Phase;
+import org.automationml.internal.ProgressMonitor;
+
+/**
+ * Reports a load to the {@link DetailedProgressMonitor} of the session, if it has one. Like the {@link AMLLoadBudget} it is shared by the
+ * deserializers of all files of a load. Elements and instructions are reported in batches, the monitor is asked whether it has been canceled
+ * after every batch.
+ */
+class AMLLoadProgress {
+
+	private static final int BATCH_SIZE = 1024;
+
+	private final DetailedProgressMonitor monitor;
+	private final AtomicLong elements = new AtomicLong();
+	private final AtomicLong instructions = new AtomicLong();
+	private final long[] phaseNanos = new long[Phase.values().length];
+
+	AMLLoadProgress(ProgressMonitor monitor) {
+		this.monitor = monitor instanceof DetailedProgressMonitor ? (DetailedProgressMonitor) monitor : null;
+	}
+
+	boolean isReporting() {
+		return monitor != null;
+	}
+
+	void checkCanceled() throws AMLCanceledException {
+		if (monitor != null && monitor.isCanceled())
+			throw new AMLCanceledException();
+	}
+
+	void fileResolved(URL url, long size) throws AMLCanceledException {
+		if (monitor == null)
+			return;
+		checkCanceled();
+		monitor.fileResolved(url, size);
+	}
+
+	void elementParsed() throws AMLCanceledException {
+		if (monitor != null && elements.incrementAndGet() % BATCH_SIZE == 0) {
+			monitor.elementsParsed(BATCH_SIZE);
+			checkCanceled();
+		}
+	}
+
+	void instructionExecuted() throws AMLCanceledException {
+		if (monitor != null && instructions.incrementAndGet() % BATCH_SIZE == 0) {
+			monitor.instructionsExecuted(BATCH_SIZE);
+			checkCanceled();
+		}
+	}
+
+	/**
+	 * Adds the time since the start, a value of {@link System#nanoTime()}, to the phase.
+	 */
+	void addPhaseTime(Phase phase, long start) {
+		if (monitor != null)
+			phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+	}
+
+	/**
+	 * Reports the counts not reported in a batch so far and the time of the phases.
+	 */
+	void finish() {
+		if (monitor == null)
+			return;
+		int remainingElements = (int) (elements.getAndSet(0) % BATCH_SIZE);
+		if (remainingElements > 0)
+			monitor.elementsParsed(remainingElements);
+		int remainingInstructions = (int) (instructions.getAndSet(0) % BATCH_SIZE);
+		if (remainingInstructions > 0)
+			monitor.instructionsExecuted(remainingInstructions);
+		for (Phase phase : Phase.values()) {
+			if (phaseNanos[phase.ordinal()] > 0)
+				monitor.phaseFinished(phase, phaseNanos[phase.ordinal()]);
+			phaseNanos[phase.ordinal()] = 0;
+		}
+	}
+}
@@ -5,6 +5,9 @@
 package org.automationml.internal.aml.persistence;
 
 class AMLLocationInFileImpl implements AMLLocationInFile {
+	// shared by all elements whose location is not kept
+	static final AMLLocationInFileImpl UNKNOWN = new AMLLocationInFileImpl();
+
 	private int lineNumber;
 	private int columnNumber;
 
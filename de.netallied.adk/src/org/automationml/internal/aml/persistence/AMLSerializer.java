@@ -4,20 +4,29 @@
  *******************************************************************************/
 package org.automationml.internal.aml.persistence;
 
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
+import org.automationml.MemoryDocumentBundle;
 import org.automationml.SerializerException;
 import org.automationml.aml.AMLAttribute;
 import org.automationml.aml.AMLAttribute.Constraint;
@@ -25,7 +34,9 @@ import org.automationml.aml.AMLAttribute.NominalScaledConstraint;
 import org.automationml.aml.AMLAttribute.OrdinalScaledConstraint;
 import org.automationml.aml.AMLAttribute.UnknownConstraint;
 import org.automationml.aml.AMLCOLLADAInterface;
+import org.automationml.aml.AMLCanceledException;
 import org.automationml.aml.AMLDocument;
+import org.automationml.aml.AMLDocumentElement;
 import org.automationml.aml.AMLDocumentURLResolver;
 import org.automationml.aml.AMLElement;
 import org.automationml.aml.AMLElement.Revision;
@@ -47,7 +58,13 @@ import org.automationml.aml.AMLSupportedRoleClass;
 import org.automationml.aml.AMLSystemUnitClass;
 import org.automationml.aml.AMLSystemUnitClassLibrary;
 import org.automationml.aml.AMLValidationException;
+import org.automationml.internal.CAEXStreamWriter;
+import org.automationml.internal.DetailedProgressMonitor;
+import org.automationml.internal.DetailedProgressMonitor.Phase;
+import org.automationml.internal.aml.AMLAttributeImpl;
+import org.automationml.internal.aml.AMLElementImpl;
 import org.automationml.internal.aml.AMLElementNames;
+import org.automationml.internal.aml.AMLValueStore;
 
 public class AMLSerializer {
 
@@ -58,21 +75,108 @@ public class AMLSerializer {
 	private AMLDocument baseDocument;
 	private AMLDocumentURLResolver urlResolver;
 
-	private static SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+	// documents are saved concurrently, SimpleDateFormat can not be shared between threads
+	private static final ThreadLocal<SimpleDateFormat> dateFormat = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+		}
+	};
 	private int aliasCounter = 0;
 
+	// elements are reported in batches, the monitor is asked whether it has been canceled after every batch
+	private static final int PROGRESS_BATCH_SIZE = 1024;
+	private DetailedProgressMonitor progressMonitor;
+	private int writtenElements;
+
+	// set when saving incrementally: the top level elements are copied from the source file if they are unchanged there, and where they are
+	// written is recorded
+	private RegionOutputStream regionOutputStream;
+	private AMLSourceRegions sourceRegions;
+	private AMLSourceRegions writtenRegions;
+	private FileChannel sourceChannel;
+
+	// counts the written bytes, regions of the source file are transferred to the file directly
+	private static class RegionOutputStream extends FilterOutputStream {
+		private final WritableByteChannel channel;
+		private long position;
+
+		RegionOutputStream(FileOutputStream outputStream) {
+			super(new BufferedOutputStream(outputStream));
+			channel = outputStream.getChannel();
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			position++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			position += len;
+		}
+
+		void transferFrom(FileChannel source, long start, long count) throws IOException {
+			out.flush();
+			long transferred = 0;
+			while (transferred < count) {
+				long n = source.transferTo(start + transferred, count - transferred, channel);
+				if (n <= 0)
+					throw new EOFException("Region " + start + "-" + (start + count) + " is beyond the end of the source file");
+				transferred += n;
+			}
+			position += count;
+		}
+
+		long getPosition() {
+			return position;
+		}
+	}
+
 	private AMLSerializer(AMLDocument baseDocument, AMLDocumentURLResolver urlResolver) {
 		this.baseDocument = baseDocument;
 		this.urlResolver = urlResolver;
+		if (baseDocument.getSession().getProgressMonitor() instanceof DetailedProgressMonitor)
+			progressMonitor = (DetailedProgressMonitor) baseDocument.getSession().getProgressMonitor();
 	}
 
 	public static void serialize(AMLDocument document, AMLDocumentURLResolver urlResolver, OutputStream outputStream) throws SerializerException {
+		new AMLSerializer(document, urlResolver).write(outputStream);
+	}
+
+	/**
+	 * Writes the document like {@link #serialize(AMLDocument, AMLDocumentURLResolver, OutputStream)}, but copies the instance hierarchies and
+	 * class libraries that are unchanged in the file of the source regions from there. Returns where they are written, the output stream is
+	 * going to be the given file.
+	 */
+	public static AMLSourceRegions serialize(AMLDocument document, AMLDocumentURLResolver urlResolver, FileOutputStream outputStream, File file,
+			AMLSourceRegions sourceRegions) throws SerializerException {
 		AMLSerializer amlSerializer = new AMLSerializer(document, urlResolver);
-		XMLOutputFactory factory = XMLOutputFactory.newInstance();
+		amlSerializer.regionOutputStream = new RegionOutputStream(outputStream);
+		if (sourceRegions != null && !sourceRegions.isEmpty() && sourceRegions.isCurrent())
+			amlSerializer.sourceRegions = sourceRegions;
+		amlSerializer.writtenRegions = new AMLSourceRegions(file);
+		try {
+			amlSerializer.write(amlSerializer.regionOutputStream);
+			amlSerializer.regionOutputStream.flush();
+		} catch (IOException e) {
+			throw new SerializerException(e);
+		} finally {
+			amlSerializer.closeSourceChannel();
+		}
+		return amlSerializer.writtenRegions;
+	}
+
+	private void write(OutputStream outputStream) throws SerializerException {
+		if (progressMonitor != null && progressMonitor.isCanceled())
+			throw new SerializerException(new AMLCanceledException());
+		long start = System.nanoTime();
 		try {
-			URL url = urlResolver.getUrl(document);
+			URL url = urlResolver.getUrl(baseDocument);
 
-			XMLStreamWriter xmlWriter = factory.createXMLStreamWriter(outputStream, "UTF-8");
+			XMLStreamWriter xmlWriter = baseDocument.getSession().getXMLBackend().createXMLStreamWriter(outputStream, "UTF-8");
 			xmlWriter.writeStartDocument("UTF-8", "1.0");
 			if (url != null) {
 				String fileName;
@@ -80,14 +184,36 @@ public class AMLSerializer {
 					fileName = new File(url.toURI()).getName();
 				} catch (Exception e) {
 					fileName = url.toString();
+					if (MemoryDocumentBundle.PROTOCOL.equals(url.getProtocol()))
+						fileName = fileName.substring(fileName.lastIndexOf('/') + 1);
 				}
-				amlSerializer.serializeDocument(xmlWriter, document, fileName);
+				serializeDocument(xmlWriter, baseDocument, fileName);
 			}
 			xmlWriter.writeEndDocument();
 			xmlWriter.close();
+		} catch (CancellationException e) {
+			throw new SerializerException(new AMLCanceledException());
 		} catch (Exception e) {
 			throw new SerializerException(e);
 		}
+		finishProgress(start);
+	}
+
+	// the serialize methods only throw stream exceptions, a cancellation is turned into a checked exception by serialize
+	private void elementWritten() {
+		if (progressMonitor == null || ++writtenElements % PROGRESS_BATCH_SIZE != 0)
+			return;
+		progressMonitor.elementsWritten(PROGRESS_BATCH_SIZE);
+		if (progressMonitor.isCanceled())
+			throw new CancellationException();
+	}
+
+	private void finishProgress(long start) {
+		if (progressMonitor == null)
+			return;
+		if (writtenElements % PROGRESS_BATCH_SIZE > 0)
+			progressMonitor.elementsWritten(writtenElements % PROGRESS_BATCH_SIZE);
+		progressMonitor.phaseFinished(Phase.SAVE, System.nanoTime() - start);
 	}
 
 	private void serializeDocument(XMLStreamWriter writer, AMLDocument document, String fileName) throws XMLStreamException, AMLValidationException,
@@ -97,7 +223,7 @@ public class AMLSerializer {
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_FILE_NAME, fileName);
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_SCHEMA_VERSION, AMLElementNames.ATTRIBUTE_VALUE_SCHEMA_VERSION);
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_XSI_NO_NAMESPACE_SCHEMA_LOCATION, AMLElementNames.ATTRIBUTE_CAEX_CLASS_MODEL);
-		writer.writeAttribute(AMLElementNames.ATTRIBUTE_XMLNS_XSI, AMLElementNames.ATTRIBUTE_VALUE_XML_SCHEMA_INSTANCE);
+		writer.writeNamespace("xsi", AMLElementNames.ATTRIBUTE_VALUE_XML_SCHEMA_INSTANCE);
 
 		serializeRevisions(writer, document);
 
@@ -142,36 +268,92 @@ public class AMLSerializer {
 		for (AMLDocument referencedDocument : document.getExplicitlyReferencedDocuments()) {
 			serializeExternalReference(writer, referencedDocument);
 		}
+		// the copied elements may refer to the referenced documents by the aliases of the source file
+		if (sourceRegions != null && !sourceRegions.hasSameExternalReferences(writtenRegions))
+			sourceRegions = null;
 
 		Iterator<AMLInstanceHierarchy> instanceHierarchyIterator = document.getInstanceHierarchies().iterator();
 		while (instanceHierarchyIterator.hasNext()) {
 			AMLInstanceHierarchy instanceHierarchy = instanceHierarchyIterator.next();
-			serializeInstanceHierarchy(writer, instanceHierarchy);
+			long start = getRegionPosition(writer);
+			if (!copyRegion(instanceHierarchy))
+				serializeInstanceHierarchy(writer, instanceHierarchy);
+			addWrittenRegion(writer, instanceHierarchy, start);
 		}
 
 		Iterator<AMLInterfaceClassLibrary> interfaceClassLibraryIterator = document.getInterfaceClassLibraries().iterator();
 		while (interfaceClassLibraryIterator.hasNext()) {
 			AMLInterfaceClassLibrary interfaceClassLibrary = interfaceClassLibraryIterator.next();
-			serializeInterfaceClassLibrary(writer, interfaceClassLibrary);
+			long start = getRegionPosition(writer);
+			if (!copyRegion(interfaceClassLibrary))
+				serializeInterfaceClassLibrary(writer, interfaceClassLibrary);
+			addWrittenRegion(writer, interfaceClassLibrary, start);
 		}
 
 		Iterator<AMLRoleClassLibrary> roleClassLibraryIterator = document.getRoleClassLibraries().iterator();
 		while (roleClassLibraryIterator.hasNext()) {
 			AMLRoleClassLibrary roleClassLibrary = roleClassLibraryIterator.next();
-			serializeRoleClassLibrary(writer, roleClassLibrary);
+			long start = getRegionPosition(writer);
+			if (!copyRegion(roleClassLibrary))
+				serializeRoleClassLibrary(writer, roleClassLibrary);
+			addWrittenRegion(writer, roleClassLibrary, start);
 		}
 
 		Iterator<AMLSystemUnitClassLibrary> systemUnitClassLibraryIterator = document.getSystemUnitClassLibraries().iterator();
 		while (systemUnitClassLibraryIterator.hasNext()) {
 			AMLSystemUnitClassLibrary systemUnitClassLibrary = systemUnitClassLibraryIterator.next();
-			serializeSystemUnitClassLibrary(writer, systemUnitClassLibrary);
+			long start = getRegionPosition(writer);
+			if (!copyRegion(systemUnitClassLibrary))
+				serializeSystemUnitClassLibrary(writer, systemUnitClassLibrary);
+			addWrittenRegion(writer, systemUnitClassLibrary, start);
 		}
 
 		writer.writeEndElement();
 	}
 
+	// everything written so far is flushed, so the position is where the next element starts; an open start tag is closed first
+	private long getRegionPosition(XMLStreamWriter writer) throws XMLStreamException {
+		if (regionOutputStream == null)
+			return -1;
+		writer.writeCharacters("");
+		writer.flush();
+		return regionOutputStream.getPosition();
+	}
+
+	private boolean copyRegion(AMLDocumentElement element) throws XMLStreamException {
+		if (sourceRegions == null)
+			return false;
+		long[] region = sourceRegions.get(element);
+		if (region == null)
+			return false;
+		try {
+			if (sourceChannel == null)
+				sourceChannel = FileChannel.open(sourceRegions.getFile().toPath(), StandardOpenOption.READ);
+			regionOutputStream.transferFrom(sourceChannel, region[0], region[1] - region[0]);
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+		return true;
+	}
+
+	private void addWrittenRegion(XMLStreamWriter writer, AMLDocumentElement element, long start) throws XMLStreamException {
+		if (regionOutputStream != null)
+			writtenRegions.add(element, start, getRegionPosition(writer));
+	}
+
+	private void closeSourceChannel() {
+		if (sourceChannel == null)
+			return;
+		try {
+			sourceChannel.close();
+		} catch (IOException e) {
+			// only read
+		}
+		sourceChannel = null;
+	}
+
 	private static String formatDate(Date currentDate) {
-		return dateFormat.format(currentDate);
+		return dateFormat.get().format(currentDate);
 	}
 	
 	private void serializeRevisions(XMLStreamWriter writer, AMLElement amlElement) throws XMLStreamException {
@@ -226,6 +408,8 @@ public class AMLSerializer {
 
 		String alias = "Other" + aliasCounter++;
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_ALIAS, alias);
+		if (writtenRegions != null)
+			writtenRegions.addExternalReference(alias, referencedUrl);
 
 		writer.writeEndElement();
 	}
@@ -252,7 +436,7 @@ public class AMLSerializer {
 	private void serializeGroup(XMLStreamWriter writer, AMLGroup group) throws XMLStreamException {
 		writer.writeStartElement(AMLElementNames.ELEMENT_INTERNAL_ELEMENT);
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_NAME, group.getName());
-		writer.writeAttribute(AMLElementNames.ATTRIBUTE_ID, getUUIDAsAttributeValue(group.getId()));
+		writeUUIDAttribute(writer, AMLElementNames.ATTRIBUTE_ID, group.getId());
 		serializeElement(writer, group);
 
 		Iterable<AMLAttribute> attributeIterator = group.getAttributes();
@@ -285,8 +469,8 @@ public class AMLSerializer {
 
 	private void serializeMirrorObject(XMLStreamWriter writer, AMLMirrorObject mirrorObject) throws XMLStreamException {
 		writer.writeStartElement(AMLElementNames.ELEMENT_INTERNAL_ELEMENT);
-		writer.writeAttribute(AMLElementNames.ATTRIBUTE_ID, getUUIDAsAttributeValue(mirrorObject.getId()));
-		writer.writeAttribute(AMLElementNames.ATTRIBUTE_REF_BASE_SYSTEM_UNIT_PATH, getUUIDAsAttributeValue(mirrorObject.getInternalElement().getId()));
+		writeUUIDAttribute(writer, AMLElementNames.ATTRIBUTE_ID, mirrorObject.getId());
+		writeUUIDAttribute(writer, AMLElementNames.ATTRIBUTE_REF_BASE_SYSTEM_UNIT_PATH, mirrorObject.getInternalElement().getId());
 		writer.writeEndElement();
 	}
 
@@ -294,9 +478,17 @@ public class AMLSerializer {
 		return "{" + id.toString() + "}";
 	}
 
+	// the direct writer formats the id without creating a string for it
+	private void writeUUIDAttribute(XMLStreamWriter writer, String localName, UUID id) throws XMLStreamException {
+		if (writer instanceof CAEXStreamWriter)
+			((CAEXStreamWriter) writer).writeAttribute(localName, id);
+		else
+			writer.writeAttribute(localName, getUUIDAsAttributeValue(id));
+	}
+
 	private void serializeInternalElement(XMLStreamWriter writer, AMLInternalElement internalElement) throws XMLStreamException, AMLValidationException {
 		writer.writeStartElement(AMLElementNames.ELEMENT_INTERNAL_ELEMENT);
-		writer.writeAttribute(AMLElementNames.ATTRIBUTE_ID, getUUIDAsAttributeValue(internalElement.getId()));
+		writeUUIDAttribute(writer, AMLElementNames.ATTRIBUTE_ID, internalElement.getId());
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_NAME, internalElement.getName());
 		if (internalElement.getBaseSystemUnitClass() != null)
 			writer.writeAttribute(AMLElementNames.ATTRIBUTE_REF_BASE_SYSTEM_UNIT_PATH, internalElement.getBaseSystemUnitClass().getClassPath());
@@ -357,7 +549,7 @@ public class AMLSerializer {
 			AMLCOLLADAInterface colladaInterface) throws XMLStreamException, AMLValidationException {
 		writer.writeStartElement(AMLElementNames.ELEMENT_EXTERNAL_INTERFACE);
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_NAME, colladaInterface.getName());
-		writer.writeAttribute(AMLElementNames.ATTRIBUTE_ID, getUUIDAsAttributeValue(colladaInterface.getId()));
+		writeUUIDAttribute(writer, AMLElementNames.ATTRIBUTE_ID, colladaInterface.getId());
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_REF_BASE_CLASS_PATH, colladaInterface.getInterfaceClass().getClassPath());
 		serializeElement(writer, colladaInterface);
 
@@ -451,7 +643,7 @@ public class AMLSerializer {
 	private void serializeFacet(XMLStreamWriter writer, AMLFacet facet) throws XMLStreamException {
 		writer.writeStartElement(AMLElementNames.ELEMENT_INTERNAL_ELEMENT);
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_NAME, facet.getName());
-		writer.writeAttribute(AMLElementNames.ATTRIBUTE_ID, getUUIDAsAttributeValue(facet.getId()));
+		writeUUIDAttribute(writer, AMLElementNames.ATTRIBUTE_ID, facet.getId());
 
 		Iterable<AMLAttribute> attributes = facet.getAttributes();
 		for (AMLAttribute attribute : attributes) {
@@ -464,7 +656,7 @@ public class AMLSerializer {
 		for (AMLExternalInterface externalInterface : externalInterfaces) {
 			writer.writeStartElement(AMLElementNames.ELEMENT_EXTERNAL_INTERFACE);
 			writer.writeAttribute(AMLElementNames.ATTRIBUTE_NAME, externalInterface.getName());
-			writer.writeAttribute(AMLElementNames.ATTRIBUTE_ID, getUUIDAsAttributeValue(externalInterface.getId()));
+			writeUUIDAttribute(writer, AMLElementNames.ATTRIBUTE_ID, externalInterface.getId());
 			writer.writeAttribute(AMLElementNames.ATTRIBUTE_REF_BASE_CLASS_PATH, externalInterface.getInterfaceClass().getClassPath());
 			writer.writeEndElement();
 		}
@@ -574,7 +766,7 @@ public class AMLSerializer {
 	private void serializeExternalInterface(XMLStreamWriter writer, AMLExternalInterface externalInterface) throws XMLStreamException {
 		writer.writeStartElement(AMLElementNames.ELEMENT_EXTERNAL_INTERFACE);
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_NAME, externalInterface.getName());
-		writer.writeAttribute(AMLElementNames.ATTRIBUTE_ID, getUUIDAsAttributeValue(externalInterface.getId()));
+		writeUUIDAttribute(writer, AMLElementNames.ATTRIBUTE_ID, externalInterface.getId());
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_REF_BASE_CLASS_PATH, externalInterface.getInterfaceClass().getClassPath());
 		serializeElement(writer, externalInterface);
 
@@ -610,6 +802,7 @@ public class AMLSerializer {
 	}
 
 	private void serializeAttribute(XMLStreamWriter writer, AMLAttribute attribute, String prefix) throws XMLStreamException {
+		elementWritten();
 
 		writer.writeStartElement(AMLElementNames.ELEMENT_ATTRIBUTE);
 		writer.writeAttribute(AMLElementNames.ATTRIBUTE_NAME, prefix + attribute.getName());
@@ -630,7 +823,12 @@ public class AMLSerializer {
 			writer.writeEndElement();
 		}
 
-		if (attribute.getValue() != null) {
+		AMLValueStore.StoredValue storedValue = attribute instanceof AMLAttributeImpl ? ((AMLAttributeImpl) attribute).getStoredValue() : null;
+		if (storedValue != null) {
+			writer.writeStartElement(AMLElementNames.ELEMENT_VALUE);
+			storedValue.writeTo(writer);
+			writer.writeEndElement();
+		} else if (attribute.getValue() != null) {
 			writer.writeStartElement(AMLElementNames.ELEMENT_VALUE);
 			writer.writeCharacters(attribute.getValue());
 			writer.writeEndElement();
@@ -794,6 +992,7 @@ public class AMLSerializer {
 	}
 
 	private void serializeElement(XMLStreamWriter writer, AMLElement element) throws XMLStreamException {
+		elementWritten();
 		serializeRevisions(writer, element);
 
 		if (element.getDescription() != null) {
@@ -811,7 +1010,13 @@ public class AMLSerializer {
 			writer.writeCharacters(element.getCopyright());
 			writer.writeEndElement();
 		}
-		if (element.getAdditionalInformation() != null) {
+		AMLValueStore.StoredValue storedAdditionalInformation = element instanceof AMLElementImpl ? ((AMLElementImpl) element)
+				.getStoredAdditionalInformation() : null;
+		if (storedAdditionalInformation != null) {
+			writer.writeStartElement(AMLElementNames.ELEMENT_ADDITIONAL_INFORMATION);
+			storedAdditionalInformation.writeTo(writer);
+			writer.writeEndElement();
+		} else if (element.getAdditionalInformation() != null) {
 			writer.writeStartElement(AMLElementNames.ELEMENT_ADDITIONAL_INFORMATION);
 			writer.writeCharacters(element.getAdditionalInformation());
 			writer.writeEndElement();
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.automationml.aml.AMLDocument;
+import org.automationml.aml.AMLDocumentElement;
+import org.automationml.internal.aml.AMLElementType;
+
+/**
+ * Where the instance hierarchies and class libraries of a document are in the file it was loaded from or saved to, see
+ * {@link org.automationml.aml.AMLSession#setIncrementalSaving(boolean)}. A region reaches from the start tag to the end tag of the element in
+ * bytes, it is discarded as soon as the element is changed. The regions are only used while the file has the size, modification time and
+ * identity it had when they were recorded.
+ */
+public class AMLSourceRegions {
+
+	// a region found while loading, bound to its element once the document is built
+	private static class NamedRegion {
+		final AMLElementType elementType;
+		final String name;
+		final long start;
+		final long end;
+
+		NamedRegion(AMLElementType elementType, String name, long start, long end) {
+			this.elementType = elementType;
+			this.name = name;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	private final File file;
+	private BasicFileAttributes fileAttributes;
+	// the regions may refer to the documents by the aliases of the external references
+	private final List<String> externalReferences = new ArrayList<String>();
+	private final List<NamedRegion> namedRegions = new ArrayList<NamedRegion>();
+	private final Map<AMLDocumentElement, long[]> regions = new IdentityHashMap<AMLDocumentElement, long[]>();
+
+	AMLSourceRegions(File file) {
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	void addExternalReference(String alias, URL url) {
+		externalReferences.add(alias + "@" + url);
+	}
+
+	/**
+	 * Returns whether the external references are the same, with the same aliases in the same order.
+	 */
+	boolean hasSameExternalReferences(AMLSourceRegions sourceRegions) {
+		return externalReferences.equals(sourceRegions.externalReferences);
+	}
+
+	void add(AMLElementType elementType, String name, long start, long end) {
+		namedRegions.add(new NamedRegion(elementType, name, start, end));
+	}
+
+	void add(AMLDocumentElement element, long start, long end) {
+		regions.put(element, new long[] { start, end });
+	}
+
+	/**
+	 * Looks up the elements of the regions found while loading in the loaded document.
+	 */
+	void bind(AMLDocument document) {
+		for (NamedRegion namedRegion : namedRegions) {
+			AMLDocumentElement element = getElement(document, namedRegion.elementType, namedRegion.name);
+			if (element != null)
+				add(element, namedRegion.start, namedRegion.end);
+		}
+		namedRegions.clear();
+	}
+
+	private static AMLDocumentElement getElement(AMLDocument document, AMLElementType elementType, String name) {
+		switch (elementType) {
+		case ELEMENT_INSTANCE_HIERARCHY:
+			return document.getInstanceHierarchy(name);
+		case ELEMENT_INTERFACE_CLASS_LIB:
+			return document.getInterfaceClassLibrary(name);
+		case ELEMENT_ROLE_CLASS_LIB:
+			return document.getRoleClassLibrary(name);
+		case ELEMENT_SYSTEM_UNIT_CLASS_LIB:
+			return document.getSystemUnitClassLibrary(name);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the start and end of the element in the file, or null if it is not known or changed.
+	 */
+	long[] get(AMLDocumentElement element) {
+		return regions.get(element);
+	}
+
+	/**
+	 * The element is changed, it has to be written again.
+	 */
+	public void discard(AMLDocumentElement element) {
+		regions.remove(element);
+	}
+
+	public boolean isEmpty() {
+		return regions.isEmpty();
+	}
+
+	/**
+	 * Records the state of the file once it is completely written, the regions are used as long as it is unchanged.
+	 */
+	public void recordFileState() throws IOException {
+		fileAttributes = readFileAttributes();
+	}
+
+	/**
+	 * Returns whether the file is unchanged since the regions were recorded.
+	 */
+	boolean isCurrent() {
+		if (fileAttributes == null)
+			return false;
+		try {
+			BasicFileAttributes currentAttributes = readFileAttributes();
+			return currentAttributes.size() == fileAttributes.size() && currentAttributes.lastModifiedTime().equals(fileAttributes.lastModifiedTime())
+					&& (fileAttributes.fileKey() == null || fileAttributes.fileKey().equals(currentAttributes.fileKey()));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private BasicFileAttributes readFileAttributes() throws IOException {
+		return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+	}
+
+	@Override
+	public String toString() {
+		return "AMLSourceRegions [" + file + ", " + regions.size() + " regions]";
+	}
+}
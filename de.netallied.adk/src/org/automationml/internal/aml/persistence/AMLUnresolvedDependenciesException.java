@@ -5,6 +5,8 @@
 package org.automationml.internal.aml.persistence;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 
 import org.automationml.aml.AMLValidationException;
 import org.automationml.aml.AMLValidationResult.Severity;
@@ -15,9 +17,15 @@ import org.automationml.internal.aml.AMLValidationResultListImpl;
 @SuppressWarnings("serial")
 public class AMLUnresolvedDependenciesException extends AMLValidationException {
 	private Collection<AMLInstruction> unresolvedInstructions;
+	private Map<AMLInstruction, String> messages;
 
 	public AMLUnresolvedDependenciesException(Collection<AMLInstruction> unresolvedInstructions) {
+		this(unresolvedInstructions, Collections.<AMLInstruction, String> emptyMap());
+	}
+
+	public AMLUnresolvedDependenciesException(Collection<AMLInstruction> unresolvedInstructions, Map<AMLInstruction, String> messages) {
 		this.unresolvedInstructions = unresolvedInstructions;
+		this.messages = messages;
 	}
 
 	public Collection<AMLInstruction> getUnresolvedInstructions() {
@@ -29,7 +37,9 @@ public class AMLUnresolvedDependenciesException extends AMLValidationException {
 		AMLValidationResultListImpl resultList = new AMLValidationResultListImpl();
 		for (AMLInstruction instruction : unresolvedInstructions) {
 			AMLDeserializeIdentifier selfIdentifier = instruction.getSelfIdentifier();
-			String message = selfIdentifier.getName() + " is undefined";
+			String message = messages.get(instruction);
+			if (message == null)
+				message = selfIdentifier.getName() + " is undefined";
 			//			if (selfIdentifier instanceof AMLDeserializeIdentifier) {
 			//				message += instruction.getLocationAsString(
 			//						instruction.getDocumentElement(),
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2019 NetAllied Systems GmbH, Ravensburg. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for details. 
+ *******************************************************************************/
+package org.automationml.internal.aml.persistence;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.UUID;
+
+/**
+ * Decodes the attribute and element values read for every element. The usual forms are decoded directly from the characters, everything else is
+ * handed to the general purpose parsers with the same result as before.
+ */
+public final class AMLValueDecoder {
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+			1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private AMLValueDecoder() {
+	}
+
+	/**
+	 * Returns the UUID of an id like {c94d2e2c-ba2f-40eb-91c5-3b8070769077}, with or without braces, or null if the value is no UUID.
+	 */
+	public static UUID parseUUID(String value) {
+		if (value == null)
+			return null;
+		int start = 0;
+		int end = value.length();
+		if (end == 38 && value.charAt(0) == '{' && value.charAt(37) == '}') {
+			start = 1;
+			end = 37;
+		}
+		if (end - start == 36) {
+			long mostSigBits = 0;
+			long leastSigBits = 0;
+			int digits = 0;
+			for (int i = start; i < end; i++) {
+				int offset = i - start;
+				char c = value.charAt(i);
+				if (offset == 8 || offset == 13 || offset == 18 || offset == 23) {
+					if (c != '-')
+						return parseLenientUUID(value);
+					continue;
+				}
+				int digit = Character.digit(c, 16);
+				if (digit < 0)
+					return null;
+				if (digits++ < 16)
+					mostSigBits = mostSigBits << 4 | digit;
+				else
+					leastSigBits = leastSigBits << 4 | digit;
+			}
+			return new UUID(mostSigBits, leastSigBits);
+		}
+		return parseLenientUUID(value);
+	}
+
+	// UUID.fromString also accepts shortened groups, which only values made of hex digits, dashes and braces can be
+	private static UUID parseLenientUUID(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c != '-' && c != '{' && c != '}' && Character.digit(c, 16) < 0)
+				return null;
+		}
+		try {
+			return UUID.fromString(value.replace("{", "").replace("}", ""));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Parses an xs:double, including INF, -INF and NaN.
+	 */
+	public static double parseDouble(String value) throws NumberFormatException {
+		String trimmed = value.trim();
+		if (trimmed.equals("INF") || trimmed.equals("+INF"))
+			return Double.POSITIVE_INFINITY;
+		if (trimmed.equals("-INF"))
+			return Double.NEGATIVE_INFINITY;
+
+		int length = trimmed.length();
+		int i = 0;
+		boolean negative = false;
+		if (i < length && (trimmed.charAt(i) == '-' || trimmed.charAt(i) == '+'))
+			negative = trimmed.charAt(i++) == '-';
+
+		long mantissa = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		boolean anyDigits = false;
+		for (; i < length && isDigit(trimmed.charAt(i)); i++) {
+			anyDigits = true;
+			mantissa = mantissa * 10 + trimmed.charAt(i) - '0';
+			if (mantissa != 0)
+				significantDigits++;
+		}
+		if (i < length && trimmed.charAt(i) == '.') {
+			for (i++; i < length && isDigit(trimmed.charAt(i)); i++) {
+				anyDigits = true;
+				mantissa = mantissa * 10 + trimmed.charAt(i) - '0';
+				if (mantissa != 0)
+					significantDigits++;
+				exponent--;
+			}
+		}
+		if (anyDigits && i < length && (trimmed.charAt(i) == 'e' || trimmed.charAt(i) == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < length && (trimmed.charAt(i) == '-' || trimmed.charAt(i) == '+'))
+				negativeExponent = trimmed.charAt(i++) == '-';
+			int exponentDigits = 0;
+			int explicitExponent = 0;
+			for (; i < length && isDigit(trimmed.charAt(i)) && exponentDigits < 4; i++, exponentDigits++) {
+				explicitExponent = explicitExponent * 10 + trimmed.charAt(i) - '0';
+			}
+			if (exponentDigits == 0)
+				i = -1;
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+
+		// exact as long as the digits fit into the mantissa of a double and the power of ten is exact as well
+		if (anyDigits && i == length && significantDigits <= 15 && exponent >= -22 && exponent <= 22) {
+			double result = mantissa;
+			result = exponent < 0 ? result / POWERS_OF_TEN[-exponent] : result * POWERS_OF_TEN[exponent];
+			return negative ? -result : result;
+		}
+		return Double.parseDouble(trimmed);
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Parses a date time like 2013-07-22T15:12:37+0200 or, in the local time zone, 2013-07-22T15:12:37. Returns null if the value is no such date.
+	 */
+	public static Date parseDateTime(String value) {
+		int length = value.length();
+		if ((length == 19 || length == 24) && isDateTime(value)) {
+			int year = digits(value, 0, 4);
+			int month = digits(value, 5, 2);
+			int day = digits(value, 8, 2);
+			int hour = digits(value, 11, 2);
+			int minute = digits(value, 14, 2);
+			int second = digits(value, 17, 2);
+			if (year >= 1600 && month >= 1 && month <= 12 && day >= 1 && day <= daysOfMonth(year, month) && hour <= 23 && minute <= 59 && second <= 59) {
+				if (length == 19) {
+					Calendar calendar = new GregorianCalendar();
+					calendar.clear();
+					calendar.set(year, month - 1, day, hour, minute, second);
+					return calendar.getTime();
+				}
+				char sign = value.charAt(19);
+				int offsetHours = digits(value, 20, 2);
+				int offsetMinutes = digits(value, 22, 2);
+				if ((sign == '+' || sign == '-') && offsetHours <= 23 && offsetMinutes <= 59) {
+					long seconds = daysSinceEpoch(year, month, day) * 86400L + hour * 3600 + minute * 60 + second;
+					int offset = offsetHours * 3600 + offsetMinutes * 60;
+					return new Date((seconds - (sign == '+' ? offset : -offset)) * 1000L);
+				}
+			}
+		}
+
+		try {
+			return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").parse(value);
+		} catch (ParseException e) {
+			try {
+				return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").parse(value);
+			} catch (ParseException ex) {
+				return null;
+			}
+		}
+	}
+
+	private static boolean isDateTime(String value) {
+		for (int i = 0; i < 19; i++) {
+			char c = value.charAt(i);
+			switch (i) {
+			case 4:
+			case 7:
+				if (c != '-')
+					return false;
+				break;
+			case 10:
+				if (c != 'T')
+					return false;
+				break;
+			case 13:
+			case 16:
+				if (c != ':')
+					return false;
+				break;
+			default:
+				if (!isDigit(c))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	// negative if not all digits, which fails every range check
+	private static int digits(String value, int start, int count) {
+		int result = 0;
+		for (int i = start; i < start + count; i++) {
+			char c = value.charAt(i);
+			if (!isDigit(c))
+				return -1 << 16;
+			result = result * 10 + c - '0';
+		}
+		return result;
+	}
+
+	private static int daysOfMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	// days of the proleptic gregorian calendar since 1970-01-01
+	private static long daysSinceEpoch(int year, int month, int day) {
+		if (month <= 2)
+			year--;
+		int era = year / 400;
+		int yearOfEra = year - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+}